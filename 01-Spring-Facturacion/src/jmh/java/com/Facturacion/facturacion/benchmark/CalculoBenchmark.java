@@ -0,0 +1,63 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.models.Factura;
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.service.FacturaService;
+import com.Facturacion.facturacion.util.Dinero;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cálculo de totales: FacturaCompleta.calcularTotales y FacturaService.calcularFactura.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculoBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int items;
+
+    private FacturaCompleta facturaCompleta;
+    private FacturaService facturaService;
+    private Factura factura;
+    private final char[] buffer = new char[22];
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        facturaCompleta = ContextoBenchmark.facturaConItems(items);
+        facturaService = new FacturaService();
+        factura = new Factura();
+        factura.setCodigo("P1");
+        factura.setDescripcion("FRITADA");
+        factura.setCantidad(9);
+        factura.setPrecioUnitario(4.35);
+    }
+
+    @Benchmark
+    public double calcularTotales() {
+        facturaCompleta.calcularTotales();
+        return facturaCompleta.getValorTotal();
+    }
+
+    @Benchmark
+    public double calcularFactura() {
+        facturaService.calcularFactura(factura);
+        return factura.getTotal();
+    }
+
+    // Formato de un monto como en el PDF: String.format frente a Dinero
+    @Benchmark
+    public String formatearConStringFormat() {
+        return String.format("%.2f", facturaCompleta.getValorTotal());
+    }
+
+    @Benchmark
+    public int formatearConDinero() {
+        return Dinero.formatear(facturaCompleta.getValorTotalCentavos(), buffer, 0);
+    }
+}
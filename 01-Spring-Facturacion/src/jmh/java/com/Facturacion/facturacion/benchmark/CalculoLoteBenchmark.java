@@ -0,0 +1,77 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.models.Factura;
+import com.Facturacion.facturacion.models.LoteFacturas;
+import com.Facturacion.facturacion.service.FacturaService;
+import com.Facturacion.facturacion.util.CalculoLote;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conciliación de muchas líneas: calcularFactura línea por línea frente a calcularLote con la
+ * versión escalar, la vectorial y la repartida en el ForkJoinPool común.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class CalculoLoteBenchmark {
+
+    @Param({"1000", "1000000"})
+    private int filas;
+
+    private FacturaService facturaService;
+    private LoteFacturas lote;
+    private Factura factura;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        Random random = new Random(42);
+        int[] cantidades = new int[filas];
+        double[] precios = new double[filas];
+        for (int i = 0; i < filas; i++) {
+            cantidades[i] = 1 + random.nextInt(12);
+            precios[i] = random.nextInt(1_000_000) / 100.0;
+        }
+        facturaService = new FacturaService();
+        lote = new LoteFacturas(cantidades, precios);
+        factura = new Factura();
+    }
+
+    @Benchmark
+    public double porFactura() {
+        int[] cantidades = lote.getCantidades();
+        double[] precios = lote.getPreciosUnitarios();
+        double suma = 0;
+        for (int i = 0; i < filas; i++) {
+            factura.setCantidad(cantidades[i]);
+            factura.setPrecioUnitario(precios[i]);
+            facturaService.calcularFactura(factura);
+            suma += factura.getTotal();
+        }
+        return suma;
+    }
+
+    @Benchmark
+    public double[] loteEscalar() {
+        CalculoLote.calcularEscalar(lote, ReglasFacturacion.vigentes(), 0, filas);
+        return lote.getTotales();
+    }
+
+    @Benchmark
+    public double[] loteVectorial() {
+        CalculoLote.calcularVectorial(lote, ReglasFacturacion.vigentes(), 0, filas);
+        return lote.getTotales();
+    }
+
+    @Benchmark
+    public double[] loteParalelo() {
+        facturaService.calcularLote(lote);
+        return lote.getTotales();
+    }
+}
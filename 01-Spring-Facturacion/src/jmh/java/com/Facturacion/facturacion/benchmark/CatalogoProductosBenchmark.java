@@ -0,0 +1,105 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.models.Producto;
+import com.Facturacion.facturacion.util.CatalogoProductos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catálogo de un millón de productos: búsqueda por código en la tabla hash de {@code int}
+ * frente a un {@code HashMap<String, Producto>} con un objeto por producto, y búsqueda por
+ * palabras de la descripción. El tiempo de armado (lo que tarda una recarga) se imprime al
+ * preparar.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class CatalogoProductosBenchmark {
+
+    private static final String[] TIPOS = {"MARTILLO", "CLAVO", "TORNILLO", "TUERCA", "BROCA", "LIJA", "PINTURA",
+            "CEMENTO", "TUBO", "CODO", "LLAVE", "CABLE", "FOCO", "CINTA", "SILICÓN", "BISAGRA"};
+    private static final String[] DETALLES = {"GALVANIZADO", "ACERO", "PVC", "COBRE", "MADERA", "GALPONERO",
+            "INOXIDABLE", "ESMALTE", "LÁTEX", "AMARILLO", "BLANCO", "NEGRO"};
+    private static final int CONSULTAS = 1024;
+
+    @Param({"1000000"})
+    private int productos;
+
+    private CatalogoProductos catalogo;
+    private Map<String, Producto> mapa;
+    private String[] codigos;
+    private String[] inexistentes;
+    private int siguiente;
+
+    @Setup(Level.Trial)
+    public void cargar() {
+        Random aleatorio = new Random(42);
+        String[] todos = new String[productos];
+        String[] descripciones = new String[productos];
+        long[] precios = new long[productos];
+        for (int i = 0; i < productos; i++) {
+            todos[i] = String.format("%c%c-%06d", 'A' + i % 26, 'A' + aleatorio.nextInt(26), i);
+            descripciones[i] = TIPOS[aleatorio.nextInt(TIPOS.length)] + " " + DETALLES[aleatorio.nextInt(DETALLES.length)]
+                    + " " + (1 + aleatorio.nextInt(64)) + " MM";
+            precios[i] = 1 + aleatorio.nextInt(1_000_000);
+        }
+
+        long inicio = System.nanoTime();
+        CatalogoProductos.Escritor escritor = new CatalogoProductos.Escritor();
+        for (int i = 0; i < productos; i++) {
+            escritor.agregar(todos[i], descripciones[i], precios[i]);
+        }
+        catalogo = escritor.construir();
+        long armado = System.nanoTime() - inicio;
+
+        mapa = new HashMap<>(productos * 2);
+        for (int i = 0; i < productos; i++) {
+            mapa.put(todos[i], new Producto(todos[i], descripciones[i], precios[i]));
+        }
+        System.out.printf("%n%d productos: armado %d ms, %d MB en arreglos%n", catalogo.getCantidad(),
+                armado / 1_000_000, catalogo.getBytes() >> 20);
+
+        codigos = new String[CONSULTAS];
+        inexistentes = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            codigos[i] = todos[aleatorio.nextInt(productos)];
+            inexistentes[i] = codigos[i] + "X";
+        }
+    }
+
+    private int siguiente() {
+        return siguiente = (siguiente + 1) & (CONSULTAS - 1);
+    }
+
+    @Benchmark
+    public long porCodigo() {
+        return catalogo.precioDiezmilesimas(catalogo.buscar(codigos[siguiente()]));
+    }
+
+    @Benchmark
+    public long porCodigoHashMap() {
+        return mapa.get(codigos[siguiente()]).getPrecioDiezmilesimas();
+    }
+
+    @Benchmark
+    public int codigoInexistente() {
+        return catalogo.buscar(inexistentes[siguiente()]);
+    }
+
+    @Benchmark
+    public int[] unaPalabra() {
+        return catalogo.buscarPorDescripcion("marti", 10);
+    }
+
+    @Benchmark
+    public int[] dosPalabras() {
+        return catalogo.buscarPorDescripcion("tornillo inox", 10);
+    }
+}
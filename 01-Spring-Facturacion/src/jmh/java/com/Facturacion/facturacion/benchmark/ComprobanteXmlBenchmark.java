@@ -0,0 +1,139 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.service.ComprobanteXmlService;
+import com.Facturacion.facturacion.util.Dinero;
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comprobante XML de la factura: StAX directo al stream frente a armar el árbol DOM y
+ * serializarlo con un Transformer, que es como se suele hacer. Con -prof gc se ve la
+ * memoria por factura.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComprobanteXmlBenchmark {
+
+    @Param({"10", "10000"})
+    private int items;
+
+    private ComprobanteXmlService comprobanteXml;
+    private FacturaCompleta factura;
+    private DocumentBuilder constructor;
+    private Transformer transformador;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        comprobanteXml = new ComprobanteXmlService();
+        factura = ContextoBenchmark.facturaConItems(items);
+        factura.setNumeroFactura("001-001-000000001");
+        factura.setClaveAcceso("0101202401050381562300120010010000000011234567811");
+        constructor = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        transformador = TransformerFactory.newInstance().newTransformer();
+        transformador.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+    }
+
+    @Benchmark
+    public void stax() throws Exception {
+        comprobanteXml.generarFacturaXml(factura, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void dom() throws Exception {
+        Document documento = constructor.newDocument();
+        Element raiz = documento.createElement("factura");
+        raiz.setAttribute("id", "comprobante");
+        raiz.setAttribute("version", ComprobanteXmlService.VERSION_ESQUEMA);
+        documento.appendChild(raiz);
+
+        Element tributaria = hijo(documento, raiz, "infoTributaria", null);
+        hijo(documento, tributaria, "ambiente", "2");
+        hijo(documento, tributaria, "tipoEmision", "1");
+        hijo(documento, tributaria, "razonSocial", factura.getNombrePropietario());
+        hijo(documento, tributaria, "nombreComercial", factura.getNombreEmpresa());
+        hijo(documento, tributaria, "ruc", factura.getRucEmisor());
+        hijo(documento, tributaria, "claveAcceso", factura.getClaveAcceso());
+        hijo(documento, tributaria, "codDoc", "01");
+        hijo(documento, tributaria, "estab", factura.getNumeroFactura().substring(0, 3));
+        hijo(documento, tributaria, "ptoEmi", factura.getNumeroFactura().substring(4, 7));
+        hijo(documento, tributaria, "secuencial", factura.getNumeroFactura().substring(8));
+        hijo(documento, tributaria, "dirMatriz", factura.getDireccionEmisor());
+
+        Element info = hijo(documento, raiz, "infoFactura", null);
+        hijo(documento, info, "fechaEmision", factura.getFechaEmision());
+        hijo(documento, info, "dirEstablecimiento", factura.getDireccionSucursal());
+        hijo(documento, info, "obligadoContabilidad", factura.isObligadoContabilidad() ? "SI" : "NO");
+        hijo(documento, info, "tipoIdentificacionComprador", "04");
+        hijo(documento, info, "razonSocialComprador", factura.getRazonSocialCliente());
+        hijo(documento, info, "identificacionComprador", factura.getRucCliente());
+        hijo(documento, info, "direccionComprador", factura.getDireccionCliente());
+        hijo(documento, info, "totalSinImpuestos", monto(factura.getSubtotalSinImpuestosCentavos()));
+        hijo(documento, info, "totalDescuento", monto(factura.getTotalDescuentoCentavos()));
+        Element totalImpuesto = hijo(documento, hijo(documento, info, "totalConImpuestos", null), "totalImpuesto", null);
+        hijo(documento, totalImpuesto, "codigo", "2");
+        hijo(documento, totalImpuesto, "codigoPorcentaje", "4");
+        hijo(documento, totalImpuesto, "baseImponible", monto(factura.getBaseIva15Centavos()));
+        hijo(documento, totalImpuesto, "valor", monto(factura.getIva15Centavos()));
+        hijo(documento, info, "propina", monto(factura.getServicioCentavos()));
+        hijo(documento, info, "importeTotal", monto(factura.getValorTotalCentavos()));
+        hijo(documento, info, "moneda", "DOLAR");
+        Element pago = hijo(documento, hijo(documento, info, "pagos", null), "pago", null);
+        hijo(documento, pago, "formaPago", factura.getCodigoFormaPago());
+        hijo(documento, pago, "total", monto(factura.getValorTotalCentavos()));
+
+        Element detalles = hijo(documento, raiz, "detalles", null);
+        for (ItemFactura item : factura.getItems()) {
+            Element detalle = hijo(documento, detalles, "detalle", null);
+            hijo(documento, detalle, "codigoPrincipal", item.getCodigo());
+            hijo(documento, detalle, "descripcion", item.getDescripcion());
+            hijo(documento, detalle, "cantidad", Integer.toString(item.getCantidad()));
+            hijo(documento, detalle, "precioUnitario",
+                    BigDecimal.valueOf(item.getPrecioUnitarioDiezmilesimas(), 4).toPlainString());
+            hijo(documento, detalle, "descuento", monto(item.getDescuentoCentavos()));
+            hijo(documento, detalle, "precioTotalSinImpuesto", monto(item.getTotalCentavos()));
+            Element impuesto = hijo(documento, hijo(documento, detalle, "impuestos", null), "impuesto", null);
+            hijo(documento, impuesto, "codigo", "2");
+            hijo(documento, impuesto, "codigoPorcentaje", "4");
+            hijo(documento, impuesto, "tarifa", "15.00");
+            hijo(documento, impuesto, "baseImponible", monto(item.getTotalCentavos()));
+            hijo(documento, impuesto, "valor", monto(Dinero.porcentaje(item.getTotalCentavos(), Dinero.TASA_IVA_15)));
+        }
+
+        Element adicional = hijo(documento, raiz, "infoAdicional", null);
+        Element campo = hijo(documento, adicional, "campoAdicional", factura.getCorreoCliente());
+        campo.setAttribute("nombre", "Email");
+
+        transformador.transform(new DOMSource(documento), new StreamResult(OutputStream.nullOutputStream()));
+    }
+
+    private static Element hijo(Document documento, Element padre, String nombre, String texto) {
+        Element elemento = documento.createElement(nombre);
+        if (texto != null) {
+            elemento.setTextContent(texto);
+        }
+        padre.appendChild(elemento);
+        return elemento;
+    }
+
+    private static String monto(long centavos) {
+        return BigDecimal.valueOf(centavos, 2).toPlainString();
+    }
+}
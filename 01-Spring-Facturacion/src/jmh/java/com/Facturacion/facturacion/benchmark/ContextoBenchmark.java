@@ -0,0 +1,47 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.FacturacionApplication;
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilidades compartidas por los benchmarks: contexto de Spring sin servidor web
+ * y facturas de ejemplo con la cantidad de items pedida.
+ */
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext iniciar() {
+        return new SpringApplicationBuilder(FacturacionApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN");
+    }
+
+    static FacturaCompleta facturaConItems(int cantidadItems) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setRazonSocialCliente("CLIENTE BENCHMARK");
+        factura.setRucCliente("1790011674001");
+        factura.setDireccionCliente("AV. AMAZONAS Y COLON");
+        factura.setCorreoCliente("cliente@correo.com");
+        factura.setTelefonoCliente("0991234567");
+        factura.setItems(itemsDeEjemplo(cantidadItems));
+        return factura;
+    }
+
+    static List<ItemFactura> itemsDeEjemplo(int cantidadItems) {
+        List<ItemFactura> items = new ArrayList<>(cantidadItems);
+        for (int i = 1; i <= cantidadItems; i++) {
+            items.add(new ItemFactura(i, "P" + i, "SECO DE CHIVO PORCION " + i, 1 + i % 9, 3.75 + (i % 7) * 0.5, i % 5 == 0 ? 1 : 0));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,107 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.models.Cliente;
+import com.Facturacion.facturacion.service.DirectorioClientesService;
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Autocompletado sobre un directorio con cientos de miles de clientes: prefijo de RUC,
+ * una palabra de la razón social y dos palabras. Queda una lista de recientes a medio llenar
+ * además de los segmentos ya indexados.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class DirectorioClientesBenchmark {
+
+    private static final String[] NOMBRES = {"MARÍA", "JOSÉ", "LUIS", "ANA", "CARLOS", "ROSA", "PEDRO", "ELENA",
+            "JORGE", "LUCÍA", "MIGUEL", "CARMEN"};
+    private static final String[] APELLIDOS = {"PÉREZ", "ESCOBAR", "CAJAMARCA", "VILLACÍS", "ANDRADE", "TORRES",
+            "GUAMÁN", "QUISPE", "SALAZAR", "MORENO", "CHICAIZA", "TOAPANTA", "YÉPEZ", "ZAMBRANO", "VELASCO", "MUÑOZ"};
+    private static final String[] NEGOCIOS = {"PICANTERÍA", "COMERCIAL", "FERRETERÍA", "FARMACIA", "RESTAURANTE",
+            "DISTRIBUIDORA", "PANADERÍA", "TIENDA"};
+
+    @Param({"500000"})
+    private int clientes;
+
+    private Path directorio;
+    private DirectorioClientesService directorioClientes;
+
+    @Setup(Level.Trial)
+    public void cargar() throws IOException {
+        directorio = Files.createTempDirectory("directorio-clientes");
+        directorioClientes = new DirectorioClientesService(new ValidadorEcuador(), directorio.toString(), 1024,
+                new SimpleMeterRegistry());
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < clientes; i++) {
+            String cedula = cedula(aleatorio);
+            String razonSocial = aleatorio.nextInt(4) == 0
+                    ? NEGOCIOS[aleatorio.nextInt(NEGOCIOS.length)] + " " + APELLIDOS[aleatorio.nextInt(APELLIDOS.length)] + " " + i
+                    : NOMBRES[aleatorio.nextInt(NOMBRES.length)] + " " + APELLIDOS[aleatorio.nextInt(APELLIDOS.length)]
+                    + " " + APELLIDOS[aleatorio.nextInt(APELLIDOS.length)];
+            directorioClientes.guardar(new Cliente(razonSocial, aleatorio.nextBoolean() ? cedula : cedula + "001",
+                    "AV. AMAZONAS " + i, "", "0991234567"));
+        }
+        System.out.printf("%n%d clientes%n", directorioClientes.getCantidad());
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws IOException {
+        directorioClientes.cerrar();
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // Cédula válida al azar: provincia, tercer dígito menor a 6 y verificador módulo 10
+    private static String cedula(Random aleatorio) {
+        int[] d = new int[10];
+        int provincia = 1 + aleatorio.nextInt(24);
+        d[0] = provincia / 10;
+        d[1] = provincia % 10;
+        d[2] = aleatorio.nextInt(6);
+        for (int i = 3; i < 9; i++) {
+            d[i] = aleatorio.nextInt(10);
+        }
+        int suma = 0;
+        for (int i = 0; i < 9; i++) {
+            int r = d[i] * (i % 2 == 0 ? 2 : 1);
+            suma += r > 9 ? r - 9 : r;
+        }
+        d[9] = suma % 10 == 0 ? 0 : 10 - suma % 10;
+        StringBuilder sb = new StringBuilder(10);
+        for (int x : d) {
+            sb.append(x);
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public List<Cliente> prefijoRuc() {
+        return directorioClientes.buscar("17053", 10);
+    }
+
+    @Benchmark
+    public List<Cliente> unaPalabra() {
+        return directorioClientes.buscar("picant", 10);
+    }
+
+    @Benchmark
+    public List<Cliente> dosPalabras() {
+        return directorioClientes.buscar("rosa yep", 10);
+    }
+}
@@ -0,0 +1,80 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.util.IndiceInvertido;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultas sobre un índice de texto con millones de facturas sintéticas: un término,
+ * varios términos y prefijo (búsqueda mientras se escribe).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class IndiceInvertidoBenchmark {
+
+    private static final String[] PRODUCTOS = {"seco", "chivo", "pollo", "fritada", "mote", "llapingacho",
+            "jugo", "naranjilla", "cola", "agua", "hornado", "cuy", "encebollado", "ceviche", "camaron",
+            "chifles", "tortilla", "choclo", "caldo", "gallina", "yaguarlocro", "empanada", "humita", "cafe"};
+    private static final String[] NOMBRES = {"maria", "jose", "luis", "ana", "carlos", "rosa", "pedro", "elena"};
+    private static final String[] APELLIDOS = {"perez", "escobar", "cajamarca", "villacis", "andrade", "torres",
+            "guaman", "quispe", "salazar", "moreno", "chicaiza", "toapanta"};
+
+    @Param({"2000000"})
+    private int documentos;
+
+    private IndiceInvertido indice;
+
+    private final List<String> unTermino = List.of("fritada");
+    private final List<String> variosTerminos = List.of("seco", "chivo", "perez");
+    private final List<String> raro = List.of("yaguarlocro", "cliente12345");
+    private final List<String> prefijo = List.of("seco", "ch");
+
+    @Setup(Level.Trial)
+    public void cargar() {
+        Random aleatorio = new Random(42);
+        indice = new IndiceInvertido(16384, Runnable::run);
+        List<String> terminos = new ArrayList<>(12);
+        for (int d = 0; d < documentos; d++) {
+            terminos.clear();
+            terminos.add(NOMBRES[aleatorio.nextInt(NOMBRES.length)]);
+            terminos.add(APELLIDOS[aleatorio.nextInt(APELLIDOS.length)]);
+            // Unos 50 000 clientes distintos, con un término propio cada uno
+            terminos.add("cliente" + aleatorio.nextInt(50_000));
+            for (int i = 1 + aleatorio.nextInt(4); i > 0; i--) {
+                terminos.add(PRODUCTOS[aleatorio.nextInt(PRODUCTOS.length)]);
+            }
+            indice.agregar(d, terminos);
+        }
+        indice.congelarBufer();
+        System.out.printf("%n%d documentos, %d segmentos, %d MB de listas comprimidas%n",
+                indice.getCantidadDocumentos(), indice.getCantidadSegmentos(), indice.getBytesSegmentos() >> 20);
+    }
+
+    @Benchmark
+    public int[] unTermino() {
+        return indice.buscar(unTermino, false, 20);
+    }
+
+    @Benchmark
+    public int[] variosTerminos() {
+        return indice.buscar(variosTerminos, false, 20);
+    }
+
+    @Benchmark
+    public int[] terminoRaro() {
+        return indice.buscar(raro, false, 20);
+    }
+
+    @Benchmark
+    public int[] prefijo() {
+        return indice.buscar(prefijo, true, 20);
+    }
+}
@@ -0,0 +1,47 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.service.PdfService;
+import com.Facturacion.facturacion.service.SecuencialService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render completo de la factura en PDF según la cantidad de items.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfServiceBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int items;
+
+    private ConfigurableApplicationContext contexto;
+    private PdfService pdfService;
+    private FacturaCompleta factura;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        contexto = ContextoBenchmark.iniciar();
+        pdfService = contexto.getBean(PdfService.class);
+        factura = ContextoBenchmark.facturaConItems(items);
+        contexto.getBean(SecuencialService.class).asignar(factura);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public void generarFacturaPdf() throws Exception {
+        pdfService.generarFacturaPdf(factura, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,67 @@
+package com.Facturacion.facturacion.benchmark;
+
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cada método público de ValidadorEcuador con documentos válidos de cada tipo.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidadorEcuadorBenchmark {
+
+    private final ValidadorEcuador validador = new ValidadorEcuador();
+
+    private String cedula = "1710034065";
+    private String rucPersonaNatural = "1710034065001";
+    private String rucSociedadPrivada = "1790011674001";
+    private String rucSociedadPublica = "1760001550001";
+    private String telefono = "099-123-4567";
+    private String correo = "cliente.frecuente@picanteria.com.ec";
+
+    @Benchmark
+    public boolean validarCedula() {
+        return validador.validarCedula(cedula);
+    }
+
+    @Benchmark
+    public boolean validarRucPersonaNatural() {
+        return validador.validarRuc(rucPersonaNatural);
+    }
+
+    @Benchmark
+    public boolean validarRucSociedadPrivada() {
+        return validador.validarRuc(rucSociedadPrivada);
+    }
+
+    @Benchmark
+    public boolean validarRucSociedadPublica() {
+        return validador.validarRuc(rucSociedadPublica);
+    }
+
+    @Benchmark
+    public boolean validarCedulaORC() {
+        return validador.validarCedulaORC(rucSociedadPrivada);
+    }
+
+    @Benchmark
+    public boolean validarTelefono() {
+        return validador.validarTelefono(telefono);
+    }
+
+    @Benchmark
+    public boolean validarCorreo() {
+        return validador.validarCorreo(correo);
+    }
+
+    @Benchmark
+    public String getMensajeErrorDocumento() {
+        return validador.getMensajeErrorDocumento(cedula);
+    }
+}
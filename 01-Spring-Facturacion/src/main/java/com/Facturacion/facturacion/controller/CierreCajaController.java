@@ -0,0 +1,106 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.models.ResumenVentas;
+import com.Facturacion.facturacion.service.CierreCajaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reportes de cierre de caja: el del día sale del acumulado, un rango de fechas
+ * (por ejemplo un mes anterior) se recalcula desde el diario.
+ */
+@RestController
+@RequestMapping("/api/cierres")
+public class CierreCajaController {
+
+    @Autowired
+    private CierreCajaService cierreCaja;
+
+    // Cierre de un día (hoy si no se indica)
+    @GetMapping("/dia")
+    public ResponseEntity<Map<String, Object>> dia(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha) {
+        LocalDate dia = fecha != null ? fecha : LocalDate.now();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("fecha", dia);
+        response.putAll(resumen(cierreCaja.cierreDia(dia), true));
+        return ResponseEntity.ok(response);
+    }
+
+    // Totales del rango y desglose por día
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> rango(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        if (hasta.isBefore(desde)) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("valido", false);
+            error.put("errores", List.of("La fecha hasta no puede ser anterior a desde"));
+            return ResponseEntity.badRequest().body(error);
+        }
+        TreeMap<LocalDate, ResumenVentas> dias = cierreCaja.calcular(desde, hasta);
+        ResumenVentas total = new ResumenVentas();
+        List<Map<String, Object>> porDia = new ArrayList<>(dias.size());
+        dias.forEach((fecha, resumen) -> {
+            total.combinar(resumen);
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("fecha", fecha);
+            linea.putAll(resumen(resumen, false));
+            porDia.add(linea);
+        });
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("desde", desde);
+        response.put("hasta", hasta);
+        response.putAll(resumen(total, true));
+        response.put("dias", porDia);
+        return ResponseEntity.ok(response);
+    }
+
+    private static Map<String, Object> resumen(ResumenVentas resumen, boolean desglose) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("facturas", resumen.getFacturas());
+        mapa.put("subtotal15", monto(resumen.getSubtotal15Centavos()));
+        mapa.put("subtotal0", monto(resumen.getSubtotal0Centavos()));
+        mapa.put("subtotalSinImpuestos", monto(resumen.getSubtotalSinImpuestosCentavos()));
+        mapa.put("totalDescuento", monto(resumen.getTotalDescuentoCentavos()));
+        mapa.put("iva15", monto(resumen.getIva15Centavos()));
+        mapa.put("valorTotal", monto(resumen.getValorTotalCentavos()));
+        if (desglose) {
+            mapa.put("formasPago", acumulados(resumen.getPorFormaPago(), "codigo", "facturas"));
+            mapa.put("productos", acumulados(resumen.getPorProducto(), "codigo", "cantidad"));
+        }
+        return mapa;
+    }
+
+    // Ordenados por total, de mayor a menor
+    private static List<Map<String, Object>> acumulados(Map<String, ResumenVentas.Acumulado> mapa, String clave, String cantidad) {
+        List<Map.Entry<String, ResumenVentas.Acumulado>> entradas = new ArrayList<>(mapa.entrySet());
+        entradas.sort((a, b) -> Long.compare(b.getValue().getTotalCentavos(), a.getValue().getTotalCentavos()));
+        List<Map<String, Object>> lista = new ArrayList<>(entradas.size());
+        for (Map.Entry<String, ResumenVentas.Acumulado> entrada : entradas) {
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put(clave, entrada.getKey());
+            linea.put("descripcion", entrada.getValue().getDescripcion());
+            linea.put(cantidad, entrada.getValue().getCantidad());
+            linea.put("total", monto(entrada.getValue().getTotalCentavos()));
+            lista.add(linea);
+        }
+        return lista;
+    }
+
+    private static BigDecimal monto(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+}
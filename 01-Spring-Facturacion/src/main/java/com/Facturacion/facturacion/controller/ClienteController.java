@@ -0,0 +1,53 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.models.Cliente;
+import com.Facturacion.facturacion.service.DirectorioClientesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autocompletado de clientes guardados, por prefijo del RUC/cédula o de la razón social.
+ */
+@RestController
+@RequestMapping("/api/clientes")
+public class ClienteController {
+
+    private static final int MAX_LIMITE = 50;
+
+    @Autowired
+    private DirectorioClientesService directorio;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> buscar(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "10") int limite) {
+        if (limite < 1 || limite > MAX_LIMITE) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("valido", false);
+            error.put("errores", List.of("El límite debe estar entre 1 y " + MAX_LIMITE));
+            return ResponseEntity.badRequest().body(error);
+        }
+        List<Cliente> encontrados = directorio.buscar(q, limite);
+        List<Map<String, Object>> clientes = new ArrayList<>(encontrados.size());
+        for (Cliente cliente : encontrados) {
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("razonSocial", cliente.getRazonSocial());
+            linea.put("ruc", cliente.getRuc());
+            linea.put("direccion", cliente.getDireccion());
+            linea.put("correo", cliente.getCorreo());
+            linea.put("telefono", cliente.getTelefono());
+            clientes.add(linea);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("clientes", clientes);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,332 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.models.SolicitudFactura;
+import com.Facturacion.facturacion.service.BusquedaTextoService;
+import com.Facturacion.facturacion.service.ComprobanteXmlService;
+import com.Facturacion.facturacion.service.DiarioFacturasService;
+import com.Facturacion.facturacion.service.IndiceClienteFechaService;
+import com.Facturacion.facturacion.service.PdfService;
+import com.Facturacion.facturacion.service.SecuencialService;
+import com.Facturacion.facturacion.service.ValidacionFacturaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emisión de una factura completa en una sola petición (integraciones de punto de venta).
+ * No usa la sesión: todo viene en el cuerpo y la respuesta trae los totales calculados,
+ * o directamente el PDF en /api/facturas/pdf (o el comprobante XML en /api/facturas/xml).
+ * Las facturas emitidas quedan en el diario y se consultan por número.
+ */
+@RestController
+@RequestMapping("/api/facturas")
+public class FacturaApiController {
+
+    @Autowired
+    private ValidacionFacturaService validacion;
+
+    @Autowired
+    private SecuencialService secuencialService;
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private ComprobanteXmlService comprobanteXml;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
+    @Autowired
+    private IndiceClienteFechaService indiceClienteFecha;
+
+    @Autowired
+    private BusquedaTextoService busquedaTexto;
+
+    @Value("${facturacion.api.max-items:1000}")
+    private int maxItems;
+
+    @Value("${facturacion.api.max-pagina:500}")
+    private int maxPagina;
+
+    // Calcular y numerar la factura; responde con los totales
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> emitir(@RequestBody SolicitudFactura solicitud) {
+        validar(solicitud);
+        return ResponseEntity.ok(respuesta(armarFactura(solicitud)));
+    }
+
+    // Facturas emitidas a un cliente en un rango de fechas; se pagina con el cursor "siguiente"
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> buscar(@RequestParam String ruc,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+                                                      @RequestParam(required = false) String despuesDe,
+                                                      @RequestParam(defaultValue = "50") int limite) {
+        if (limite < 1 || limite > maxPagina) {
+            throw new FacturaInvalidaException(List.of("El límite debe estar entre 1 y " + maxPagina));
+        }
+        IndiceClienteFechaService.Pagina pagina;
+        try {
+            pagina = indiceClienteFecha.buscar(ruc.trim(),
+                    desde != null ? desde : LocalDate.of(1, 1, 1),
+                    hasta != null ? hasta : LocalDate.of(9999, 12, 31),
+                    despuesDe, limite);
+        } catch (IllegalArgumentException e) {
+            throw new FacturaInvalidaException(List.of(e.getMessage()));
+        }
+
+        List<Map<String, Object>> facturas = new ArrayList<>(pagina.facturas().size());
+        for (IndiceClienteFechaService.Resultado resultado : pagina.facturas()) {
+            DiarioFacturasService.Registro registro = resultado.registro();
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("numeroFactura", resultado.numeroFactura());
+            linea.put("fechaEmision", resultado.fechaEmision());
+            linea.put("subtotalSinImpuestos", monto(registro.getSubtotalSinImpuestosCentavos()));
+            linea.put("iva15", monto(registro.getIva15Centavos()));
+            linea.put("valorTotal", monto(registro.getValorTotalCentavos()));
+            facturas.add(linea);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("facturas", facturas);
+        response.put("siguiente", pagina.siguiente());
+        return ResponseEntity.ok(response);
+    }
+
+    // Búsqueda de texto en productos y datos del cliente ("seco de chivo", "fritada", razón social)
+    @GetMapping("/buscar")
+    public ResponseEntity<Map<String, Object>> buscarTexto(@RequestParam String q,
+                                                           @RequestParam(defaultValue = "20") int limite) {
+        if (limite < 1 || limite > maxPagina) {
+            throw new FacturaInvalidaException(List.of("El límite debe estar entre 1 y " + maxPagina));
+        }
+        List<BusquedaTextoService.Resultado> resultados = busquedaTexto.buscar(q, limite);
+        List<Map<String, Object>> facturas = new ArrayList<>(resultados.size());
+        for (BusquedaTextoService.Resultado resultado : resultados) {
+            FacturaCompleta factura = resultado.factura();
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("numeroFactura", factura.getNumeroFactura());
+            linea.put("fechaEmision", factura.getFechaEmision());
+            linea.put("razonSocialCliente", factura.getRazonSocialCliente());
+            linea.put("rucCliente", factura.getRucCliente());
+            linea.put("valorTotal", monto(resultado.registro().getValorTotalCentavos()));
+            facturas.add(linea);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("facturas", facturas);
+        return ResponseEntity.ok(response);
+    }
+
+    // Factura ya emitida, leída del diario
+    @GetMapping("/{numeroFactura}")
+    public ResponseEntity<Map<String, Object>> consultar(@PathVariable String numeroFactura) {
+        FacturaCompleta factura = diario.obtenerFactura(numeroFactura);
+        if (factura == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(respuesta(factura));
+    }
+
+    // Reimpresión del PDF de una factura emitida
+    @GetMapping("/{numeroFactura}/pdf")
+    public ResponseEntity<StreamingResponseBody> reimprimir(@PathVariable String numeroFactura) {
+        FacturaCompleta factura = diario.obtenerFactura(numeroFactura);
+        if (factura == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return pdf(factura);
+    }
+
+    // Igual que emitir, pero la respuesta es el PDF; los totales van en cabeceras X-Factura-*
+    @PostMapping("/pdf")
+    public ResponseEntity<StreamingResponseBody> emitirPdf(@RequestBody SolicitudFactura solicitud) {
+        validar(solicitud);
+        return pdf(armarFactura(solicitud));
+    }
+
+    // Comprobante electrónico XML de una factura emitida
+    @GetMapping("/{numeroFactura}/xml")
+    public ResponseEntity<StreamingResponseBody> comprobante(@PathVariable String numeroFactura) {
+        FacturaCompleta factura = diario.obtenerFactura(numeroFactura);
+        if (factura == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return xml(factura);
+    }
+
+    // Igual que emitirPdf, pero la respuesta es el comprobante XML. Lo que el XML no admite
+    // (ICE) se rechaza con los totales ya calculados, antes de numerar y registrar la factura.
+    @PostMapping("/xml")
+    public ResponseEntity<StreamingResponseBody> emitirXml(@RequestBody SolicitudFactura solicitud) {
+        validar(solicitud);
+        FacturaCompleta factura = armar(solicitud);
+        try {
+            ComprobanteXmlService.verificarContenido(factura);
+        } catch (IllegalArgumentException e) {
+            throw new FacturaInvalidaException(List.of(e.getMessage()));
+        }
+        return xml(emitir(factura));
+    }
+
+    private ResponseEntity<StreamingResponseBody> xml(FacturaCompleta factura) {
+        try {
+            ComprobanteXmlService.verificar(factura);
+        } catch (IllegalArgumentException e) {
+            throw new FacturaInvalidaException(List.of(e.getMessage()));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_XML);
+        headers.setContentDispositionFormData("attachment", "factura_" + factura.getNumeroFactura() + ".xml");
+        headers.set("X-Factura-Numero", factura.getNumeroFactura());
+        headers.set("X-Factura-Clave-Acceso", factura.getClaveAcceso());
+        headers.set("X-Factura-Total", monto(factura.getValorTotalCentavos()).toPlainString());
+
+        StreamingResponseBody cuerpo = salida -> comprobanteXml.generarFacturaXml(factura, salida);
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+
+    private ResponseEntity<StreamingResponseBody> pdf(FacturaCompleta factura) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "factura_" + factura.getNumeroFactura() + ".pdf");
+        headers.set("X-Factura-Numero", factura.getNumeroFactura());
+        headers.set("X-Factura-Clave-Acceso", factura.getClaveAcceso());
+        headers.set("X-Factura-Total", monto(factura.getValorTotalCentavos()).toPlainString());
+
+        StreamingResponseBody cuerpo = salida -> {
+            try {
+                pdfService.generarFacturaPdf(factura, salida);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Error al generar el PDF de la factura " + factura.getNumeroFactura(), e);
+            }
+        };
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+
+    // Todos los errores de una vez, para que la integración los corrija en un solo intento
+    private void validar(SolicitudFactura solicitud) {
+        List<String> errores = new ArrayList<>();
+        String error = validacion.validarCliente(solicitud.getRazonSocial(), solicitud.getRucCliente(),
+                solicitud.getDireccionCliente(), solicitud.getCorreo(), solicitud.getTelefono());
+        if (error != null) {
+            errores.add(error);
+        }
+
+        List<SolicitudFactura.Item> items = solicitud.getItems();
+        if (items == null || items.isEmpty()) {
+            errores.add("La factura debe tener al menos un item");
+        } else if (items.size() > maxItems) {
+            errores.add("La factura no puede tener más de " + maxItems + " items");
+        } else {
+            for (int i = 0; i < items.size(); i++) {
+                SolicitudFactura.Item item = items.get(i);
+                error = item == null ? "Item vacío" : validacion.validarItem(item.getCodigo(), item.getDescripcion(),
+                        item.getCantidad(), item.getPrecioUnitario(), item.getDescuento());
+                if (error != null) {
+                    errores.add("Item " + (i + 1) + ": " + error);
+                }
+            }
+        }
+        if (!errores.isEmpty()) {
+            throw new FacturaInvalidaException(errores);
+        }
+    }
+
+    // Solo se numera una factura válida, para no consumir secuenciales; queda emitida en el diario
+    private FacturaCompleta armarFactura(SolicitudFactura solicitud) {
+        return emitir(armar(solicitud));
+    }
+
+    // La factura de la solicitud con sus totales, todavía sin número
+    private FacturaCompleta armar(SolicitudFactura solicitud) {
+        FacturaCompleta factura = new FacturaCompleta();
+        validacion.asignarCliente(factura, solicitud.getRazonSocial(), solicitud.getRucCliente(),
+                solicitud.getDireccionCliente(), solicitud.getCorreo(), solicitud.getTelefono());
+        if (solicitud.getGuiaRemision() != null) {
+            factura.setGuiaRemision(solicitud.getGuiaRemision().trim());
+        }
+        if (solicitud.getCodigoFormaPago() != null && solicitud.getFormaPago() != null) {
+            factura.setCodigoFormaPago(solicitud.getCodigoFormaPago().trim());
+            factura.setFormaPago(solicitud.getFormaPago().trim().toUpperCase());
+        }
+        if (solicitud.getPlazo() != null) {
+            factura.setPlazo(solicitud.getPlazo().trim());
+        }
+        for (SolicitudFactura.Item item : solicitud.getItems()) {
+            validacion.agregarItem(factura, item.getCodigo(), item.getDescripcion(),
+                    item.getCantidad(), item.getPrecioUnitario(), item.getDescuento());
+        }
+        return factura;
+    }
+
+    private FacturaCompleta emitir(FacturaCompleta factura) {
+        secuencialService.asignar(factura);
+        diario.registrar(factura);
+        return factura;
+    }
+
+    private Map<String, Object> respuesta(FacturaCompleta factura) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("numeroFactura", factura.getNumeroFactura());
+        response.put("claveAcceso", factura.getClaveAcceso());
+        response.put("fechaEmision", factura.getFechaEmision());
+        response.put("subtotal15", monto(factura.getSubtotal15Centavos()));
+        response.put("subtotalSinImpuestos", monto(factura.getSubtotalSinImpuestosCentavos()));
+        response.put("totalDescuento", monto(factura.getTotalDescuentoCentavos()));
+        response.put("ice", monto(factura.getIceCentavos()));
+        response.put("iva15", monto(factura.getIva15Centavos()));
+        response.put("valorTotal", monto(factura.getValorTotalCentavos()));
+        response.put("versionReglas", factura.getVersionReglas());
+
+        List<Map<String, Object>> items = new ArrayList<>(factura.getItems().size());
+        for (ItemFactura item : factura.getItems()) {
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("numero", item.getNumero());
+            linea.put("codigo", item.getCodigo());
+            linea.put("total", monto(item.getTotalCentavos()));
+            items.add(linea);
+        }
+        response.put("items", items);
+        return response;
+    }
+
+    @ExceptionHandler(FacturaInvalidaException.class)
+    public ResponseEntity<Map<String, Object>> facturaInvalida(FacturaInvalidaException e) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("valido", false);
+        response.put("errores", e.errores);
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+
+    static class FacturaInvalidaException extends RuntimeException {
+        private final List<String> errores;
+
+        FacturaInvalidaException(List<String> errores) {
+            super(String.join("; ", errores));
+            this.errores = errores;
+        }
+    }
+
+    // Centavos a un decimal con dos posiciones exactas en el JSON (12.50, no 12.5)
+    private static BigDecimal monto(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+}
@@ -1,11 +1,24 @@
 package com.Facturacion.facturacion.controller;
 
+import com.Facturacion.facturacion.models.Cliente;
 import com.Facturacion.facturacion.models.FacturaCompleta;
 import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.models.Producto;
+import com.Facturacion.facturacion.service.BorradorStore;
+import com.Facturacion.facturacion.service.CatalogoProductosService;
+import com.Facturacion.facturacion.service.DiarioFacturasService;
+import com.Facturacion.facturacion.service.DirectorioClientesService;
+import com.Facturacion.facturacion.service.PdfCacheService;
+import com.Facturacion.facturacion.service.PdfLoteService;
 import com.Facturacion.facturacion.service.PdfService;
+import com.Facturacion.facturacion.service.SecuencialService;
+import com.Facturacion.facturacion.service.ValidacionFacturaService;
+import com.Facturacion.facturacion.util.SalidaConCopia;
 import com.Facturacion.facturacion.util.ValidadorEcuador;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -13,27 +26,61 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Controller
 public class FacturaController {
 
+    // La sesión solo guarda el id del borrador; la factura vive en el BorradorStore
+    static final String ATRIBUTO_BORRADOR = "borrador";
+
+    private static final String FACTURA_EMITIDA = "La factura ya fue emitida y no se puede modificar: inicie una nueva factura";
+
     @Autowired
     private PdfService pdfService;
 
+    @Autowired
+    private PdfLoteService pdfLoteService;
+
+    @Autowired
+    private PdfCacheService pdfCache;
+
+    @Autowired
+    private SecuencialService secuencialService;
+
+    @Autowired
+    private BorradorStore borradores;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
     @Autowired
     private ValidadorEcuador validador;
 
+    @Autowired
+    private ValidacionFacturaService validacion;
+
+    @Autowired
+    private DirectorioClientesService directorioClientes;
+
+    @Autowired
+    private CatalogoProductosService catalogo;
+
     // Mostrar formulario de factura
     @GetMapping("/")
     public String formularioFactura(Model model, HttpSession session) {
-        FacturaCompleta factura = (FacturaCompleta) session.getAttribute("factura");
+        FacturaCompleta factura = obtenerBorrador(session);
         if (factura == null) {
             factura = new FacturaCompleta();
-            session.setAttribute("factura", factura);
+            guardarBorrador(session, factura);
         }
         model.addAttribute("factura", factura);
         model.addAttribute("nuevoItem", new ItemFactura());
@@ -125,58 +172,24 @@ public class FacturaController {
                                   HttpSession session,
                                   RedirectAttributes redirectAttributes) {
         
-        // Validar razón social
-        if (razonSocial == null || razonSocial.trim().isEmpty()) {
-            redirectAttributes.addFlashAttribute("error", "La razón social es requerida");
-            return "redirect:/";
-        }
-
-        if (razonSocial.trim().length() < 3) {
-            redirectAttributes.addFlashAttribute("error", "La razón social debe tener al menos 3 caracteres");
-            return "redirect:/";
-        }
-
-        // Validar cédula/RUC
-        String errorDocumento = validador.getMensajeErrorDocumento(rucCliente);
-        if (errorDocumento != null) {
-            redirectAttributes.addFlashAttribute("error", errorDocumento);
-            return "redirect:/";
-        }
-
-        // Validar dirección
-        if (direccionCliente == null || direccionCliente.trim().isEmpty()) {
-            redirectAttributes.addFlashAttribute("error", "La dirección es requerida");
-            return "redirect:/";
-        }
-
-        if (direccionCliente.trim().length() < 5) {
-            redirectAttributes.addFlashAttribute("error", "La dirección debe tener al menos 5 caracteres");
-            return "redirect:/";
-        }
-
-        // Validar teléfono (opcional)
-        if (telefono != null && !telefono.trim().isEmpty() && !validador.validarTelefono(telefono)) {
-            redirectAttributes.addFlashAttribute("error", "El formato del teléfono no es válido. Use: 09XXXXXXXX o 02XXXXXXX");
-            return "redirect:/";
-        }
-
-        // Validar correo (opcional)
-        if (correo != null && !correo.trim().isEmpty() && !validador.validarCorreo(correo)) {
-            redirectAttributes.addFlashAttribute("error", "El formato del correo electrónico no es válido");
+        String error = validacion.validarCliente(razonSocial, rucCliente, direccionCliente, correo, telefono);
+        if (error != null) {
+            redirectAttributes.addFlashAttribute("error", error);
             return "redirect:/";
         }
 
         // Todo válido, guardar datos
-        FacturaCompleta factura = (FacturaCompleta) session.getAttribute("factura");
+        FacturaCompleta factura = obtenerBorrador(session);
         if (factura == null) {
             factura = new FacturaCompleta();
+        } else if (emitida(factura)) {
+            redirectAttributes.addFlashAttribute("error", FACTURA_EMITIDA);
+            return "redirect:/";
         }
-        factura.setRazonSocialCliente(razonSocial.trim().toUpperCase());
-        factura.setRucCliente(rucCliente.trim());
-        factura.setDireccionCliente(direccionCliente.trim().toUpperCase());
-        factura.setCorreoCliente(correo != null ? correo.trim().toLowerCase() : "");
-        factura.setTelefonoCliente(telefono != null ? telefono.trim() : "");
-        session.setAttribute("factura", factura);
+        validacion.asignarCliente(factura, razonSocial, rucCliente, direccionCliente, correo, telefono);
+        guardarBorrador(session, factura);
+        directorioClientes.guardar(new Cliente(factura.getRazonSocialCliente(), factura.getRucCliente(),
+                factura.getDireccionCliente(), factura.getCorreoCliente(), factura.getTelefonoCliente()));
         
         redirectAttributes.addFlashAttribute("exito", "Datos del cliente guardados correctamente ✓");
         return "redirect:/";
@@ -185,113 +198,243 @@ public class FacturaController {
     // Agregar item a la factura con validación
     @PostMapping("/agregarItem")
     public String agregarItem(@RequestParam String codigo,
-                               @RequestParam String descripcion,
+                               @RequestParam(required = false) String descripcion,
                                @RequestParam int cantidad,
-                               @RequestParam double precioUnitario,
+                               @RequestParam(required = false) Double precioUnitario,
                                @RequestParam(defaultValue = "0") double descuento,
                                HttpSession session,
                                RedirectAttributes redirectAttributes) {
-        
-        // Validar código
-        if (codigo == null || codigo.trim().isEmpty()) {
-            redirectAttributes.addFlashAttribute("errorItem", "El código del producto es requerido");
-            return "redirect:/";
+        ItemAgregado resultado = agregarAlBorrador(codigo, descripcion, cantidad, precioUnitario, descuento, session);
+        if (resultado.error() != null) {
+            redirectAttributes.addFlashAttribute("errorItem", resultado.error());
+        } else {
+            redirectAttributes.addFlashAttribute("exitoItem", "Producto agregado correctamente ✓");
         }
+        return "redirect:/";
+    }
 
-        // Validar descripción
-        if (descripcion == null || descripcion.trim().isEmpty()) {
-            redirectAttributes.addFlashAttribute("errorItem", "La descripción del producto es requerida");
-            return "redirect:/";
+    // Lo mismo desde la página con fetch: responde solo la fila nueva, el mensaje y los totales
+    // (factura-fragmentos :: cambioItem) en vez de redirigir y volver a armar toda la página
+    @PostMapping(value = "/agregarItem", headers = "X-Requested-With=fetch")
+    public String agregarItemParcial(@RequestParam String codigo,
+                                     @RequestParam(required = false) String descripcion,
+                                     @RequestParam int cantidad,
+                                     @RequestParam(required = false) Double precioUnitario,
+                                     @RequestParam(defaultValue = "0") double descuento,
+                                     HttpSession session,
+                                     HttpServletResponse response,
+                                     Model model) {
+        ItemAgregado resultado = agregarAlBorrador(codigo, descripcion, cantidad, precioUnitario, descuento, session);
+        if (resultado.error() != null) {
+            response.setStatus(resultado.estado());
+            model.addAttribute("errorItem", resultado.error());
+            return "factura-fragmentos :: cambioItem";
         }
 
-        if (descripcion.trim().length() < 3) {
-            redirectAttributes.addFlashAttribute("errorItem", "La descripción debe tener al menos 3 caracteres");
-            return "redirect:/";
-        }
+        FacturaCompleta factura = resultado.factura();
+        int indice = factura.getItems().size() - 1;
+        model.addAttribute("factura", factura);
+        model.addAttribute("item", factura.getItems().get(indice));
+        model.addAttribute("indice", indice);
+        model.addAttribute("exitoItem", "Producto agregado correctamente ✓");
+        return "factura-fragmentos :: cambioItem";
+    }
 
-        // Validar cantidad
-        if (cantidad < 1) {
-            redirectAttributes.addFlashAttribute("errorItem", "La cantidad debe ser mayor a 0");
-            return "redirect:/";
+    // Lo común a los dos /agregarItem: completa desde el catálogo, valida, carga el borrador,
+    // agrega el item y lo guarda. Con error no toca el borrador.
+    private ItemAgregado agregarAlBorrador(String codigo, String descripcion, int cantidad, Double precioUnitario,
+                                           double descuento, HttpSession session) {
+        DatosItem datos = completarDesdeCatalogo(codigo, descripcion, precioUnitario);
+        String error = datos == null
+                ? "El código " + codigo.trim() + " no está en el catálogo: ingrese la descripción y el precio"
+                : validacion.validarItem(codigo, datos.descripcion(), cantidad, datos.precioUnitario(), descuento);
+        if (error != null) {
+            return new ItemAgregado(null, HttpServletResponse.SC_BAD_REQUEST, error);
         }
 
-        // Validar precio
-        if (precioUnitario <= 0) {
-            redirectAttributes.addFlashAttribute("errorItem", "El precio debe ser mayor a 0");
-            return "redirect:/";
+        FacturaCompleta factura = obtenerBorrador(session);
+        if (factura == null) {
+            factura = new FacturaCompleta();
+        } else if (emitida(factura)) {
+            return new ItemAgregado(null, HttpServletResponse.SC_CONFLICT, FACTURA_EMITIDA);
         }
+        validacion.agregarItem(factura, codigo, datos.descripcion(), cantidad, datos.precioUnitario(), descuento);
+        guardarBorrador(session, factura);
+        return new ItemAgregado(factura, HttpServletResponse.SC_OK, null);
+    }
 
-        // Validar descuento
-        if (descuento < 0) {
-            redirectAttributes.addFlashAttribute("errorItem", "El descuento no puede ser negativo");
-            return "redirect:/";
-        }
+    // estado: el código HTTP para la respuesta parcial
+    private record ItemAgregado(FacturaCompleta factura, int estado, String error) {
+    }
 
-        double totalItem = cantidad * precioUnitario;
-        if (descuento > totalItem) {
-            redirectAttributes.addFlashAttribute("errorItem", "El descuento no puede ser mayor al total del item ($" + String.format("%.2f", totalItem) + ")");
-            return "redirect:/";
+    // El formulario puede mandar solo código y cantidad: la descripción y el precio que falten
+    // salen del catálogo. Null si faltan datos y el código no está en el catálogo.
+    private DatosItem completarDesdeCatalogo(String codigo, String descripcion, Double precioUnitario) {
+        boolean sinDescripcion = descripcion == null || descripcion.isBlank();
+        if ((sinDescripcion || precioUnitario == null) && codigo != null && !codigo.isBlank()) {
+            Producto producto = catalogo.buscar(codigo);
+            if (producto == null) {
+                return null;
+            }
+            descripcion = sinDescripcion ? producto.getDescripcion() : descripcion;
+            precioUnitario = precioUnitario != null ? precioUnitario : producto.getPrecioUnitario();
         }
+        return new DatosItem(descripcion, precioUnitario != null ? precioUnitario : 0);
+    }
 
-        FacturaCompleta factura = (FacturaCompleta) session.getAttribute("factura");
-        if (factura == null) {
-            factura = new FacturaCompleta();
-        }
-        factura.agregarItem(codigo.trim().toUpperCase(), descripcion.trim().toUpperCase(), cantidad, precioUnitario, descuento);
-        session.setAttribute("factura", factura);
-        
-        redirectAttributes.addFlashAttribute("exitoItem", "Producto agregado correctamente ✓");
-        return "redirect:/";
+    private record DatosItem(String descripcion, double precioUnitario) {
     }
 
     // Eliminar item de la factura
     @PostMapping("/eliminarItem")
-    public String eliminarItem(@RequestParam int index, HttpSession session) {
-        FacturaCompleta factura = (FacturaCompleta) session.getAttribute("factura");
-        if (factura != null && index >= 0 && index < factura.getItems().size()) {
-            factura.getItems().remove(index);
-            // Renumerar items
-            for (int i = 0; i < factura.getItems().size(); i++) {
-                factura.getItems().get(i).setNumero(i + 1);
-            }
-            factura.calcularTotales();
-            session.setAttribute("factura", factura);
+    public String eliminarItem(@RequestParam int index, HttpSession session, RedirectAttributes redirectAttributes) {
+        FacturaCompleta factura = obtenerBorrador(session);
+        if (factura != null && emitida(factura)) {
+            redirectAttributes.addFlashAttribute("errorItem", FACTURA_EMITIDA);
+        } else if (factura != null && index >= 0 && index < factura.getItems().size()) {
+            // Renumera los items siguientes y ajusta los totales por diferencia
+            factura.eliminarItem(index);
+            guardarBorrador(session, factura);
         }
         return "redirect:/";
     }
 
+    // Eliminar con fetch: responde solo los totales; la página quita la fila y renumera las siguientes
+    @PostMapping(value = "/eliminarItem", headers = "X-Requested-With=fetch")
+    public String eliminarItemParcial(@RequestParam int index, HttpSession session, Model model) {
+        FacturaCompleta factura = obtenerBorrador(session);
+        if (factura == null || emitida(factura) || index < 0 || index >= factura.getItems().size()) {
+            // La página no coincide con el borrador (otra pestaña, sesión vencida, ya emitida): que recargue
+            throw new ResponseStatusException(HttpStatus.CONFLICT);
+        }
+        factura.eliminarItem(index);
+        guardarBorrador(session, factura);
+        model.addAttribute("factura", factura);
+        return "factura-fragmentos :: cambioItem";
+    }
+
     // Nueva factura (limpiar todo)
     @PostMapping("/nuevaFactura")
     public String nuevaFactura(HttpSession session) {
-        session.removeAttribute("factura");
+        String id = (String) session.getAttribute(ATRIBUTO_BORRADOR);
+        if (id != null) {
+            borradores.eliminar(id);
+        }
+        session.removeAttribute(ATRIBUTO_BORRADOR);
         return "redirect:/";
     }
 
-    // Generar PDF
-    @GetMapping("/generarPdf")
-    public ResponseEntity<byte[]> generarPdf(HttpSession session) {
+    // Emitir la factura del borrador: recién aquí toma número y clave de acceso (un borrador
+    // abandonado no consume secuenciales), queda en el diario y se redirige al PDF. Desde ese
+    // momento el borrador es de solo lectura; emitirla otra vez no escribe nada. Es un POST para
+    // que un GET repetido, un prefetch o una respuesta 304 no emitan nada.
+    @PostMapping("/emitirFactura")
+    public String emitirFactura(HttpSession session, RedirectAttributes redirectAttributes) {
+        FacturaCompleta factura = obtenerBorrador(session);
+        if (!lista(factura)) {
+            redirectAttributes.addFlashAttribute("error", "Agregue items y los datos del cliente antes de generar el PDF");
+            return "redirect:/";
+        }
+        if (factura.getNumeroFactura() == null || factura.getClaveAcceso() == null) {
+            secuencialService.asignar(factura);
+            guardarBorrador(session, factura);
+        }
         try {
-            FacturaCompleta factura = (FacturaCompleta) session.getAttribute("factura");
-            if (factura == null || factura.getItems().isEmpty()) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
-            }
+            diario.registrar(factura);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        return "redirect:/generarPdf";
+    }
 
-            // Validar que tenga datos del cliente
-            if (factura.getRazonSocialCliente() == null || factura.getRazonSocialCliente().isEmpty()) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
-            }
+    // Generar PDF (se escribe directamente en la respuesta, sin armar un byte[] en memoria).
+    // Se imprime lo que quedó en el diario con el número del borrador, no el borrador.
+    // El ETag (débil) es el hash del contenido (checkNotModified lo agrega a la respuesta): si no cambió
+    // la factura se responde 304 o se sirve de la cache.
+    @GetMapping("/generarPdf")
+    public ResponseEntity<StreamingResponseBody> generarPdf(HttpSession session, WebRequest request) {
+        FacturaCompleta borrador = obtenerBorrador(session);
+        if (!lista(borrador)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        // Sin número o sin registro todavía no se emitió (POST /emitirFactura)
+        FacturaCompleta factura = emitida(borrador) ? diario.obtenerFactura(borrador.getNumeroFactura()) : null;
+        if (factura == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
 
-            byte[] pdfBytes = pdfService.generarFacturaPdf(factura);
+        String etag = pdfCache.etag(factura);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        StreamingResponseBody cuerpo;
+        byte[] enCache = pdfCache.obtener(etag);
+        if (enCache != null) {
+            cuerpo = salida -> salida.write(enCache);
+        } else {
+            cuerpo = salida -> {
+                SalidaConCopia salidaConCopia = new SalidaConCopia(salida, pdfCache.getMaxBytesEntrada());
+                try {
+                    pdfService.generarFacturaPdf(factura, salidaConCopia);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Error al generar el PDF de la factura " + factura.getNumeroFactura(), e);
+                }
+                pdfCache.guardar(etag, salidaConCopia.getCopia());
+            };
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "factura_" + factura.getNumeroFactura() + ".pdf");
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "factura_" + factura.getNumeroFactura() + ".pdf");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
+        // Sin Content-Length: el contenedor usa transferencia chunked
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
 
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+    // Re-emisión masiva: los PDFs de una lista de números ya registrados, en un ZIP que sale
+    // mientras se renderiza. Una lista con un elemento sin número se rechaza completa.
+    @PostMapping("/generarPdf/lote")
+    public ResponseEntity<StreamingResponseBody> generarPdfLote(@RequestBody List<String> numeros) {
+        if (numeros == null || numeros.isEmpty() || numeros.size() > pdfLoteService.getMaxFacturas()
+                || numeros.stream().anyMatch(numero -> numero == null || numero.isBlank())) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", "facturas.zip");
+
+        StreamingResponseBody cuerpo = salida -> pdfLoteService.generarZip(numeros, salida);
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
+    }
+
+    // Ya tiene número: se emitió (o se está emitiendo) y no admite cambios
+    private static boolean emitida(FacturaCompleta factura) {
+        return factura.getNumeroFactura() != null;
+    }
+
+    // Con items y datos del cliente, lista para emitir
+    private static boolean lista(FacturaCompleta factura) {
+        return factura != null && !factura.getItems().isEmpty()
+                && factura.getRazonSocialCliente() != null && !factura.getRazonSocialCliente().isEmpty();
+    }
+
+    // Borrador de la sesión, o null si no hay o ya expiró
+    private FacturaCompleta obtenerBorrador(HttpSession session) {
+        String id = (String) session.getAttribute(ATRIBUTO_BORRADOR);
+        return id != null ? borradores.obtener(id) : null;
+    }
+
+    private void guardarBorrador(HttpSession session, FacturaCompleta factura) {
+        String id = (String) session.getAttribute(ATRIBUTO_BORRADOR);
+        if (id == null) {
+            session.setAttribute(ATRIBUTO_BORRADOR, borradores.crear(factura));
+        } else {
+            borradores.guardar(id, factura);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.TrabajoPdf;
+import com.Facturacion.facturacion.service.BorradorStore;
+import com.Facturacion.facturacion.service.DiarioFacturasService;
+import com.Facturacion.facturacion.service.PdfTrabajoService;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/pdf/trabajos")
+public class PdfTrabajoController {
+
+    @Autowired
+    private PdfTrabajoService trabajoService;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
+    @Autowired
+    private BorradorStore borradores;
+
+    // Encolar el PDF de una factura ya emitida: la del número enviado en el cuerpo o, si no se
+    // envía ninguno, el borrador de la sesión. Se imprime lo que quedó en el diario, como en
+    // /generarPdf; aquí no se asignan números (eso es POST /emitirFactura o /api/facturas).
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> encolar(@RequestBody(required = false) FacturaCompleta solicitud,
+                                                       HttpSession session) {
+        String numero;
+        if (solicitud == null) {
+            String id = (String) session.getAttribute(FacturaController.ATRIBUTO_BORRADOR);
+            FacturaCompleta borrador = id != null ? borradores.obtener(id) : null;
+            if (borrador == null || borrador.getItems().isEmpty()
+                    || borrador.getRazonSocialCliente() == null || borrador.getRazonSocialCliente().isEmpty()) {
+                return mensaje(HttpStatus.BAD_REQUEST, "La factura debe tener datos del cliente y al menos un item");
+            }
+            numero = borrador.getNumeroFactura();
+        } else {
+            numero = solicitud.getNumeroFactura();
+        }
+
+        FacturaCompleta factura = numero != null ? diario.obtenerFactura(numero) : null;
+        if (factura == null) {
+            return mensaje(HttpStatus.CONFLICT, numero == null
+                    ? "La factura todavía no fue emitida"
+                    : "La factura " + numero + " no está registrada");
+        }
+
+        try {
+            TrabajoPdf trabajo = trabajoService.encolar(factura);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(estado(trabajo));
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "Hay demasiados PDFs en cola, intente nuevamente en unos segundos");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(response);
+        }
+    }
+
+    // Consultar estado; con esperarMs > 0 espera a que termine (long polling)
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> consultar(@PathVariable String id,
+                                                         @RequestParam(defaultValue = "0") long esperarMs) throws InterruptedException {
+        TrabajoPdf trabajo = trabajoService.esperar(id, esperarMs);
+        if (trabajo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(estado(trabajo));
+    }
+
+    // Descargar el PDF una vez completado
+    @GetMapping("/{id}/pdf")
+    public ResponseEntity<byte[]> descargar(@PathVariable String id) {
+        TrabajoPdf trabajo = trabajoService.obtener(id);
+        if (trabajo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (trabajo.getEstado() != TrabajoPdf.Estado.COMPLETADO) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", "factura_" + trabajo.getNumeroFactura() + ".pdf");
+        return new ResponseEntity<>(trabajo.getPdf(), headers, HttpStatus.OK);
+    }
+
+    private static ResponseEntity<Map<String, Object>> mensaje(HttpStatus status, String mensaje) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("mensaje", mensaje);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private Map<String, Object> estado(TrabajoPdf trabajo) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", trabajo.getId());
+        response.put("estado", trabajo.getEstado());
+        response.put("numeroFactura", trabajo.getNumeroFactura());
+        if (trabajo.getMensaje() != null) {
+            response.put("mensaje", trabajo.getMensaje());
+        }
+        if (trabajo.getEstado() == TrabajoPdf.Estado.COMPLETADO) {
+            response.put("descarga", "/api/pdf/trabajos/" + trabajo.getId() + "/pdf");
+        }
+        return response;
+    }
+}
@@ -0,0 +1,80 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.models.Producto;
+import com.Facturacion.facturacion.service.CatalogoProductosService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consulta del catálogo de productos: por código exacto o por palabras de la descripción,
+ * y recarga manual de la foto (además de la revisión periódica).
+ */
+@RestController
+@RequestMapping("/api/productos")
+public class ProductoController {
+
+    private static final int MAX_LIMITE = 50;
+
+    @Autowired
+    private CatalogoProductosService catalogo;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> buscar(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "10") int limite) {
+        if (limite < 1 || limite > MAX_LIMITE) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + MAX_LIMITE);
+        }
+        List<Map<String, Object>> productos = new ArrayList<>();
+        for (Producto producto : catalogo.buscarPorDescripcion(q, limite)) {
+            productos.add(json(producto));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("productos", productos);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/{codigo}")
+    public ResponseEntity<Map<String, Object>> obtener(@PathVariable String codigo) {
+        Producto producto = catalogo.buscar(codigo);
+        return producto != null ? ResponseEntity.ok(json(producto)) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/recargar")
+    public ResponseEntity<Map<String, Object>> recargar() throws IOException {
+        int cantidad = catalogo.recargar();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("productos", cantidad);
+        response.put("recargas", catalogo.getRecargas());
+        return ResponseEntity.ok(response);
+    }
+
+    private static Map<String, Object> json(Producto producto) {
+        Map<String, Object> linea = new LinkedHashMap<>();
+        linea.put("codigo", producto.getCodigo());
+        linea.put("descripcion", producto.getDescripcion());
+        linea.put("precioUnitario", producto.getPrecioUnitario());
+        return linea;
+    }
+
+    // Límite fuera de rango o foto del catálogo con errores (se sigue con el catálogo anterior)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> entradaInvalida(IllegalArgumentException e) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("valido", false);
+        response.put("errores", List.of(e.getMessage()));
+        return ResponseEntity.badRequest().body(response);
+    }
+}
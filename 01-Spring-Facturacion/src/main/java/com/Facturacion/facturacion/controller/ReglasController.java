@@ -0,0 +1,71 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.service.ReglasFacturacionService;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reglas de facturación vigentes y recarga manual del archivo (además de la revisión periódica).
+ */
+@RestController
+@RequestMapping("/api/reglas")
+public class ReglasController {
+
+    @Autowired
+    private ReglasFacturacionService reglasService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> vigentes() {
+        ReglasFacturacion reglas = reglasService.getVigentes();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("version", reglas.getVersion());
+        response.put("iva", porcentaje(reglas.getTasaIva()));
+        response.put("servicio", porcentaje(reglas.getTasaServicio()));
+        List<Map<String, Object>> tramos = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> tramo : reglas.getTramos().entrySet()) {
+            Map<String, Object> linea = new LinkedHashMap<>();
+            linea.put("desde", tramo.getKey());
+            linea.put("porcentaje", tramo.getValue());
+            tramos.add(linea);
+        }
+        response.put("descuentosPorCantidad", tramos);
+        response.put("productos", reglas.getCantidadProductos());
+        response.put("ultimoError", reglasService.getUltimoError());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/recargar")
+    public ResponseEntity<Map<String, Object>> recargar() throws IOException {
+        int version = reglasService.recargar();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("version", version);
+        response.put("recargas", reglasService.getRecargas());
+        return ResponseEntity.ok(response);
+    }
+
+    private static BigDecimal porcentaje(int puntosBasicos) {
+        return BigDecimal.valueOf(puntosBasicos, 2);
+    }
+
+    // Archivo de reglas con errores, versión anterior o versión ya publicada con otro contenido
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> reglasInvalidas(IllegalArgumentException e) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("valido", false);
+        response.put("errores", List.of(e.getMessage()));
+        return ResponseEntity.badRequest().body(response);
+    }
+}
@@ -0,0 +1,64 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.service.ValidacionMasivaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validación de un archivo completo de cédulas/RUCs en una sola petición, para depurar el
+ * maestro de clientes. El cuerpo se lee mientras se responde: los resultados salen en el
+ * orden de entrada a medida que se validan, en el mismo formato que se envió.
+ */
+@RestController
+@RequestMapping("/api/validar/documentos")
+public class ValidacionMasivaController {
+
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private ValidacionMasivaService validacionMasiva;
+
+    // Un objeto JSON por línea; el documento va en el campo indicado
+    @PostMapping(consumes = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> ndjson(InputStream cuerpo,
+                                                        @RequestParam(defaultValue = "documento") String campo) {
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8));
+        StreamingResponseBody respuesta = salida -> validacionMasiva.validarNdjson(entrada, campo, salida);
+        return ResponseEntity.ok().contentType(NDJSON).body(respuesta);
+    }
+
+    // CSV con encabezado; el documento va en la columna indicada
+    @PostMapping(consumes = "text/csv")
+    public ResponseEntity<StreamingResponseBody> csv(InputStream cuerpo,
+                                                     @RequestParam(defaultValue = "documento") String columna) throws IOException {
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8));
+        int indice = validacionMasiva.columnaCsv(entrada.readLine(), columna);
+        StreamingResponseBody respuesta = salida -> validacionMasiva.validarCsv(entrada, indice, salida);
+        return ResponseEntity.ok().contentType(new MediaType("text", "csv", StandardCharsets.UTF_8)).body(respuesta);
+    }
+
+    // Encabezado CSV sin la columna pedida
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> entradaInvalida(IllegalArgumentException e) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("valido", false);
+        response.put("errores", List.of(e.getMessage()));
+        return ResponseEntity.badRequest().body(response);
+    }
+}
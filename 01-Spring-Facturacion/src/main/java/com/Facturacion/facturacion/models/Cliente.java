@@ -0,0 +1,60 @@
+package com.Facturacion.facturacion.models;
+
+import java.util.Objects;
+
+/**
+ * Cliente del directorio, con los datos ya normalizados como se imprimen en la factura.
+ */
+public final class Cliente {
+
+    private final String razonSocial;
+    private final String ruc;
+    private final String direccion;
+    private final String correo;
+    private final String telefono;
+
+    public Cliente(String razonSocial, String ruc, String direccion, String correo, String telefono) {
+        this.razonSocial = razonSocial;
+        this.ruc = ruc;
+        this.direccion = direccion;
+        this.correo = correo != null ? correo : "";
+        this.telefono = telefono != null ? telefono : "";
+    }
+
+    public String getRazonSocial() {
+        return razonSocial;
+    }
+
+    public String getRuc() {
+        return ruc;
+    }
+
+    public String getDireccion() {
+        return direccion;
+    }
+
+    public String getCorreo() {
+        return correo;
+    }
+
+    public String getTelefono() {
+        return telefono;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cliente otro)) {
+            return false;
+        }
+        return razonSocial.equals(otro.razonSocial) && ruc.equals(otro.ruc) && direccion.equals(otro.direccion)
+                && correo.equals(otro.correo) && telefono.equals(otro.telefono);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(razonSocial, ruc, direccion, correo, telefono);
+    }
+}
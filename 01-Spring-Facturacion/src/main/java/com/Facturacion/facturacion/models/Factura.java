@@ -1,5 +1,7 @@
 package com.Facturacion.facturacion.models;
 
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+
 public class Factura {
     private String codigo;
     private String descripcion;
@@ -10,11 +12,12 @@ public class Factura {
     private double iva;
     private double total;
     private double descuento; // Porcentaje de descuento aplicado
+    private int versionReglas; // Versión de ReglasFacturacion con que se calculó
 
     // Función para calcular el total
     public void calcularTotal() {
         this.subtotal = cantidad * precioUnitario;
-        this.iva = subtotal * 0.15; // IVA del 15%
+        this.iva = subtotal * ReglasFacturacion.vigentes().getTasaIva() / 10_000.0; // IVA general
         this.total = subtotal + iva;
     }
 
@@ -82,4 +85,12 @@ public class Factura {
     public void setDescuento(double descuento) {
         this.descuento = descuento;
     }
-}
\ No newline at end of file
+
+    public int getVersionReglas() {
+        return versionReglas;
+    }
+
+    public void setVersionReglas(int versionReglas) {
+        this.versionReglas = versionReglas;
+    }
+}
@@ -1,8 +1,12 @@
 package com.Facturacion.facturacion.models;
 
+import com.Facturacion.facturacion.util.Dinero;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class FacturaCompleta {
@@ -40,31 +44,37 @@ public class FacturaCompleta {
     private String formaPago = "SIN UTILIZACION DEL SISTEMA FINANCIERO";
     private String plazo = "";
     
-    // Totales
-    private double subtotal15 = 0;
-    private double subtotal0 = 0;
-    private double subtotalNoObjetoIva = 0;
-    private double subtotalExentoIva = 0;
-    private double subtotalSinImpuestos = 0;
-    private double totalDescuento = 0;
-    private double servicio = 0;
-    private double ice = 0;
-    private double iva15 = 0;
-    private double valorTotal = 0;
+    // Totales en centavos (ver Dinero); los getters en double son solo para la vista
+    private long subtotal15 = 0;
+    private long subtotal0 = 0;
+    private long subtotalNoObjetoIva = 0;
+    private long subtotalExentoIva = 0;
+    private long subtotalSinImpuestos = 0;
+    private long totalDescuento = 0;
+    private long servicio = 0;
+    private long ice = 0;
+    private long iva15 = 0;
+    private long valorTotal = 0;
+
+    // ICE de los items (y la parte de items gravados, que entra en la base del IVA) y los
+    // montos de ICE y servicio fijados a mano, que se suman a los de las reglas
+    private long iceItems = 0;
+    private long iceGravado = 0;
+    private long iceAjuste = 0;
+    private long servicioAjuste = 0;
+
+    // Reglas con que se tasa esta factura: las vigentes al crearla, o las de su versión al leerla
+    private ReglasFacturacion reglas = ReglasFacturacion.vigentes();
+
+    // Modo verificación (tests): cada actualización incremental se compara con un recálculo completo
+    private static volatile boolean verificarTotales = Boolean.getBoolean("facturacion.totales.verificar");
     
     public FacturaCompleta() {
         generarDatosFactura();
     }
     
+    // El número de factura y la clave de acceso los asigna SecuencialService
     private void generarDatosFactura() {
-        // Generar número de factura automático
-        long timestamp = System.currentTimeMillis();
-        this.numeroFactura = "001-001-" + String.format("%09d", timestamp % 1000000000);
-        
-        // Generar número de autorización (49 dígitos)
-        this.numeroAutorizacion = generarNumeroAutorizacion();
-        this.claveAcceso = this.numeroAutorizacion;
-        
         // Fecha actual
         LocalDateTime ahora = LocalDateTime.now();
         DateTimeFormatter formatoFecha = DateTimeFormatter.ofPattern("dd/MM/yyyy");
@@ -73,34 +83,152 @@ public class FacturaCompleta {
         this.fechaAutorizacion = ahora.format(formatoFechaHora);
     }
     
-    private String generarNumeroAutorizacion() {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < 49; i++) {
-            sb.append((int)(Math.random() * 10));
-        }
-        return sb.toString();
-    }
-    
     public void agregarItem(String codigo, String descripcion, int cantidad, double precioUnitario, double descuento) {
         int numero = items.size() + 1;
         ItemFactura item = new ItemFactura(numero, codigo, descripcion, cantidad, precioUnitario, descuento);
+        tasar(item);
         items.add(item);
-        calcularTotales();
+        sumarItem(item, 1);
     }
-    
+
+    /**
+     * Elimina el item en la posición indicada, renumera los siguientes y
+     * descuenta su valor de los totales sin recorrer toda la lista.
+     */
+    public ItemFactura eliminarItem(int index) {
+        ItemFactura item = items.remove(index);
+        for (int i = index; i < items.size(); i++) {
+            items.get(i).setNumero(i + 1);
+        }
+        sumarItem(item, -1);
+        return item;
+    }
+
+    /**
+     * Modifica cantidad, precio y descuento de un item ajustando los totales por diferencia.
+     */
+    public ItemFactura editarItem(int index, int cantidad, double precioUnitario, double descuento) {
+        ItemFactura item = items.get(index);
+        acumular(item, -1);
+        item.setCantidad(cantidad);
+        item.setPrecioUnitario(precioUnitario);
+        item.setDescuento(descuento);
+        item.calcularTotal();
+        tasar(item);
+        sumarItem(item, 1);
+        return item;
+    }
+
+    // Categoría de IVA e ICE del item según las reglas: una búsqueda por código y lecturas de arreglos
+    private void tasar(ItemFactura item) {
+        int fila = reglas.fila(item.getCodigo());
+        item.setImpuestos(reglas.categoriaIva(fila), Dinero.porcentaje(item.getTotalCentavos(), reglas.tasaIce(fila)));
+    }
+
+    // Suma (signo 1) o resta (signo -1) el aporte de un item a los acumulados
+    private void sumarItem(ItemFactura item, int signo) {
+        acumular(item, signo);
+        actualizarTotalesDerivados();
+        if (verificarTotales) {
+            verificarTotales();
+        }
+    }
+
+    private void acumular(ItemFactura item, int signo) {
+        long total = signo * item.getTotalCentavos();
+        long iceItem = signo * item.getIceCentavos();
+        switch (item.getCategoriaIva()) {
+            case ReglasFacturacion.IVA_CERO -> this.subtotal0 += total;
+            case ReglasFacturacion.IVA_EXENTO -> this.subtotalExentoIva += total;
+            case ReglasFacturacion.IVA_NO_OBJETO -> this.subtotalNoObjetoIva += total;
+            default -> {
+                this.subtotal15 += total;
+                this.iceGravado += iceItem;
+            }
+        }
+        this.iceItems += iceItem;
+        this.totalDescuento += signo * item.getDescuentoCentavos();
+    }
+
+    // El IVA se cobra sobre lo gravado más su ICE; el servicio, sobre el subtotal sin impuestos
+    private void actualizarTotalesDerivados() {
+        this.subtotalSinImpuestos = this.subtotal15 + this.subtotal0 + this.subtotalNoObjetoIva + this.subtotalExentoIva;
+        this.ice = this.iceAjuste + this.iceItems;
+        this.iva15 = Dinero.porcentaje(this.subtotal15 + this.iceGravado, reglas.getTasaIva());
+        this.servicio = this.servicioAjuste + Dinero.porcentaje(this.subtotalSinImpuestos, reglas.getTasaServicio());
+        this.valorTotal = this.subtotalSinImpuestos + this.iva15 + this.ice + this.servicio;
+    }
+
+    /**
+     * Compara los acumulados con un recálculo completo y falla si no coinciden.
+     */
+    public void verificarTotales() {
+        long[] subtotalEsperado = new long[ReglasFacturacion.IVA_NO_OBJETO + 1];
+        long descuentoEsperado = 0;
+        long iceEsperado = 0;
+        for (ItemFactura item : items) {
+            long total = Dinero.importe(item.getCantidad(), Dinero.precioUnitario(item.getPrecioUnitario()))
+                    - Dinero.centavos(item.getDescuento());
+            int fila = reglas.fila(item.getCodigo());
+            subtotalEsperado[reglas.categoriaIva(fila)] += total;
+            descuentoEsperado += Dinero.centavos(item.getDescuento());
+            iceEsperado += Dinero.porcentaje(total, reglas.tasaIce(fila));
+        }
+        long[] subtotal = {this.subtotal15, this.subtotal0, this.subtotalExentoIva, this.subtotalNoObjetoIva};
+        if (!Arrays.equals(subtotalEsperado, subtotal) || descuentoEsperado != this.totalDescuento
+                || iceEsperado != this.iceItems) {
+            throw new IllegalStateException("Totales incrementales inconsistentes (centavos): subtotales "
+                    + Arrays.toString(subtotal) + " (esperado " + Arrays.toString(subtotalEsperado)
+                    + "), descuento " + this.totalDescuento + " (esperado " + descuentoEsperado
+                    + "), ICE " + this.iceItems + " (esperado " + iceEsperado + ")");
+        }
+    }
+
+    public static void setVerificarTotales(boolean verificar) {
+        verificarTotales = verificar;
+    }
+
+    // Recálculo completo (se usa cuando se reemplaza la lista de items o las reglas)
     public void calcularTotales() {
         this.subtotal15 = 0;
+        this.subtotal0 = 0;
+        this.subtotalExentoIva = 0;
+        this.subtotalNoObjetoIva = 0;
         this.totalDescuento = 0;
+        this.iceItems = 0;
+        this.iceGravado = 0;
         
         for (ItemFactura item : items) {
             item.calcularTotal();
-            this.subtotal15 += item.getTotal();
-            this.totalDescuento += item.getDescuento();
+            tasar(item);
+            acumular(item, 1);
         }
         
-        this.subtotalSinImpuestos = this.subtotal15;
-        this.iva15 = this.subtotal15 * 0.15;
-        this.valorTotal = this.subtotalSinImpuestos + this.iva15 + this.ice + this.servicio;
+        actualizarTotalesDerivados();
+    }
+
+    /**
+     * Vuelve a tasar la factura con otras reglas (por ejemplo, las de la versión con que se
+     * emitió al leerla del diario).
+     */
+    public void usarReglas(ReglasFacturacion reglas) {
+        this.reglas = reglas;
+        calcularTotales();
+    }
+
+    /**
+     * Versión de {@link ReglasFacturacion} con que se calcularon los totales.
+     */
+    public int getVersionReglas() {
+        return reglas.getVersion();
+    }
+
+    /**
+     * Reglas con que se tasa la factura. No es un getter para que no salgan en el JSON ni
+     * se intenten leer de él.
+     */
+    public ReglasFacturacion reglas() {
+        return reglas;
     }
     
     public void limpiarItems() {
@@ -295,82 +423,155 @@ public class FacturaCompleta {
     }
 
     public double getSubtotal15() {
-        return subtotal15;
+        return Dinero.aDouble(subtotal15);
     }
 
     public void setSubtotal15(double subtotal15) {
-        this.subtotal15 = subtotal15;
+        this.subtotal15 = Dinero.centavos(subtotal15);
+    }
+
+    public long getSubtotal15Centavos() {
+        return subtotal15;
     }
 
     public double getSubtotal0() {
-        return subtotal0;
+        return Dinero.aDouble(subtotal0);
     }
 
     public void setSubtotal0(double subtotal0) {
-        this.subtotal0 = subtotal0;
+        this.subtotal0 = Dinero.centavos(subtotal0);
+    }
+
+    public long getSubtotal0Centavos() {
+        return subtotal0;
     }
 
     public double getSubtotalNoObjetoIva() {
-        return subtotalNoObjetoIva;
+        return Dinero.aDouble(subtotalNoObjetoIva);
     }
 
     public void setSubtotalNoObjetoIva(double subtotalNoObjetoIva) {
-        this.subtotalNoObjetoIva = subtotalNoObjetoIva;
+        this.subtotalNoObjetoIva = Dinero.centavos(subtotalNoObjetoIva);
+    }
+
+    public long getSubtotalNoObjetoIvaCentavos() {
+        return subtotalNoObjetoIva;
     }
 
     public double getSubtotalExentoIva() {
-        return subtotalExentoIva;
+        return Dinero.aDouble(subtotalExentoIva);
     }
 
     public void setSubtotalExentoIva(double subtotalExentoIva) {
-        this.subtotalExentoIva = subtotalExentoIva;
+        this.subtotalExentoIva = Dinero.centavos(subtotalExentoIva);
+    }
+
+    public long getSubtotalExentoIvaCentavos() {
+        return subtotalExentoIva;
     }
 
     public double getSubtotalSinImpuestos() {
-        return subtotalSinImpuestos;
+        return Dinero.aDouble(subtotalSinImpuestos);
     }
 
     public void setSubtotalSinImpuestos(double subtotalSinImpuestos) {
-        this.subtotalSinImpuestos = subtotalSinImpuestos;
+        this.subtotalSinImpuestos = Dinero.centavos(subtotalSinImpuestos);
+    }
+
+    public long getSubtotalSinImpuestosCentavos() {
+        return subtotalSinImpuestos;
     }
 
     public double getTotalDescuento() {
-        return totalDescuento;
+        return Dinero.aDouble(totalDescuento);
     }
 
     public void setTotalDescuento(double totalDescuento) {
-        this.totalDescuento = totalDescuento;
+        this.totalDescuento = Dinero.centavos(totalDescuento);
+    }
+
+    public long getTotalDescuentoCentavos() {
+        return totalDescuento;
     }
 
     public double getServicio() {
-        return servicio;
+        return Dinero.aDouble(servicio);
+    }
+
+    public double getServicioAdicional() {
+        return Dinero.aDouble(servicioAjuste);
+    }
+
+    /**
+     * Fija un servicio adicional al que resulta de las reglas. {@code servicio} queda de
+     * solo lectura: es el total y no se puede volver a asignar sin contarlo dos veces.
+     */
+    public void setServicioAdicional(double servicioAdicional) {
+        this.servicioAjuste = Dinero.centavos(servicioAdicional);
+        actualizarTotalesDerivados();
     }
 
-    public void setServicio(double servicio) {
-        this.servicio = servicio;
+    public long getServicioAjusteCentavos() {
+        return servicioAjuste;
+    }
+
+    public long getServicioCentavos() {
+        return servicio;
     }
 
     public double getIce() {
-        return ice;
+        return Dinero.aDouble(ice);
+    }
+
+    public double getIceAdicional() {
+        return Dinero.aDouble(iceAjuste);
     }
 
-    public void setIce(double ice) {
-        this.ice = ice;
+    /**
+     * Fija un ICE adicional al que resulta de las reglas de cada producto; {@code ice} es el
+     * total y queda de solo lectura.
+     */
+    public void setIceAdicional(double iceAdicional) {
+        this.iceAjuste = Dinero.centavos(iceAdicional);
+        actualizarTotalesDerivados();
+    }
+
+    public long getIceAjusteCentavos() {
+        return iceAjuste;
+    }
+
+    public long getIceCentavos() {
+        return ice;
     }
 
     public double getIva15() {
-        return iva15;
+        return Dinero.aDouble(iva15);
     }
 
     public void setIva15(double iva15) {
-        this.iva15 = iva15;
+        this.iva15 = Dinero.centavos(iva15);
+    }
+
+    public long getIva15Centavos() {
+        return iva15;
+    }
+
+    /**
+     * Base del IVA con tarifa: el subtotal gravado más el ICE de esos items.
+     */
+    public long getBaseIva15Centavos() {
+        return subtotal15 + iceGravado;
     }
 
     public double getValorTotal() {
-        return valorTotal;
+        return Dinero.aDouble(valorTotal);
     }
 
     public void setValorTotal(double valorTotal) {
-        this.valorTotal = valorTotal;
+        this.valorTotal = Dinero.centavos(valorTotal);
+    }
+
+    public long getValorTotalCentavos() {
+        return valorTotal;
     }
 }
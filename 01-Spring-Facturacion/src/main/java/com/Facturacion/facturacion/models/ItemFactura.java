@@ -1,5 +1,7 @@
 package com.Facturacion.facturacion.models;
 
+import com.Facturacion.facturacion.util.Dinero;
+
 public class ItemFactura {
     private int numero;
     private String codigo;
@@ -9,6 +11,15 @@ public class ItemFactura {
     private double descuento;
     private double total;
 
+    // Valores exactos en punto fijo (ver Dinero)
+    private long precioUnitarioDiezmilesimas;
+    private long descuentoCentavos;
+    private long totalCentavos;
+
+    // Impuestos según las reglas de la factura (ver FacturaCompleta.tasar)
+    private int categoriaIva;
+    private long iceCentavos;
+
     public ItemFactura() {}
 
     public ItemFactura(int numero, String codigo, String descripcion, int cantidad, double precioUnitario, double descuento) {
@@ -22,7 +33,10 @@ public class ItemFactura {
     }
 
     public void calcularTotal() {
-        this.total = (cantidad * precioUnitario) - descuento;
+        this.precioUnitarioDiezmilesimas = Dinero.precioUnitario(precioUnitario);
+        this.descuentoCentavos = Dinero.centavos(descuento);
+        this.totalCentavos = Dinero.importe(cantidad, precioUnitarioDiezmilesimas) - descuentoCentavos;
+        this.total = Dinero.aDouble(totalCentavos);
     }
 
     // Getters y Setters
@@ -81,4 +95,32 @@ public class ItemFactura {
     public void setTotal(double total) {
         this.total = total;
     }
+
+    public long getPrecioUnitarioDiezmilesimas() {
+        return precioUnitarioDiezmilesimas;
+    }
+
+    public long getDescuentoCentavos() {
+        return descuentoCentavos;
+    }
+
+    public long getTotalCentavos() {
+        return totalCentavos;
+    }
+
+    /**
+     * Categoría de IVA (ver {@code ReglasFacturacion.IVA_TARIFA} y siguientes).
+     */
+    public int getCategoriaIva() {
+        return categoriaIva;
+    }
+
+    public long getIceCentavos() {
+        return iceCentavos;
+    }
+
+    public void setImpuestos(int categoriaIva, long iceCentavos) {
+        this.categoriaIva = categoriaIva;
+        this.iceCentavos = iceCentavos;
+    }
 }
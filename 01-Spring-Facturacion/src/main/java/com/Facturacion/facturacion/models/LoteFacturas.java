@@ -0,0 +1,100 @@
+package com.Facturacion.facturacion.models;
+
+/**
+ * Lote de líneas para {@code FacturaService.calcularLote}, en arreglos paralelos en vez de un
+ * {@link Factura} por línea: la fila {@code i} es {@code cantidades[i]} del producto
+ * {@code codigos[i]} a {@code preciosUnitarios[i]}.
+ * <p>
+ * Los resultados quedan en los arreglos de salida con los mismos valores que
+ * {@code calcularFactura} deja en cada {@link Factura}: descuento en porcentaje y subtotal, IVA
+ * y total en dólares. Sin códigos (o con un código null) la fila se tasa con el IVA general.
+ * Al calcular, {@code filasReglas[i]} queda con la fila de las reglas del producto
+ * ({@code ReglasFacturacion.fila}), buscada una sola vez por línea con las mismas reglas del cálculo.
+ */
+public final class LoteFacturas {
+
+    private final int[] cantidades;
+    private final double[] preciosUnitarios;
+    private final String[] codigos;
+    private final int[] filasReglas;
+
+    private final int[] descuentos;
+    private final double[] subtotales;
+    private final double[] ivas;
+    private final double[] totales;
+    private int versionReglas;
+
+    public LoteFacturas(int[] cantidades, double[] preciosUnitarios) {
+        this(cantidades, preciosUnitarios, null);
+    }
+
+    public LoteFacturas(int[] cantidades, double[] preciosUnitarios, String[] codigos) {
+        if (cantidades.length != preciosUnitarios.length) {
+            throw new IllegalArgumentException("Cantidades y precios de distinto largo: "
+                    + cantidades.length + " y " + preciosUnitarios.length);
+        }
+        if (codigos != null && codigos.length != cantidades.length) {
+            throw new IllegalArgumentException("Cantidades y códigos de distinto largo: "
+                    + cantidades.length + " y " + codigos.length);
+        }
+        int n = cantidades.length;
+        this.cantidades = cantidades;
+        this.preciosUnitarios = preciosUnitarios;
+        this.codigos = codigos;
+        this.filasReglas = new int[n];
+        this.descuentos = new int[n];
+        this.subtotales = new double[n];
+        this.ivas = new double[n];
+        this.totales = new double[n];
+    }
+
+    public int getTamano() {
+        return cantidades.length;
+    }
+
+    public int[] getCantidades() {
+        return cantidades;
+    }
+
+    public double[] getPreciosUnitarios() {
+        return preciosUnitarios;
+    }
+
+    /**
+     * Códigos de producto, o null si el lote no los tiene.
+     */
+    public String[] getCodigos() {
+        return codigos;
+    }
+
+    public int[] getFilasReglas() {
+        return filasReglas;
+    }
+
+    public int[] getDescuentos() {
+        return descuentos;
+    }
+
+    public double[] getSubtotales() {
+        return subtotales;
+    }
+
+    public double[] getIvas() {
+        return ivas;
+    }
+
+    public double[] getTotales() {
+        return totales;
+    }
+
+    /**
+     * Versión de las reglas con que se calculó el lote.
+     */
+    public int getVersionReglas() {
+        return versionReglas;
+    }
+
+    public void setVersionReglas(int versionReglas) {
+        this.versionReglas = versionReglas;
+    }
+}
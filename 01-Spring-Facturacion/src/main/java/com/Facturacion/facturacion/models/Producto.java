@@ -0,0 +1,36 @@
+package com.Facturacion.facturacion.models;
+
+import com.Facturacion.facturacion.util.Dinero;
+
+/**
+ * Producto del catálogo tal como se devuelve en una consulta. El catálogo no guarda estos
+ * objetos: se arman solo para los productos encontrados.
+ */
+public final class Producto {
+
+    private final String codigo;
+    private final String descripcion;
+    private final long precioDiezmilesimas;
+
+    public Producto(String codigo, String descripcion, long precioDiezmilesimas) {
+        this.codigo = codigo;
+        this.descripcion = descripcion;
+        this.precioDiezmilesimas = precioDiezmilesimas;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public long getPrecioDiezmilesimas() {
+        return precioDiezmilesimas;
+    }
+
+    public double getPrecioUnitario() {
+        return precioDiezmilesimas / (double) Dinero.ESCALA_PRECIO;
+    }
+}
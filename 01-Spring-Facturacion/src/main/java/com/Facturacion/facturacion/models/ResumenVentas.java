@@ -0,0 +1,137 @@
+package com.Facturacion.facturacion.models;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Totales de ventas de un período (cierre de caja), en centavos: generales, por forma
+ * de pago y por código de producto. Se arma factura por factura y dos resúmenes se
+ * combinan sumando, así que sirve igual para los acumulados diarios que para un cálculo
+ * repartido en varios hilos. No es seguro entre hilos.
+ */
+public class ResumenVentas {
+
+    private long facturas;
+    private long subtotal15;
+    private long subtotal0;
+    private long subtotalSinImpuestos;
+    private long totalDescuento;
+    private long iva15;
+    private long valorTotal;
+    private final Map<String, Acumulado> porFormaPago = new HashMap<>();
+    private final Map<String, Acumulado> porProducto = new HashMap<>();
+
+    /**
+     * Facturas (o unidades, para un producto) y total de una forma de pago o de un producto.
+     */
+    public static class Acumulado {
+        private String descripcion;
+        private long cantidad;
+        private long totalCentavos;
+
+        public String getDescripcion() {
+            return descripcion;
+        }
+
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public long getTotalCentavos() {
+            return totalCentavos;
+        }
+    }
+
+    public void agregar(FacturaCompleta factura) {
+        sumar(factura, 1);
+    }
+
+    // Para reemplazar una versión anterior de la factura
+    public void quitar(FacturaCompleta factura) {
+        sumar(factura, -1);
+    }
+
+    private void sumar(FacturaCompleta factura, int signo) {
+        facturas += signo;
+        subtotal15 += signo * factura.getSubtotal15Centavos();
+        subtotal0 += signo * factura.getSubtotal0Centavos();
+        subtotalSinImpuestos += signo * factura.getSubtotalSinImpuestosCentavos();
+        totalDescuento += signo * factura.getTotalDescuentoCentavos();
+        iva15 += signo * factura.getIva15Centavos();
+        valorTotal += signo * factura.getValorTotalCentavos();
+        acumular(porFormaPago, factura.getCodigoFormaPago(), factura.getFormaPago(), signo, signo * factura.getValorTotalCentavos());
+        for (ItemFactura item : factura.getItems()) {
+            acumular(porProducto, item.getCodigo(), item.getDescripcion(),
+                    (long) signo * item.getCantidad(), signo * item.getTotalCentavos());
+        }
+    }
+
+    public void combinar(ResumenVentas otro) {
+        facturas += otro.facturas;
+        subtotal15 += otro.subtotal15;
+        subtotal0 += otro.subtotal0;
+        subtotalSinImpuestos += otro.subtotalSinImpuestos;
+        totalDescuento += otro.totalDescuento;
+        iva15 += otro.iva15;
+        valorTotal += otro.valorTotal;
+        otro.porFormaPago.forEach((clave, a) -> acumular(porFormaPago, clave, a.descripcion, a.cantidad, a.totalCentavos));
+        otro.porProducto.forEach((clave, a) -> acumular(porProducto, clave, a.descripcion, a.cantidad, a.totalCentavos));
+    }
+
+    public ResumenVentas copia() {
+        ResumenVentas copia = new ResumenVentas();
+        copia.combinar(this);
+        return copia;
+    }
+
+    // Una entrada que vuelve a cero (todas sus facturas reemplazadas) desaparece del resumen
+    private static void acumular(Map<String, Acumulado> mapa, String clave, String descripcion, long cantidad, long total) {
+        String llave = clave != null ? clave : "";
+        Acumulado acumulado = mapa.computeIfAbsent(llave, k -> new Acumulado());
+        if (descripcion != null && cantidad > 0) {
+            acumulado.descripcion = descripcion;
+        }
+        acumulado.cantidad += cantidad;
+        acumulado.totalCentavos += total;
+        if (acumulado.cantidad == 0 && acumulado.totalCentavos == 0) {
+            mapa.remove(llave);
+        }
+    }
+
+    public long getFacturas() {
+        return facturas;
+    }
+
+    public long getSubtotal15Centavos() {
+        return subtotal15;
+    }
+
+    public long getSubtotal0Centavos() {
+        return subtotal0;
+    }
+
+    public long getSubtotalSinImpuestosCentavos() {
+        return subtotalSinImpuestos;
+    }
+
+    public long getTotalDescuentoCentavos() {
+        return totalDescuento;
+    }
+
+    public long getIva15Centavos() {
+        return iva15;
+    }
+
+    public long getValorTotalCentavos() {
+        return valorTotal;
+    }
+
+    public Map<String, Acumulado> getPorFormaPago() {
+        return Collections.unmodifiableMap(porFormaPago);
+    }
+
+    public Map<String, Acumulado> getPorProducto() {
+        return Collections.unmodifiableMap(porProducto);
+    }
+}
@@ -0,0 +1,150 @@
+package com.Facturacion.facturacion.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuerpo de POST /api/facturas: cliente, items y forma de pago en una sola petición.
+ */
+public class SolicitudFactura {
+
+    private String razonSocial;
+    private String rucCliente;
+    private String direccionCliente;
+    private String correo;
+    private String telefono;
+    private String guiaRemision;
+    private String codigoFormaPago;
+    private String formaPago;
+    private String plazo;
+    private List<Item> items = new ArrayList<>();
+
+    public static class Item {
+        private String codigo;
+        private String descripcion;
+        private int cantidad;
+        private double precioUnitario;
+        private double descuento;
+
+        public String getCodigo() {
+            return codigo;
+        }
+
+        public void setCodigo(String codigo) {
+            this.codigo = codigo;
+        }
+
+        public String getDescripcion() {
+            return descripcion;
+        }
+
+        public void setDescripcion(String descripcion) {
+            this.descripcion = descripcion;
+        }
+
+        public int getCantidad() {
+            return cantidad;
+        }
+
+        public void setCantidad(int cantidad) {
+            this.cantidad = cantidad;
+        }
+
+        public double getPrecioUnitario() {
+            return precioUnitario;
+        }
+
+        public void setPrecioUnitario(double precioUnitario) {
+            this.precioUnitario = precioUnitario;
+        }
+
+        public double getDescuento() {
+            return descuento;
+        }
+
+        public void setDescuento(double descuento) {
+            this.descuento = descuento;
+        }
+    }
+
+    // Getters y Setters
+    public String getRazonSocial() {
+        return razonSocial;
+    }
+
+    public void setRazonSocial(String razonSocial) {
+        this.razonSocial = razonSocial;
+    }
+
+    public String getRucCliente() {
+        return rucCliente;
+    }
+
+    public void setRucCliente(String rucCliente) {
+        this.rucCliente = rucCliente;
+    }
+
+    public String getDireccionCliente() {
+        return direccionCliente;
+    }
+
+    public void setDireccionCliente(String direccionCliente) {
+        this.direccionCliente = direccionCliente;
+    }
+
+    public String getCorreo() {
+        return correo;
+    }
+
+    public void setCorreo(String correo) {
+        this.correo = correo;
+    }
+
+    public String getTelefono() {
+        return telefono;
+    }
+
+    public void setTelefono(String telefono) {
+        this.telefono = telefono;
+    }
+
+    public String getGuiaRemision() {
+        return guiaRemision;
+    }
+
+    public void setGuiaRemision(String guiaRemision) {
+        this.guiaRemision = guiaRemision;
+    }
+
+    public String getCodigoFormaPago() {
+        return codigoFormaPago;
+    }
+
+    public void setCodigoFormaPago(String codigoFormaPago) {
+        this.codigoFormaPago = codigoFormaPago;
+    }
+
+    public String getFormaPago() {
+        return formaPago;
+    }
+
+    public void setFormaPago(String formaPago) {
+        this.formaPago = formaPago;
+    }
+
+    public String getPlazo() {
+        return plazo;
+    }
+
+    public void setPlazo(String plazo) {
+        this.plazo = plazo;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+}
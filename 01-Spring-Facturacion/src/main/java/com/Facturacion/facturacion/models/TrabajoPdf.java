@@ -0,0 +1,88 @@
+package com.Facturacion.facturacion.models;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Trabajo de generación de PDF encolado para procesarse en segundo plano.
+ */
+public class TrabajoPdf {
+
+    public enum Estado { EN_COLA, PROCESANDO, COMPLETADO, ERROR }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String numeroFactura;
+    private final long creado = System.currentTimeMillis();
+    private final CompletableFuture<byte[]> resultado = new CompletableFuture<>();
+
+    private volatile Estado estado = Estado.EN_COLA;
+    private volatile String mensaje;
+    private volatile long finalizado;
+
+    public TrabajoPdf(String numeroFactura) {
+        this.numeroFactura = numeroFactura;
+    }
+
+    public synchronized void iniciar() {
+        if (resultado.isDone()) {
+            return;
+        }
+        this.estado = Estado.PROCESANDO;
+    }
+
+    // El estado se publica antes de completar el futuro para que quien espera lo vea actualizado
+    public synchronized boolean completar(byte[] pdf) {
+        if (resultado.isDone()) {
+            return false;
+        }
+        this.finalizado = System.currentTimeMillis();
+        this.estado = Estado.COMPLETADO;
+        return resultado.complete(pdf);
+    }
+
+    public synchronized boolean fallar(String mensaje) {
+        if (resultado.isDone()) {
+            return false;
+        }
+        this.finalizado = System.currentTimeMillis();
+        this.mensaje = mensaje;
+        this.estado = Estado.ERROR;
+        return resultado.completeExceptionally(new IllegalStateException(mensaje));
+    }
+
+    public boolean isTerminado() {
+        return resultado.isDone();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNumeroFactura() {
+        return numeroFactura;
+    }
+
+    public long getCreado() {
+        return creado;
+    }
+
+    public long getFinalizado() {
+        return finalizado;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public CompletableFuture<byte[]> getResultado() {
+        return resultado;
+    }
+
+    public byte[] getPdf() {
+        return estado == Estado.COMPLETADO ? resultado.getNow(null) : null;
+    }
+}
@@ -0,0 +1,25 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+
+/**
+ * Almacén de facturas en edición. La sesión HTTP solo guarda el id del borrador;
+ * la factura se serializa en cada cambio y se reconstruye en cada lectura, así que
+ * el objeto devuelto es una copia que hay que volver a {@link #guardar} tras modificarla.
+ */
+public interface BorradorStore {
+
+    /**
+     * Guarda un borrador nuevo y devuelve su id.
+     */
+    String crear(FacturaCompleta factura);
+
+    /**
+     * Devuelve el borrador o {@code null} si no existe o ya expiró.
+     */
+    FacturaCompleta obtener(String id);
+
+    void guardar(String id, FacturaCompleta factura);
+
+    void eliminar(String id);
+}
@@ -0,0 +1,428 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.util.FacturaCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Borradores serializados con {@link FacturaCodec} en buffers directos (fuera del heap).
+ * <p>
+ * Los cambios quedan en memoria y se escriben en {@code <directorio>/<id>.borrador} solo al
+ * sacar el borrador de memoria (al superar {@code max-bytes} o tras {@code inactividad-minutos}
+ * sin uso), al cerrar y en un checkpoint cada {@code checkpoint-segundos}; editar o leer un
+ * borrador cargado no toca el disco. El checkpoint escribe los borradores con cambios y
+ * descarta las copias sin cambios cuyo archivo modificó o borró otro nodo (se compara la
+ * fecha de modificación, con resolución de nanosegundos), así que otro nodo (o esta
+ * instancia tras un reinicio) ve el borrador con a lo sumo ese retraso. Un borrador que no
+ * cabe en memoria se escribe directamente.
+ * Los archivos se borran tras {@code expiracion-horas} sin cambios.
+ * <p>
+ * Los buffers se reciclan por clase de tamaño (potencias de 2) para no depender del GC
+ * para liberar memoria directa.
+ */
+@Service
+@DependsOn("reglasFacturacionService")
+public class BorradorStoreOffHeap implements BorradorStore {
+
+    private static final String EXTENSION = ".borrador";
+    private static final Pattern ID_VALIDO = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final int CLASE_MINIMA = 8; // 256 bytes
+    private static final int CLASE_MAXIMA = 30;
+
+    private final Path directorio;
+    private final long maxBytes;
+    private final long inactividadMs;
+    private final long expiracionMs;
+    private final ConcurrentMap<String, Entrada> enMemoria = new ConcurrentHashMap<>();
+    private final AtomicLong bytesEnUso = new AtomicLong();
+    private final AtomicLong bytesLibres = new AtomicLong();
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedQueue<ByteBuffer>[] libres = new ConcurrentLinkedQueue[CLASE_MAXIMA + 1];
+    private final ScheduledExecutorService planificador;
+    // Serializa las escrituras y borrados de archivos (checkpoint, desalojo, eliminar)
+    private final Object disco = new Object();
+
+    public BorradorStoreOffHeap(@Value("${facturacion.borradores.directorio:./data/borradores}") String directorio,
+                                @Value("${facturacion.borradores.max-bytes:67108864}") long maxBytes,
+                                @Value("${facturacion.borradores.inactividad-minutos:15}") long inactividadMinutos,
+                                @Value("${facturacion.borradores.expiracion-horas:24}") long expiracionHoras,
+                                @Value("${facturacion.borradores.checkpoint-segundos:5}") long checkpointSegundos,
+                                MeterRegistry registry) {
+        this.directorio = Paths.get(directorio);
+        this.maxBytes = maxBytes;
+        this.inactividadMs = TimeUnit.MINUTES.toMillis(inactividadMinutos);
+        this.expiracionMs = TimeUnit.HOURS.toMillis(expiracionHoras);
+        for (int i = 0; i < libres.length; i++) {
+            libres[i] = new ConcurrentLinkedQueue<>();
+        }
+        try {
+            Files.createDirectories(this.directorio);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de borradores " + this.directorio, e);
+        }
+
+        Gauge.builder("facturacion.borradores.bytes", bytesEnUso, AtomicLong::get)
+                .description("Memoria directa ocupada por borradores").baseUnit("bytes").register(registry);
+        Gauge.builder("facturacion.borradores.memoria", enMemoria, Map::size)
+                .description("Borradores cargados en memoria").register(registry);
+
+        this.planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "borradores-limpieza");
+            t.setDaemon(true);
+            return t;
+        });
+        this.planificador.scheduleWithFixedDelay(this::limpiar, 1, 1, TimeUnit.MINUTES);
+        this.planificador.scheduleWithFixedDelay(this::checkpoint, checkpointSegundos, checkpointSegundos,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String crear(FacturaCompleta factura) {
+        String id = UUID.randomUUID().toString();
+        guardar(id, factura);
+        return id;
+    }
+
+    @Override
+    public FacturaCompleta obtener(String id) {
+        if (!esIdValido(id)) {
+            return null;
+        }
+        Entrada entrada = enMemoria.get(id);
+        if (entrada != null) {
+            FacturaCompleta factura = entrada.leer();
+            if (factura != null) {
+                return factura;
+            }
+        }
+
+        Path archivo = archivo(id);
+        byte[] datos;
+        FileTime modificado;
+        try {
+            modificado = Files.getLastModifiedTime(archivo);
+            datos = Files.readAllBytes(archivo);
+        } catch (NoSuchFileException e) {
+            // Expiró o lo eliminó otro nodo
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Si mientras tanto se guardó una versión en memoria, gana esa
+        Entrada actual = cargar(id, datos, modificado, false);
+        FacturaCompleta factura = actual != null ? actual.leer() : null;
+        return factura != null ? factura : FacturaCodec.decodificar(datos);
+    }
+
+    @Override
+    public void guardar(String id, FacturaCompleta factura) {
+        if (!esIdValido(id)) {
+            throw new IllegalArgumentException("Id de borrador inválido: " + id);
+        }
+        byte[] datos = FacturaCodec.codificar(factura);
+        if (cargar(id, datos, null, true) == null) {
+            // Más grande que toda la memoria permitida: queda solo en archivo
+            synchronized (disco) {
+                try {
+                    escribirArchivo(id, datos);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No se pudo guardar el borrador " + id, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void eliminar(String id) {
+        if (!esIdValido(id)) {
+            return;
+        }
+        descargar(id);
+        synchronized (disco) {
+            try {
+                Files.deleteIfExists(archivo(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public long getBytesEnUso() {
+        return bytesEnUso.get();
+    }
+
+    public int getCantidadEnMemoria() {
+        return enMemoria.size();
+    }
+
+    /**
+     * Copia los datos a un buffer directo. Un cambio ({@code sucio}) reemplaza la entrada
+     * anterior; lo leído del archivo solo se carga si no hay otra, y si la hay se devuelve esa.
+     * Null si no cabe en memoria.
+     */
+    private Entrada cargar(String id, byte[] datos, FileTime modificado, boolean sucio) {
+        ByteBuffer buffer = reservar(datos.length);
+        if (buffer == null) {
+            descargar(id);
+            return null;
+        }
+        buffer.clear();
+        buffer.put(datos).flip();
+        Entrada nueva = new Entrada(buffer, modificado, sucio);
+        if (!sucio) {
+            Entrada existente = enMemoria.putIfAbsent(id, nueva);
+            if (existente != null) {
+                liberar(nueva);
+                return existente;
+            }
+            return nueva;
+        }
+        Entrada anterior = enMemoria.put(id, nueva);
+        if (anterior != null) {
+            liberar(anterior);
+        }
+        return nueva;
+    }
+
+    private void descargar(String id) {
+        Entrada entrada = enMemoria.remove(id);
+        if (entrada != null) {
+            liberar(entrada);
+        }
+    }
+
+    private ByteBuffer reservar(int longitud) {
+        int clase = Math.max(CLASE_MINIMA, 32 - Integer.numberOfLeadingZeros(Math.max(longitud - 1, 1)));
+        int capacidad = 1 << clase;
+        if (clase > CLASE_MAXIMA || capacidad > maxBytes) {
+            return null;
+        }
+        bytesEnUso.addAndGet(capacidad);
+
+        ByteBuffer reciclado = libres[clase].poll();
+        if (reciclado != null) {
+            bytesLibres.addAndGet(-capacidad);
+            return reciclado;
+        }
+        if (bytesEnUso.get() + bytesLibres.get() > maxBytes) {
+            hacerEspacio();
+        }
+        return ByteBuffer.allocateDirect(capacidad);
+    }
+
+    private void liberar(Entrada entrada) {
+        ByteBuffer buffer = entrada.liberar();
+        if (buffer == null) {
+            return;
+        }
+        int capacidad = buffer.capacity();
+        bytesEnUso.addAndGet(-capacidad);
+        if (bytesEnUso.get() + bytesLibres.get() + capacidad <= maxBytes) {
+            bytesLibres.addAndGet(capacidad);
+            libres[Integer.numberOfTrailingZeros(capacidad)].offer(buffer);
+        }
+    }
+
+    /**
+     * Suelta los buffers reciclables y, si no alcanza, saca de memoria los borradores
+     * usados hace más tiempo hasta quedar en el 90% del límite (siguen en archivo).
+     */
+    private synchronized void hacerEspacio() {
+        for (ConcurrentLinkedQueue<ByteBuffer> cola : libres) {
+            ByteBuffer buffer;
+            while ((buffer = cola.poll()) != null) {
+                bytesLibres.addAndGet(-buffer.capacity());
+            }
+        }
+        long objetivo = maxBytes - maxBytes / 10;
+        if (bytesEnUso.get() <= objetivo) {
+            return;
+        }
+        List<Map.Entry<String, Entrada>> entradas = new ArrayList<>(enMemoria.entrySet());
+        entradas.sort(Comparator.comparingLong(e -> e.getValue().ultimoAcceso));
+        for (Map.Entry<String, Entrada> e : entradas) {
+            if (bytesEnUso.get() <= objetivo) {
+                break;
+            }
+            desalojar(e.getKey(), e.getValue());
+        }
+    }
+
+    // Saca el borrador de memoria; si tenía cambios sin escribir, antes los escribe
+    private void desalojar(String id, Entrada entrada) {
+        try {
+            escribir(id, entrada);
+        } catch (IOException e) {
+            // Sin el archivo al día no se suelta: se reintenta en el próximo checkpoint
+            return;
+        }
+        if (enMemoria.remove(id, entrada)) {
+            liberar(entrada);
+        }
+    }
+
+    /**
+     * Escribe los borradores con cambios y descarta las copias sin cambios que otro nodo
+     * modificó o borró. Corre cada {@code checkpoint-segundos} y al cerrar.
+     */
+    void checkpoint() {
+        enMemoria.forEach((id, entrada) -> {
+            try {
+                if (entrada.sucio) {
+                    escribir(id, entrada);
+                } else if (!entrada.modificado.equals(Files.getLastModifiedTime(archivo(id)))
+                        && enMemoria.remove(id, entrada)) {
+                    liberar(entrada);
+                }
+            } catch (NoSuchFileException e) {
+                if (enMemoria.remove(id, entrada)) {
+                    liberar(entrada);
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // Se reintenta en el próximo checkpoint
+            }
+        });
+    }
+
+    // Solo si la entrada sigue siendo la vigente: una reemplazada o eliminada no se escribe
+    private void escribir(String id, Entrada entrada) throws IOException {
+        if (!entrada.sucio) {
+            return;
+        }
+        synchronized (disco) {
+            byte[] datos = enMemoria.get(id) == entrada ? entrada.copia() : null;
+            if (datos != null) {
+                entrada.escrita(escribirArchivo(id, datos));
+            }
+        }
+    }
+
+    private FileTime escribirArchivo(String id, byte[] datos) throws IOException {
+        Path archivo = archivo(id);
+        Path temporal = Files.createTempFile(directorio, id, ".tmp");
+        Files.write(temporal, datos);
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.getLastModifiedTime(archivo);
+    }
+
+    private void limpiar() {
+        long ahora = System.currentTimeMillis();
+        enMemoria.forEach((id, entrada) -> {
+            if (ahora - entrada.ultimoAcceso > inactividadMs) {
+                desalojar(id, entrada);
+            }
+        });
+
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            archivos.filter(p -> p.getFileName().toString().endsWith(EXTENSION)).forEach(p -> {
+                try {
+                    String nombre = p.getFileName().toString();
+                    String id = nombre.substring(0, nombre.length() - EXTENSION.length());
+                    // Uno en memoria se usó hace poco aunque su archivo sea viejo
+                    if (!enMemoria.containsKey(id) && ahora - Files.getLastModifiedTime(p).toMillis() > expiracionMs) {
+                        eliminar(id);
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    // Otro nodo lo borró primero
+                }
+            });
+        } catch (IOException e) {
+            // Se reintenta en la próxima pasada
+        }
+    }
+
+    private Path archivo(String id) {
+        return directorio.resolve(id + EXTENSION);
+    }
+
+    private static boolean esIdValido(String id) {
+        return id != null && ID_VALIDO.matcher(id).matches();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        planificador.shutdownNow();
+        try {
+            planificador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+
+    /**
+     * Borrador en memoria. Lectura y reciclado del buffer se sincronizan en la entrada,
+     * así una lectura nunca ve un buffer que ya se entregó a otro borrador. El contenido no
+     * cambia: guardar arma otra entrada. {@code sucio} indica que el archivo no está al día y
+     * {@code modificado} es la fecha del archivo cuando lo estaba.
+     */
+    private static final class Entrada {
+        private ByteBuffer buffer;
+        private volatile FileTime modificado;
+        private volatile boolean sucio;
+        private volatile long ultimoAcceso = System.currentTimeMillis();
+
+        Entrada(ByteBuffer buffer, FileTime modificado, boolean sucio) {
+            this.buffer = buffer;
+            this.modificado = modificado;
+            this.sucio = sucio;
+        }
+
+        void escrita(FileTime modificado) {
+            this.modificado = modificado;
+            this.sucio = false;
+        }
+
+        synchronized byte[] copia() {
+            if (buffer == null) {
+                return null;
+            }
+            byte[] datos = new byte[buffer.limit()];
+            buffer.duplicate().get(datos);
+            return datos;
+        }
+
+        synchronized FacturaCompleta leer() {
+            if (buffer == null) {
+                return null;
+            }
+            ultimoAcceso = System.currentTimeMillis();
+            return FacturaCodec.decodificar(buffer.duplicate());
+        }
+
+        synchronized ByteBuffer liberar() {
+            ByteBuffer liberado = buffer;
+            buffer = null;
+            return liberado;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.util.IndiceInvertido;
+import com.Facturacion.facturacion.util.Tokenizador;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Búsqueda de texto sobre las facturas emitidas: descripción y código de los items,
+ * razón social, RUC/cédula, dirección y correo del cliente.
+ * <p>
+ * Cada registro del diario es un documento del {@link IndiceInvertido}, numerado en orden
+ * de escritura, así que "más reciente" es "número más alto". Una nueva versión de la factura
+ * elimina el documento anterior. El índice vive en memoria (las listas de documentos van
+ * comprimidas) y se arma recorriendo el diario al arrancar; después se actualiza como oyente
+ * del diario con cada factura emitida.
+ * <p>
+ * La consulta se separa con {@link Tokenizador} (sin tildes ni mayúsculas) y el último
+ * término se busca como prefijo, para poder buscar mientras se escribe.
+ */
+@Service
+public class BusquedaTextoService {
+
+    private final DiarioFacturasService diario;
+    private final IndiceInvertido indice;
+    private final ExecutorService fusiones;
+    private final ConcurrentMap<String, Integer> porNumero = new ConcurrentHashMap<>();
+
+    // Documento → posición en el diario; solo crece
+    private volatile long[] posiciones = new long[1024];
+    private int siguienteDocumento;
+    private long posicionCubierta;
+
+    public BusquedaTextoService(DiarioFacturasService diario,
+                                @Value("${facturacion.busqueda.documentos-por-segmento:16384}") int documentosPorSegmento,
+                                MeterRegistry registry) {
+        this.diario = diario;
+        this.fusiones = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "busqueda-fusion");
+            t.setDaemon(true);
+            return t;
+        });
+        this.indice = new IndiceInvertido(documentosPorSegmento, fusiones);
+        // El oyente va primero y espera a que el índice se ponga al día hasta donde empieza
+        synchronized (this) {
+            long desde = diario.agregarOyente(this::indexar);
+            diario.recorrer(0, desde, this::indexar);
+        }
+
+        Gauge.builder("facturacion.busqueda.documentos", indice, IndiceInvertido::getCantidadDocumentos)
+                .description("Facturas en el índice de texto")
+                .register(registry);
+        Gauge.builder("facturacion.busqueda.segmentos", indice, IndiceInvertido::getCantidadSegmentos)
+                .description("Segmentos inmutables del índice de texto")
+                .register(registry);
+        Gauge.builder("facturacion.busqueda.bytes", indice, IndiceInvertido::getBytesSegmentos)
+                .description("Bytes de las listas de documentos comprimidas")
+                .register(registry);
+    }
+
+    public record Resultado(FacturaCompleta factura, DiarioFacturasService.Registro registro) {
+    }
+
+    /**
+     * Facturas que contienen todos los términos de la consulta, las más recientes primero.
+     */
+    public List<Resultado> buscar(String consulta, int limite) {
+        List<String> terminos = new ArrayList<>();
+        Tokenizador.tokenizar(consulta, terminos::add);
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+        // "seco de chivo " con espacio al final: el último término ya está completo
+        boolean prefijo = !Character.isWhitespace(consulta.charAt(consulta.length() - 1));
+
+        int[] documentos = indice.buscar(terminos, prefijo, limite);
+        long[] actuales = posiciones;
+        List<Resultado> resultados = new ArrayList<>(documentos.length);
+        for (int documento : documentos) {
+            DiarioFacturasService.Registro registro = diario.leer(actuales[documento]);
+            FacturaCompleta factura = registro.factura();
+            // Entre agregar la versión nueva y eliminar la anterior pueden verse las dos
+            Integer vigente = porNumero.get(factura.getNumeroFactura());
+            if (vigente != null && vigente == documento) {
+                resultados.add(new Resultado(factura, registro));
+            }
+        }
+        return resultados;
+    }
+
+    public int getCantidadDocumentos() {
+        return indice.getCantidadDocumentos();
+    }
+
+    // Oyente del diario: un documento por registro, en orden de escritura
+    private synchronized void indexar(DiarioFacturasService.Registro registro) {
+        if (registro.getPosicion() < posicionCubierta) {
+            return;
+        }
+        posicionCubierta = registro.getPosicionSiguiente();
+        FacturaCompleta factura = registro.factura();
+
+        Set<String> terminos = new LinkedHashSet<>();
+        Tokenizador.tokenizar(factura.getRazonSocialCliente(), terminos::add);
+        Tokenizador.tokenizar(factura.getRucCliente(), terminos::add);
+        Tokenizador.tokenizar(factura.getDireccionCliente(), terminos::add);
+        Tokenizador.tokenizar(factura.getCorreoCliente(), terminos::add);
+        for (ItemFactura item : factura.getItems()) {
+            Tokenizador.tokenizar(item.getCodigo(), terminos::add);
+            Tokenizador.tokenizar(item.getDescripcion(), terminos::add);
+        }
+
+        int documento = siguienteDocumento++;
+        if (documento == posiciones.length) {
+            posiciones = Arrays.copyOf(posiciones, documento * 2);
+        }
+        posiciones[documento] = registro.getPosicion();
+        indice.agregar(documento, terminos);
+        Integer anterior = porNumero.put(factura.getNumeroFactura(), documento);
+        if (anterior != null) {
+            indice.eliminar(anterior);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        fusiones.shutdownNow();
+    }
+}
@@ -0,0 +1,299 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.Producto;
+import com.Facturacion.facturacion.util.CatalogoProductos;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Catálogo de productos para que el formulario mande solo código y cantidad.
+ * <p>
+ * Se carga de una foto en {@code facturacion.catalogo.archivo}: CSV con encabezado
+ * ({@code codigo,descripcion,precio}, en cualquier orden) o, si termina en {@code .json}, un
+ * arreglo de objetos con esos campos. Se arma un {@link CatalogoProductos} nuevo (arreglos
+ * compactos, sin un objeto por producto) y se reemplaza de una vez: quien esté consultando
+ * sigue con el anterior hasta terminar, y nunca se ve un catálogo a medias. El archivo se
+ * revisa cada {@code revision-segundos}; si cambió se recarga, y si la foto nueva tiene
+ * errores se sigue con el catálogo anterior.
+ */
+@Service
+public class CatalogoProductosService {
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+
+    private final Path archivo;
+    private final ScheduledExecutorService planificador;
+    private final AtomicLong recargas = new AtomicLong();
+    private final AtomicLong recargasFallidas = new AtomicLong();
+    private volatile CatalogoProductos catalogo = CatalogoProductos.VACIO;
+    // Fecha y tamaño de la foto cargada, para notar cambios; solo con el monitor
+    private FileTime modificado;
+    private long tamano = -1;
+    private volatile String ultimoError;
+
+    public CatalogoProductosService(@Value("${facturacion.catalogo.archivo:./data/catalogo.csv}") String archivo,
+                                    @Value("${facturacion.catalogo.revision-segundos:30}") long revisionSegundos,
+                                    MeterRegistry registry) {
+        this.archivo = Paths.get(archivo);
+        try {
+            recargar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cargar el catálogo " + this.archivo, e);
+        }
+
+        Gauge.builder("facturacion.catalogo.productos", this, CatalogoProductosService::getCantidad)
+                .description("Productos en el catálogo").register(registry);
+        Gauge.builder("facturacion.catalogo.bytes", this, s -> s.catalogo.getBytes())
+                .description("Memoria de los arreglos del catálogo").baseUnit("bytes").register(registry);
+        FunctionCounter.builder("facturacion.catalogo.recargas", recargas, AtomicLong::get)
+                .description("Fotos del catálogo cargadas").register(registry);
+        FunctionCounter.builder("facturacion.catalogo.recargas.fallidas", recargasFallidas, AtomicLong::get)
+                .description("Fotos del catálogo rechazadas por errores").register(registry);
+
+        this.planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalogo-revision");
+            t.setDaemon(true);
+            return t;
+        });
+        if (revisionSegundos > 0) {
+            planificador.scheduleWithFixedDelay(this::revisar, revisionSegundos, revisionSegundos, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Producto con ese código, o null si no está en el catálogo.
+     */
+    public Producto buscar(String codigo) {
+        if (codigo == null) {
+            return null;
+        }
+        CatalogoProductos c = catalogo;
+        int posicion = c.buscar(codigo.trim());
+        return posicion >= 0 ? producto(c, posicion) : null;
+    }
+
+    /**
+     * Hasta {@code limite} productos cuya descripción tiene palabras que empiezan con las de la
+     * consulta, ordenados por descripción.
+     */
+    public List<Producto> buscarPorDescripcion(String consulta, int limite) {
+        CatalogoProductos c = catalogo;
+        int[] posiciones = c.buscarPorDescripcion(consulta, limite);
+        List<Producto> productos = new ArrayList<>(posiciones.length);
+        for (int posicion : posiciones) {
+            productos.add(producto(c, posicion));
+        }
+        productos.sort(Comparator.comparing(Producto::getDescripcion).thenComparing(Producto::getCodigo));
+        return productos;
+    }
+
+    public int getCantidad() {
+        return catalogo.getCantidad();
+    }
+
+    public long getRecargas() {
+        return recargas.get();
+    }
+
+    /**
+     * Error de la última recarga fallida, o null si la última recarga salió bien.
+     */
+    public String getUltimoError() {
+        return ultimoError;
+    }
+
+    /**
+     * Vuelve a leer la foto y reemplaza el catálogo. Si el archivo no existe queda vacío;
+     * si tiene errores lanza la excepción y se sigue con el catálogo actual.
+     */
+    public synchronized int recargar() throws IOException {
+        try {
+            FileTime nuevoModificado;
+            long nuevoTamano;
+            CatalogoProductos nuevo;
+            try {
+                BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+                nuevoModificado = atributos.lastModifiedTime();
+                nuevoTamano = atributos.size();
+                nuevo = leer(archivo);
+            } catch (NoSuchFileException e) {
+                nuevoModificado = null;
+                nuevoTamano = -1;
+                nuevo = CatalogoProductos.VACIO;
+            }
+            catalogo = nuevo;
+            modificado = nuevoModificado;
+            tamano = nuevoTamano;
+            ultimoError = null;
+            recargas.incrementAndGet();
+            return nuevo.getCantidad();
+        } catch (IOException | RuntimeException e) {
+            recargasFallidas.incrementAndGet();
+            ultimoError = e.getMessage();
+            throw e;
+        }
+    }
+
+    // Recarga si la foto cambió desde la última carga (buena o mala)
+    private synchronized void revisar() {
+        FileTime actual;
+        long actualTamano;
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+            actual = atributos.lastModifiedTime();
+            actualTamano = atributos.size();
+        } catch (IOException e) {
+            actual = null;
+            actualTamano = -1;
+        }
+        if (actualTamano == tamano && (actual == null ? modificado == null : actual.equals(modificado))) {
+            return;
+        }
+        try {
+            recargar();
+        } catch (IOException | RuntimeException e) {
+            // Queda el catálogo anterior; no se reintenta hasta que el archivo vuelva a cambiar
+            modificado = actual;
+            tamano = actualTamano;
+        }
+    }
+
+    private static CatalogoProductos leer(Path archivo) throws IOException {
+        try (BufferedReader entrada = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            return archivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json")
+                    ? leerJson(entrada) : leerCsv(entrada);
+        }
+    }
+
+    static CatalogoProductos leerCsv(BufferedReader entrada) throws IOException {
+        String encabezado = entrada.readLine();
+        if (encabezado != null && encabezado.startsWith("\uFEFF")) {
+            encabezado = encabezado.substring(1);
+        }
+        int columnaCodigo = columna(encabezado, "codigo");
+        int columnaDescripcion = columna(encabezado, "descripcion");
+        int columnaPrecio = columna(encabezado, "precio");
+
+        CatalogoProductos.Escritor escritor = new CatalogoProductos.Escritor();
+        int numero = 1;
+        for (String linea; (linea = entrada.readLine()) != null; ) {
+            numero++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            agregar(escritor, numero, ValidacionMasivaService.campoCsv(linea, columnaCodigo),
+                    ValidacionMasivaService.campoCsv(linea, columnaDescripcion),
+                    ValidacionMasivaService.campoCsv(linea, columnaPrecio));
+        }
+        return escritor.construir();
+    }
+
+    static CatalogoProductos leerJson(BufferedReader entrada) {
+        CatalogoProductos.Escritor escritor = new CatalogoProductos.Escritor();
+        try (JsonParser parser = MAPPER.createParser(entrada)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("El catálogo JSON debe ser un arreglo de productos");
+            }
+            // Se lee token a token: con un millón de productos no se arma el árbol entero
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                int numero = parser.currentLocation().getLineNr();
+                String codigo = null;
+                String descripcion = null;
+                String precio = null;
+                while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+                    String nombre = parser.currentName();
+                    JsonToken valor = parser.nextToken();
+                    if (valor.isStructStart()) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    switch (nombre) {
+                        case "codigo" -> codigo = parser.getValueAsString();
+                        case "descripcion" -> descripcion = parser.getValueAsString();
+                        case "precio" -> precio = parser.getValueAsString();
+                        default -> {
+                        }
+                    }
+                }
+                agregar(escritor, numero, codigo, descripcion, precio);
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("El catálogo JSON debe ser un arreglo de productos");
+            }
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Catálogo JSON inválido: " + e.getOriginalMessage(), e);
+        }
+        return escritor.construir();
+    }
+
+    private static void agregar(CatalogoProductos.Escritor escritor, int linea, String codigo, String descripcion,
+                                String precio) {
+        if (codigo == null || codigo.isBlank()) {
+            throw new IllegalArgumentException("Línea " + linea + ": falta el código");
+        }
+        if (descripcion == null || descripcion.trim().length() < 3) {
+            throw new IllegalArgumentException("Línea " + linea + ": la descripción debe tener al menos 3 caracteres");
+        }
+        long diezmilesimas;
+        try {
+            diezmilesimas = new BigDecimal(precio == null ? "" : precio.trim())
+                    .setScale(4, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Línea " + linea + ": precio inválido \"" + precio + "\"");
+        }
+        if (diezmilesimas <= 0) {
+            throw new IllegalArgumentException("Línea " + linea + ": el precio debe ser mayor a 0");
+        }
+        escritor.agregar(codigo.trim(), descripcion.trim(), diezmilesimas);
+    }
+
+    private static int columna(String encabezado, String nombre) {
+        if (encabezado != null) {
+            String campo;
+            for (int i = 0; (campo = ValidacionMasivaService.campoCsv(encabezado, i)) != null; i++) {
+                if (campo.trim().equalsIgnoreCase(nombre)) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("El encabezado CSV del catálogo no tiene la columna \"" + nombre + "\"");
+    }
+
+    private static Producto producto(CatalogoProductos c, int posicion) {
+        return new Producto(c.codigo(posicion), c.descripcion(posicion), c.precioDiezmilesimas(posicion));
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        planificador.shutdownNow();
+    }
+}
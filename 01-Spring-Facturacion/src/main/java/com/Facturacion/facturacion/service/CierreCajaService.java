@@ -0,0 +1,186 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ResumenVentas;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cierre de caja: ventas por día, por forma de pago y por producto, con el IVA cobrado.
+ * <p>
+ * {@link #calcular} recorre la última versión de cada factura del diario repartiendo el
+ * trabajo en un {@link ForkJoinPool}: cada tramo de posiciones se decodifica y se resume por
+ * día en su hilo, y los resultados se combinan al volver. Así se recalculan los meses anteriores.
+ * <p>
+ * Además se lleva un acumulado por día, armado con ese mismo cálculo al arrancar y actualizado
+ * como oyente del diario con cada factura emitida (una nueva versión resta la anterior), de modo
+ * que el cierre del día ({@link #cierreDia}) no recorre nada.
+ */
+@Service
+public class CierreCajaService {
+
+    // Facturas por tarea; por debajo no conviene dividir más
+    static final int UMBRAL = 512;
+
+    private final DiarioFacturasService diario;
+    private final ForkJoinPool pool;
+    private final Timer tiempoCalculo;
+
+    private final ConcurrentMap<Integer, ResumenVentas> porDia = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> versiones = new ConcurrentHashMap<>();
+
+    public CierreCajaService(DiarioFacturasService diario,
+                             @Value("${facturacion.cierre.hilos:0}") int hilos,
+                             MeterRegistry registry) {
+        this.diario = diario;
+        this.pool = new ForkJoinPool(hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors(), p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("cierre-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+        this.tiempoCalculo = Timer.builder("facturacion.cierre.calculo")
+                .description("Tiempo de recalcular un cierre desde el diario")
+                .register(registry);
+
+        // El oyente va primero y espera al acumulado inicial, que solo cubre lo anterior a él
+        synchronized (this) {
+            long desde = diario.agregarOyente(this::acumular);
+            long[] anteriores = Arrays.stream(diario.posicionesVigentes()).filter(p -> p < desde).toArray();
+            porDia.putAll(pool.invoke(new Tramo(anteriores, 0, Integer.MAX_VALUE, versiones)));
+        }
+    }
+
+    /**
+     * Cierre de un día desde el acumulado (no recorre el diario).
+     */
+    public ResumenVentas cierreDia(LocalDate fecha) {
+        ResumenVentas resumen = porDia.get(IndiceClienteFechaService.aEntero(fecha));
+        if (resumen == null) {
+            return new ResumenVentas();
+        }
+        synchronized (resumen) {
+            return resumen.copia();
+        }
+    }
+
+    /**
+     * Recalcula desde el diario, en paralelo, las ventas entre dos fechas (inclusive), día por día.
+     */
+    public TreeMap<LocalDate, ResumenVentas> calcular(LocalDate desde, LocalDate hasta) {
+        long inicio = System.nanoTime();
+        Map<Integer, ResumenVentas> dias = pool.invoke(new Tramo(diario.posicionesVigentes(),
+                IndiceClienteFechaService.aEntero(desde), IndiceClienteFechaService.aEntero(hasta), null));
+        TreeMap<LocalDate, ResumenVentas> resultado = new TreeMap<>();
+        dias.forEach((dia, resumen) -> resultado.put(IndiceClienteFechaService.aFecha(dia), resumen));
+        tiempoCalculo.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        return resultado;
+    }
+
+    // Oyente del diario
+    private synchronized void acumular(DiarioFacturasService.Registro registro) {
+        FacturaCompleta factura = registro.factura();
+        Long anterior = versiones.put(factura.getNumeroFactura(), registro.getPosicion());
+        if (anterior != null) {
+            FacturaCompleta reemplazada = diario.leer(anterior).factura();
+            ResumenVentas dia = porDia.get(IndiceClienteFechaService.fechaEmision(reemplazada.getFechaEmision()));
+            if (dia != null) {
+                synchronized (dia) {
+                    dia.quitar(reemplazada);
+                }
+            }
+        }
+        ResumenVentas dia = porDia.computeIfAbsent(IndiceClienteFechaService.fechaEmision(factura.getFechaEmision()),
+                d -> new ResumenVentas());
+        synchronized (dia) {
+            dia.agregar(factura);
+        }
+    }
+
+    /**
+     * Un tramo de posiciones del diario; se divide a la mitad hasta llegar al {@link #UMBRAL}.
+     */
+    private final class Tramo extends RecursiveTask<Map<Integer, ResumenVentas>> {
+        private final long[] posiciones;
+        private final int inicio;
+        private final int fin;
+        private final int fechaDesde;
+        private final int fechaHasta;
+        private final ConcurrentMap<String, Long> versiones;
+
+        Tramo(long[] posiciones, int fechaDesde, int fechaHasta, ConcurrentMap<String, Long> versiones) {
+            this(posiciones, 0, posiciones.length, fechaDesde, fechaHasta, versiones);
+        }
+
+        private Tramo(long[] posiciones, int inicio, int fin, int fechaDesde, int fechaHasta,
+                      ConcurrentMap<String, Long> versiones) {
+            this.posiciones = posiciones;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.fechaDesde = fechaDesde;
+            this.fechaHasta = fechaHasta;
+            this.versiones = versiones;
+        }
+
+        @Override
+        protected Map<Integer, ResumenVentas> compute() {
+            if (fin - inicio > UMBRAL) {
+                int medio = (inicio + fin) >>> 1;
+                Tramo izquierda = new Tramo(posiciones, inicio, medio, fechaDesde, fechaHasta, versiones);
+                izquierda.fork();
+                Map<Integer, ResumenVentas> derecha =
+                        new Tramo(posiciones, medio, fin, fechaDesde, fechaHasta, versiones).compute();
+                return combinar(izquierda.join(), derecha);
+            }
+            Map<Integer, ResumenVentas> dias = new HashMap<>();
+            for (int i = inicio; i < fin; i++) {
+                DiarioFacturasService.Registro registro = diario.leer(posiciones[i]);
+                if (versiones != null) {
+                    // Todo el diario: hace falta el número de cada factura
+                    FacturaCompleta factura = registro.factura();
+                    versiones.put(factura.getNumeroFactura(), posiciones[i]);
+                    dias.computeIfAbsent(IndiceClienteFechaService.fechaEmision(factura.getFechaEmision()),
+                            d -> new ResumenVentas()).agregar(factura);
+                    continue;
+                }
+                // Un rango: se mira la fecha antes de decodificar la factura
+                int dia = IndiceClienteFechaService.fechaEmision(registro.fechaEmision());
+                if (dia >= fechaDesde && dia <= fechaHasta) {
+                    dias.computeIfAbsent(dia, d -> new ResumenVentas()).agregar(registro.factura());
+                }
+            }
+            return dias;
+        }
+    }
+
+    // Se suma el mapa chico sobre el grande
+    private static Map<Integer, ResumenVentas> combinar(Map<Integer, ResumenVentas> a, Map<Integer, ResumenVentas> b) {
+        Map<Integer, ResumenVentas> mayor = a.size() >= b.size() ? a : b;
+        Map<Integer, ResumenVentas> menor = mayor == a ? b : a;
+        menor.forEach((dia, resumen) -> mayor.merge(dia, resumen, (x, y) -> {
+            x.combinar(y);
+            return x;
+        }));
+        return mayor;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,385 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.util.Dinero;
+import com.Facturacion.facturacion.util.GeneradorClaveAcceso;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Comprobante electrónico de la factura en XML (esquema {@code factura} 1.1.0 del SRI):
+ * infoTributaria, infoFactura con totalConImpuestos y pagos, detalles e infoAdicional.
+ * <p>
+ * Se escribe con StAX directo al stream de salida, item por item: no se arma un árbol en
+ * memoria y el consumo no depende de la cantidad de items. Cada hilo reutiliza el buffer de
+ * salida y el de los números; el {@link XMLStreamWriter} se crea por factura porque la
+ * implementación del JDK no permite reutilizarlo, pero la fábrica es una sola.
+ * <p>
+ * Las facturas con ICE no se pueden expresar: el SRI pide el ICE como impuesto aparte con el
+ * código de cada producto y las reglas solo tienen la tasa, así que {@link #verificar} las
+ * rechaza en lugar de escribir un comprobante cuyos totales no cuadran. El recargo por
+ * servicio va como propina.
+ */
+@Service
+public class ComprobanteXmlService {
+
+    public static final String VERSION_ESQUEMA = "1.1.0";
+
+    // El IVA en el XML del SRI es el impuesto 2; el código de porcentaje depende de la tarifa
+    private static final String IMPUESTO_IVA = "2";
+    private static final String PORCENTAJE_CERO = "0";
+    private static final String PORCENTAJE_NO_OBJETO = "6";
+    private static final String PORCENTAJE_EXENTO = "7";
+    private static final String PORCENTAJE_DIFERENCIADO = "8";
+    private static final String CONSUMIDOR_FINAL = "9999999999999";
+
+    private static final XMLOutputFactory FABRICA = XMLOutputFactory.newFactory();
+    private static final ThreadLocal<Escritura> ESCRITURA = ThreadLocal.withInitial(Escritura::new);
+
+    public byte[] generarFacturaXml(FacturaCompleta factura) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        generarFacturaXml(factura, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Escribe el comprobante en el stream de salida (no lo cierra). La factura debe tener
+     * número y clave de acceso asignados.
+     */
+    public void generarFacturaXml(FacturaCompleta factura, OutputStream salida) throws IOException {
+        verificar(factura);
+        String numero = factura.getNumeroFactura();
+        Escritura escritura = ESCRITURA.get();
+        escritura.salida.iniciar(salida);
+        try {
+            XMLStreamWriter xml = FABRICA.createXMLStreamWriter(escritura.salida, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("factura");
+            xml.writeAttribute("id", "comprobante");
+            xml.writeAttribute("version", VERSION_ESQUEMA);
+            escribirInfoTributaria(xml, factura, numero);
+            escribirInfoFactura(xml, escritura, factura);
+            escribirDetalles(xml, escritura, factura);
+            escribirInfoAdicional(xml, factura);
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+            escritura.salida.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Error al escribir el XML de la factura " + numero, e);
+        } finally {
+            escritura.salida.terminar();
+        }
+    }
+
+    /**
+     * Comprueba que la factura se pueda escribir como comprobante: número y clave de acceso
+     * asignados y sin ICE. Sirve para rechazarla antes de empezar a responder.
+     */
+    public static void verificar(FacturaCompleta factura) {
+        String numero = factura.getNumeroFactura();
+        if (numero == null || numero.length() != 17 || factura.getClaveAcceso() == null) {
+            throw new IllegalArgumentException("La factura no tiene número y clave de acceso asignados");
+        }
+        verificarContenido(factura);
+    }
+
+    /**
+     * La parte de {@link #verificar} que no depende del número: sirve para rechazar una factura
+     * antes de numerarla y registrarla.
+     */
+    public static void verificarContenido(FacturaCompleta factura) {
+        if (factura.getIceCentavos() != 0) {
+            throw new IllegalArgumentException("El comprobante XML no admite facturas con ICE");
+        }
+    }
+
+    private static void escribirInfoTributaria(XMLStreamWriter xml, FacturaCompleta factura, String numero)
+            throws XMLStreamException {
+        xml.writeStartElement("infoTributaria");
+        elemento(xml, "ambiente", "PRODUCCION".equals(factura.getAmbiente())
+                ? Integer.toString(GeneradorClaveAcceso.AMBIENTE_PRODUCCION)
+                : Integer.toString(GeneradorClaveAcceso.AMBIENTE_PRUEBAS));
+        elemento(xml, "tipoEmision", Integer.toString(GeneradorClaveAcceso.EMISION_NORMAL));
+        elemento(xml, "razonSocial", factura.getNombrePropietario());
+        elemento(xml, "nombreComercial", factura.getNombreEmpresa());
+        elemento(xml, "ruc", factura.getRucEmisor());
+        elemento(xml, "claveAcceso", factura.getClaveAcceso());
+        elemento(xml, "codDoc", GeneradorClaveAcceso.TIPO_FACTURA);
+        // El número es establecimiento-puntoEmision-secuencial (001-001-000000123)
+        elemento(xml, "estab", numero.substring(0, 3));
+        elemento(xml, "ptoEmi", numero.substring(4, 7));
+        elemento(xml, "secuencial", numero.substring(8));
+        elemento(xml, "dirMatriz", factura.getDireccionEmisor());
+        xml.writeEndElement();
+    }
+
+    private static void escribirInfoFactura(XMLStreamWriter xml, Escritura escritura, FacturaCompleta factura)
+            throws XMLStreamException {
+        xml.writeStartElement("infoFactura");
+        elemento(xml, "fechaEmision", factura.getFechaEmision());
+        elemento(xml, "dirEstablecimiento", factura.getDireccionSucursal());
+        elemento(xml, "obligadoContabilidad", factura.isObligadoContabilidad() ? "SI" : "NO");
+        String identificacion = factura.getRucCliente();
+        elemento(xml, "tipoIdentificacionComprador", tipoIdentificacion(identificacion));
+        opcional(xml, "guiaRemision", factura.getGuiaRemision());
+        elemento(xml, "razonSocialComprador", factura.getRazonSocialCliente());
+        elemento(xml, "identificacionComprador", identificacion);
+        opcional(xml, "direccionComprador", factura.getDireccionCliente());
+        monto(xml, escritura, "totalSinImpuestos", factura.getSubtotalSinImpuestosCentavos());
+        monto(xml, escritura, "totalDescuento", factura.getTotalDescuentoCentavos());
+
+        ReglasFacturacion reglas = factura.reglas();
+        xml.writeStartElement("totalConImpuestos");
+        totalImpuesto(xml, escritura, codigoPorcentajeTarifa(reglas.getTasaIva()),
+                factura.getBaseIva15Centavos(), factura.getIva15Centavos());
+        if (factura.getSubtotal0Centavos() != 0) {
+            totalImpuesto(xml, escritura, PORCENTAJE_CERO, factura.getSubtotal0Centavos(), 0);
+        }
+        if (factura.getSubtotalNoObjetoIvaCentavos() != 0) {
+            totalImpuesto(xml, escritura, PORCENTAJE_NO_OBJETO, factura.getSubtotalNoObjetoIvaCentavos(), 0);
+        }
+        if (factura.getSubtotalExentoIvaCentavos() != 0) {
+            totalImpuesto(xml, escritura, PORCENTAJE_EXENTO, factura.getSubtotalExentoIvaCentavos(), 0);
+        }
+        xml.writeEndElement();
+
+        monto(xml, escritura, "propina", factura.getServicioCentavos());
+        monto(xml, escritura, "importeTotal", factura.getValorTotalCentavos());
+        elemento(xml, "moneda", "DOLAR");
+        xml.writeStartElement("pagos");
+        xml.writeStartElement("pago");
+        elemento(xml, "formaPago", factura.getCodigoFormaPago());
+        monto(xml, escritura, "total", factura.getValorTotalCentavos());
+        String plazo = factura.getPlazo();
+        if (plazo != null && !plazo.isBlank()) {
+            elemento(xml, "plazo", plazo.trim());
+            elemento(xml, "unidadTiempo", "dias");
+        }
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndElement();
+    }
+
+    private static void totalImpuesto(XMLStreamWriter xml, Escritura escritura, String codigoPorcentaje,
+                                      long base, long valor) throws XMLStreamException {
+        xml.writeStartElement("totalImpuesto");
+        elemento(xml, "codigo", IMPUESTO_IVA);
+        elemento(xml, "codigoPorcentaje", codigoPorcentaje);
+        monto(xml, escritura, "baseImponible", base);
+        monto(xml, escritura, "valor", valor);
+        xml.writeEndElement();
+    }
+
+    private static void escribirDetalles(XMLStreamWriter xml, Escritura escritura, FacturaCompleta factura)
+            throws XMLStreamException {
+        ReglasFacturacion reglas = factura.reglas();
+        String codigoTarifa = codigoPorcentajeTarifa(reglas.getTasaIva());
+        xml.writeStartElement("detalles");
+        for (ItemFactura item : factura.getItems()) {
+            xml.writeStartElement("detalle");
+            elemento(xml, "codigoPrincipal", item.getCodigo());
+            elemento(xml, "descripcion", item.getDescripcion());
+            xml.writeStartElement("cantidad");
+            escritura.escribirNumero(xml, item.getCantidad(), 0);
+            xml.writeEndElement();
+            xml.writeStartElement("precioUnitario");
+            escritura.escribirNumero(xml, item.getPrecioUnitarioDiezmilesimas(), 4);
+            xml.writeEndElement();
+            monto(xml, escritura, "descuento", item.getDescuentoCentavos());
+            monto(xml, escritura, "precioTotalSinImpuesto", item.getTotalCentavos());
+
+            xml.writeStartElement("impuestos");
+            xml.writeStartElement("impuesto");
+            elemento(xml, "codigo", IMPUESTO_IVA);
+            if (item.getCategoriaIva() == ReglasFacturacion.IVA_TARIFA) {
+                long base = item.getTotalCentavos();
+                elemento(xml, "codigoPorcentaje", codigoTarifa);
+                xml.writeStartElement("tarifa");
+                escritura.escribirNumero(xml, reglas.getTasaIva(), 2);
+                xml.writeEndElement();
+                monto(xml, escritura, "baseImponible", base);
+                monto(xml, escritura, "valor", Dinero.porcentaje(base, reglas.getTasaIva()));
+            } else {
+                elemento(xml, "codigoPorcentaje", codigoPorcentaje(item.getCategoriaIva()));
+                elemento(xml, "tarifa", "0");
+                monto(xml, escritura, "baseImponible", item.getTotalCentavos());
+                monto(xml, escritura, "valor", 0);
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+    }
+
+    private static void escribirInfoAdicional(XMLStreamWriter xml, FacturaCompleta factura) throws XMLStreamException {
+        String correo = factura.getCorreoCliente();
+        String telefono = factura.getTelefonoCliente();
+        boolean hayCorreo = correo != null && !correo.isBlank();
+        boolean hayTelefono = telefono != null && !telefono.isBlank();
+        if (!hayCorreo && !hayTelefono) {
+            return;
+        }
+        xml.writeStartElement("infoAdicional");
+        if (hayCorreo) {
+            campoAdicional(xml, "Email", correo.trim());
+        }
+        if (hayTelefono) {
+            campoAdicional(xml, "Teléfono", telefono.trim());
+        }
+        xml.writeEndElement();
+    }
+
+    private static void campoAdicional(XMLStreamWriter xml, String nombre, String valor) throws XMLStreamException {
+        xml.writeStartElement("campoAdicional");
+        xml.writeAttribute("nombre", nombre);
+        xml.writeCharacters(valor);
+        xml.writeEndElement();
+    }
+
+    // Tabla 16 de la ficha técnica: 04 RUC, 05 cédula, 06 pasaporte, 07 consumidor final
+    static String tipoIdentificacion(String identificacion) {
+        if (identificacion == null || identificacion.isBlank() || CONSUMIDOR_FINAL.equals(identificacion)) {
+            return "07";
+        }
+        if (identificacion.length() == 13) {
+            return "04";
+        }
+        return identificacion.length() == 10 ? "05" : "06";
+    }
+
+    // Tabla 17 de la ficha técnica: código de porcentaje de la tarifa general de IVA
+    static String codigoPorcentajeTarifa(int puntosBasicos) {
+        return switch (puntosBasicos) {
+            case 0 -> PORCENTAJE_CERO;
+            case 1200 -> "2";
+            case 1400 -> "3";
+            case 1500 -> "4";
+            case 500 -> "5";
+            case 1300 -> "10";
+            default -> PORCENTAJE_DIFERENCIADO;
+        };
+    }
+
+    private static String codigoPorcentaje(int categoriaIva) {
+        return switch (categoriaIva) {
+            case ReglasFacturacion.IVA_EXENTO -> PORCENTAJE_EXENTO;
+            case ReglasFacturacion.IVA_NO_OBJETO -> PORCENTAJE_NO_OBJETO;
+            default -> PORCENTAJE_CERO;
+        };
+    }
+
+    private static void elemento(XMLStreamWriter xml, String nombre, String valor) throws XMLStreamException {
+        xml.writeStartElement(nombre);
+        xml.writeCharacters(valor == null ? "" : valor);
+        xml.writeEndElement();
+    }
+
+    private static void opcional(XMLStreamWriter xml, String nombre, String valor) throws XMLStreamException {
+        if (valor != null && !valor.isBlank()) {
+            elemento(xml, nombre, valor.trim());
+        }
+    }
+
+    private static void monto(XMLStreamWriter xml, Escritura escritura, String nombre, long centavos)
+            throws XMLStreamException {
+        xml.writeStartElement(nombre);
+        escritura.escribirNumero(xml, centavos, 2);
+        xml.writeEndElement();
+    }
+
+    // Buffers de un hilo: el de salida y el de los dígitos de los números
+    private static final class Escritura {
+        private final SalidaReutilizable salida = new SalidaReutilizable();
+        private final char[] digitos = new char[24];
+
+        // valor / 10^decimales con exactamente esos decimales, sin pasar por String ni BigDecimal
+        void escribirNumero(XMLStreamWriter xml, long valor, int decimales) throws XMLStreamException {
+            boolean negativo = valor < 0;
+            int p = digitos.length;
+            int escritos = 0;
+            do {
+                if (escritos == decimales && decimales > 0) {
+                    digitos[--p] = '.';
+                }
+                digitos[--p] = (char) ('0' + Math.abs(valor % 10));
+                valor /= 10;
+                escritos++;
+            } while (valor != 0 || escritos <= decimales);
+            if (negativo) {
+                digitos[--p] = '-';
+            }
+            xml.writeCharacters(digitos, p, digitos.length - p);
+        }
+    }
+
+    /**
+     * Buffer de bytes que se vuelca al stream de la factura en curso. El writer de StAX del JDK
+     * codifica de a un byte; sin esto cada carácter sería una escritura al stream de salida.
+     * A diferencia de un BufferedOutputStream se puede apuntar a otro stream, así el buffer se
+     * reutiliza de una factura a otra.
+     */
+    private static final class SalidaReutilizable extends OutputStream {
+        private final byte[] buffer = new byte[8192];
+        private int posicion;
+        private OutputStream destino;
+
+        void iniciar(OutputStream destino) {
+            this.destino = destino;
+            this.posicion = 0;
+        }
+
+        void terminar() {
+            this.destino = null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (posicion == buffer.length) {
+                vaciar();
+            }
+            buffer[posicion++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int desde, int largo) throws IOException {
+            if (largo > buffer.length - posicion) {
+                vaciar();
+                if (largo > buffer.length) {
+                    destino.write(bytes, desde, largo);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, desde, buffer, posicion, largo);
+            posicion += largo;
+        }
+
+        private void vaciar() throws IOException {
+            if (posicion > 0) {
+                destino.write(buffer, 0, posicion);
+                posicion = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            vaciar();
+            destino.flush();
+        }
+
+        // El stream de la factura lo cierra quien lo abrió
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
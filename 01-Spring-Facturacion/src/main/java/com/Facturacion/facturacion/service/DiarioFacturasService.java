@@ -0,0 +1,568 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.util.FacturaCodec;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario de facturas emitidas: archivo de solo-agregar repartido en segmentos de
+ * tamaño fijo ({@code <directorio>/diario-NNNNNNNN.seg}) mapeados en memoria.
+ * <p>
+ * Cada registro es una cabecera de 48 bytes (longitud, CRC32C, fecha de emisión y
+ * totales en centavos) seguida de la factura codificada con {@link FacturaCodec}.
+ * Un registro que no cabe al final de un segmento deja la marca {@code -1} y va al siguiente.
+ * <p>
+ * {@link #registrar} vuelve cuando el registro ya está en disco. Un solo hilo hace el
+ * {@code force} del rango pendiente; mientras tanto otros hilos siguen agregando y
+ * todos ellos se confirman con el siguiente {@code force} (group commit).
+ * <p>
+ * El índice primario (número de factura → posición) vive en memoria y se reconstruye
+ * recorriendo los segmentos al arrancar; un registro cortado por una caída (CRC inválido)
+ * marca el final del diario. Un número emitido no cambia: registrar otra vez la misma factura
+ * no escribe nada y registrarla con otro contenido es un error. Los diarios escritos antes de
+ * esa regla pueden tener varias versiones de un número; el índice apunta a la última.
+ * <p>
+ * Depende de {@link ReglasFacturacionService} para que el historial de reglas esté cargado
+ * antes de que cualquier lector del diario decodifique facturas.
+ */
+@Service
+@DependsOn("reglasFacturacionService")
+public class DiarioFacturasService {
+
+    static final int CABECERA = 48;
+    private static final int FIN_SEGMENTO = -1;
+
+    private final Path directorio;
+    private final int tamanoSegmento;
+    private final List<Segmento> segmentos = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Long> indice = new ConcurrentHashMap<>();
+    private final List<Consumer<Registro>> oyentes = new CopyOnWriteArrayList<>();
+    // Notificar un rango y confirmarlo es un solo paso para quien agrega un oyente
+    private final Object notificacion = new Object();
+
+    // Protege la escritura y las posiciones; el force se hace fuera del lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hayPendientes = lock.newCondition();
+    private final Condition confirmado = lock.newCondition();
+    private long posicionEscrita;
+    private long posicionConfirmada;
+    private int registrosPendientes;
+    private IOException errorForce;
+    private volatile boolean cerrado;
+
+    private final Thread hiloForce;
+    private final Timer tiempoForce;
+    private final DistributionSummary registrosPorForce;
+
+    public DiarioFacturasService(@Value("${facturacion.diario.directorio:./data/diario}") String directorio,
+                                 @Value("${facturacion.diario.tamano-segmento:67108864}") int tamanoSegmento,
+                                 MeterRegistry registry) {
+        this.directorio = Paths.get(directorio);
+        this.tamanoSegmento = tamanoSegmento;
+        try {
+            Files.createDirectories(this.directorio);
+            recuperar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el diario de facturas en " + this.directorio, e);
+        }
+        this.posicionConfirmada = this.posicionEscrita;
+
+        tiempoForce = Timer.builder("facturacion.diario.force")
+                .description("Tiempo de cada sincronización del diario con el disco")
+                .publishPercentileHistogram()
+                .register(registry);
+        registrosPorForce = DistributionSummary.builder("facturacion.diario.grupo")
+                .description("Registros confirmados por cada sincronización")
+                .register(registry);
+        Gauge.builder("facturacion.diario.facturas", indice, Map::size)
+                .description("Facturas en el índice del diario")
+                .register(registry);
+
+        hiloForce = new Thread(this::sincronizar, "diario-force");
+        hiloForce.setDaemon(true);
+        hiloForce.start();
+    }
+
+    /**
+     * Agrega la factura al diario y espera a que esté en disco. Si el número ya está
+     * registrado con el mismo contenido devuelve esa posición sin escribir.
+     * @return posición del registro
+     * @throws IllegalStateException si el número ya está registrado con otro contenido
+     */
+    public long registrar(FacturaCompleta factura) {
+        return registrar(factura, false);
+    }
+
+    // Agrega otra versión aunque el número ya exista, como los diarios anteriores a la regla de
+    // números inmutables: los tests de los lectores la usan para armar esos diarios
+    long registrarVersion(FacturaCompleta factura) {
+        return registrar(factura, true);
+    }
+
+    private long registrar(FacturaCompleta factura, boolean nuevaVersion) {
+        String numero = factura.getNumeroFactura();
+        if (numero == null) {
+            throw new IllegalArgumentException("La factura no tiene número asignado");
+        }
+        byte[] datos = FacturaCodec.codificar(factura);
+        int longitudRegistro = CABECERA + datos.length;
+        if (longitudRegistro + 4 > tamanoSegmento) {
+            throw new IllegalArgumentException("La factura " + numero + " ocupa " + longitudRegistro
+                    + " bytes, más que un segmento del diario");
+        }
+
+        long fin;
+        long posicion;
+        lock.lock();
+        try {
+            if (cerrado) {
+                throw new IllegalStateException("El diario de facturas está cerrado");
+            }
+            Long anterior = indice.get(numero);
+            if (anterior != null) {
+                if (contenido(anterior).equals(ByteBuffer.wrap(datos))) {
+                    return anterior;
+                }
+                if (!nuevaVersion) {
+                    throw new IllegalStateException("La factura " + numero + " ya está registrada con otro contenido");
+                }
+            }
+
+            int offset = desplazamiento(posicionEscrita);
+            if (offset + longitudRegistro + 4 > tamanoSegmento) {
+                segmentoActual().buffer.putInt(offset, FIN_SEGMENTO);
+                abrirSegmento(segmentos.size());
+                posicionEscrita = (long) (segmentos.size() - 1) * tamanoSegmento;
+                offset = 0;
+            }
+            posicion = posicionEscrita;
+            escribir(segmentoActual().buffer, offset, factura, datos);
+            posicionEscrita += longitudRegistro;
+            registrosPendientes++;
+            fin = posicionEscrita;
+            hayPendientes.signal();
+
+            while (posicionConfirmada < fin) {
+                if (errorForce != null) {
+                    throw new UncheckedIOException("No se pudo sincronizar el diario", errorForce);
+                }
+                confirmado.awaitUninterruptibly();
+            }
+            // Solo se publica en el índice lo que ya está en disco
+            indice.put(numero, posicion);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear un segmento del diario", e);
+        } finally {
+            lock.unlock();
+        }
+        return posicion;
+    }
+
+    /**
+     * Última versión registrada de la factura, o {@code null}. No copia los datos:
+     * el registro apunta al segmento mapeado.
+     */
+    public Registro obtener(String numeroFactura) {
+        Long posicion = indice.get(numeroFactura);
+        return posicion != null ? registro(posicion) : null;
+    }
+
+    /**
+     * Registro en una posición devuelta por este diario (por ejemplo desde un índice secundario).
+     */
+    public Registro leer(long posicion) {
+        return registro(posicion);
+    }
+
+    public FacturaCompleta obtenerFactura(String numeroFactura) {
+        Registro registro = obtener(numeroFactura);
+        return registro != null ? registro.factura() : null;
+    }
+
+    public boolean contiene(String numeroFactura) {
+        return indice.containsKey(numeroFactura);
+    }
+
+    /**
+     * Posiciones de la última versión de cada factura, en ningún orden en particular.
+     */
+    public long[] posicionesVigentes() {
+        return indice.values().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public int getCantidadFacturas() {
+        return indice.size();
+    }
+
+    /**
+     * Posición tras el último registro confirmado.
+     */
+    public long getPosicionFinal() {
+        lock.lock();
+        try {
+            return posicionConfirmada;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recorre todos los registros confirmados en orden de escritura, incluidas las versiones anteriores.
+     */
+    public void recorrer(Consumer<Registro> consumidor) {
+        recorrerDesde(0, consumidor);
+    }
+
+    /**
+     * Recorre los registros confirmados a partir de la posición dada (inclusive).
+     */
+    public void recorrerDesde(long desde, Consumer<Registro> consumidor) {
+        long limite;
+        lock.lock();
+        try {
+            limite = posicionConfirmada;
+        } finally {
+            lock.unlock();
+        }
+        recorrer(desde, limite, consumidor);
+    }
+
+    /**
+     * El oyente recibe cada registro nuevo, en orden de escritura, desde el hilo de
+     * sincronización y antes de que {@link #registrar} vuelva. Debe ser rápido y manejar sus errores.
+     * <p>
+     * Devuelve la posición desde la que el oyente recibe registros: lo anterior ya estaba confirmado
+     * y notificado. Quien arma un índice recorre hasta ahí con {@link #recorrer(long, long, Consumer)}
+     * y lo demás le llega por el oyente, sin huecos ni repetidos.
+     */
+    public long agregarOyente(Consumer<Registro> oyente) {
+        synchronized (notificacion) {
+            oyentes.add(oyente);
+            return getPosicionFinal();
+        }
+    }
+
+    /**
+     * Recorre los registros entre dos posiciones; {@code limite} tiene que ser una posición
+     * ya confirmada, como la que devuelve {@link #agregarOyente}.
+     */
+    public void recorrer(long desde, long limite, Consumer<Registro> consumidor) {
+        long posicion = desde;
+        while (posicion < limite) {
+            Segmento segmento = segmentos.get(segmento(posicion));
+            int offset = desplazamiento(posicion);
+            int longitud = offset + 4 <= tamanoSegmento ? segmento.buffer.getInt(offset) : FIN_SEGMENTO;
+            if (longitud == FIN_SEGMENTO || longitud == 0) {
+                posicion = (long) (segmento(posicion) + 1) * tamanoSegmento;
+                continue;
+            }
+            consumidor.accept(registro(posicion));
+            posicion += CABECERA + longitud;
+        }
+    }
+
+    /**
+     * Registro del diario: cabecera con los totales y la factura codificada (vista de solo lectura).
+     */
+    public static final class Registro {
+        private final long posicion;
+        private final ByteBuffer datos;
+
+        Registro(long posicion, ByteBuffer datos) {
+            this.posicion = posicion;
+            this.datos = datos;
+        }
+
+        public long getPosicion() {
+            return posicion;
+        }
+
+        // Donde empieza el registro que sigue (para continuar un recorrido)
+        public long getPosicionSiguiente() {
+            return posicion + datos.limit();
+        }
+
+        public long getEmitido() {
+            return datos.getLong(8);
+        }
+
+        public long getSubtotalSinImpuestosCentavos() {
+            return datos.getLong(16);
+        }
+
+        public long getTotalDescuentoCentavos() {
+            return datos.getLong(24);
+        }
+
+        public long getIva15Centavos() {
+            return datos.getLong(32);
+        }
+
+        public long getValorTotalCentavos() {
+            return datos.getLong(40);
+        }
+
+        /**
+         * La factura codificada, sin copiar.
+         */
+        public ByteBuffer contenido() {
+            return datos.slice(CABECERA, datos.limit() - CABECERA);
+        }
+
+        public FacturaCompleta factura() {
+            return FacturaCodec.decodificar(contenido());
+        }
+
+        /**
+         * Fecha de emisión ("dd/MM/yyyy") sin decodificar la factura; la de la cabecera
+         * ({@link #getEmitido}) es cuándo se registró, que no es lo mismo.
+         */
+        public String fechaEmision() {
+            return FacturaCodec.fechaEmision(contenido());
+        }
+    }
+
+    // ---- escritura ----
+
+    private static void escribir(MappedByteBuffer buffer, int offset, FacturaCompleta factura, byte[] datos) {
+        ByteBuffer destino = buffer.slice(offset, CABECERA + datos.length);
+        destino.putInt(0, datos.length);
+        destino.putLong(8, System.currentTimeMillis());
+        destino.putLong(16, factura.getSubtotalSinImpuestosCentavos());
+        destino.putLong(24, factura.getTotalDescuentoCentavos());
+        destino.putLong(32, factura.getIva15Centavos());
+        destino.putLong(40, factura.getValorTotalCentavos());
+        destino.put(CABECERA, datos);
+        destino.putInt(4, crc(destino, CABECERA + datos.length));
+    }
+
+    // CRC de todo el registro salvo la longitud y el propio CRC
+    private static int crc(ByteBuffer registro, int longitud) {
+        CRC32C crc = new CRC32C();
+        crc.update(registro.slice(8, longitud - 8));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Hilo de sincronización: toma todo lo escrito hasta el momento, lo fuerza a disco
+     * y despierta a los que esperaban por ese rango.
+     */
+    private void sincronizar() {
+        while (true) {
+            long desde;
+            long hasta;
+            int registros;
+            lock.lock();
+            try {
+                while (posicionEscrita == posicionConfirmada && !cerrado) {
+                    hayPendientes.awaitUninterruptibly();
+                }
+                if (posicionEscrita == posicionConfirmada) {
+                    return;
+                }
+                desde = posicionConfirmada;
+                hasta = posicionEscrita;
+                registros = registrosPendientes;
+                registrosPendientes = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            long inicio = System.nanoTime();
+            try {
+                forzar(desde, hasta);
+            } catch (IOException | UncheckedIOException e) {
+                error = e instanceof IOException io ? io : ((UncheckedIOException) e).getCause();
+            }
+            tiempoForce.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            registrosPorForce.record(registros);
+            synchronized (notificacion) {
+                if (error == null) {
+                    notificar(desde, hasta);
+                }
+
+                lock.lock();
+                try {
+                    if (error != null) {
+                        errorForce = error;
+                    } else {
+                        posicionConfirmada = hasta;
+                    }
+                    confirmado.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private void notificar(long desde, long hasta) {
+        if (oyentes.isEmpty()) {
+            return;
+        }
+        recorrer(desde, hasta, registro -> {
+            for (Consumer<Registro> oyente : oyentes) {
+                try {
+                    oyente.accept(registro);
+                } catch (RuntimeException e) {
+                    // Un índice con problemas no debe frenar la emisión; se reconstruye desde el diario
+                }
+            }
+        });
+    }
+
+    private void forzar(long desde, long hasta) throws IOException {
+        int primero = segmento(desde);
+        int ultimo = segmento(hasta - 1);
+        for (int s = primero; s <= ultimo; s++) {
+            Segmento segmento = segmentos.get(s);
+            int inicio = s == primero ? desplazamiento(desde) : 0;
+            int fin = s == ultimo ? desplazamiento(hasta - 1) + 1 : tamanoSegmento;
+            segmento.buffer.force(inicio, fin - inicio);
+        }
+    }
+
+    // ---- lectura y recuperación ----
+
+    private Registro registro(long posicion) {
+        MappedByteBuffer buffer = segmentos.get(segmento(posicion)).buffer;
+        int offset = desplazamiento(posicion);
+        int longitud = buffer.getInt(offset);
+        return new Registro(posicion, buffer.slice(offset, CABECERA + longitud).asReadOnlyBuffer());
+    }
+
+    private ByteBuffer contenido(long posicion) {
+        return registro(posicion).contenido();
+    }
+
+    /**
+     * Mapea los segmentos existentes, reconstruye el índice y deja la posición
+     * de escritura tras el último registro válido.
+     */
+    private void recuperar() throws IOException {
+        List<Path> archivos;
+        try (Stream<Path> lista = Files.list(directorio)) {
+            archivos = lista.filter(p -> p.getFileName().toString().matches("diario-\\d{8}\\.seg")).sorted().toList();
+        }
+        for (int i = 0; i < archivos.size(); i++) {
+            if (!archivos.get(i).getFileName().toString().equals(nombreSegmento(i))) {
+                throw new IOException("Falta el segmento " + nombreSegmento(i) + " del diario");
+            }
+            abrirSegmento(i);
+        }
+        if (segmentos.isEmpty()) {
+            abrirSegmento(0);
+        }
+
+        for (int s = 0; s < segmentos.size(); s++) {
+            MappedByteBuffer buffer = segmentos.get(s).buffer;
+            int offset = 0;
+            while (true) {
+                int longitud = offset + 4 <= tamanoSegmento ? buffer.getInt(offset) : FIN_SEGMENTO;
+                if (longitud == FIN_SEGMENTO && s < segmentos.size() - 1) {
+                    break;
+                }
+                if (longitud <= 0 || offset + CABECERA + longitud > tamanoSegmento
+                        || buffer.getInt(offset + 4) != crc(buffer.slice(offset, CABECERA + longitud), CABECERA + longitud)) {
+                    if (s < segmentos.size() - 1) {
+                        throw new IOException("Registro inválido en " + nombreSegmento(s) + ", posición " + offset);
+                    }
+                    if (longitud != 0) {
+                        descartarDesde(s, offset);
+                    }
+                    posicionEscrita = (long) s * tamanoSegmento + offset;
+                    return;
+                }
+                long posicion = (long) s * tamanoSegmento + offset;
+                String numero = FacturaCodec.decodificar(buffer.slice(offset + CABECERA, longitud)).getNumeroFactura();
+                indice.put(numero, posicion);
+                offset += CABECERA + longitud;
+            }
+        }
+    }
+
+    // Un registro incompleto en el último segmento (caída a mitad de escritura) corta el diario ahí
+    private void descartarDesde(int segmento, int offset) {
+        MappedByteBuffer buffer = segmentos.get(segmento).buffer;
+        byte[] ceros = new byte[8192];
+        for (int i = offset; i < tamanoSegmento; i += ceros.length) {
+            buffer.put(i, ceros, 0, Math.min(ceros.length, tamanoSegmento - i));
+        }
+        buffer.force();
+    }
+
+    private void abrirSegmento(int numero) throws IOException {
+        Path archivo = directorio.resolve(nombreSegmento(numero));
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // El mapeo sigue válido después de cerrar el canal
+            segmentos.add(new Segmento(canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanoSegmento)));
+        }
+    }
+
+    private Segmento segmentoActual() {
+        return segmentos.get(segmentos.size() - 1);
+    }
+
+    private int segmento(long posicion) {
+        return (int) (posicion / tamanoSegmento);
+    }
+
+    private int desplazamiento(long posicion) {
+        return (int) (posicion % tamanoSegmento);
+    }
+
+    private static String nombreSegmento(int numero) {
+        return String.format("diario-%08d.seg", numero);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        lock.lock();
+        try {
+            cerrado = true;
+            hayPendientes.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            hiloForce.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Segmento(MappedByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,482 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.Cliente;
+import com.Facturacion.facturacion.util.IndiceInvertido;
+import com.Facturacion.facturacion.util.IndicePrefijos;
+import com.Facturacion.facturacion.util.Tokenizador;
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Directorio de clientes frecuentes para autocompletar el formulario de la factura.
+ * <p>
+ * Cada cliente guardado recibe un id fijo por RUC/cédula. La búsqueda usa pares de
+ * {@link IndicePrefijos}: uno con los dígitos del RUC y otro con las palabras normalizadas
+ * de la razón social ({@link Tokenizador}). Los clientes nuevos o cambiados van primero a una
+ * lista corta de recientes que se recorre entera; al llenarse ({@code max-recientes}) pasa a
+ * ser un segmento con sus propios índices, y dos segmentos vecinos se funden cuando el más
+ * viejo no es más del doble del nuevo (como en {@link IndiceInvertido}), así que agregar
+ * cuesta O(log n) amortizado y una consulta mira pocos segmentos. Los lectores no toman
+ * ningún bloqueo: todo lo que leen se publica junto en un {@link Estado} inmutable.
+ * <p>
+ * Se persiste en {@code <directorio>/clientes.dat}, de solo agregar, con una entrada (con CRC)
+ * por cliente guardado; cuando la mayoría de las entradas ya fueron reemplazadas se
+ * reescribe como una foto con un cliente por entrada. El documento se valida
+ * con {@link ValidadorEcuador} una sola vez, al guardar; al cargar y al buscar ya no.
+ */
+@Service
+public class DirectorioClientesService {
+
+    private static final String ARCHIVO = "clientes.dat";
+
+    private final ValidadorEcuador validador;
+    private final Path archivo;
+    private final int maxRecientes;
+
+    // Índices de un grupo de clientes (ids ordenados, sin repetir), con sus datos al armarlo
+    private record Segmento(int[] ids, IndicePrefijos porRuc, IndicePrefijos porNombre) {
+    }
+
+    // Lo que ven las búsquedas; clientes[id] para id < cantidad, segmentos del más viejo al más
+    // nuevo. De los recientes se guardan también las palabras de la razón social, para no
+    // separarlas en cada consulta
+    private record Estado(Cliente[] clientes, int cantidad, Segmento[] segmentos,
+                          int[] recientes, String[][] palabrasRecientes) {
+    }
+
+    private volatile Estado estado = new Estado(new Cliente[0], 0, new Segmento[0], new int[0], new String[0][]);
+
+    // Solo con el monitor tomado
+    private final Map<String, Integer> ids = new HashMap<>();
+    private Cliente[] clientes = new Cliente[1024];
+    private FileChannel salida;
+    private int entradas;
+
+    public DirectorioClientesService(ValidadorEcuador validador,
+                                     @Value("${facturacion.clientes.directorio:./data/clientes}") String directorio,
+                                     @Value("${facturacion.clientes.max-recientes:1024}") int maxRecientes,
+                                     MeterRegistry registry) {
+        this.validador = validador;
+        this.archivo = Paths.get(directorio).resolve(ARCHIVO);
+        this.maxRecientes = maxRecientes;
+        synchronized (this) {
+            try {
+                Files.createDirectories(archivo.getParent());
+                cargar();
+                if (hayQueCompactar()) {
+                    compactar();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo abrir el directorio de clientes " + archivo, e);
+            }
+            int[] todos = new int[ids.size()];
+            Arrays.setAll(todos, id -> id);
+            Segmento[] segmentos = todos.length > 0 ? new Segmento[]{segmento(todos)} : new Segmento[0];
+            estado = new Estado(clientes, ids.size(), segmentos, new int[0], new String[0][]);
+        }
+
+        Gauge.builder("facturacion.clientes.cantidad", this, s -> s.estado.cantidad())
+                .description("Clientes en el directorio")
+                .register(registry);
+        Gauge.builder("facturacion.clientes.indice.bytes", this, DirectorioClientesService::getBytesIndices)
+                .description("Memoria de los índices de prefijos del directorio")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Agrega o actualiza el cliente (por RUC/cédula). Lanza {@link IllegalArgumentException}
+     * si el documento no es válido.
+     */
+    public synchronized void guardar(Cliente cliente) {
+        String error = validador.getMensajeErrorDocumento(cliente.getRuc());
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        Integer id = ids.get(cliente.getRuc());
+        if (id != null && clientes[id].equals(cliente)) {
+            return;
+        }
+        try {
+            salida.write(codificar(cliente));
+            entradas++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar el cliente en " + archivo, e);
+        }
+        id = aplicar(cliente);
+
+        // Si ya estaba entre los recientes se quita su entrada anterior (con las palabras viejas)
+        Estado actual = estado;
+        int n = actual.recientes().length;
+        int[] recientes = new int[n + 1];
+        String[][] palabras = new String[n + 1][];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (actual.recientes()[i] != id) {
+                recientes[j] = actual.recientes()[i];
+                palabras[j++] = actual.palabrasRecientes()[i];
+            }
+        }
+        recientes[j] = id;
+        palabras[j++] = palabras(cliente.getRazonSocial());
+        if (j < recientes.length) {
+            recientes = Arrays.copyOf(recientes, j);
+            palabras = Arrays.copyOf(palabras, j);
+        }
+        if (recientes.length >= maxRecientes) {
+            estado = new Estado(clientes, ids.size(), agregarSegmento(actual.segmentos(), recientes),
+                    new int[0], new String[0][]);
+        } else {
+            estado = new Estado(clientes, ids.size(), actual.segmentos(), recientes, palabras);
+        }
+        if (hayQueCompactar()) {
+            try {
+                compactar();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo compactar el directorio de clientes " + archivo, e);
+            }
+        }
+    }
+
+    // La mayoría de las entradas del archivo ya fueron reemplazadas
+    private boolean hayQueCompactar() {
+        return entradas >= 2 * Math.max(ids.size(), maxRecientes);
+    }
+
+    /**
+     * Clientes cuyo RUC/cédula empieza con la consulta (si son solo dígitos) o cuya razón
+     * social tiene palabras que empiezan con cada palabra de la consulta ("pic esq" encuentra
+     * "PICANTERÍA LA ESQUINA"). Por RUC salen los menores; por nombre, los primeros que se
+     * encuentran empezando por los más recientes. En ambos casos se devuelven ordenados.
+     */
+    public List<Cliente> buscar(String consulta, int limite) {
+        Estado e = estado;
+        String q = consulta != null ? consulta.trim() : "";
+        if (q.isEmpty() || limite < 1) {
+            return List.of();
+        }
+        return soloDigitos(q) ? porRuc(e, q, limite) : porNombre(e, q, limite);
+    }
+
+    /**
+     * Cliente con ese RUC/cédula exacto, o {@code null}.
+     */
+    public Cliente obtener(String ruc) {
+        Estado e = estado;
+        for (Segmento segmento : e.segmentos()) {
+            IndicePrefijos indice = segmento.porRuc();
+            for (int i = indice.desde(ruc), fin = indice.hasta(ruc); i < fin; i++) {
+                Cliente cliente = e.clientes()[indice.documento(i)];
+                if (cliente.getRuc().equals(ruc)) {
+                    return cliente;
+                }
+            }
+        }
+        for (int id : e.recientes()) {
+            if (e.clientes()[id].getRuc().equals(ruc)) {
+                return e.clientes()[id];
+            }
+        }
+        return null;
+    }
+
+    public int getCantidad() {
+        return estado.cantidad();
+    }
+
+    public int getCantidadSegmentos() {
+        return estado.segmentos().length;
+    }
+
+    public long getBytesIndices() {
+        long bytes = 0;
+        for (Segmento segmento : estado.segmentos()) {
+            bytes += segmento.porRuc().getBytes() + segmento.porNombre().getBytes() + segmento.ids().length * 4L;
+        }
+        return bytes;
+    }
+
+    private List<Cliente> porRuc(Estado e, String prefijo, int limite) {
+        // El RUC de un id no cambia, así que lo que está en el índice sigue valiendo
+        // De cada segmento bastan los primeros en orden de RUC
+        Set<Integer> encontrados = new LinkedHashSet<>();
+        for (Segmento segmento : e.segmentos()) {
+            IndicePrefijos indice = segmento.porRuc();
+            int hasta = Math.min(indice.hasta(prefijo), indice.desde(prefijo) + limite);
+            for (int i = indice.desde(prefijo); i < hasta; i++) {
+                encontrados.add(indice.documento(i));
+            }
+        }
+        for (int id : e.recientes()) {
+            if (e.clientes()[id].getRuc().startsWith(prefijo)) {
+                encontrados.add(id);
+            }
+        }
+        return resultado(e, encontrados, Comparator.comparing(Cliente::getRuc), limite);
+    }
+
+    private List<Cliente> porNombre(Estado e, String consulta, int limite) {
+        String[] palabras = palabras(consulta);
+        if (palabras.length == 0) {
+            return List.of();
+        }
+
+        // Del más nuevo al más viejo hasta juntar el límite: los recientes y después los segmentos
+        Set<Integer> encontrados = new LinkedHashSet<>();
+        for (int i = e.recientes().length - 1; i >= 0 && encontrados.size() < limite; i--) {
+            if (coincide(e.palabrasRecientes()[i], palabras)) {
+                encontrados.add(e.recientes()[i]);
+            }
+        }
+        Set<Integer> vistos = new HashSet<>(encontrados);
+        for (int s = e.segmentos().length - 1; s >= 0 && encontrados.size() < limite; s--) {
+            // Se recorre el tramo de la palabra más selectiva y se comprueban todas
+            IndicePrefijos indice = e.segmentos()[s].porNombre();
+            int desde = 0;
+            int hasta = Integer.MAX_VALUE;
+            for (String palabra : palabras) {
+                int d = indice.desde(palabra);
+                int h = indice.hasta(palabra);
+                if (h - d < hasta - desde) {
+                    desde = d;
+                    hasta = h;
+                }
+            }
+            for (int i = desde; i < hasta && encontrados.size() < limite; i++) {
+                int id = indice.documento(i);
+                // Una razón social cambiada deja sus palabras viejas en el segmento hasta que se funde
+                if (vistos.add(id) && coincide(e.clientes()[id].getRazonSocial(), palabras)) {
+                    encontrados.add(id);
+                }
+            }
+        }
+        return resultado(e, encontrados, Comparator.comparing(Cliente::getRazonSocial).thenComparing(Cliente::getRuc), limite);
+    }
+
+    private static List<Cliente> resultado(Estado e, Set<Integer> ids, Comparator<Cliente> orden, int limite) {
+        List<Cliente> lista = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            lista.add(e.clientes()[id]);
+        }
+        lista.sort(orden);
+        return lista.size() > limite ? new ArrayList<>(lista.subList(0, limite)) : lista;
+    }
+
+    // Cada palabra de la consulta es prefijo de alguna palabra de la razón social
+    private static boolean coincide(String razonSocial, String[] palabras) {
+        for (String palabra : palabras) {
+            if (!Tokenizador.tienePalabraConPrefijo(razonSocial, palabra)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean coincide(String[] delCliente, String[] palabras) {
+        for (String palabra : palabras) {
+            boolean alguna = false;
+            for (String p : delCliente) {
+                if (p.startsWith(palabra)) {
+                    alguna = true;
+                    break;
+                }
+            }
+            if (!alguna) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String[] palabras(String texto) {
+        List<String> palabras = new ArrayList<>(8);
+        Tokenizador.tokenizar(texto, palabras::add);
+        return palabras.toArray(new String[0]);
+    }
+
+    private int aplicar(Cliente cliente) {
+        Integer id = ids.get(cliente.getRuc());
+        if (id == null) {
+            id = ids.size();
+            if (id == clientes.length) {
+                clientes = Arrays.copyOf(clientes, clientes.length * 2);
+            }
+            ids.put(cliente.getRuc(), id);
+        }
+        clientes[id] = cliente;
+        return id;
+    }
+
+    // Los recientes pasan a un segmento nuevo; después se funden los vecinos parejos
+    private Segmento[] agregarSegmento(Segmento[] actuales, int[] recientes) {
+        List<Segmento> segmentos = new ArrayList<>(Arrays.asList(actuales));
+        int[] nuevos = recientes.clone();
+        Arrays.sort(nuevos);
+        segmentos.add(segmento(nuevos));
+        int n;
+        while ((n = segmentos.size()) >= 2
+                && segmentos.get(n - 2).ids().length <= 2 * segmentos.get(n - 1).ids().length) {
+            Segmento nuevo = segmentos.remove(n - 1);
+            Segmento viejo = segmentos.remove(n - 2);
+            segmentos.add(segmento(unir(viejo.ids(), nuevo.ids())));
+        }
+        return segmentos.toArray(new Segmento[0]);
+    }
+
+    // Índices de esos clientes con sus datos actuales (así se descartan las palabras viejas)
+    private Segmento segmento(int[] grupo) {
+        IndicePrefijos.Escritor rucs = new IndicePrefijos.Escritor();
+        IndicePrefijos.Escritor nombres = new IndicePrefijos.Escritor();
+        Set<String> palabras = new HashSet<>();
+        for (int id : grupo) {
+            rucs.agregar(clientes[id].getRuc(), id);
+            palabras.clear();
+            Tokenizador.tokenizar(clientes[id].getRazonSocial(), palabras::add);
+            for (String palabra : palabras) {
+                nombres.agregar(palabra, id);
+            }
+        }
+        return new Segmento(grupo, rucs.construir(), nombres.construir());
+    }
+
+    private static int[] unir(int[] a, int[] b) {
+        int[] union = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int x = j >= b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (n == 0 || union[n - 1] != x) {
+                union[n++] = x;
+            }
+        }
+        return Arrays.copyOf(union, n);
+    }
+
+    /**
+     * Lee el archivo; una entrada incompleta o dañada al final (una escritura cortada) se descarta.
+     */
+    private void cargar() throws IOException {
+        if (!Files.exists(archivo)) {
+            salida = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return;
+        }
+        ByteBuffer datos = ByteBuffer.wrap(Files.readAllBytes(archivo));
+        int valido = 0;
+        while (datos.remaining() >= 8) {
+            int crc = datos.getInt();
+            int longitud = datos.getInt();
+            if (longitud <= 0 || longitud > datos.remaining()) {
+                break;
+            }
+            ByteBuffer entrada = datos.slice(datos.position(), longitud);
+            if (crc(entrada.duplicate()) != crc) {
+                break;
+            }
+            datos.position(datos.position() + longitud);
+            aplicar(new Cliente(texto(entrada), texto(entrada), texto(entrada), texto(entrada), texto(entrada)));
+            entradas++;
+            valido = datos.position();
+        }
+        salida = FileChannel.open(archivo, StandardOpenOption.WRITE);
+        salida.truncate(valido);
+        salida.position(valido);
+    }
+
+    // Foto con un cliente por entrada; reemplaza al archivo de una vez
+    private void compactar() throws IOException {
+        Path temporal = archivo.resolveSibling(ARCHIVO + ".tmp");
+        try (FileChannel foto = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int id = 0; id < ids.size(); id++) {
+                ByteBuffer entrada = codificar(clientes[id]);
+                while (entrada.hasRemaining()) {
+                    foto.write(entrada);
+                }
+            }
+            foto.force(true);
+        }
+        salida.close();
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        salida = FileChannel.open(archivo, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        entradas = ids.size();
+    }
+
+    private static ByteBuffer codificar(Cliente cliente) {
+        byte[][] campos = {
+                bytes(cliente.getRazonSocial()), bytes(cliente.getRuc()), bytes(cliente.getDireccion()),
+                bytes(cliente.getCorreo()), bytes(cliente.getTelefono())
+        };
+        int longitud = 0;
+        for (byte[] campo : campos) {
+            longitud += 2 + campo.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8 + longitud);
+        buffer.putInt(0).putInt(longitud);
+        for (byte[] campo : campos) {
+            buffer.putShort((short) campo.length).put(campo);
+        }
+        buffer.putInt(0, crc(buffer.slice(8, longitud)));
+        return buffer.flip();
+    }
+
+    private static byte[] bytes(String texto) {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Dato de cliente demasiado largo");
+        }
+        return bytes;
+    }
+
+    private static String texto(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer datos) {
+        CRC32C crc = new CRC32C();
+        crc.update(datos);
+        return (int) crc.getValue();
+    }
+
+    private static boolean soloDigitos(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() throws IOException {
+        if (salida != null) {
+            salida.close();
+        }
+    }
+}
@@ -1,40 +1,94 @@
 package com.Facturacion.facturacion.service;
 
 import com.Facturacion.facturacion.models.Factura;
+import com.Facturacion.facturacion.models.LoteFacturas;
+import com.Facturacion.facturacion.util.CalculoLote;
+import com.Facturacion.facturacion.util.Dinero;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 @Service
 public class FacturaService {
 
-    // Método para calcular factura con descuentos
+    // Filas por tarea del cálculo en lote; por debajo no conviene dividir más
+    static final int UMBRAL_LOTE = 1 << 15;
+
+    // Método para calcular factura con descuentos (aritmética en centavos, redondeo HALF_UP)
+    // con las reglas vigentes (ver ReglasFacturacion)
     public void calcularFactura(Factura factura) {
+        ReglasFacturacion reglas = ReglasFacturacion.vigentes();
+
         // Calcular subtotal base
-        double subtotal = factura.getCantidad() * factura.getPrecioUnitario();
-
-        // Aplicar descuento según cantidad
-        double descuento = 0;
-        if (factura.getCantidad() >= 8) {
-            descuento = 10; // 10% de descuento para 8 o más productos
-        } else if (factura.getCantidad() >= 4) {
-            descuento = 5; // 5% de descuento para 4 o más productos
-        }
+        long subtotal = Dinero.importe(factura.getCantidad(), Dinero.precioUnitario(factura.getPrecioUnitario()));
+
+        // Aplicar descuento según el tramo de cantidad
+        int descuento = reglas.descuento(factura.getCantidad());
 
         // Guardar el porcentaje de descuento
         factura.setDescuento(descuento);
 
         // Aplicar descuento al subtotal
-        double montoDescuento = subtotal * (descuento / 100);
+        long montoDescuento = Dinero.porcentaje(subtotal, descuento * 100);
         subtotal = subtotal - montoDescuento;
 
-        // Calcular IVA del 15%
-        double iva = subtotal * 0.15;
+        // Calcular IVA con la tasa del producto (la general, salvo que tenga IVA 0%, exento...)
+        long iva = Dinero.porcentaje(subtotal, reglas.tasaIva(reglas.fila(factura.getCodigo())));
 
         // Calcular total
-        double total = subtotal + iva;
+        long total = subtotal + iva;
 
         // Asignar valores a la factura
-        factura.setSubtotal(subtotal);
-        factura.setIva(iva);
-        factura.setTotal(total);
+        factura.setSubtotal(Dinero.aDouble(subtotal));
+        factura.setIva(Dinero.aDouble(iva));
+        factura.setTotal(Dinero.aDouble(total));
+        factura.setVersionReglas(reglas.getVersion());
+    }
+
+    /**
+     * Calcula todas las filas del lote con los mismos resultados que {@link #calcularFactura}
+     * aplicado a cada una (ver {@link CalculoLote}). Los lotes de más de {@link #UMBRAL_LOTE}
+     * filas se reparten en tramos en el {@link ForkJoinPool} común. Todas las filas se calculan
+     * con las mismas reglas, aunque se publiquen otras a mitad del lote.
+     */
+    public void calcularLote(LoteFacturas lote) {
+        ReglasFacturacion reglas = ReglasFacturacion.vigentes();
+        if (lote.getTamano() > UMBRAL_LOTE) {
+            ForkJoinPool.commonPool().invoke(new TramoLote(lote, reglas, 0, lote.getTamano()));
+        } else {
+            CalculoLote.calcular(lote, reglas, 0, lote.getTamano());
+        }
+        lote.setVersionReglas(reglas.getVersion());
+    }
+
+    /**
+     * Un tramo de filas del lote; se divide a la mitad hasta llegar al {@link #UMBRAL_LOTE}.
+     */
+    private static final class TramoLote extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LoteFacturas lote;
+        private final ReglasFacturacion reglas;
+        private final int inicio;
+        private final int fin;
+
+        TramoLote(LoteFacturas lote, ReglasFacturacion reglas, int inicio, int fin) {
+            this.lote = lote;
+            this.reglas = reglas;
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - inicio > UMBRAL_LOTE) {
+                int medio = (inicio + fin) >>> 1;
+                invokeAll(new TramoLote(lote, reglas, inicio, medio), new TramoLote(lote, reglas, medio, fin));
+            } else {
+                CalculoLote.calcular(lote, reglas, inicio, fin);
+            }
+        }
     }
 }
@@ -0,0 +1,276 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Índice secundario de facturas emitidas por cliente (RUC/cédula) y fecha de emisión.
+ * <p>
+ * En memoria es un mapa ordenado por (ruc, fecha, número) → posición en el diario, así
+ * que una consulta por rango cuesta O(log n + resultados). Se mantiene al día como
+ * oyente del {@link DiarioFacturasService} y se persiste en {@code <directorio>/ruc-fecha.idx},
+ * un archivo de solo-agregar con una entrada (con CRC) por registro del diario.
+ * Al arrancar se carga el archivo y se completa con lo que el diario tenga después de la
+ * última entrada; si el archivo falta, está dañado o no corresponde al diario, se
+ * reconstruye recorriendo el diario completo.
+ */
+@Service
+public class IndiceClienteFechaService {
+
+    private static final String ARCHIVO = "ruc-fecha.idx";
+    private static final Comparator<Clave> ORDEN = Comparator.comparing(Clave::ruc)
+            .thenComparingInt(Clave::fecha)
+            .thenComparing(Clave::numeroFactura);
+
+    private final DiarioFacturasService diario;
+    private final Path archivo;
+    private final ConcurrentSkipListMap<Clave, Long> porClienteFecha = new ConcurrentSkipListMap<>(ORDEN);
+    private final ConcurrentMap<String, Clave> porNumero = new ConcurrentHashMap<>();
+    private FileChannel salida;
+    private long posicionCubierta;
+
+    public IndiceClienteFechaService(DiarioFacturasService diario,
+                                     @Value("${facturacion.indices.directorio:./data/indices}") String directorio) {
+        this.diario = diario;
+        this.archivo = Paths.get(directorio).resolve(ARCHIVO);
+        try {
+            Files.createDirectories(this.archivo.getParent());
+            // El oyente va primero y espera a que el índice se ponga al día hasta donde empieza
+            synchronized (this) {
+                long desde = diario.agregarOyente(this::indexar);
+                if (!cargar()) {
+                    reconstruir();
+                }
+                diario.recorrer(posicionCubierta, desde, this::indexar);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el índice " + this.archivo, e);
+        }
+    }
+
+    public record Clave(String ruc, int fecha, String numeroFactura) {
+    }
+
+    public record Resultado(String numeroFactura, LocalDate fechaEmision, DiarioFacturasService.Registro registro) {
+    }
+
+    /**
+     * Página de resultados; {@code siguiente} es el cursor para pedir la próxima o {@code null} si no hay más.
+     */
+    public record Pagina(List<Resultado> facturas, String siguiente) {
+    }
+
+    /**
+     * Facturas del cliente entre dos fechas (inclusive), en orden de fecha y número.
+     * @param despuesDe cursor devuelto por la página anterior, o {@code null} para empezar
+     */
+    public Pagina buscar(String ruc, LocalDate desde, LocalDate hasta, String despuesDe, int limite) {
+        Clave inicio = new Clave(ruc, aEntero(desde), "");
+        Clave fin = new Clave(ruc, aEntero(hasta), "\uffff");
+        if (ORDEN.compare(inicio, fin) > 0) {
+            return new Pagina(List.of(), null);
+        }
+
+        NavigableMap<Clave, Long> rango = porClienteFecha.subMap(inicio, true, fin, true);
+        if (despuesDe != null && !despuesDe.isEmpty()) {
+            Clave cursor = cursor(ruc, despuesDe);
+            rango = rango.tailMap(cursor, false);
+        }
+
+        List<Resultado> facturas = new ArrayList<>(Math.min(limite, 64));
+        Iterator<Map.Entry<Clave, Long>> it = rango.entrySet().iterator();
+        Clave ultima = null;
+        while (facturas.size() < limite && it.hasNext()) {
+            Map.Entry<Clave, Long> entrada = it.next();
+            Clave clave = entrada.getKey();
+            facturas.add(new Resultado(clave.numeroFactura(), aFecha(clave.fecha()), diario.leer(entrada.getValue())));
+            ultima = clave;
+        }
+        String siguiente = ultima != null && it.hasNext() ? ultima.fecha() + ":" + ultima.numeroFactura() : null;
+        return new Pagina(facturas, siguiente);
+    }
+
+    public int getCantidad() {
+        return porNumero.size();
+    }
+
+    /**
+     * Vacía el índice y lo vuelve a armar desde el diario.
+     */
+    public synchronized void reconstruir() throws IOException {
+        // Lo que ya llegó por el oyente puede estar más allá de lo confirmado todavía
+        long hasta = Math.max(diario.getPosicionFinal(), posicionCubierta);
+        porClienteFecha.clear();
+        porNumero.clear();
+        posicionCubierta = 0;
+        if (salida != null) {
+            salida.close();
+        }
+        salida = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        diario.recorrer(0, hasta, this::indexar);
+    }
+
+    // Oyente del diario: una entrada por registro, en orden de escritura
+    private synchronized void indexar(DiarioFacturasService.Registro registro) {
+        if (registro.getPosicion() < posicionCubierta) {
+            return;
+        }
+        FacturaCompleta factura = registro.factura();
+        String ruc = factura.getRucCliente() != null ? factura.getRucCliente() : "";
+        Clave clave = new Clave(ruc, fechaEmision(factura.getFechaEmision()), factura.getNumeroFactura());
+        aplicar(clave, registro.getPosicion(), registro.getPosicionSiguiente());
+        try {
+            salida.write(codificar(clave, registro.getPosicion(), registro.getPosicionSiguiente()));
+        } catch (IOException e) {
+            // El archivo queda incompleto: se descarta y el próximo arranque lo reconstruye
+            try {
+                salida.close();
+                Files.deleteIfExists(archivo);
+            } catch (IOException ignorada) {
+                // Nada más que hacer
+            }
+            throw new UncheckedIOException("No se pudo actualizar el índice " + archivo, e);
+        }
+    }
+
+    // La versión nueva de una factura reemplaza a la anterior (que pudo tener otro cliente o fecha)
+    private void aplicar(Clave clave, long posicion, long siguiente) {
+        Clave anterior = porNumero.put(clave.numeroFactura(), clave);
+        if (anterior != null && !anterior.equals(clave)) {
+            porClienteFecha.remove(anterior);
+        }
+        porClienteFecha.put(clave, posicion);
+        posicionCubierta = Math.max(posicionCubierta, siguiente);
+    }
+
+    /**
+     * Lee el archivo del índice. Devuelve false si hay que reconstruirlo.
+     */
+    private boolean cargar() throws IOException {
+        if (!Files.exists(archivo)) {
+            return false;
+        }
+        ByteBuffer datos = ByteBuffer.wrap(Files.readAllBytes(archivo));
+        int valido = 0;
+        while (datos.remaining() >= 8) {
+            int crc = datos.getInt();
+            int longitud = datos.getInt();
+            if (longitud <= 0 || longitud > datos.remaining()) {
+                break;
+            }
+            ByteBuffer entrada = datos.slice(datos.position(), longitud);
+            if (crc(entrada.duplicate()) != crc) {
+                break;
+            }
+            datos.position(datos.position() + longitud);
+
+            String ruc = texto(entrada);
+            int fecha = entrada.getInt();
+            String numero = texto(entrada);
+            long posicion = entrada.getLong();
+            long siguiente = entrada.getLong();
+            aplicar(new Clave(ruc, fecha, numero), posicion, siguiente);
+            valido = datos.position();
+        }
+
+        // Un índice que va más allá del diario es de otro diario (o de uno que se perdió)
+        if (posicionCubierta > diario.getPosicionFinal()) {
+            return false;
+        }
+        salida = FileChannel.open(archivo, StandardOpenOption.WRITE);
+        salida.truncate(valido);
+        salida.position(valido);
+        return true;
+    }
+
+    private static ByteBuffer codificar(Clave clave, long posicion, long siguiente) {
+        byte[] ruc = clave.ruc().getBytes(StandardCharsets.UTF_8);
+        byte[] numero = clave.numeroFactura().getBytes(StandardCharsets.UTF_8);
+        int longitud = 2 + ruc.length + 4 + 2 + numero.length + 16;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + longitud);
+        buffer.putInt(0).putInt(longitud);
+        buffer.putShort((short) ruc.length).put(ruc).putInt(clave.fecha());
+        buffer.putShort((short) numero.length).put(numero);
+        buffer.putLong(posicion).putLong(siguiente);
+        buffer.putInt(0, crc(buffer.slice(8, longitud)));
+        return buffer.flip();
+    }
+
+    private static String texto(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer datos) {
+        CRC32C crc = new CRC32C();
+        crc.update(datos);
+        return (int) crc.getValue();
+    }
+
+    private Clave cursor(String ruc, String cursor) {
+        int separador = cursor.indexOf(':');
+        if (separador <= 0) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        try {
+            return new Clave(ruc, Integer.parseInt(cursor.substring(0, separador)), cursor.substring(separador + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+    }
+
+    // "dd/MM/yyyy" → yyyyMMdd
+    static int fechaEmision(String fecha) {
+        if (fecha == null || fecha.length() != 10) {
+            return 0;
+        }
+        try {
+            int dia = Integer.parseInt(fecha, 0, 2, 10);
+            int mes = Integer.parseInt(fecha, 3, 5, 10);
+            int anio = Integer.parseInt(fecha, 6, 10, 10);
+            return anio * 10_000 + mes * 100 + dia;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static int aEntero(LocalDate fecha) {
+        return fecha.getYear() * 10_000 + fecha.getMonthValue() * 100 + fecha.getDayOfMonth();
+    }
+
+    static LocalDate aFecha(int fecha) {
+        return fecha == 0 ? null : LocalDate.of(fecha / 10_000, fecha / 100 % 100, fecha % 100);
+    }
+
+    @PreDestroy
+    public synchronized void cerrar() throws IOException {
+        if (salida != null) {
+            salida.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.Facturacion.facturacion.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métricas del render de PDFs: un timer con histograma por etapa del documento
+ * (facturacion.pdf.etapa{etapa=...}) y el tamaño y cantidad de items de cada PDF.
+ */
+@Component
+public class MetricasPdf {
+
+    public enum Etapa {
+        FUENTES("fuentes"),
+        CABECERA("cabecera"),
+        CODIGO_BARRAS("codigo_barras"),
+        CLIENTE("cliente"),
+        ITEMS("items"),
+        TOTALES("totales"),
+        CIERRE("cierre");
+
+        private final String etiqueta;
+
+        Etapa(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+    }
+
+    private final Timer[] timers = new Timer[Etapa.values().length];
+    private final Timer total;
+    private final DistributionSummary tamano;
+    private final DistributionSummary items;
+    private final AtomicLong ultimoTamano = new AtomicLong();
+    private final AtomicLong ultimaCantidadItems = new AtomicLong();
+
+    public MetricasPdf(MeterRegistry registry) {
+        for (Etapa etapa : Etapa.values()) {
+            timers[etapa.ordinal()] = Timer.builder("facturacion.pdf.etapa")
+                    .description("Tiempo de cada etapa del render del PDF")
+                    .tag("etapa", etapa.etiqueta)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        total = Timer.builder("facturacion.pdf.render")
+                .description("Tiempo total del render del PDF")
+                .publishPercentileHistogram()
+                .register(registry);
+        tamano = DistributionSummary.builder("facturacion.pdf.tamano")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        items = DistributionSummary.builder("facturacion.pdf.items")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("facturacion.pdf.ultimo.tamano", ultimoTamano, AtomicLong::get)
+                .description("Tamaño del último PDF generado")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("facturacion.pdf.ultimo.items", ultimaCantidadItems, AtomicLong::get)
+                .description("Cantidad de items del último PDF generado")
+                .register(registry);
+    }
+
+    public Medicion iniciar() {
+        return new Medicion();
+    }
+
+    /**
+     * Cronómetro de un render. Cada llamada a {@link #etapa} suma el tiempo
+     * transcurrido desde la marca anterior; una etapa puede medirse en varios tramos.
+     */
+    public class Medicion {
+
+        private final long inicio = System.nanoTime();
+        private final long[] acumulado = new long[timers.length];
+        private long marca = inicio;
+
+        public void etapa(Etapa etapa) {
+            long ahora = System.nanoTime();
+            acumulado[etapa.ordinal()] += ahora - marca;
+            marca = ahora;
+        }
+
+        public void finalizar(long bytes, int cantidadItems) {
+            for (int i = 0; i < timers.length; i++) {
+                timers[i].record(acumulado[i], TimeUnit.NANOSECONDS);
+            }
+            total.record(marca - inicio, TimeUnit.NANOSECONDS);
+            tamano.record(bytes);
+            items.record(cantidadItems);
+            ultimoTamano.set(bytes);
+            ultimaCantidadItems.set(cantidadItems);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU de PDFs ya generados, acotada por tamaño total en bytes.
+ * La clave es un hash SHA-256 de todo lo que se imprime en la factura,
+ * y se usa también como ETag débil en /generarPdf: dos renders de la misma factura son
+ * equivalentes pero no idénticos byte a byte (iText fecha el documento y le pone un id).
+ */
+@Service
+public class PdfCacheService {
+
+    private final long maxBytes;
+    private final int maxBytesEntrada;
+    private final LinkedHashMap<String, byte[]> pdfs = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesActuales;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+
+    public PdfCacheService(@Value("${facturacion.pdf.cache.max-bytes:67108864}") long maxBytes,
+                           @Value("${facturacion.pdf.cache.max-bytes-entrada:4194304}") int maxBytesEntrada,
+                           MeterRegistry registry) {
+        this.maxBytes = maxBytes;
+        this.maxBytesEntrada = maxBytesEntrada;
+
+        FunctionCounter.builder("facturacion.pdf.cache.aciertos", aciertos, AtomicLong::get)
+                .description("PDFs servidos desde la cache").register(registry);
+        FunctionCounter.builder("facturacion.pdf.cache.fallos", fallos, AtomicLong::get)
+                .description("PDFs que hubo que generar").register(registry);
+        Gauge.builder("facturacion.pdf.cache.bytes", this, PdfCacheService::getBytesActuales)
+                .baseUnit("bytes").register(registry);
+    }
+
+    /**
+     * ETag débil ({@code W/"..."}) calculado sobre el contenido de la factura, no sobre los
+     * bytes del PDF.
+     */
+    public String etag(FacturaCompleta factura) {
+        return "W/\"" + hashContenido(factura) + '"';
+    }
+
+    public synchronized byte[] obtener(String etag) {
+        byte[] pdf = pdfs.get(etag);
+        if (pdf != null) {
+            aciertos.incrementAndGet();
+        } else {
+            fallos.incrementAndGet();
+        }
+        return pdf;
+    }
+
+    public synchronized void guardar(String etag, byte[] pdf) {
+        if (pdf == null || pdf.length > maxBytesEntrada) {
+            return;
+        }
+        byte[] anterior = pdfs.put(etag, pdf);
+        bytesActuales += pdf.length - (anterior != null ? anterior.length : 0);
+
+        // Desalojar los menos usados hasta volver al límite
+        Iterator<Map.Entry<String, byte[]>> it = pdfs.entrySet().iterator();
+        while (bytesActuales > maxBytes && it.hasNext()) {
+            bytesActuales -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    public int getMaxBytesEntrada() {
+        return maxBytesEntrada;
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public synchronized long getBytesActuales() {
+        return bytesActuales;
+    }
+
+    private String hashContenido(FacturaCompleta factura) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            // Emisor y datos de la factura
+            escribir(out, factura.getRucEmisor());
+            escribir(out, factura.getNombreEmpresa());
+            escribir(out, factura.getNombrePropietario());
+            escribir(out, factura.getDireccionEmisor());
+            escribir(out, factura.getDireccionSucursal());
+            out.writeBoolean(factura.isObligadoContabilidad());
+            escribir(out, factura.getNumeroFactura());
+            escribir(out, factura.getNumeroAutorizacion());
+            escribir(out, factura.getFechaEmision());
+            escribir(out, factura.getFechaAutorizacion());
+            escribir(out, factura.getAmbiente());
+            escribir(out, factura.getTipoEmision());
+            escribir(out, factura.getClaveAcceso());
+
+            // Cliente
+            escribir(out, factura.getRazonSocialCliente());
+            escribir(out, factura.getRucCliente());
+            escribir(out, factura.getDireccionCliente());
+            escribir(out, factura.getCorreoCliente());
+            escribir(out, factura.getTelefonoCliente());
+            escribir(out, factura.getGuiaRemision());
+
+            // Items
+            out.writeInt(factura.getItems().size());
+            for (ItemFactura item : factura.getItems()) {
+                out.writeInt(item.getNumero());
+                escribir(out, item.getCodigo());
+                escribir(out, item.getDescripcion());
+                out.writeInt(item.getCantidad());
+                out.writeDouble(item.getPrecioUnitario());
+                out.writeDouble(item.getDescuento());
+                out.writeDouble(item.getTotal());
+            }
+
+            // Forma de pago y totales
+            escribir(out, factura.getCodigoFormaPago());
+            escribir(out, factura.getFormaPago());
+            escribir(out, factura.getPlazo());
+            out.writeDouble(factura.getSubtotal15());
+            out.writeDouble(factura.getSubtotal0());
+            out.writeDouble(factura.getSubtotalNoObjetoIva());
+            out.writeDouble(factura.getSubtotalExentoIva());
+            out.writeDouble(factura.getSubtotalSinImpuestos());
+            out.writeDouble(factura.getTotalDescuento());
+            out.writeDouble(factura.getServicio());
+            out.writeDouble(factura.getIce());
+            out.writeDouble(factura.getIva15());
+            out.writeDouble(factura.getValorTotal());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void escribir(DataOutputStream out, String valor) throws IOException {
+        if (valor == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeUTF(valor);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Re-emisión masiva: genera en paralelo los PDFs de facturas ya registradas en el diario y
+ * los escribe como un ZIP en streaming. Se imprime lo que quedó en el diario para cada número,
+ * con las reglas con que se emitió; aquí no se asignan números ni se recalcula nada.
+ * Las entradas salen en el orden de la lista apenas su PDF está listo; como
+ * máximo hay {@code hilos * 2} PDFs renderizados esperando en memoria. Si la salida falla
+ * (el cliente se desconectó) se cancelan los PDFs pendientes.
+ */
+@Service
+public class PdfLoteService {
+
+    public static final String MANIFIESTO = "manifiesto.csv";
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
+    @Value("${facturacion.pdf.lote.max-facturas:1000}")
+    private int maxFacturas;
+
+    private final int hilos;
+    private final ExecutorService pool;
+
+    public PdfLoteService(@Value("${facturacion.pdf.lote.hilos:0}") int hilos) {
+        this.hilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.hilos, r -> {
+            Thread t = new Thread(r, "pdf-lote-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getMaxFacturas() {
+        return maxFacturas;
+    }
+
+    /**
+     * Escribe el ZIP con los PDFs de esos números en la salida (no la cierra). Si una factura
+     * falla (por ejemplo, el número no está registrado) se anota en el manifiesto y se
+     * continúa con las demás.
+     */
+    public void generarZip(List<String> numeros, OutputStream salida) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(salida);
+        StringBuilder manifiesto = new StringBuilder("indice,archivo,numeroFactura,estado,mensaje\n");
+
+        int ventana = hilos * 2;
+        Deque<Future<byte[]>> pendientes = new ArrayDeque<>(ventana);
+        int siguiente = 0;
+
+        try {
+            for (int i = 0; i < numeros.size(); i++) {
+                while (siguiente < numeros.size() && pendientes.size() < ventana) {
+                    String numero = numeros.get(siguiente++);
+                    pendientes.addLast(pool.submit(() -> renderizar(numero)));
+                }
+
+                String numero = numeros.get(i);
+                try {
+                    byte[] pdf = pendientes.removeFirst().get();
+                    String archivo = String.format("%04d_factura_%s.pdf", i + 1, numero);
+                    zip.putNextEntry(new ZipEntry(archivo));
+                    zip.write(pdf);
+                    zip.closeEntry();
+                    zip.flush();
+                    agregarLinea(manifiesto, i + 1, archivo, numero, "OK", "");
+                } catch (ExecutionException e) {
+                    Throwable causa = e.getCause() != null ? e.getCause() : e;
+                    agregarLinea(manifiesto, i + 1, "", numero, "ERROR", causa.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Generación del lote interrumpida", e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Nadie va a leer los PDFs que faltan: se liberan los hilos para otros lotes
+            pendientes.forEach(f -> f.cancel(true));
+            throw e;
+        }
+
+        zip.putNextEntry(new ZipEntry(MANIFIESTO));
+        zip.write(manifiesto.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+    }
+
+    private byte[] renderizar(String numero) throws Exception {
+        FacturaCompleta factura = diario.obtenerFactura(numero);
+        if (factura == null) {
+            throw new IllegalArgumentException("La factura " + numero + " no está registrada");
+        }
+        return pdfService.generarFacturaPdf(factura);
+    }
+
+    private void agregarLinea(StringBuilder manifiesto, int indice, String archivo, String numero, String estado, String mensaje) {
+        manifiesto.append(indice).append(',')
+                .append(archivo).append(',')
+                .append(numero != null ? numero : "").append(',')
+                .append(estado).append(',')
+                .append('"').append(mensaje != null ? mensaje.replace("\"", "\"\"") : "").append('"')
+                .append('\n');
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        pool.shutdownNow();
+    }
+}
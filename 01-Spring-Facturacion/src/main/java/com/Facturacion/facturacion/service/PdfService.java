@@ -2,12 +2,12 @@ package com.Facturacion.facturacion.service;
 
 import com.Facturacion.facturacion.models.FacturaCompleta;
 import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.util.Dinero;
+import com.Facturacion.facturacion.util.SalidaContador;
 import com.itextpdf.barcodes.BarcodeInter25;
-import com.itextpdf.io.font.constants.StandardFonts;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.colors.DeviceRgb;
 import com.itextpdf.kernel.font.PdfFont;
-import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
@@ -19,79 +19,86 @@ import com.itextpdf.layout.properties.HorizontalAlignment;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
 import com.itextpdf.layout.properties.VerticalAlignment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 @Service
 public class PdfService {
 
-    private static final DeviceRgb AZUL_OSCURO = new DeviceRgb(0, 51, 102);
+    static final DeviceRgb AZUL_OSCURO = new DeviceRgb(0, 51, 102);
     private static final DeviceRgb AZUL_CLARO = new DeviceRgb(200, 220, 240);
     private static final DeviceRgb ROJO = new DeviceRgb(255, 0, 0);
 
+    private static final String[] ENCABEZADOS_ITEMS = {"No.", "CODIGO", "DESCRIPCION", "CANTIDAD", "PRECIO U.", "DESC.", "TOTAL"};
+
+    // A partir de cuántos items se usa el modo tabla grande y cada cuántas filas se vacía
+    @Value("${facturacion.pdf.tabla-grande.umbral:500}")
+    private int umbralTablaGrande;
+
+    @Value("${facturacion.pdf.tabla-grande.lote:200}")
+    private int loteTablaGrande;
+
+    @Autowired
+    private RecursosPdf recursos;
+
+    @Autowired
+    private PlantillaEmisorCache plantillaEmisor;
+
+    @Autowired
+    private MetricasPdf metricas;
+
     public byte[] generarFacturaPdf(FacturaCompleta factura) throws Exception {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PdfWriter writer = new PdfWriter(baos);
+        generarFacturaPdf(factura, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Genera la factura escribiendo directamente en el stream de salida (no lo cierra).
+     * Las páginas ya completadas se vacían al stream a medida que avanza el render.
+     */
+    public void generarFacturaPdf(FacturaCompleta factura, OutputStream salida) throws Exception {
+        MetricasPdf.Medicion medicion = metricas.iniciar();
+        SalidaContador contador = new SalidaContador(salida);
+        PdfWriter writer = new PdfWriter(contador);
+        writer.setCloseStream(false);
         PdfDocument pdf = new PdfDocument(writer);
         Document document = new Document(pdf, PageSize.A4);
         document.setMargins(20, 20, 20, 20);
 
-        PdfFont fontBold = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
-        PdfFont fontNormal = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+        PdfFont fontBold = recursos.fuenteNegrita();
+        PdfFont fontNormal = recursos.fuenteNormal();
+        medicion.etapa(MetricasPdf.Etapa.FUENTES);
 
         // Tabla principal con 2 columnas (Logo/Emisor | Datos Factura)
         Table headerTable = new Table(UnitValue.createPercentArray(new float[]{50, 50}))
                 .setWidth(UnitValue.createPercentValue(100));
 
-        // COLUMNA IZQUIERDA - Logo y datos del emisor
+        // COLUMNA IZQUIERDA - Logo y datos del emisor (maquetados una vez por emisor)
         Cell leftCell = new Cell()
                 .setBorder(Border.NO_BORDER)
                 .setPadding(5);
-
-        // Logo placeholder (círculo con texto)
-        Paragraph logoText = new Paragraph("PICANTERÍA\nD'MARCELO")
-                .setFont(fontBold)
-                .setFontSize(16)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setFontColor(AZUL_OSCURO)
-                .setMarginBottom(10);
-        leftCell.add(logoText);
-
-        // Cuadro de datos del emisor
-        Table emisorTable = new Table(1).setWidth(UnitValue.createPercentValue(100));
-        emisorTable.setBorder(new SolidBorder(AZUL_OSCURO, 1));
-
-        Cell emisorCell = new Cell().setBorder(Border.NO_BORDER).setPadding(8);
-        emisorCell.add(new Paragraph(factura.getNombrePropietario())
-                .setFont(fontBold).setFontSize(10).setFontColor(AZUL_OSCURO));
-        emisorCell.add(new Paragraph(factura.getNombreEmpresa())
-                .setFont(fontNormal).setFontSize(9));
-        emisorCell.add(new Paragraph("DIRECCIÓN: " + factura.getDireccionEmisor())
-                .setFont(fontNormal).setFontSize(8));
-        emisorCell.add(new Paragraph("DIR. SUCURSAL: " + factura.getDireccionSucursal())
-                .setFont(fontNormal).setFontSize(8));
-        emisorCell.add(new Paragraph("OBLIGADO A LLEVAR CONTABILIDAD: " + (factura.isObligadoContabilidad() ? "SI" : "NO"))
-                .setFont(fontNormal).setFontSize(8));
-
-        emisorTable.addCell(emisorCell);
-        leftCell.add(emisorTable);
+        leftCell.add(plantillaEmisor.bloqueEmisor(factura, pdf, fontNormal, fontBold));
         headerTable.addCell(leftCell);
 
-        // COLUMNA DERECHA - Datos de la factura
+        // COLUMNA DERECHA - Datos de la factura; el R.U.C. y el título también vienen de la cache.
+        // Las etiquetas siguientes van intercaladas con valores de alto variable (la
+        // autorización y la clave pueden partirse en líneas), así que se maquetan con ellos.
         Cell rightCell = new Cell()
                 .setBorder(new SolidBorder(AZUL_OSCURO, 1))
                 .setPadding(10);
 
-        rightCell.add(new Paragraph("R.U.C.: " + factura.getRucEmisor())
-                .setFont(fontNormal).setFontSize(10));
-        rightCell.add(new Paragraph("F A C T U R A")
-                .setFont(fontBold).setFontSize(14).setTextAlignment(TextAlignment.CENTER));
+        rightCell.add(plantillaEmisor.tituloFactura(factura, pdf, fontNormal, fontBold));
         rightCell.add(new Paragraph("No: " + factura.getNumeroFactura())
                 .setFont(fontBold).setFontSize(10).setFontColor(ROJO));
         rightCell.add(new Paragraph("NÚMERO DE AUTORIZACIÓN:")
                 .setFont(fontBold).setFontSize(8).setMarginTop(5));
-        rightCell.add(new Paragraph(factura.getNumeroAutorizacion())
+        rightCell.add(new Paragraph(factura.getNumeroAutorizacion() != null ? factura.getNumeroAutorizacion() : "")
                 .setFont(fontNormal).setFontSize(7));
         rightCell.add(new Paragraph("FECHA Y HORA DE AUTORIZACIÓN:")
                 .setFont(fontBold).setFontSize(8).setMarginTop(5));
@@ -104,19 +111,26 @@ public class PdfService {
         rightCell.add(new Paragraph("CLAVE DE ACCESO:")
                 .setFont(fontBold).setFontSize(8).setMarginTop(5));
 
-        // Código de barras
-        BarcodeInter25 barcode = new BarcodeInter25(pdf);
-        barcode.setCode(factura.getClaveAcceso().substring(0, 20)); // Usar parte de la clave
-        barcode.setBarHeight(30);
-        Image barcodeImage = new Image(barcode.createFormXObject(pdf));
-        barcodeImage.setWidth(200);
-        rightCell.add(barcodeImage);
+        medicion.etapa(MetricasPdf.Etapa.CABECERA);
+
+        // Código de barras (solo si la factura ya tiene clave de acceso asignada)
+        if (factura.getClaveAcceso() != null) {
+            BarcodeInter25 barcode = new BarcodeInter25(pdf);
+            barcode.setCode(factura.getClaveAcceso().substring(0, 20)); // Usar parte de la clave
+            barcode.setBarHeight(30);
+            Image barcodeImage = new Image(barcode.createFormXObject(pdf));
+            barcodeImage.setWidth(200);
+            rightCell.add(barcodeImage);
+        }
+        medicion.etapa(MetricasPdf.Etapa.CODIGO_BARRAS);
 
-        rightCell.add(new Paragraph(factura.getClaveAcceso())
+        rightCell.add(new Paragraph(factura.getClaveAcceso() != null ? factura.getClaveAcceso() : "")
                 .setFont(fontNormal).setFontSize(6));
 
         headerTable.addCell(rightCell);
         document.add(headerTable);
+        vaciar(writer);
+        medicion.etapa(MetricasPdf.Etapa.CABECERA);
 
         document.add(new Paragraph("\n").setFontSize(5));
 
@@ -146,38 +160,20 @@ public class PdfService {
         document.add(clienteTable);
 
         document.add(new Paragraph("\n").setFontSize(5));
+        medicion.etapa(MetricasPdf.Etapa.CLIENTE);
 
         // TABLA DE ITEMS
-        Table itemsTable = new Table(UnitValue.createPercentArray(new float[]{5, 10, 40, 12, 12, 10, 11}))
-                .setWidth(UnitValue.createPercentValue(100));
-
-        // Encabezados
-        String[] headers = {"No.", "CODIGO", "DESCRIPCION", "CANTIDAD", "PRECIO U.", "DESC.", "TOTAL"};
-        for (String header : headers) {
-            Cell headerCell = new Cell()
-                    .setBackgroundColor(AZUL_OSCURO)
-                    .setBorder(new SolidBorder(AZUL_OSCURO, 1))
-                    .setPadding(5);
-            headerCell.add(new Paragraph(header)
-                    .setFont(fontBold)
-                    .setFontSize(8)
-                    .setFontColor(ColorConstants.WHITE)
-                    .setTextAlignment(TextAlignment.CENTER));
-            itemsTable.addHeaderCell(headerCell);
+        if (factura.getItems().size() >= umbralTablaGrande) {
+            agregarTablaItemsGrande(document, writer, factura, fontBold, fontNormal);
+        } else {
+            Table itemsTable = crearTablaItems(false, fontBold);
+            for (ItemFactura item : factura.getItems()) {
+                addItemRow(itemsTable, item, fontNormal);
+            }
+            document.add(itemsTable);
         }
-
-        // Filas de items
-        for (ItemFactura item : factura.getItems()) {
-            addItemCell(itemsTable, String.valueOf(item.getNumero()), fontNormal, TextAlignment.CENTER);
-            addItemCell(itemsTable, item.getCodigo(), fontNormal, TextAlignment.CENTER);
-            addItemCell(itemsTable, item.getDescripcion(), fontNormal, TextAlignment.LEFT);
-            addItemCell(itemsTable, String.valueOf(item.getCantidad()), fontNormal, TextAlignment.CENTER);
-            addItemCell(itemsTable, String.format("%.2f", item.getPrecioUnitario()), fontNormal, TextAlignment.RIGHT);
-            addItemCell(itemsTable, String.format("%.0f", item.getDescuento()), fontNormal, TextAlignment.CENTER);
-            addItemCell(itemsTable, String.format("%.2f", item.getTotal()), fontNormal, TextAlignment.RIGHT);
-        }
-
-        document.add(itemsTable);
+        vaciar(writer);
+        medicion.etapa(MetricasPdf.Etapa.ITEMS);
 
         document.add(new Paragraph("\n").setFontSize(5));
 
@@ -232,7 +228,7 @@ public class PdfService {
         // Datos forma de pago
         addPagoCell(pagoTable, factura.getCodigoFormaPago(), fontNormal);
         addPagoCell(pagoTable, factura.getFormaPago(), fontNormal);
-        addPagoCell(pagoTable, String.format("%.2f", factura.getValorTotal()), fontNormal);
+        addPagoCell(pagoTable, Dinero.formatear(factura.getValorTotalCentavos()), fontNormal);
         addPagoCell(pagoTable, factura.getPlazo(), fontNormal);
 
         leftBottomCell.add(pagoTable);
@@ -245,15 +241,16 @@ public class PdfService {
                 .setWidth(UnitValue.createPercentValue(100))
                 .setBorder(new SolidBorder(AZUL_OSCURO, 1));
 
-        addTotalRow(totalesTable, "SUBTOTAL 15%", factura.getSubtotal15(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "SUBTOTAL 0%", factura.getSubtotal0(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "SUBTOTAL NO OBJETO DE IVA", factura.getSubtotalNoObjetoIva(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "SUBTOTAL EXENTO DE IVA", factura.getSubtotalExentoIva(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "SUBTOTAL SIN IMPUESTOS", factura.getSubtotalSinImpuestos(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "TOTAL DESCUENTO", factura.getTotalDescuento(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "SERVICIO", factura.getServicio(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "ICE", factura.getIce(), fontBold, fontNormal);
-        addTotalRow(totalesTable, "IVA 15%", factura.getIva15(), fontBold, fontNormal);
+        String porcentajeIva = factura.reglas().porcentajeIva();
+        addTotalRow(totalesTable, "SUBTOTAL " + porcentajeIva, factura.getSubtotal15Centavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "SUBTOTAL 0%", factura.getSubtotal0Centavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "SUBTOTAL NO OBJETO DE IVA", factura.getSubtotalNoObjetoIvaCentavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "SUBTOTAL EXENTO DE IVA", factura.getSubtotalExentoIvaCentavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "SUBTOTAL SIN IMPUESTOS", factura.getSubtotalSinImpuestosCentavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "TOTAL DESCUENTO", factura.getTotalDescuentoCentavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "SERVICIO", factura.getServicioCentavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "ICE", factura.getIceCentavos(), fontBold, fontNormal);
+        addTotalRow(totalesTable, "IVA " + porcentajeIva, factura.getIva15Centavos(), fontBold, fontNormal);
 
         // Valor Total con fondo
         Cell totalLabelCell = new Cell()
@@ -267,7 +264,7 @@ public class PdfService {
                 .setBackgroundColor(AZUL_CLARO)
                 .setBorder(new SolidBorder(AZUL_OSCURO, 0.5f))
                 .setPadding(5);
-        totalValueCell.add(new Paragraph(String.format("%.2f", factura.getValorTotal()))
+        totalValueCell.add(new Paragraph(Dinero.formatear(factura.getValorTotalCentavos()))
                 .setFont(fontBold).setFontSize(9).setTextAlignment(TextAlignment.RIGHT));
         totalesTable.addCell(totalValueCell);
 
@@ -275,9 +272,68 @@ public class PdfService {
         bottomTable.addCell(rightBottomCell);
 
         document.add(bottomTable);
+        medicion.etapa(MetricasPdf.Etapa.TOTALES);
 
         document.close();
-        return baos.toByteArray();
+        salida.flush();
+        medicion.etapa(MetricasPdf.Etapa.CIERRE);
+        medicion.finalizar(contador.getBytes(), factura.getItems().size());
+    }
+
+    /**
+     * Modo tabla grande: la tabla se agrega al documento antes de tener filas y
+     * se va vaciando por lotes, así solo el lote actual queda en memoria.
+     * Los encabezados se repiten en cada página.
+     */
+    private void agregarTablaItemsGrande(Document document, PdfWriter writer, FacturaCompleta factura,
+                                         PdfFont fontBold, PdfFont fontNormal) throws IOException {
+        Table itemsTable = crearTablaItems(true, fontBold);
+        document.add(itemsTable);
+
+        int filas = 0;
+        for (ItemFactura item : factura.getItems()) {
+            addItemRow(itemsTable, item, fontNormal);
+            if (++filas % loteTablaGrande == 0) {
+                itemsTable.flush();
+                vaciar(writer);
+            }
+        }
+        itemsTable.complete();
+    }
+
+    private Table crearTablaItems(boolean tablaGrande, PdfFont fontBold) {
+        Table itemsTable = new Table(UnitValue.createPercentArray(new float[]{5, 10, 40, 12, 12, 10, 11}), tablaGrande)
+                .setWidth(UnitValue.createPercentValue(100));
+
+        // Encabezados
+        for (String header : ENCABEZADOS_ITEMS) {
+            Cell headerCell = new Cell()
+                    .setBackgroundColor(AZUL_OSCURO)
+                    .setBorder(new SolidBorder(AZUL_OSCURO, 1))
+                    .setPadding(5);
+            headerCell.add(new Paragraph(header)
+                    .setFont(fontBold)
+                    .setFontSize(8)
+                    .setFontColor(ColorConstants.WHITE)
+                    .setTextAlignment(TextAlignment.CENTER));
+            itemsTable.addHeaderCell(headerCell);
+        }
+        return itemsTable;
+    }
+
+    private void addItemRow(Table table, ItemFactura item, PdfFont fontNormal) {
+        addItemCell(table, String.valueOf(item.getNumero()), fontNormal, TextAlignment.CENTER);
+        addItemCell(table, item.getCodigo(), fontNormal, TextAlignment.CENTER);
+        addItemCell(table, item.getDescripcion(), fontNormal, TextAlignment.LEFT);
+        addItemCell(table, String.valueOf(item.getCantidad()), fontNormal, TextAlignment.CENTER);
+        addItemCell(table, Dinero.formatearPrecio(item.getPrecioUnitarioDiezmilesimas()), fontNormal, TextAlignment.RIGHT);
+        addItemCell(table, Dinero.formatearEntero(item.getDescuentoCentavos()), fontNormal, TextAlignment.CENTER);
+        addItemCell(table, Dinero.formatear(item.getTotalCentavos()), fontNormal, TextAlignment.RIGHT);
+    }
+
+    // Envía al cliente lo que el writer ya tiene listo (páginas completas)
+    private void vaciar(PdfWriter writer) throws IOException {
+        writer.flush();
     }
 
     private void addClienteCell(Table table, String label, String value, PdfFont fontBold, PdfFont fontNormal) {
@@ -314,7 +370,7 @@ public class PdfService {
         table.addCell(cell);
     }
 
-    private void addTotalRow(Table table, String label, double value, PdfFont fontBold, PdfFont fontNormal) {
+    private void addTotalRow(Table table, String label, long centavos, PdfFont fontBold, PdfFont fontNormal) {
         Cell labelCell = new Cell()
                 .setBorder(new SolidBorder(AZUL_OSCURO, 0.5f))
                 .setPadding(4);
@@ -324,7 +380,7 @@ public class PdfService {
         Cell valueCell = new Cell()
                 .setBorder(new SolidBorder(AZUL_OSCURO, 0.5f))
                 .setPadding(4);
-        valueCell.add(new Paragraph(String.format("%.2f", value))
+        valueCell.add(new Paragraph(Dinero.formatear(centavos))
                 .setFont(fontNormal).setFontSize(8).setTextAlignment(TextAlignment.RIGHT));
         table.addCell(valueCell);
     }
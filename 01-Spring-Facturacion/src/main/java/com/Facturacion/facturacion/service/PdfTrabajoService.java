@@ -0,0 +1,131 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.TrabajoPdf;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de generación de PDFs en segundo plano.
+ * Usa su propio pool acotado para que el tráfico de PDFs no ocupe los hilos
+ * de Tomcat que atienden el formulario. Si la cola está llena, {@link #encolar}
+ * rechaza de inmediato con {@link RejectedExecutionException}.
+ */
+@Service
+public class PdfTrabajoService {
+
+    @Autowired
+    private PdfService pdfService;
+
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService planificador;
+    private final long timeoutMs;
+    private final long retencionMs;
+    private final ConcurrentMap<String, TrabajoPdf> trabajos = new ConcurrentHashMap<>();
+
+    public PdfTrabajoService(@Value("${facturacion.pdf.trabajos.hilos:2}") int hilos,
+                             @Value("${facturacion.pdf.trabajos.cola:100}") int capacidadCola,
+                             @Value("${facturacion.pdf.trabajos.timeout-segundos:30}") long timeoutSegundos,
+                             @Value("${facturacion.pdf.trabajos.retencion-segundos:600}") long retencionSegundos) {
+        AtomicInteger contador = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread t = new Thread(r, "pdf-trabajo-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pdf-trabajo-planificador");
+            t.setDaemon(true);
+            return t;
+        });
+        this.timeoutMs = TimeUnit.SECONDS.toMillis(timeoutSegundos);
+        this.retencionMs = TimeUnit.SECONDS.toMillis(retencionSegundos);
+        this.planificador.scheduleWithFixedDelay(this::purgar, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Encola la factura y devuelve el trabajo creado.
+     * @throws RejectedExecutionException si la cola está llena
+     */
+    public TrabajoPdf encolar(FacturaCompleta factura) {
+        TrabajoPdf trabajo = new TrabajoPdf(factura.getNumeroFactura());
+        Future<?> tarea = pool.submit(() -> procesar(trabajo, factura));
+        trabajos.put(trabajo.getId(), trabajo);
+
+        // Tiempo máximo desde que se encola hasta que termina
+        planificador.schedule(() -> {
+            if (trabajo.fallar("Tiempo de generación agotado")) {
+                tarea.cancel(true);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        return trabajo;
+    }
+
+    public TrabajoPdf obtener(String id) {
+        return trabajos.get(id);
+    }
+
+    /**
+     * Espera hasta {@code esperaMs} a que el trabajo termine y lo devuelve en el estado que tenga.
+     */
+    public TrabajoPdf esperar(String id, long esperaMs) throws InterruptedException {
+        TrabajoPdf trabajo = trabajos.get(id);
+        if (trabajo != null && esperaMs > 0 && !trabajo.isTerminado()) {
+            try {
+                trabajo.getResultado().get(Math.min(esperaMs, timeoutMs), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | java.util.concurrent.ExecutionException e) {
+                // El estado del trabajo ya refleja el resultado
+            }
+        }
+        return trabajo;
+    }
+
+    public int getEnCola() {
+        return pool.getQueue().size();
+    }
+
+    public int getActivos() {
+        return pool.getActiveCount();
+    }
+
+    private void procesar(TrabajoPdf trabajo, FacturaCompleta factura) {
+        if (trabajo.isTerminado()) {
+            return;
+        }
+        trabajo.iniciar();
+        try {
+            trabajo.completar(pdfService.generarFacturaPdf(factura));
+        } catch (Exception e) {
+            trabajo.fallar("Error al generar el PDF: " + e.getMessage());
+        }
+    }
+
+    // Elimina los trabajos terminados cuyo resultado ya no se va a descargar
+    private void purgar() {
+        long limite = System.currentTimeMillis() - retencionMs;
+        trabajos.values().removeIf(t -> t.isTerminado() && t.getFinalizado() < limite);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        planificador.shutdownNow();
+        pool.shutdownNow();
+    }
+}
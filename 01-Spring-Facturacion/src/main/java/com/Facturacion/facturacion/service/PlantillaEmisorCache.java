@@ -0,0 +1,202 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.borders.SolidBorder;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.UnitValue;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache de la parte estática de la cabecera: el logo con el bloque del emisor y, en la
+ * columna de la factura, el R.U.C. con el título "F A C T U R A".
+ * Cada bloque se maqueta una sola vez por emisor y se guarda ya dibujado: el content stream de la
+ * página recortada a su contenido, su caja y qué fuente usa cada nombre. En cada factura
+ * solo se arma un form XObject con esos bytes y las fuentes del documento destino; no se
+ * vuelve a maquetar ni a leer un PDF. Las fuentes son estándar (Helvetica, WinAnsi, sin
+ * embeber), así que el contenido no depende del documento donde se inserta.
+ * <p>
+ * Se guardan hasta {@link #MAX_PLANTILLAS} bloques; al pasar se descarta el usado hace
+ * más tiempo.
+ */
+@Component
+public class PlantillaEmisorCache {
+
+    // Ancho útil de la columna izquierda de la cabecera (A4 - márgenes, 50%, menos padding)
+    static final float ANCHO_COLUMNA = (PageSize.A4.getWidth() - 40) / 2 - 10;
+
+    // Ancho útil de la columna derecha (padding de 10 y borde de 1 a cada lado)
+    static final float ANCHO_TITULO = (PageSize.A4.getWidth() - 40) / 2 - 22;
+
+    static final int MAX_PLANTILLAS = 64;
+
+    private static final float ALTO_MAXIMO = 1000;
+
+    private final RecursosPdf recursos;
+
+    private final LinkedHashMap<String, Plantilla> plantillas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Plantilla> eldest) {
+            return size() > MAX_PLANTILLAS;
+        }
+    };
+
+    public PlantillaEmisorCache(RecursosPdf recursos) {
+        this.recursos = recursos;
+    }
+
+    /**
+     * Devuelve el bloque del emisor listo para insertarse en el documento destino, dibujado
+     * con las fuentes que ese documento ya usa.
+     */
+    public Image bloqueEmisor(FacturaCompleta factura, PdfDocument destino, PdfFont fontNormal, PdfFont fontBold) {
+        Plantilla plantilla = plantilla(claveEmisor(factura), ANCHO_COLUMNA,
+                (document, normal, negrita) -> maquetarEmisor(document, factura, normal, negrita));
+        return dibujar(plantilla, destino, fontNormal, fontBold);
+    }
+
+    /**
+     * El R.U.C. del emisor y el título "F A C T U R A", del ancho de la columna de datos de
+     * la factura; lo que sigue (número, autorización, clave) cambia en cada factura.
+     */
+    public Image tituloFactura(FacturaCompleta factura, PdfDocument destino, PdfFont fontNormal, PdfFont fontBold) {
+        Plantilla plantilla = plantilla("titulo|" + factura.getRucEmisor(), ANCHO_TITULO,
+                (document, normal, negrita) -> maquetarTitulo(document, factura, normal, negrita));
+        return dibujar(plantilla, destino, fontNormal, fontBold);
+    }
+
+    private Plantilla plantilla(String clave, float ancho, Maqueta maqueta) {
+        Plantilla plantilla = obtener(clave);
+        if (plantilla == null) {
+            // Se maqueta fuera del lock; si dos hilos llegan a la vez, gana el último
+            plantilla = maquetar(ancho, maqueta);
+            guardar(clave, plantilla);
+        }
+        return plantilla;
+    }
+
+    private static Image dibujar(Plantilla plantilla, PdfDocument destino, PdfFont fontNormal, PdfFont fontBold) {
+        PdfDictionary fuentes = new PdfDictionary();
+        for (int i = 0; i < plantilla.fuentes().length; i++) {
+            PdfFont fuente = destino.addFont(plantilla.negrita()[i] ? fontBold : fontNormal);
+            fuentes.put(plantilla.fuentes()[i], fuente.getPdfObject());
+        }
+        PdfDictionary recursosXObject = new PdfDictionary();
+        recursosXObject.put(PdfName.Font, fuentes);
+
+        PdfFormXObject xObject = new PdfFormXObject(plantilla.caja());
+        xObject.put(PdfName.Resources, recursosXObject);
+        xObject.getPdfObject().setData(plantilla.contenido());
+        return new Image(xObject).setWidth(plantilla.caja().getWidth());
+    }
+
+    public synchronized int getTamano() {
+        return plantillas.size();
+    }
+
+    synchronized boolean contiene(FacturaCompleta factura) {
+        return plantillas.containsKey(claveEmisor(factura));
+    }
+
+    private synchronized Plantilla obtener(String clave) {
+        return plantillas.get(clave);
+    }
+
+    private synchronized void guardar(String clave, Plantilla plantilla) {
+        plantillas.put(clave, plantilla);
+    }
+
+    private String claveEmisor(FacturaCompleta factura) {
+        return factura.getRucEmisor() + '|' + factura.getNombrePropietario() + '|' + factura.getNombreEmpresa() + '|'
+                + factura.getDireccionEmisor() + '|' + factura.getDireccionSucursal() + '|' + factura.isObligadoContabilidad();
+    }
+
+    private static void maquetarEmisor(Document document, FacturaCompleta factura, PdfFont fontNormal, PdfFont fontBold) {
+        // Logo placeholder (círculo con texto)
+        document.add(new Paragraph("PICANTERÍA\nD'MARCELO")
+                .setFont(fontBold)
+                .setFontSize(16)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setFontColor(PdfService.AZUL_OSCURO)
+                .setMarginBottom(10));
+
+        // Cuadro de datos del emisor
+        Table emisorTable = new Table(1).setWidth(UnitValue.createPercentValue(100));
+        emisorTable.setBorder(new SolidBorder(PdfService.AZUL_OSCURO, 1));
+
+        Cell emisorCell = new Cell().setBorder(Border.NO_BORDER).setPadding(8);
+        emisorCell.add(new Paragraph(factura.getNombrePropietario())
+                .setFont(fontBold).setFontSize(10).setFontColor(PdfService.AZUL_OSCURO));
+        emisorCell.add(new Paragraph(factura.getNombreEmpresa())
+                .setFont(fontNormal).setFontSize(9));
+        emisorCell.add(new Paragraph("DIRECCIÓN: " + factura.getDireccionEmisor())
+                .setFont(fontNormal).setFontSize(8));
+        emisorCell.add(new Paragraph("DIR. SUCURSAL: " + factura.getDireccionSucursal())
+                .setFont(fontNormal).setFontSize(8));
+        emisorCell.add(new Paragraph("OBLIGADO A LLEVAR CONTABILIDAD: " + (factura.isObligadoContabilidad() ? "SI" : "NO"))
+                .setFont(fontNormal).setFontSize(8));
+        emisorTable.addCell(emisorCell);
+        document.add(emisorTable);
+    }
+
+    private static void maquetarTitulo(Document document, FacturaCompleta factura, PdfFont fontNormal, PdfFont fontBold) {
+        document.add(new Paragraph("R.U.C.: " + factura.getRucEmisor())
+                .setFont(fontNormal).setFontSize(10).setMarginTop(0));
+        document.add(new Paragraph("F A C T U R A")
+                .setFont(fontBold).setFontSize(14).setTextAlignment(TextAlignment.CENTER).setMarginBottom(0));
+    }
+
+    private Plantilla maquetar(float ancho, Maqueta maqueta) {
+        PdfDocument pdf = new PdfDocument(new PdfWriter(OutputStream.nullOutputStream()));
+        Document document = new Document(pdf, new PageSize(ancho, ALTO_MAXIMO), false);
+        document.setMargins(1, 1, 1, 1);
+
+        PdfFont fontBold = recursos.fuenteNegrita();
+        PdfFont fontNormal = recursos.fuenteNormal();
+        maqueta.agregar(document, fontNormal, fontBold);
+
+        // La caja es la página recortada a la altura realmente ocupada
+        float altoUsado = ALTO_MAXIMO - document.getRenderer().getCurrentArea().getBBox().getTop() + 1;
+        Rectangle caja = new Rectangle(0, ALTO_MAXIMO - altoUsado, ancho, altoUsado);
+
+        // Dibujar en la página y quedarse con el content stream y los nombres de sus fuentes
+        document.flush();
+        PdfPage pagina = pdf.getFirstPage();
+        byte[] contenido = pagina.getContentBytes();
+        PdfDictionary fuentes = pagina.getResources().getResource(PdfName.Font);
+        PdfName[] nombres = fuentes.keySet().toArray(new PdfName[0]);
+        boolean[] negrita = new boolean[nombres.length];
+        for (int i = 0; i < nombres.length; i++) {
+            negrita[i] = pdf.getFont(fuentes.getAsDictionary(nombres[i])) == fontBold;
+        }
+        document.close();
+        return new Plantilla(contenido, caja, nombres, negrita);
+    }
+
+    // Lo que se dibuja en la plantilla, con las fuentes del documento temporal
+    private interface Maqueta {
+        void agregar(Document document, PdfFont fontNormal, PdfFont fontBold);
+    }
+
+    // Bloque ya dibujado: operadores de la página, su caja y, por cada nombre de fuente, si es la negrita
+    private record Plantilla(byte[] contenido, Rectangle caja, PdfName[] fuentes, boolean[] negrita) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.Facturacion.facturacion.service;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Registro de fuentes compartido por toda la aplicación.
+ * Los programas de fuente se cargan una sola vez; cada documento solo crea
+ * su envoltorio PdfFont (un PdfFont no puede compartirse entre documentos).
+ */
+@Component
+public class RecursosPdf {
+
+    private final FontProgram helvetica;
+    private final FontProgram helveticaBold;
+
+    public RecursosPdf() {
+        try {
+            this.helvetica = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+            this.helveticaBold = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron cargar las fuentes del PDF", e);
+        }
+    }
+
+    public PdfFont fuenteNormal() {
+        return PdfFontFactory.createFont(helvetica, PdfEncodings.WINANSI);
+    }
+
+    public PdfFont fuenteNegrita() {
+        return PdfFontFactory.createFont(helveticaBold, PdfEncodings.WINANSI);
+    }
+}
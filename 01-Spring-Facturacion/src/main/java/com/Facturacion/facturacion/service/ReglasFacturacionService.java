@@ -0,0 +1,302 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reglas de descuento e impuestos desde un archivo versionado, sin redesplegar.
+ * <p>
+ * {@code facturacion.reglas.archivo} es un JSON con la versión, el IVA general y el recargo
+ * por servicio en porcentaje, los tramos de descuento por cantidad y los productos con reglas
+ * propias:
+ * <pre>
+ * {"version": 2, "iva": 15, "servicio": 10,
+ *  "descuentosPorCantidad": [{"desde": 4, "porcentaje": 5}, {"desde": 8, "porcentaje": 10}],
+ *  "productos": [{"codigo": "LIB-01", "iva": "0"}, {"codigo": "CIG-20", "iva": "tarifa", "ice": 30}]}
+ * </pre>
+ * El IVA de un producto es {@code "tarifa"} (o el mismo número que el general), {@code "0"},
+ * {@code "exento"} o {@code "no objeto"}. Las reglas se compilan en {@link ReglasFacturacion}
+ * y se publican de una vez; el archivo se revisa cada {@code revision-segundos}. Una versión
+ * publicada no puede cambiar ni volver atrás: cada una se archiva en
+ * {@code facturacion.reglas.historial} como {@code reglas-<version>.json} y al arrancar se
+ * cargan todas, para volver a tasar facturas guardadas con reglas anteriores. Si la foto nueva
+ * tiene errores se siguen usando las reglas vigentes.
+ */
+@Service
+public class ReglasFacturacionService {
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+    private static final String PREFIJO = "reglas-";
+    private static final String EXTENSION = ".json";
+
+    private final Path archivo;
+    private final Path historial;
+    private final ScheduledExecutorService planificador;
+    private final AtomicLong recargas = new AtomicLong();
+    private final AtomicLong recargasFallidas = new AtomicLong();
+    // Fecha y tamaño del archivo leído, para notar cambios; solo con el monitor
+    private FileTime modificado;
+    private long tamano = -1;
+    private volatile String ultimoError;
+
+    public ReglasFacturacionService(@Value("${facturacion.reglas.archivo:./data/reglas.json}") String archivo,
+                                    @Value("${facturacion.reglas.historial:./data/reglas}") String historial,
+                                    @Value("${facturacion.reglas.revision-segundos:30}") long revisionSegundos,
+                                    MeterRegistry registry) {
+        this.archivo = Paths.get(archivo);
+        this.historial = Paths.get(historial);
+        try {
+            Files.createDirectories(this.historial);
+            cargarHistorial();
+            recargar();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron cargar las reglas " + this.archivo, e);
+        }
+
+        Gauge.builder("facturacion.reglas.version", () -> ReglasFacturacion.vigentes().getVersion())
+                .description("Versión de las reglas de facturación vigentes").register(registry);
+        FunctionCounter.builder("facturacion.reglas.recargas", recargas, AtomicLong::get)
+                .description("Versiones de reglas publicadas").register(registry);
+        FunctionCounter.builder("facturacion.reglas.recargas.fallidas", recargasFallidas, AtomicLong::get)
+                .description("Archivos de reglas rechazados por errores").register(registry);
+
+        this.planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reglas-revision");
+            t.setDaemon(true);
+            return t;
+        });
+        if (revisionSegundos > 0) {
+            planificador.scheduleWithFixedDelay(this::revisar, revisionSegundos, revisionSegundos, TimeUnit.SECONDS);
+        }
+    }
+
+    public ReglasFacturacion getVigentes() {
+        return ReglasFacturacion.vigentes();
+    }
+
+    public long getRecargas() {
+        return recargas.get();
+    }
+
+    /**
+     * Error de la última recarga fallida, o null si la última recarga salió bien.
+     */
+    public String getUltimoError() {
+        return ultimoError;
+    }
+
+    /**
+     * Vuelve a leer el archivo y, si trae una versión nueva, la archiva y la publica. Si el
+     * archivo no existe o trae la versión vigente sin cambios no hace nada; si tiene errores,
+     * baja la versión o cambia una ya publicada, lanza la excepción y siguen las reglas vigentes.
+     *
+     * @return la versión vigente después de la recarga
+     */
+    public synchronized int recargar() throws IOException {
+        try {
+            FileTime nuevoModificado;
+            long nuevoTamano;
+            String contenido;
+            try {
+                BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+                nuevoModificado = atributos.lastModifiedTime();
+                nuevoTamano = atributos.size();
+                contenido = Files.readString(archivo, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                nuevoModificado = null;
+                nuevoTamano = -1;
+                contenido = null;
+            }
+            if (contenido != null) {
+                publicar(contenido);
+            }
+            modificado = nuevoModificado;
+            tamano = nuevoTamano;
+            ultimoError = null;
+            return ReglasFacturacion.vigentes().getVersion();
+        } catch (IOException | RuntimeException e) {
+            recargasFallidas.incrementAndGet();
+            ultimoError = e.getMessage();
+            throw e;
+        }
+    }
+
+    private void publicar(String contenido) throws IOException {
+        JsonNode json = leerJson(contenido);
+        ReglasFacturacion nuevas = compilar(json);
+        int version = nuevas.getVersion();
+        int vigente = ReglasFacturacion.vigentes().getVersion();
+        if (version == 0) {
+            throw new IllegalArgumentException("La versión 0 son las reglas predeterminadas: el archivo debe empezar en 1");
+        }
+        if (version < vigente) {
+            throw new IllegalArgumentException("Reglas versión " + version + ": la vigente es la " + vigente
+                    + ", no se puede volver a una anterior");
+        }
+        Path archivada = historial.resolve(PREFIJO + version + EXTENSION);
+        if (Files.exists(archivada)) {
+            if (!leerJson(Files.readString(archivada, StandardCharsets.UTF_8)).equals(json)) {
+                throw new IllegalArgumentException("Reglas versión " + version
+                        + ": ya se publicó con otro contenido, hay que subir la versión");
+            }
+            if (version == vigente) {
+                return;
+            }
+        } else {
+            // Se escribe aparte y se renombra: un arranque nunca ve un archivo a medias
+            Path temporal = historial.resolve(PREFIJO + version + EXTENSION + ".tmp");
+            Files.writeString(temporal, contenido, StandardCharsets.UTF_8);
+            Files.move(temporal, archivada, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        ReglasFacturacion.publicar(nuevas);
+        recargas.incrementAndGet();
+    }
+
+    // Registra las versiones archivadas y deja vigente la más nueva (si el archivo no está, siguen esas)
+    private void cargarHistorial() throws IOException {
+        ReglasFacturacion ultima = null;
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(historial, PREFIJO + "*" + EXTENSION)) {
+            for (Path archivada : archivos) {
+                ReglasFacturacion reglas;
+                try {
+                    reglas = compilar(leerJson(Files.readString(archivada, StandardCharsets.UTF_8)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(archivada.getFileName() + ": " + e.getMessage(), e);
+                }
+                ReglasFacturacion.registrar(reglas);
+                if (ultima == null || reglas.getVersion() > ultima.getVersion()) {
+                    ultima = reglas;
+                }
+            }
+        }
+        if (ultima != null && ultima.getVersion() > ReglasFacturacion.vigentes().getVersion()) {
+            ReglasFacturacion.publicar(ultima);
+        }
+    }
+
+    // Revisa si el archivo cambió desde la última lectura (buena o mala)
+    private synchronized void revisar() {
+        FileTime actual;
+        long actualTamano;
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(archivo, BasicFileAttributes.class);
+            actual = atributos.lastModifiedTime();
+            actualTamano = atributos.size();
+        } catch (IOException e) {
+            actual = null;
+            actualTamano = -1;
+        }
+        if (actualTamano == tamano && (actual == null ? modificado == null : actual.equals(modificado))) {
+            return;
+        }
+        try {
+            recargar();
+        } catch (IOException | RuntimeException e) {
+            // Siguen las reglas vigentes; no se reintenta hasta que el archivo vuelva a cambiar
+            modificado = actual;
+            tamano = actualTamano;
+        }
+    }
+
+    private static JsonNode leerJson(String contenido) {
+        try {
+            return MAPPER.readTree(contenido);
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Reglas JSON inválidas: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    static ReglasFacturacion compilar(JsonNode json) {
+        if (json == null || !json.isObject()) {
+            throw new IllegalArgumentException("Las reglas deben ser un objeto JSON");
+        }
+        JsonNode version = json.get("version");
+        if (version == null || !version.canConvertToExactIntegral() || !version.canConvertToInt()) {
+            throw new IllegalArgumentException("Falta la versión de las reglas o no es un entero");
+        }
+        ReglasFacturacion.Escritor escritor = new ReglasFacturacion.Escritor(version.intValue());
+        int tasaIva = ReglasFacturacion.PREDETERMINADAS.getTasaIva();
+        if (json.has("iva")) {
+            tasaIva = puntosBasicos("iva", json.get("iva"));
+            escritor.tasaIva(tasaIva);
+        }
+        if (json.has("servicio")) {
+            escritor.tasaServicio(puntosBasicos("servicio", json.get("servicio")));
+        }
+        for (JsonNode tramo : json.path("descuentosPorCantidad")) {
+            JsonNode desde = tramo.get("desde");
+            JsonNode porcentaje = tramo.get("porcentaje");
+            if (desde == null || !desde.canConvertToExactIntegral() || !desde.canConvertToInt()
+                    || porcentaje == null || !porcentaje.canConvertToExactIntegral() || !porcentaje.canConvertToInt()) {
+                throw new IllegalArgumentException("Tramo de descuento inválido: " + tramo);
+            }
+            escritor.tramo(desde.intValue(), porcentaje.intValue());
+        }
+        for (JsonNode producto : json.path("productos")) {
+            String codigo = producto.path("codigo").asString(null);
+            String iva = producto.path("iva").asString("tarifa").trim().toLowerCase(Locale.ROOT);
+            int categoria = switch (iva) {
+                case "tarifa" -> ReglasFacturacion.IVA_TARIFA;
+                case "exento" -> ReglasFacturacion.IVA_EXENTO;
+                case "no objeto" -> ReglasFacturacion.IVA_NO_OBJETO;
+                default -> {
+                    int tasa = puntosBasicos("IVA de " + codigo, producto.get("iva"));
+                    if (tasa == 0) {
+                        yield ReglasFacturacion.IVA_CERO;
+                    }
+                    if (tasa != tasaIva) {
+                        throw new IllegalArgumentException("Producto " + codigo
+                                + ": el IVA debe ser 0, la tarifa general, exento o no objeto");
+                    }
+                    yield ReglasFacturacion.IVA_TARIFA;
+                }
+            };
+            int ice = producto.has("ice") ? puntosBasicos("ICE de " + codigo, producto.get("ice")) : 0;
+            escritor.producto(codigo == null ? null : codigo.trim(), categoria, ice);
+        }
+        return escritor.construir();
+    }
+
+    // Porcentaje con hasta dos decimales a puntos básicos (15 -> 1500, 12.5 -> 1250)
+    private static int puntosBasicos(String nombre, JsonNode valor) {
+        if (valor == null || !(valor.isNumber() || valor.isString())) {
+            throw new IllegalArgumentException("Porcentaje de " + nombre + " inválido: " + valor);
+        }
+        try {
+            return new BigDecimal(valor.asString().trim()).movePointRight(2).intValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Porcentaje de " + nombre + " inválido: " + valor);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        planificador.shutdownNow();
+    }
+}
@@ -0,0 +1,180 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.util.GeneradorClaveAcceso;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Numeración de facturas por establecimiento y punto de emisión.
+ * <p>
+ * Cada serie reserva bloques de números en un archivo local
+ * ({@code <directorio>/<est>-<pto>.secuencial}, con fsync y reemplazo atómico).
+ * Dentro del bloque los números se entregan con un getAndIncrement, sin locks;
+ * solo al agotarse el bloque se toma el lock de la serie para reservar otro.
+ * Tras un reinicio se continúa desde el último límite reservado, así que un
+ * número nunca se repite (los no usados del bloque anterior quedan como salto).
+ */
+@Service
+public class SecuencialService {
+
+    public static final long SECUENCIAL_MAXIMO = 999_999_999L;
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final Path directorio;
+    private final int tamanoBloque;
+    private final int establecimiento;
+    private final int puntoEmision;
+    private final GeneradorClaveAcceso generadorClave;
+    private final ConcurrentMap<Integer, Serie> series = new ConcurrentHashMap<>();
+
+    public SecuencialService(@Value("${facturacion.secuencial.directorio:./data/secuencial}") String directorio,
+                             @Value("${facturacion.secuencial.bloque:1000}") int tamanoBloque,
+                             @Value("${facturacion.emisor.establecimiento:1}") int establecimiento,
+                             @Value("${facturacion.emisor.punto-emision:1}") int puntoEmision,
+                             GeneradorClaveAcceso generadorClave) {
+        this.directorio = Paths.get(directorio);
+        this.tamanoBloque = tamanoBloque;
+        this.establecimiento = establecimiento;
+        this.puntoEmision = puntoEmision;
+        this.generadorClave = generadorClave;
+    }
+
+    /**
+     * Siguiente secuencial de la serie establecimiento/punto de emisión.
+     */
+    public long siguiente(int establecimiento, int puntoEmision) {
+        Serie serie = serie(establecimiento, puntoEmision);
+        while (true) {
+            Bloque bloque = serie.bloque;
+            long numero = bloque.siguiente.getAndIncrement();
+            if (numero < bloque.fin) {
+                return numero;
+            }
+            serie.reservar(bloque);
+        }
+    }
+
+    /**
+     * Asigna número de factura, clave de acceso y número de autorización
+     * si la factura todavía no los tiene.
+     */
+    public void asignarSiFalta(FacturaCompleta factura) {
+        if (factura.getNumeroFactura() == null || factura.getClaveAcceso() == null) {
+            asignar(factura);
+        }
+    }
+
+    public void asignar(FacturaCompleta factura) {
+        long secuencial = siguiente(establecimiento, puntoEmision);
+        LocalDate hoy = LocalDate.now();
+
+        char[] numero = new char[17];
+        int p = GeneradorClaveAcceso.escribirNumero(numero, 0, establecimiento, 3);
+        numero[p++] = '-';
+        p = GeneradorClaveAcceso.escribirNumero(numero, p, puntoEmision, 3);
+        numero[p++] = '-';
+        GeneradorClaveAcceso.escribirNumero(numero, p, secuencial, 9);
+
+        char[] clave = new char[GeneradorClaveAcceso.LONGITUD];
+        generadorClave.escribir(clave, hoy.getDayOfMonth(), hoy.getMonthValue(), hoy.getYear(),
+                GeneradorClaveAcceso.TIPO_FACTURA, factura.getRucEmisor(),
+                "PRODUCCION".equals(factura.getAmbiente()) ? GeneradorClaveAcceso.AMBIENTE_PRODUCCION : GeneradorClaveAcceso.AMBIENTE_PRUEBAS,
+                establecimiento, puntoEmision, secuencial,
+                ThreadLocalRandom.current().nextInt(100_000_000), GeneradorClaveAcceso.EMISION_NORMAL);
+
+        String claveAcceso = new String(clave);
+        factura.setNumeroFactura(new String(numero));
+        factura.setClaveAcceso(claveAcceso);
+        factura.setNumeroAutorizacion(claveAcceso);
+        factura.setFechaEmision(hoy.format(FORMATO_FECHA));
+    }
+
+    private Serie serie(int establecimiento, int puntoEmision) {
+        Integer clave = establecimiento * 1000 + puntoEmision;
+        Serie serie = series.get(clave);
+        if (serie == null) {
+            serie = series.computeIfAbsent(clave, k -> new Serie(String.format("%03d-%03d", establecimiento, puntoEmision)));
+        }
+        return serie;
+    }
+
+    private static final class Bloque {
+        final AtomicLong siguiente;
+        final long fin;
+
+        Bloque(long inicio, long fin) {
+            this.siguiente = new AtomicLong(inicio);
+            this.fin = fin;
+        }
+    }
+
+    private final class Serie {
+        private final Path archivo;
+        private final Path archivoLock;
+        private volatile Bloque bloque = new Bloque(0, 0);
+
+        Serie(String nombre) {
+            this.archivo = directorio.resolve(nombre + ".secuencial");
+            this.archivoLock = directorio.resolve(nombre + ".lock");
+        }
+
+        // Camino lento: solo un hilo reserva el siguiente bloque; los demás reintentan con el nuevo
+        synchronized void reservar(Bloque agotado) {
+            if (bloque != agotado) {
+                return;
+            }
+            try {
+                Files.createDirectories(directorio);
+                try (FileChannel canalLock = FileChannel.open(archivoLock, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                     FileLock ignored = canalLock.lock()) {
+                    long inicio = Math.max(leerLimite(), 1);
+                    long fin = Math.min(inicio + tamanoBloque, SECUENCIAL_MAXIMO + 1);
+                    if (inicio > SECUENCIAL_MAXIMO) {
+                        throw new IllegalStateException("Se agotaron los secuenciales de la serie " + archivo.getFileName());
+                    }
+                    escribirLimite(fin);
+                    bloque = new Bloque(inicio, fin);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo reservar un bloque de secuenciales", e);
+            }
+        }
+
+        private long leerLimite() throws IOException {
+            if (!Files.exists(archivo)) {
+                return 0;
+            }
+            return Long.parseLong(Files.readString(archivo, StandardCharsets.US_ASCII).trim());
+        }
+
+        private void escribirLimite(long limite) throws IOException {
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                canal.write(ByteBuffer.wrap(Long.toString(limite).getBytes(StandardCharsets.US_ASCII)));
+                canal.force(true);
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Reglas de validación y normalización de los datos que ingresa el usuario,
+ * compartidas por el formulario y por la API JSON.
+ * Los métodos validar* devuelven el mensaje de error o {@code null} si todo es válido.
+ */
+@Service
+public class ValidacionFacturaService {
+
+    @Autowired
+    private ValidadorEcuador validador;
+
+    public String validarCliente(String razonSocial, String rucCliente, String direccionCliente,
+                                 String correo, String telefono) {
+        if (razonSocial == null || razonSocial.trim().isEmpty()) {
+            return "La razón social es requerida";
+        }
+        if (razonSocial.trim().length() < 3) {
+            return "La razón social debe tener al menos 3 caracteres";
+        }
+
+        String errorDocumento = validador.getMensajeErrorDocumento(rucCliente);
+        if (errorDocumento != null) {
+            return errorDocumento;
+        }
+
+        if (direccionCliente == null || direccionCliente.trim().isEmpty()) {
+            return "La dirección es requerida";
+        }
+        if (direccionCliente.trim().length() < 5) {
+            return "La dirección debe tener al menos 5 caracteres";
+        }
+
+        // Teléfono y correo son opcionales
+        if (telefono != null && !telefono.trim().isEmpty() && !validador.validarTelefono(telefono)) {
+            return "El formato del teléfono no es válido. Use: 09XXXXXXXX o 02XXXXXXX";
+        }
+        if (correo != null && !correo.trim().isEmpty() && !validador.validarCorreo(correo)) {
+            return "El formato del correo electrónico no es válido";
+        }
+        return null;
+    }
+
+    public String validarItem(String codigo, String descripcion, int cantidad, double precioUnitario, double descuento) {
+        if (codigo == null || codigo.trim().isEmpty()) {
+            return "El código del producto es requerido";
+        }
+        if (descripcion == null || descripcion.trim().isEmpty()) {
+            return "La descripción del producto es requerida";
+        }
+        if (descripcion.trim().length() < 3) {
+            return "La descripción debe tener al menos 3 caracteres";
+        }
+        if (cantidad < 1) {
+            return "La cantidad debe ser mayor a 0";
+        }
+        if (precioUnitario <= 0) {
+            return "El precio debe ser mayor a 0";
+        }
+        if (descuento < 0) {
+            return "El descuento no puede ser negativo";
+        }
+        double totalItem = cantidad * precioUnitario;
+        if (descuento > totalItem) {
+            return "El descuento no puede ser mayor al total del item ($" + String.format("%.2f", totalItem) + ")";
+        }
+        return null;
+    }
+
+    // Datos del cliente ya validados, con el mismo formato que se imprime en el PDF
+    public void asignarCliente(FacturaCompleta factura, String razonSocial, String rucCliente,
+                               String direccionCliente, String correo, String telefono) {
+        factura.setRazonSocialCliente(razonSocial.trim().toUpperCase());
+        factura.setRucCliente(rucCliente.trim());
+        factura.setDireccionCliente(direccionCliente.trim().toUpperCase());
+        factura.setCorreoCliente(correo != null ? correo.trim().toLowerCase() : "");
+        factura.setTelefonoCliente(telefono != null ? telefono.trim() : "");
+    }
+
+    public void agregarItem(FacturaCompleta factura, String codigo, String descripcion,
+                            int cantidad, double precioUnitario, double descuento) {
+        factura.agregarItem(codigo.trim().toUpperCase(), descripcion.trim().toUpperCase(), cantidad, precioUnitario, descuento);
+    }
+}
@@ -0,0 +1,276 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validación masiva de cédulas y RUCs (depuración del maestro de clientes).
+ * <p>
+ * La entrada (NDJSON o CSV, una línea por cliente) se lee en bloques de líneas que se validan
+ * en paralelo; los resultados se escriben en el orden de entrada apenas su bloque está listo.
+ * Como en {@link PdfLoteService}, como máximo hay {@code hilos * 2} bloques en vuelo, así que la
+ * memoria no depende del tamaño del archivo. Las líneas en blanco se saltan pero cuentan para
+ * la numeración; los campos CSV entre comillas no pueden contener saltos de línea.
+ */
+@Service
+public class ValidacionMasivaService {
+
+    public static final String ENCABEZADO_CSV = "linea,documento,valido,mensaje\n";
+
+    private static final JsonMapper MAPPER = JsonMapper.builder().build();
+
+    private final ValidadorEcuador validador;
+    private final int hilos;
+    private final int lineasPorBloque;
+    private final ExecutorService pool;
+    private final AtomicLong documentos = new AtomicLong();
+    private final AtomicLong invalidos = new AtomicLong();
+
+    public ValidacionMasivaService(ValidadorEcuador validador,
+                                   @Value("${facturacion.validacion.hilos:0}") int hilos,
+                                   @Value("${facturacion.validacion.lineas-por-bloque:4096}") int lineasPorBloque,
+                                   MeterRegistry registry) {
+        this.validador = validador;
+        this.hilos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        this.lineasPorBloque = lineasPorBloque;
+        AtomicInteger contador = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.hilos, r -> {
+            Thread t = new Thread(r, "validacion-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        FunctionCounter.builder("facturacion.validacion.documentos", documentos, AtomicLong::get)
+                .description("Documentos revisados en validaciones masivas").register(registry);
+        FunctionCounter.builder("facturacion.validacion.invalidos", invalidos, AtomicLong::get)
+                .description("Documentos inválidos en validaciones masivas").register(registry);
+    }
+
+    /**
+     * Posición de la columna {@code nombre} en el encabezado CSV (sin distinguir mayúsculas).
+     */
+    public int columnaCsv(String encabezado, String nombre) {
+        if (encabezado != null) {
+            String[] columnas = encabezado.split(",", -1);
+            for (int i = 0; i < columnas.length; i++) {
+                if (quitarComillas(columnas[i].trim()).equalsIgnoreCase(nombre)) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("El encabezado CSV no tiene la columna \"" + nombre + "\"");
+    }
+
+    /**
+     * Valida el campo {@code campo} de cada objeto JSON de la entrada y escribe una línea NDJSON
+     * por objeto: {@code {"linea":1,"documento":"...","valido":false,"mensaje":"..."}}
+     * (el mensaje solo si no es válido). No cierra la salida.
+     */
+    public void validarNdjson(BufferedReader entrada, String campo, OutputStream salida) throws IOException {
+        procesar(entrada, 1, salida, (lineas, cantidad, primera) -> () -> {
+            StringBuilder sb = new StringBuilder(cantidad * 64);
+            for (int i = 0; i < cantidad; i++) {
+                if (lineas[i].isBlank()) {
+                    continue;
+                }
+                String documento;
+                String error = null;
+                try {
+                    JsonNode nodo = MAPPER.readTree(lineas[i]);
+                    JsonNode valor = nodo.get(campo);
+                    documento = valor != null && valor.isValueNode() && !valor.isNull() ? valor.asString() : null;
+                } catch (JacksonException e) {
+                    documento = null;
+                    error = "JSON inválido";
+                }
+                String mensaje = error != null ? error : mensaje(documento);
+                sb.append("{\"linea\":").append(primera + i).append(",\"documento\":");
+                if (documento == null) {
+                    sb.append("null");
+                } else {
+                    json(sb, documento);
+                }
+                sb.append(",\"valido\":").append(mensaje == null);
+                if (mensaje != null) {
+                    sb.append(",\"mensaje\":");
+                    json(sb, mensaje);
+                }
+                sb.append("}\n");
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Valida la columna {@code columna} de cada línea CSV (la entrada ya sin el encabezado, que
+     * era la línea 1) y escribe {@link #ENCABEZADO_CSV} seguido de una línea por registro.
+     * No cierra la salida.
+     */
+    public void validarCsv(BufferedReader entrada, int columna, OutputStream salida) throws IOException {
+        salida.write(ENCABEZADO_CSV.getBytes(StandardCharsets.UTF_8));
+        procesar(entrada, 2, salida, (lineas, cantidad, primera) -> () -> {
+            StringBuilder sb = new StringBuilder(cantidad * 48);
+            for (int i = 0; i < cantidad; i++) {
+                if (lineas[i].isBlank()) {
+                    continue;
+                }
+                String documento = campoCsv(lineas[i], columna);
+                String mensaje = mensaje(documento);
+                sb.append(primera + i).append(',');
+                csv(sb, documento != null ? documento : "");
+                sb.append(',').append(mensaje == null).append(',');
+                csv(sb, mensaje != null ? mensaje : "");
+                sb.append('\n');
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    // Un bloque de líneas leídas, listo para validar en otro hilo
+    @FunctionalInterface
+    private interface Tarea {
+        Callable<byte[]> de(String[] lineas, int cantidad, long primeraLinea);
+    }
+
+    private void procesar(BufferedReader entrada, long primeraLinea, OutputStream salida, Tarea tarea) throws IOException {
+        int ventana = hilos * 2;
+        Deque<Future<byte[]>> pendientes = new ArrayDeque<>(ventana);
+        long linea = primeraLinea;
+        try {
+            boolean fin = false;
+            while (!fin) {
+                String[] lineas = new String[lineasPorBloque];
+                int cantidad = 0;
+                while (cantidad < lineas.length) {
+                    String l = entrada.readLine();
+                    if (l == null) {
+                        fin = true;
+                        break;
+                    }
+                    lineas[cantidad++] = l;
+                }
+                if (cantidad > 0) {
+                    pendientes.addLast(pool.submit(tarea.de(lineas, cantidad, linea)));
+                    linea += cantidad;
+                }
+                // Se escribe lo que ya está listo en orden; con la ventana llena se espera al más antiguo
+                while (!pendientes.isEmpty() && (pendientes.size() >= ventana || fin || pendientes.peekFirst().isDone())) {
+                    salida.write(pendientes.removeFirst().get());
+                    salida.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Validación masiva interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error al validar un bloque de documentos", e.getCause());
+        } finally {
+            pendientes.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private String mensaje(String documento) {
+        documentos.incrementAndGet();
+        if (documento != null && validador.validarCedulaORC(documento)) {
+            return null;
+        }
+        invalidos.incrementAndGet();
+        String mensaje = validador.getMensajeErrorDocumento(documento);
+        return mensaje != null ? mensaje : "El documento no es válido";
+    }
+
+    // Campo de una línea CSV, con comillas dobles ("" dentro de un campo entre comillas)
+    static String campoCsv(String linea, int columna) {
+        int i = 0;
+        int actual = 0;
+        int largo = linea.length();
+        while (true) {
+            StringBuilder campo = actual == columna ? new StringBuilder() : null;
+            if (i < largo && linea.charAt(i) == '"') {
+                i++;
+                while (i < largo) {
+                    char c = linea.charAt(i++);
+                    if (c == '"') {
+                        if (i < largo && linea.charAt(i) == '"') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    if (campo != null) {
+                        campo.append(c);
+                    }
+                }
+            }
+            while (i < largo && linea.charAt(i) != ',') {
+                if (campo != null) {
+                    campo.append(linea.charAt(i));
+                }
+                i++;
+            }
+            if (campo != null) {
+                return campo.toString();
+            }
+            if (i >= largo) {
+                return null;
+            }
+            i++;
+            actual++;
+        }
+    }
+
+    private static String quitarComillas(String s) {
+        return s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1) : s;
+    }
+
+    private static void csv(StringBuilder sb, String valor) {
+        sb.append('"').append(valor.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void json(StringBuilder sb, String valor) {
+        sb.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,129 @@
+package com.Facturacion.facturacion.util;
+
+import com.Facturacion.facturacion.models.LoteFacturas;
+
+/**
+ * Cálculo de un tramo de {@link LoteFacturas} con el mismo redondeo que
+ * {@code FacturaService.calcularFactura} y las {@link ReglasFacturacion} que se le pasen:
+ * descuento según el tramo de cantidad e IVA del producto (el general, o 0% si es de tarifa
+ * cero, exento o no objeto), todo en centavos con HALF_UP. Cada punto de entrada busca primero
+ * la fila de las reglas de cada producto del tramo.
+ * <p>
+ * Ninguna de las dos versiones tiene saltos que dependan de los datos: el descuento sale de la
+ * tabla por cantidad (o, en la vectorial, de comparaciones por tramo) y el redondeo simétrico de
+ * operaciones con el signo.
+ * <p>
+ * La versión vectorial ({@code CalculoLoteVectorial}, con la Vector API que en Java 17 es un
+ * módulo en incubación) está en src/vector/java y solo se compila con {@code mvn -Pvector ...},
+ * para que el build por defecto no dependa del módulo ni muestre su aviso. Se usa si la clase
+ * está en el classpath y el JVM arrancó con el módulo:
+ * {@code java --add-modules jdk.incubator.vector -jar facturacion.jar}. Si falta cualquiera de
+ * las dos cosas se calcula con la versión escalar ({@link #VECTORIAL} dice cuál se usa).
+ */
+public final class CalculoLote {
+
+    /**
+     * Lo que aporta la versión vectorial: calcula desde {@code desde} de a {@link #carriles()}
+     * filas y devuelve la primera que queda sin calcular.
+     */
+    interface Vectorial {
+        int carriles();
+
+        int calcular(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta);
+    }
+
+    private static final Vectorial NUCLEO_VECTORIAL = cargarVectorial();
+
+    /**
+     * Si la versión vectorial está compilada y la Vector API disponible en este JVM.
+     */
+    public static final boolean VECTORIAL = NUCLEO_VECTORIAL != null;
+
+    private CalculoLote() {
+    }
+
+    /**
+     * Calcula las filas {@code [desde, hasta)} con la mejor versión disponible.
+     */
+    public static void calcular(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta) {
+        buscarFilas(lote, reglas, desde, hasta);
+        if (VECTORIAL) {
+            desde = NUCLEO_VECTORIAL.calcular(lote, reglas, desde, hasta);
+        }
+        escalar(lote, reglas, desde, hasta);
+    }
+
+    /**
+     * Calcula las filas {@code [desde, hasta)} con la Vector API; las que no llenan un vector
+     * se hacen con la versión escalar.
+     */
+    public static void calcularVectorial(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta) {
+        if (!VECTORIAL) {
+            throw new IllegalStateException("El cálculo vectorial no está disponible: compile con -Pvector y"
+                    + " arranque el JVM con --add-modules jdk.incubator.vector");
+        }
+        buscarFilas(lote, reglas, desde, hasta);
+        escalar(lote, reglas, NUCLEO_VECTORIAL.calcular(lote, reglas, desde, hasta), hasta);
+    }
+
+    public static void calcularEscalar(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta) {
+        buscarFilas(lote, reglas, desde, hasta);
+        escalar(lote, reglas, desde, hasta);
+    }
+
+    // Sin códigos todas las filas quedan en 0 (las generales)
+    private static void buscarFilas(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta) {
+        String[] codigos = lote.getCodigos();
+        if (codigos == null) {
+            return;
+        }
+        int[] filas = lote.getFilasReglas();
+        for (int i = desde; i < hasta; i++) {
+            filas[i] = reglas.fila(codigos[i]);
+        }
+    }
+
+    // Con las filas de las reglas ya buscadas
+    static void escalar(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta) {
+        int[] cantidades = lote.getCantidades();
+        double[] precios = lote.getPreciosUnitarios();
+        int[] descuentos = lote.getDescuentos();
+        double[] subtotales = lote.getSubtotales();
+        double[] ivas = lote.getIvas();
+        double[] totales = lote.getTotales();
+        int[] filas = lote.getFilasReglas();
+        for (int i = desde; i < hasta; i++) {
+            int cantidad = cantidades[i];
+            long bruto = redondear(cantidad * Dinero.precioUnitario(precios[i]), 100);
+
+            int descuento = reglas.descuento(cantidad);
+            long subtotal = bruto - redondear(bruto * descuento * 100, 10_000);
+            long iva = redondear(subtotal * reglas.tasaIva(filas[i]), 10_000);
+
+            descuentos[i] = descuento;
+            subtotales[i] = Dinero.aDouble(subtotal);
+            ivas[i] = Dinero.aDouble(iva);
+            totales[i] = Dinero.aDouble(subtotal + iva);
+        }
+    }
+
+    // Dinero.redondear sin el operador ternario: se redondea el valor absoluto y se devuelve el signo
+    private static long redondear(long valor, long divisor) {
+        long signo = valor >> 63;
+        long absoluto = (valor ^ signo) - signo;
+        return (((absoluto + divisor / 2) / divisor) ^ signo) - signo;
+    }
+
+    private static Vectorial cargarVectorial() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            Vectorial nucleo = (Vectorial) Class.forName(CalculoLote.class.getPackageName() + ".CalculoLoteVectorial")
+                    .getDeclaredConstructor().newInstance();
+            return nucleo.carriles() > 1 ? nucleo : null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.Facturacion.facturacion.util;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Catálogo inmutable de productos: código, descripción y precio unitario.
+ * <p>
+ * No hay un objeto por producto: los códigos y las descripciones van empaquetados en un
+ * {@code char[]} cada uno, con el inicio de cada producto en un {@code int[]}, y los precios
+ * (en diezmilésimas, ver {@link Dinero}) en un {@code long[]}. El código se busca en una tabla
+ * hash abierta de {@code int} (posición + 1, 0 = libre) con a lo sumo la mitad ocupada; la
+ * descripción, por prefijo de palabras en un {@link IndicePrefijos}.
+ * <p>
+ * Un producto se identifica por su posición, que solo vale dentro del mismo catálogo.
+ */
+public final class CatalogoProductos {
+
+    public static final CatalogoProductos VACIO = new Escritor().construir();
+
+    private final char[] codigos;
+    private final int[] inicioCodigos;
+    private final char[] descripciones;
+    private final int[] inicioDescripciones;
+    private final long[] precios;
+    private final int[] tabla;
+    private final IndicePrefijos porDescripcion;
+
+    private CatalogoProductos(char[] codigos, int[] inicioCodigos, char[] descripciones, int[] inicioDescripciones,
+                              long[] precios, int[] tabla, IndicePrefijos porDescripcion) {
+        this.codigos = codigos;
+        this.inicioCodigos = inicioCodigos;
+        this.descripciones = descripciones;
+        this.inicioDescripciones = inicioDescripciones;
+        this.precios = precios;
+        this.tabla = tabla;
+        this.porDescripcion = porDescripcion;
+    }
+
+    public int getCantidad() {
+        return precios.length;
+    }
+
+    public long getBytes() {
+        return codigos.length * 2L + descripciones.length * 2L
+                + (inicioCodigos.length + inicioDescripciones.length + tabla.length) * 4L
+                + precios.length * 8L + porDescripcion.getBytes();
+    }
+
+    /**
+     * Posición del producto con ese código (exacto, sin espacios alrededor), o -1.
+     */
+    public int buscar(CharSequence codigo) {
+        int mascara = tabla.length - 1;
+        for (int i = hash(codigo) & mascara; ; i = (i + 1) & mascara) {
+            int posicion = tabla[i] - 1;
+            if (posicion < 0) {
+                return -1;
+            }
+            if (mismoCodigo(posicion, codigo)) {
+                return posicion;
+            }
+        }
+    }
+
+    /**
+     * Posiciones de hasta {@code limite} productos en cuya descripción cada palabra de la consulta
+     * es prefijo de alguna palabra ("mart gal" encuentra "MARTILLO GALPONERO 16 OZ").
+     */
+    public int[] buscarPorDescripcion(String consulta, int limite) {
+        List<String> palabras = new ArrayList<>();
+        Tokenizador.tokenizar(consulta, palabras::add);
+        if (palabras.isEmpty() || limite <= 0) {
+            return new int[0];
+        }
+        // Se recorre el tramo de la palabra más selectiva y se comprueban todas
+        int desde = 0;
+        int hasta = Integer.MAX_VALUE;
+        for (String palabra : palabras) {
+            int d = porDescripcion.desde(palabra);
+            int h = porDescripcion.hasta(palabra);
+            if (h - d < hasta - desde) {
+                desde = d;
+                hasta = h;
+            }
+        }
+        // Un producto aparece una vez por cada palabra suya que empiece con el prefijo
+        Set<Integer> encontrados = new LinkedHashSet<>();
+        Set<Integer> vistos = new HashSet<>();
+        for (int i = desde; i < hasta && encontrados.size() < limite; i++) {
+            int posicion = porDescripcion.documento(i);
+            if (vistos.add(posicion) && coincide(posicion, palabras)) {
+                encontrados.add(posicion);
+            }
+        }
+        int[] resultado = new int[encontrados.size()];
+        int n = 0;
+        for (int posicion : encontrados) {
+            resultado[n++] = posicion;
+        }
+        return resultado;
+    }
+
+    public String codigo(int posicion) {
+        return new String(codigos, inicioCodigos[posicion], inicioCodigos[posicion + 1] - inicioCodigos[posicion]);
+    }
+
+    public String descripcion(int posicion) {
+        return new String(descripciones, inicioDescripciones[posicion],
+                inicioDescripciones[posicion + 1] - inicioDescripciones[posicion]);
+    }
+
+    public long precioDiezmilesimas(int posicion) {
+        return precios[posicion];
+    }
+
+    public double precioUnitario(int posicion) {
+        return precios[posicion] / (double) Dinero.ESCALA_PRECIO;
+    }
+
+    private boolean coincide(int posicion, List<String> palabras) {
+        CharSequence descripcion = CharBuffer.wrap(descripciones, inicioDescripciones[posicion],
+                inicioDescripciones[posicion + 1] - inicioDescripciones[posicion]);
+        for (String palabra : palabras) {
+            if (!Tokenizador.tienePalabraConPrefijo(descripcion, palabra)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean mismoCodigo(int posicion, CharSequence codigo) {
+        int a = inicioCodigos[posicion];
+        int largo = inicioCodigos[posicion + 1] - a;
+        if (largo != codigo.length()) {
+            return false;
+        }
+        for (int i = 0; i < largo; i++) {
+            if (codigos[a + i] != codigo.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Como String.hashCode pero sin crear el String, mezclado para que los códigos
+    // correlativos ("A0001", "A0002"...) no caigan en casillas seguidas
+    private static int hash(CharSequence codigo) {
+        int h = 0;
+        for (int i = 0; i < codigo.length(); i++) {
+            h = 31 * h + codigo.charAt(i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Junta los productos y arma el catálogo. Un código repetido es un error: en un catálogo
+     * no puede haber dos precios para el mismo producto.
+     */
+    public static final class Escritor {
+        private final StringBuilder codigos = new StringBuilder();
+        private final StringBuilder descripciones = new StringBuilder();
+        private int[] inicioCodigos = new int[16];
+        private int[] inicioDescripciones = new int[16];
+        private long[] precios = new long[16];
+        private int cantidad;
+        private final IndicePrefijos.Escritor porDescripcion = new IndicePrefijos.Escritor();
+        private final Set<String> palabras = new HashSet<>();
+
+        public Escritor agregar(String codigo, String descripcion, long precioDiezmilesimas) {
+            if (codigo.isEmpty()) {
+                throw new IllegalArgumentException("Producto sin código");
+            }
+            if (cantidad + 1 == precios.length) {
+                precios = Arrays.copyOf(precios, precios.length * 2);
+                inicioCodigos = Arrays.copyOf(inicioCodigos, precios.length);
+                inicioDescripciones = Arrays.copyOf(inicioDescripciones, precios.length);
+            }
+            inicioCodigos[cantidad] = codigos.length();
+            inicioDescripciones[cantidad] = descripciones.length();
+            codigos.append(codigo);
+            descripciones.append(descripcion);
+            precios[cantidad] = precioDiezmilesimas;
+
+            // Cada palabra una vez por producto
+            palabras.clear();
+            Tokenizador.tokenizar(descripcion, palabras::add);
+            for (String palabra : palabras) {
+                porDescripcion.agregar(palabra, cantidad);
+            }
+            cantidad++;
+            return this;
+        }
+
+        public CatalogoProductos construir() {
+            int n = cantidad;
+            inicioCodigos[n] = codigos.length();
+            inicioDescripciones[n] = descripciones.length();
+            char[] textoCodigos = new char[codigos.length()];
+            codigos.getChars(0, textoCodigos.length, textoCodigos, 0);
+            char[] textoDescripciones = new char[descripciones.length()];
+            descripciones.getChars(0, textoDescripciones.length, textoDescripciones, 0);
+
+            int capacidad = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+            int[] tabla = new int[capacidad];
+            CatalogoProductos catalogo = new CatalogoProductos(textoCodigos, Arrays.copyOf(inicioCodigos, n + 1),
+                    textoDescripciones, Arrays.copyOf(inicioDescripciones, n + 1), Arrays.copyOf(precios, n),
+                    tabla, porDescripcion.construir());
+            int mascara = capacidad - 1;
+            for (int posicion = 0; posicion < n; posicion++) {
+                CharSequence codigo = CharBuffer.wrap(textoCodigos, inicioCodigos[posicion],
+                        inicioCodigos[posicion + 1] - inicioCodigos[posicion]);
+                if (catalogo.buscar(codigo) >= 0) {
+                    throw new IllegalArgumentException("Código de producto repetido: " + codigo);
+                }
+                int i = hash(codigo) & mascara;
+                while (tabla[i] != 0) {
+                    i = (i + 1) & mascara;
+                }
+                tabla[i] = posicion + 1;
+            }
+            return catalogo;
+        }
+    }
+}
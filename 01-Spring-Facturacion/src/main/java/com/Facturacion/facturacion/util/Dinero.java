@@ -0,0 +1,145 @@
+package com.Facturacion.facturacion.util;
+
+/**
+ * Aritmética monetaria en punto fijo sobre {@code long}, sin crear objetos.
+ * <ul>
+ *   <li>Montos en centavos (2 decimales).</li>
+ *   <li>Precios unitarios en diezmilésimas (4 decimales), como admite el SRI.</li>
+ *   <li>Tasas en puntos básicos: 15% = 1500.</li>
+ * </ul>
+ * Todo redondeo es HALF_UP (mitad hacia arriba, simétrico para negativos),
+ * que es el que usa el SRI para IVA y descuentos.
+ */
+public final class Dinero {
+
+    public static final int ESCALA_PRECIO = 10_000;
+    public static final int TASA_IVA_15 = 1500;
+
+    private Dinero() {
+    }
+
+    /**
+     * Convierte un valor en dólares (double) a centavos.
+     */
+    public static long centavos(double valor) {
+        return redondear(Math.round(valor * ESCALA_PRECIO), 100);
+    }
+
+    /**
+     * Convierte un precio unitario en dólares a diezmilésimas.
+     */
+    public static long precioUnitario(double valor) {
+        return Math.round(valor * ESCALA_PRECIO);
+    }
+
+    public static double aDouble(long centavos) {
+        return centavos / 100.0;
+    }
+
+    /**
+     * Cantidad por precio unitario, redondeado a centavos.
+     */
+    public static long importe(int cantidad, long precioDiezmilesimas) {
+        return redondear(cantidad * precioDiezmilesimas, 100);
+    }
+
+    /**
+     * Porcentaje de un monto: {@code centavos * tasa / 10000}, redondeado a centavos.
+     */
+    public static long porcentaje(long centavos, int tasaPuntosBasicos) {
+        return redondear(centavos * tasaPuntosBasicos, 10_000);
+    }
+
+    /**
+     * División entera con redondeo HALF_UP.
+     */
+    public static long redondear(long valor, long divisor) {
+        long mitad = divisor / 2;
+        return valor >= 0 ? (valor + mitad) / divisor : -((-valor + mitad) / divisor);
+    }
+
+    /**
+     * Escribe los centavos como "1234.56" en {@code destino} desde {@code posicion}.
+     * No crea objetos; devuelve la cantidad de caracteres escritos (máximo 22).
+     */
+    public static int formatear(long centavos, char[] destino, int posicion) {
+        int inicio = posicion;
+        long absoluto = centavos;
+        if (centavos < 0) {
+            destino[posicion++] = '-';
+            absoluto = -centavos;
+        }
+        long enteros = absoluto / 100;
+        int decimales = (int) (absoluto % 100);
+
+        // Parte entera: se escribe al revés y luego se invierte
+        int desde = posicion;
+        do {
+            destino[posicion++] = (char) ('0' + enteros % 10);
+            enteros /= 10;
+        } while (enteros > 0);
+        for (int i = desde, j = posicion - 1; i < j; i++, j--) {
+            char c = destino[i];
+            destino[i] = destino[j];
+            destino[j] = c;
+        }
+
+        destino[posicion++] = '.';
+        destino[posicion++] = (char) ('0' + decimales / 10);
+        destino[posicion++] = (char) ('0' + decimales % 10);
+        return posicion - inicio;
+    }
+
+    /**
+     * Agrega los centavos formateados con dos decimales al StringBuilder.
+     */
+    public static StringBuilder formatear(long centavos, StringBuilder destino) {
+        long absoluto = centavos;
+        if (centavos < 0) {
+            destino.append('-');
+            absoluto = -centavos;
+        }
+        int decimales = (int) (absoluto % 100);
+        return destino.append(absoluto / 100)
+                .append('.')
+                .append((char) ('0' + decimales / 10))
+                .append((char) ('0' + decimales % 10));
+    }
+
+    /**
+     * Equivalente a {@code String.format("%.2f", centavos / 100.0)}; solo crea el String resultante.
+     */
+    public static String formatear(long centavos) {
+        char[] buffer = new char[22];
+        return new String(buffer, 0, formatear(centavos, buffer, 0));
+    }
+
+    /**
+     * Precio unitario (diezmilésimas) formateado con dos decimales.
+     */
+    public static String formatearPrecio(long precioDiezmilesimas) {
+        return formatear(redondear(precioDiezmilesimas, 100));
+    }
+
+    /**
+     * Monto en centavos redondeado a unidades, como {@code String.format("%.0f", ...)}.
+     */
+    public static String formatearEntero(long centavos) {
+        return Long.toString(redondear(centavos, 100));
+    }
+
+    /**
+     * Tasa en puntos básicos como porcentaje, sin ceros de sobra: 1500 → "15%", 1250 → "12.5%".
+     */
+    public static String formatearTasa(int puntosBasicos) {
+        StringBuilder texto = new StringBuilder().append(puntosBasicos / 100);
+        int decimales = puntosBasicos % 100;
+        if (decimales != 0) {
+            texto.append('.').append(decimales / 10);
+            if (decimales % 10 != 0) {
+                texto.append(decimales % 10);
+            }
+        }
+        return texto.append('%').toString();
+    }
+}
@@ -0,0 +1,333 @@
+package com.Facturacion.facturacion.util;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Formato binario compacto de una factura en edición (borrador).
+ * <p>
+ * Estructura: versión, máscara de campos de texto presentes, flags, versión de las
+ * {@link ReglasFacturacion} (desde el formato 2), tasas de IVA y servicio de esas reglas (desde
+ * el 3), textos (UTF-8 con longitud varint), ICE y servicio fijados a mano en centavos y los
+ * items, cada uno con su categoría de IVA y tasa de ICE (desde el 3).
+ * Los campos que valen lo mismo que en una factura nueva (datos del emisor,
+ * forma de pago...) no se escriben. Las fechas se escriben siempre: su valor en una factura
+ * nueva es el día en que arrancó el JVM, y el que lee puede ser otro JVM en otro día. Los montos se guardan en punto fijo
+ * (ver {@link Dinero}) como varint zigzag, así que un item típico ocupa
+ * unos pocos bytes más que su código y descripción.
+ * <p>
+ * Los totales no se guardan, pero sí todo lo que hace falta para recalcularlos igual que al
+ * emitir: al leer se usan las reglas de la versión registrada si ya se cargaron y, si no, unas
+ * reglas armadas con las tasas del registro. Así una factura ya emitida no cambia aunque
+ * después se publiquen otras reglas ni importa si el historial se cargó antes de leerla. Los
+ * registros de los formatos 1 y 2 no traen las tasas: los del 1 usan las
+ * {@link ReglasFacturacion#PREDETERMINADAS} y los del 2 fallan si su versión no está en el
+ * historial, en lugar de recalcularse con otras reglas.
+ */
+public final class FacturaCodec {
+
+    public static final byte VERSION = 3;
+
+    // omitible: si vale lo mismo que en una factura nueva no se escribe
+    private record Campo(Function<FacturaCompleta, String> leer, BiConsumer<FacturaCompleta, String> escribir,
+                         boolean omitible) {
+        Campo(Function<FacturaCompleta, String> leer, BiConsumer<FacturaCompleta, String> escribir) {
+            this(leer, escribir, true);
+        }
+    }
+
+    // El orden es parte del formato: solo se agregan campos al final
+    private static final Campo[] CAMPOS = {
+            new Campo(FacturaCompleta::getRucEmisor, FacturaCompleta::setRucEmisor),
+            new Campo(FacturaCompleta::getNombreEmpresa, FacturaCompleta::setNombreEmpresa),
+            new Campo(FacturaCompleta::getNombrePropietario, FacturaCompleta::setNombrePropietario),
+            new Campo(FacturaCompleta::getDireccionEmisor, FacturaCompleta::setDireccionEmisor),
+            new Campo(FacturaCompleta::getDireccionSucursal, FacturaCompleta::setDireccionSucursal),
+            new Campo(FacturaCompleta::getNumeroFactura, FacturaCompleta::setNumeroFactura),
+            new Campo(FacturaCompleta::getNumeroAutorizacion, FacturaCompleta::setNumeroAutorizacion),
+            new Campo(FacturaCompleta::getFechaEmision, FacturaCompleta::setFechaEmision, false),
+            new Campo(FacturaCompleta::getFechaAutorizacion, FacturaCompleta::setFechaAutorizacion, false),
+            new Campo(FacturaCompleta::getAmbiente, FacturaCompleta::setAmbiente),
+            new Campo(FacturaCompleta::getTipoEmision, FacturaCompleta::setTipoEmision),
+            new Campo(FacturaCompleta::getClaveAcceso, FacturaCompleta::setClaveAcceso),
+            new Campo(FacturaCompleta::getRazonSocialCliente, FacturaCompleta::setRazonSocialCliente),
+            new Campo(FacturaCompleta::getRucCliente, FacturaCompleta::setRucCliente),
+            new Campo(FacturaCompleta::getDireccionCliente, FacturaCompleta::setDireccionCliente),
+            new Campo(FacturaCompleta::getCorreoCliente, FacturaCompleta::setCorreoCliente),
+            new Campo(FacturaCompleta::getTelefonoCliente, FacturaCompleta::setTelefonoCliente),
+            new Campo(FacturaCompleta::getGuiaRemision, FacturaCompleta::setGuiaRemision),
+            new Campo(FacturaCompleta::getCodigoFormaPago, FacturaCompleta::setCodigoFormaPago),
+            new Campo(FacturaCompleta::getFormaPago, FacturaCompleta::setFormaPago),
+            new Campo(FacturaCompleta::getPlazo, FacturaCompleta::setPlazo),
+    };
+
+    // Posición de la fecha de emisión en CAMPOS
+    private static final int CAMPO_FECHA_EMISION = 7;
+
+    // Valores de una factura nueva (las fechas solo para registros viejos que las omitían)
+    private static final String[] POR_DEFECTO = porDefecto(new FacturaCompleta());
+
+    private static final int FLAG_OBLIGADO_CONTABILIDAD = 1;
+
+    private FacturaCodec() {
+    }
+
+    public static byte[] codificar(FacturaCompleta factura) {
+        return codificar(factura, POR_DEFECTO);
+    }
+
+    // Con otros valores por defecto: los tests simulan el JVM de otro día
+    static byte[] codificar(FacturaCompleta factura, String[] porDefecto) {
+        Escritor salida = new Escritor(128 + factura.getItems().size() * 48);
+        salida.octeto(VERSION);
+
+        long mascara = 0;
+        for (int i = 0; i < CAMPOS.length; i++) {
+            if (!CAMPOS[i].omitible() || !Objects.equals(CAMPOS[i].leer().apply(factura), porDefecto[i])) {
+                mascara |= 1L << i;
+            }
+        }
+        salida.varint(mascara);
+        salida.varint(factura.isObligadoContabilidad() ? FLAG_OBLIGADO_CONTABILIDAD : 0);
+        ReglasFacturacion reglas = factura.reglas();
+        salida.varint(reglas.getVersion());
+        salida.varint(reglas.getTasaIva());
+        salida.varint(reglas.getTasaServicio());
+        for (int i = 0; i < CAMPOS.length; i++) {
+            if ((mascara & (1L << i)) != 0) {
+                salida.texto(CAMPOS[i].leer().apply(factura));
+            }
+        }
+
+        salida.zigzag(factura.getIceAjusteCentavos());
+        salida.zigzag(factura.getServicioAjusteCentavos());
+
+        List<ItemFactura> items = factura.getItems();
+        salida.varint(items.size());
+        for (ItemFactura item : items) {
+            salida.texto(item.getCodigo());
+            salida.texto(item.getDescripcion());
+            salida.zigzag(item.getCantidad());
+            salida.zigzag(item.getPrecioUnitarioDiezmilesimas());
+            salida.zigzag(item.getDescuentoCentavos());
+            salida.varint(item.getCategoriaIva());
+            salida.varint(reglas.tasaIce(reglas.fila(item.getCodigo())));
+        }
+        return salida.aBytes();
+    }
+
+    /**
+     * Reconstruye la factura desde la posición actual del buffer (que queda al final del registro).
+     */
+    public static FacturaCompleta decodificar(ByteBuffer entrada) {
+        return decodificar(entrada, POR_DEFECTO);
+    }
+
+    static FacturaCompleta decodificar(ByteBuffer entrada, String[] porDefecto) {
+        byte version = entrada.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Versión de borrador no soportada: " + version);
+        }
+        Lector lector = new Lector(entrada);
+
+        FacturaCompleta factura = new FacturaCompleta();
+        long mascara = lector.varint();
+        int flags = (int) lector.varint();
+        factura.setObligadoContabilidad((flags & FLAG_OBLIGADO_CONTABILIDAD) != 0);
+        int versionReglas = version == 1 ? 0 : (int) lector.varint();
+        ReglasFacturacion.Escritor tasas = null;
+        if (version >= 3) {
+            tasas = new ReglasFacturacion.Escritor(versionReglas)
+                    .tasaIva((int) lector.varint())
+                    .tasaServicio((int) lector.varint());
+        }
+        for (int i = 0; i < CAMPOS.length; i++) {
+            String valor = (mascara & (1L << i)) != 0 ? lector.texto() : porDefecto[i];
+            CAMPOS[i].escribir().accept(factura, valor);
+        }
+
+        factura.setIceAdicional(Dinero.aDouble(lector.zigzag()));
+        factura.setServicioAdicional(Dinero.aDouble(lector.zigzag()));
+
+        int cantidadItems = (int) lector.varint();
+        List<ItemFactura> items = new ArrayList<>(cantidadItems);
+        Set<String> vistos = new HashSet<>();
+        for (int i = 0; i < cantidadItems; i++) {
+            String codigo = lector.texto();
+            String descripcion = lector.texto();
+            int cantidad = (int) lector.zigzag();
+            double precio = lector.zigzag() / (double) Dinero.ESCALA_PRECIO;
+            double descuento = Dinero.aDouble(lector.zigzag());
+            if (tasas != null) {
+                int categoriaIva = (int) lector.varint();
+                int tasaIce = (int) lector.varint();
+                if (codigo != null && vistos.add(codigo)) {
+                    tasas.producto(codigo, categoriaIva, tasaIce);
+                }
+            }
+            items.add(new ItemFactura(i + 1, codigo, descripcion, cantidad, precio, descuento));
+        }
+        // Las reglas con que se emitió: las del historial si ya se cargaron (sirven también
+        // para los items que se agreguen a un borrador); si no, las tasas guardadas
+        ReglasFacturacion reglas = ReglasFacturacion.porVersion(versionReglas);
+        if (reglas == null) {
+            if (tasas == null) {
+                throw new IllegalStateException("Las reglas de facturación versión " + versionReglas
+                        + " no están en el historial: no se puede recalcular la factura");
+            }
+            reglas = tasas.construir();
+        }
+        factura.usarReglas(reglas);
+        // Recalcula subtotales, IVA y total con el ICE y servicio ya restaurados
+        factura.setItems(items);
+        return factura;
+    }
+
+    /**
+     * Solo la fecha de emisión ("dd/MM/yyyy"), sin armar la factura: salta los textos anteriores
+     * y no lee los items. Sirve para filtrar por fecha antes de decodificar.
+     */
+    public static String fechaEmision(ByteBuffer entrada) {
+        byte version = entrada.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Versión de borrador no soportada: " + version);
+        }
+        Lector lector = new Lector(entrada);
+        long mascara = lector.varint();
+        lector.varint();
+        if (version >= 2) {
+            lector.varint();
+        }
+        if (version >= 3) {
+            lector.varint();
+            lector.varint();
+        }
+        for (int i = 0; i < CAMPO_FECHA_EMISION; i++) {
+            if ((mascara & (1L << i)) != 0) {
+                lector.saltarTexto();
+            }
+        }
+        return (mascara & (1L << CAMPO_FECHA_EMISION)) != 0 ? lector.texto() : POR_DEFECTO[CAMPO_FECHA_EMISION];
+    }
+
+    public static FacturaCompleta decodificar(byte[] datos) {
+        return decodificar(ByteBuffer.wrap(datos));
+    }
+
+    /**
+     * Valores de los campos de texto de esa factura, en el orden del formato.
+     */
+    static String[] porDefecto(FacturaCompleta factura) {
+        String[] valores = new String[CAMPOS.length];
+        for (int i = 0; i < CAMPOS.length; i++) {
+            valores[i] = CAMPOS[i].leer().apply(factura);
+        }
+        return valores;
+    }
+
+    private static final class Escritor {
+        private byte[] datos;
+        private int posicion;
+
+        Escritor(int capacidad) {
+            this.datos = new byte[capacidad];
+        }
+
+        void octeto(int valor) {
+            asegurar(1);
+            datos[posicion++] = (byte) valor;
+        }
+
+        void varint(long valor) {
+            asegurar(10);
+            while ((valor & ~0x7FL) != 0) {
+                datos[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            datos[posicion++] = (byte) valor;
+        }
+
+        void zigzag(long valor) {
+            varint((valor << 1) ^ (valor >> 63));
+        }
+
+        // 0 = null; n + 1 = texto de n bytes
+        void texto(String valor) {
+            if (valor == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            asegurar(bytes.length);
+            System.arraycopy(bytes, 0, datos, posicion, bytes.length);
+            posicion += bytes.length;
+        }
+
+        private void asegurar(int adicional) {
+            if (posicion + adicional > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, posicion + adicional));
+            }
+        }
+
+        byte[] aBytes() {
+            return Arrays.copyOf(datos, posicion);
+        }
+    }
+
+    private static final class Lector {
+        private final ByteBuffer entrada;
+        private byte[] temporal = new byte[64];
+
+        Lector(ByteBuffer entrada) {
+            this.entrada = entrada;
+        }
+
+        long varint() {
+            long valor = 0;
+            for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+                byte b = entrada.get();
+                valor |= (long) (b & 0x7F) << desplazamiento;
+                if (b >= 0) {
+                    return valor;
+                }
+            }
+            throw new IllegalArgumentException("Varint mal formado en el borrador");
+        }
+
+        long zigzag() {
+            long valor = varint();
+            return (valor >>> 1) ^ -(valor & 1);
+        }
+
+        String texto() {
+            int longitud = (int) varint() - 1;
+            if (longitud < 0) {
+                return null;
+            }
+            if (longitud > temporal.length) {
+                temporal = new byte[longitud];
+            }
+            entrada.get(temporal, 0, longitud);
+            return new String(temporal, 0, longitud, StandardCharsets.UTF_8);
+        }
+
+        void saltarTexto() {
+            int longitud = (int) varint() - 1;
+            if (longitud > 0) {
+                entrada.position(entrada.position() + longitud);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.Facturacion.facturacion.util;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Arma la clave de acceso de 49 dígitos del SRI para comprobantes electrónicos:
+ * <pre>
+ * fecha(ddMMyyyy,8) tipo(2) ruc(13) ambiente(1) establecimiento(3) puntoEmision(3)
+ * secuencial(9) codigoNumerico(8) tipoEmision(1) digitoVerificador(1)
+ * </pre>
+ * El dígito verificador es módulo 11 con pesos 2..7 desde la derecha.
+ * Escribe sobre un char[] del llamador, sin crear objetos.
+ */
+@Component
+public class GeneradorClaveAcceso {
+
+    public static final int LONGITUD = 49;
+    public static final String TIPO_FACTURA = "01";
+    public static final int AMBIENTE_PRUEBAS = 1;
+    public static final int AMBIENTE_PRODUCCION = 2;
+    public static final int EMISION_NORMAL = 1;
+
+    /**
+     * Escribe la clave completa en {@code destino[0..48]}.
+     */
+    public void escribir(char[] destino, int dia, int mes, int anio, CharSequence tipoComprobante,
+                         CharSequence rucEmisor, int ambiente, int establecimiento, int puntoEmision,
+                         long secuencial, int codigoNumerico, int tipoEmision) {
+        if (rucEmisor.length() != 13) {
+            throw new IllegalArgumentException("El RUC del emisor debe tener 13 dígitos");
+        }
+        int p = 0;
+        p = escribirNumero(destino, p, dia, 2);
+        p = escribirNumero(destino, p, mes, 2);
+        p = escribirNumero(destino, p, anio, 4);
+        p = copiarDigitos(destino, p, tipoComprobante, 2);
+        p = copiarDigitos(destino, p, rucEmisor, 13);
+        p = escribirNumero(destino, p, ambiente, 1);
+        p = escribirNumero(destino, p, establecimiento, 3);
+        p = escribirNumero(destino, p, puntoEmision, 3);
+        p = escribirNumero(destino, p, secuencial, 9);
+        p = escribirNumero(destino, p, codigoNumerico, 8);
+        p = escribirNumero(destino, p, tipoEmision, 1);
+        destino[p] = (char) ('0' + digitoVerificador(destino, p));
+    }
+
+    /**
+     * Dígito verificador módulo 11 de los primeros {@code longitud} dígitos.
+     */
+    public int digitoVerificador(char[] digitos, int longitud) {
+        int suma = 0;
+        int peso = 2;
+        for (int i = longitud - 1; i >= 0; i--) {
+            suma += (digitos[i] - '0') * peso;
+            peso = peso == 7 ? 2 : peso + 1;
+        }
+        int digito = 11 - (suma % 11);
+        if (digito == 11) {
+            return 0;
+        }
+        if (digito == 10) {
+            return 1;
+        }
+        return digito;
+    }
+
+    /**
+     * Verifica longitud, que sean solo dígitos y el dígito verificador.
+     */
+    public boolean esValida(CharSequence clave) {
+        if (clave == null || clave.length() != LONGITUD) {
+            return false;
+        }
+        int suma = 0;
+        int peso = 2;
+        for (int i = LONGITUD - 2; i >= 0; i--) {
+            char c = clave.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            suma += (c - '0') * peso;
+            peso = peso == 7 ? 2 : peso + 1;
+        }
+        int digito = 11 - (suma % 11);
+        digito = digito == 11 ? 0 : digito == 10 ? 1 : digito;
+        return clave.charAt(LONGITUD - 1) == '0' + digito;
+    }
+
+    // Escribe el número con ceros a la izquierda en exactamente 'ancho' posiciones
+    public static int escribirNumero(char[] destino, int posicion, long valor, int ancho) {
+        if (valor < 0) {
+            throw new IllegalArgumentException("Valor negativo en la clave de acceso: " + valor);
+        }
+        for (int i = posicion + ancho - 1; i >= posicion; i--) {
+            destino[i] = (char) ('0' + valor % 10);
+            valor /= 10;
+        }
+        if (valor != 0) {
+            throw new IllegalArgumentException("El valor no cabe en " + ancho + " dígitos");
+        }
+        return posicion + ancho;
+    }
+
+    private static int copiarDigitos(char[] destino, int posicion, CharSequence origen, int ancho) {
+        for (int i = 0; i < ancho; i++) {
+            char c = origen.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("La clave de acceso solo admite dígitos");
+            }
+            destino[posicion + i] = c;
+        }
+        return posicion + ancho;
+    }
+}
@@ -0,0 +1,615 @@
+package com.Facturacion.facturacion.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido término → documentos, con documentos numerados en orden creciente.
+ * <p>
+ * Los documentos nuevos entran a un búfer en memoria (un mapa de listas de enteros); cuando
+ * el búfer llega a {@code documentosPorSegmento} se congela en un segmento inmutable:
+ * términos ordenados y, por cada uno, sus documentos como diferencias codificadas en varint
+ * (uno o dos bytes por documento en la práctica). Los segmentos vecinos de tamaño parecido se
+ * fusionan en el {@code Executor} recibido, fuera del candado, así que quedan O(log n)
+ * segmentos y agregar un documento no espera a las fusiones. Los documentos eliminados
+ * se marcan en un {@link BitSet} (un bit por documento, no se desmarca nunca) y sus
+ * entradas se descartan al fusionar.
+ * <p>
+ * Las búsquedas devuelven los documentos más recientes primero. Los segmentos se recorren
+ * sin candado (son inmutables); solo el búfer y los eliminados se leen con el candado de lectura.
+ */
+public final class IndiceInvertido {
+
+    private static final int[] VACIO = new int[0];
+
+    private final int documentosPorSegmento;
+    private final Executor fusiones;
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private final Object fusionando = new Object();
+
+    private volatile List<Segmento> segmentos = List.of();
+    private Map<String, Lista> bufer = new HashMap<>();
+    private int documentosEnBufer;
+    private int primeroEnBufer;
+    private int ultimoDocumento = -1;
+    private int cantidadAgregados;
+    private final BitSet eliminados = new BitSet();
+    private int cantidadEliminados;
+
+    public IndiceInvertido(int documentosPorSegmento, Executor fusiones) {
+        if (documentosPorSegmento < 1) {
+            throw new IllegalArgumentException("documentosPorSegmento debe ser positivo");
+        }
+        this.documentosPorSegmento = documentosPorSegmento;
+        this.fusiones = fusiones;
+    }
+
+    /**
+     * Agrega un documento; su número debe ser mayor que el de todos los anteriores.
+     */
+    public void agregar(int documento, Collection<String> terminos) {
+        boolean congelado;
+        candado.writeLock().lock();
+        try {
+            if (documento <= ultimoDocumento) {
+                throw new IllegalArgumentException("Documento fuera de orden: " + documento + " <= " + ultimoDocumento);
+            }
+            ultimoDocumento = documento;
+            if (documentosEnBufer == 0) {
+                primeroEnBufer = documento;
+            }
+            for (String termino : terminos) {
+                bufer.computeIfAbsent(termino, t -> new Lista(4)).agregarUnico(documento);
+            }
+            cantidadAgregados++;
+            congelado = ++documentosEnBufer >= documentosPorSegmento && congelar();
+        } finally {
+            candado.writeLock().unlock();
+        }
+        if (congelado) {
+            fusiones.execute(this::fusionar);
+        }
+    }
+
+    /**
+     * Marca como eliminado un documento ya agregado.
+     */
+    public void eliminar(int documento) {
+        candado.writeLock().lock();
+        try {
+            if (!eliminados.get(documento)) {
+                eliminados.set(documento);
+                cantidadEliminados++;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Documentos que contienen todos los términos, del más reciente al más antiguo.
+     * @param ultimoEsPrefijo si el último término se busca como prefijo ("frit" → "fritada", "fritura")
+     */
+    public int[] buscar(List<String> terminos, boolean ultimoEsPrefijo, int limite) {
+        if (terminos.isEmpty() || limite <= 0) {
+            return VACIO;
+        }
+        Lista resultado = new Lista(Math.min(limite, 64));
+        List<Segmento> congelados;
+        candado.readLock().lock();
+        try {
+            congelados = segmentos;
+            agregarVigentes(coincidenciasBufer(terminos, ultimoEsPrefijo), resultado, limite);
+        } finally {
+            candado.readLock().unlock();
+        }
+
+        for (int i = congelados.size() - 1; i >= 0 && resultado.tamano < limite; i--) {
+            int[] coincidencias = congelados.get(i).buscar(terminos, ultimoEsPrefijo);
+            if (coincidencias.length == 0) {
+                continue;
+            }
+            candado.readLock().lock();
+            try {
+                agregarVigentes(coincidencias, resultado, limite);
+            } finally {
+                candado.readLock().unlock();
+            }
+        }
+        return resultado.aArreglo();
+    }
+
+    /**
+     * Congela el búfer aunque no esté lleno (por ejemplo, después de una carga masiva).
+     */
+    public void congelarBufer() {
+        boolean congelado;
+        candado.writeLock().lock();
+        try {
+            congelado = congelar();
+        } finally {
+            candado.writeLock().unlock();
+        }
+        if (congelado) {
+            fusiones.execute(this::fusionar);
+        }
+    }
+
+    public int getCantidadSegmentos() {
+        return segmentos.size();
+    }
+
+    public int getCantidadDocumentos() {
+        candado.readLock().lock();
+        try {
+            return cantidadAgregados - cantidadEliminados;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes de las listas de documentos comprimidas en los segmentos.
+     */
+    public long getBytesSegmentos() {
+        long bytes = 0;
+        for (Segmento segmento : segmentos) {
+            bytes += segmento.datos.length;
+        }
+        return bytes;
+    }
+
+    // Con el candado de lectura: copia en orden descendente lo que no fue eliminado
+    private void agregarVigentes(int[] coincidencias, Lista resultado, int limite) {
+        for (int i = coincidencias.length - 1; i >= 0 && resultado.tamano < limite; i--) {
+            if (!eliminados.get(coincidencias[i])) {
+                resultado.agregar(coincidencias[i]);
+            }
+        }
+    }
+
+    private int[] coincidenciasBufer(List<String> terminos, boolean ultimoEsPrefijo) {
+        int[][] listas = new int[terminos.size()][];
+        for (int t = 0; t < terminos.size(); t++) {
+            String termino = terminos.get(t);
+            if (ultimoEsPrefijo && t == terminos.size() - 1) {
+                Lista union = new Lista(16);
+                for (Map.Entry<String, Lista> entrada : bufer.entrySet()) {
+                    if (entrada.getKey().startsWith(termino)) {
+                        union.agregarTodos(entrada.getValue());
+                    }
+                }
+                listas[t] = union.ordenarSinRepetidos();
+            } else {
+                Lista lista = bufer.get(termino);
+                listas[t] = lista != null ? lista.aArreglo() : VACIO;
+            }
+        }
+        return interseccion(listas);
+    }
+
+    // Con el candado de escritura
+    private boolean congelar() {
+        if (documentosEnBufer == 0) {
+            return false;
+        }
+        Segmento nuevo = Segmento.desdeBufer(bufer, documentosEnBufer, primeroEnBufer, ultimoDocumento);
+        List<Segmento> lista = new ArrayList<>(segmentos.size() + 1);
+        lista.addAll(segmentos);
+        lista.add(nuevo);
+        segmentos = List.copyOf(lista);
+        bufer = new HashMap<>();
+        documentosEnBufer = 0;
+        return true;
+    }
+
+    // Une pares de segmentos vecinos mientras el más antiguo no supere el doble del más nuevo
+    private void fusionar() {
+        synchronized (fusionando) {
+            while (true) {
+                List<Segmento> actuales = segmentos;
+                int i = actuales.size() - 2;
+                while (i >= 0 && actuales.get(i).documentos > 2 * actuales.get(i + 1).documentos) {
+                    i--;
+                }
+                if (i < 0) {
+                    return;
+                }
+                Segmento antiguo = actuales.get(i);
+                Segmento reciente = actuales.get(i + 1);
+                BitSet descartados;
+                candado.readLock().lock();
+                try {
+                    descartados = (BitSet) eliminados.clone();
+                } finally {
+                    candado.readLock().unlock();
+                }
+                Segmento unido = Segmento.unir(antiguo, reciente, descartados);
+
+                candado.writeLock().lock();
+                try {
+                    // Mientras tanto solo pudieron agregarse segmentos al final
+                    List<Segmento> lista = new ArrayList<>(segmentos);
+                    int posicion = lista.indexOf(antiguo);
+                    lista.set(posicion, unido);
+                    lista.remove(posicion + 1);
+                    segmentos = List.copyOf(lista);
+                } finally {
+                    candado.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    static int[] interseccion(int[][] listas) {
+        int[][] ordenadas = listas.clone();
+        Arrays.sort(ordenadas, (a, b) -> Integer.compare(a.length, b.length));
+        int[] resultado = ordenadas[0];
+        for (int i = 1; i < ordenadas.length && resultado.length > 0; i++) {
+            resultado = interseccion(resultado, ordenadas[i]);
+        }
+        return resultado;
+    }
+
+    // La lista corta busca en la larga con saltos exponenciales
+    private static int[] interseccion(int[] corta, int[] larga) {
+        int[] resultado = new int[corta.length];
+        int tamano = 0;
+        int desde = 0;
+        for (int documento : corta) {
+            int paso = 1;
+            int hasta = desde;
+            while (hasta < larga.length && larga[hasta] < documento) {
+                desde = hasta;
+                hasta += paso;
+                paso <<= 1;
+            }
+            int encontrado = Arrays.binarySearch(larga, desde, Math.min(hasta + 1, larga.length), documento);
+            if (encontrado >= 0) {
+                resultado[tamano++] = documento;
+                desde = encontrado + 1;
+            } else {
+                desde = -encontrado - 1;
+            }
+            if (desde >= larga.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(resultado, tamano);
+    }
+
+    /**
+     * Segmento inmutable: términos ordenados y listas de documentos en varint por diferencias.
+     * Cada {@link #BLOQUE} documentos de una lista hay un salto (último documento del bloque,
+     * byte donde empieza el siguiente) para que una intersección no decodifique la lista entera.
+     * Cubre los documentos agregados de {@code primero} a {@code ultimo}, incluso los que no tienen
+     * términos; {@code documentos} son los que quedan sin contar los eliminados antes de armarlo.
+     */
+    static final class Segmento {
+        static final int BLOQUE = 128;
+
+        final String[] terminos;
+        final int[] inicio;
+        final int[] cantidad;
+        final int[] inicioSaltos;
+        final int[] saltos;
+        final byte[] datos;
+        final int agregados;
+        final int documentos;
+        final int primero;
+        final int ultimo;
+
+        private Segmento(Escritor escritor, int agregados, int documentos, int primero, int ultimo) {
+            escritor.inicio.agregar(escritor.datos.tamano);
+            escritor.inicioSaltos.agregar(escritor.saltos.tamano / 2);
+            this.terminos = escritor.terminos.toArray(new String[0]);
+            this.inicio = escritor.inicio.aArreglo();
+            this.cantidad = escritor.cantidad.aArreglo();
+            this.inicioSaltos = escritor.inicioSaltos.aArreglo();
+            this.saltos = escritor.saltos.aArreglo();
+            this.datos = escritor.datos.aArreglo();
+            this.agregados = agregados;
+            this.documentos = documentos;
+            this.primero = primero;
+            this.ultimo = ultimo;
+        }
+
+        static Segmento desdeBufer(Map<String, Lista> bufer, int documentos, int primero, int ultimo) {
+            String[] terminos = bufer.keySet().toArray(new String[0]);
+            Arrays.sort(terminos);
+            Escritor escritor = new Escritor(terminos.length, terminos.length * 4);
+            for (String termino : terminos) {
+                Lista lista = bufer.get(termino);
+                escritor.agregar(termino, lista.valores, lista.tamano);
+            }
+            return new Segmento(escritor, documentos, documentos, primero, ultimo);
+        }
+
+        // Los documentos de "antiguo" son todos menores que los de "reciente"
+        static Segmento unir(Segmento antiguo, Segmento reciente, BitSet descartados) {
+            Escritor escritor = new Escritor(Math.max(antiguo.terminos.length, reciente.terminos.length),
+                    antiguo.datos.length + reciente.datos.length);
+            Lista documentos = new Lista(64);
+            int a = 0;
+            int r = 0;
+            while (a < antiguo.terminos.length || r < reciente.terminos.length) {
+                int comparacion = a == antiguo.terminos.length ? 1
+                        : r == reciente.terminos.length ? -1
+                        : antiguo.terminos[a].compareTo(reciente.terminos[r]);
+                String termino = comparacion <= 0 ? antiguo.terminos[a] : reciente.terminos[r];
+                documentos.tamano = 0;
+                if (comparacion <= 0) {
+                    antiguo.decodificar(a++, documentos, descartados);
+                }
+                if (comparacion >= 0) {
+                    reciente.decodificar(r++, documentos, descartados);
+                }
+                if (documentos.tamano > 0) {
+                    escritor.agregar(termino, documentos.valores, documentos.tamano);
+                }
+            }
+            int agregados = antiguo.agregados + reciente.agregados;
+            int cantidad = agregados;
+            for (int d = descartados.nextSetBit(antiguo.primero); d >= 0 && d <= reciente.ultimo;
+                 d = descartados.nextSetBit(d + 1)) {
+                cantidad--;
+            }
+            return new Segmento(escritor, agregados, cantidad, antiguo.primero, reciente.ultimo);
+        }
+
+        // Se decodifica solo la lista más corta; las demás se recorren con saltos
+        int[] buscar(List<String> consulta, boolean ultimoEsPrefijo) {
+            int[] exactos = new int[consulta.size()];
+            int[] prefijo = null;
+            int menor = 0;
+            int menorCantidad = Integer.MAX_VALUE;
+            for (int t = 0; t < consulta.size(); t++) {
+                String termino = consulta.get(t);
+                int documentosTermino;
+                if (ultimoEsPrefijo && t == consulta.size() - 1) {
+                    prefijo = conPrefijo(termino);
+                    exactos[t] = -1;
+                    documentosTermino = prefijo.length;
+                } else {
+                    exactos[t] = Arrays.binarySearch(terminos, termino);
+                    documentosTermino = exactos[t] >= 0 ? cantidad[exactos[t]] : 0;
+                }
+                if (documentosTermino == 0) {
+                    return VACIO;
+                }
+                if (documentosTermino < menorCantidad) {
+                    menor = t;
+                    menorCantidad = documentosTermino;
+                }
+            }
+
+            int[] candidatos = exactos[menor] >= 0 ? documentos(exactos[menor]) : prefijo;
+            for (int t = 0; t < consulta.size() && candidatos.length > 0; t++) {
+                if (t == menor) {
+                    continue;
+                }
+                candidatos = exactos[t] >= 0 ? filtrar(candidatos, new Cursor(exactos[t])) : interseccion(candidatos, prefijo);
+            }
+            return candidatos;
+        }
+
+        private int[] conPrefijo(String prefijo) {
+            int i = Arrays.binarySearch(terminos, prefijo);
+            int desde = i >= 0 ? i : -i - 1;
+            int hasta = desde;
+            while (hasta < terminos.length && terminos[hasta].startsWith(prefijo)) {
+                hasta++;
+            }
+            if (hasta - desde <= 1) {
+                return hasta > desde ? documentos(desde) : VACIO;
+            }
+            Lista union = new Lista(16);
+            for (int t = desde; t < hasta; t++) {
+                decodificar(t, union, null);
+            }
+            return union.ordenarSinRepetidos();
+        }
+
+        private static int[] filtrar(int[] candidatos, Cursor cursor) {
+            int[] resultado = new int[candidatos.length];
+            int tamano = 0;
+            for (int documento : candidatos) {
+                int siguiente = cursor.avanzar(documento);
+                if (siguiente < 0) {
+                    break;
+                }
+                if (siguiente == documento) {
+                    resultado[tamano++] = documento;
+                }
+            }
+            return Arrays.copyOf(resultado, tamano);
+        }
+
+        int[] documentos(int termino) {
+            Lista lista = new Lista(cantidad[termino]);
+            decodificar(termino, lista, null);
+            return lista.aArreglo();
+        }
+
+        void decodificar(int termino, Lista destino, BitSet descartados) {
+            int documento = -1;
+            int i = inicio[termino];
+            int fin = inicio[termino + 1];
+            while (i < fin) {
+                int valor = 0;
+                int desplazamiento = 0;
+                byte b;
+                do {
+                    b = datos[i++];
+                    valor |= (b & 0x7F) << desplazamiento;
+                    desplazamiento += 7;
+                } while (b < 0);
+                documento += valor;
+                if (descartados == null || !descartados.get(documento)) {
+                    destino.agregar(documento);
+                }
+            }
+        }
+
+        /**
+         * Recorre la lista de un término hacia adelante, saltando los bloques que quedan atrás.
+         */
+        final class Cursor {
+            private int posicion;
+            private final int fin;
+            private int salto;
+            private final int finSaltos;
+            private int documento = -1;
+
+            Cursor(int termino) {
+                posicion = inicio[termino];
+                fin = inicio[termino + 1];
+                salto = inicioSaltos[termino];
+                finSaltos = inicioSaltos[termino + 1];
+            }
+
+            // Primer documento >= objetivo, o -1 si la lista se terminó
+            int avanzar(int objetivo) {
+                if (documento >= objetivo) {
+                    return documento;
+                }
+                while (salto < finSaltos && saltos[2 * salto] < objetivo) {
+                    if (saltos[2 * salto + 1] > posicion) {
+                        documento = saltos[2 * salto];
+                        posicion = saltos[2 * salto + 1];
+                    }
+                    salto++;
+                }
+                while (posicion < fin) {
+                    int valor = 0;
+                    int desplazamiento = 0;
+                    byte b;
+                    do {
+                        b = datos[posicion++];
+                        valor |= (b & 0x7F) << desplazamiento;
+                        desplazamiento += 7;
+                    } while (b < 0);
+                    documento += valor;
+                    if (documento >= objetivo) {
+                        return documento;
+                    }
+                }
+                return -1;
+            }
+        }
+    }
+
+    // Arma las listas de un segmento, término por término en orden
+    private static final class Escritor {
+        final List<String> terminos;
+        final Lista inicio;
+        final Lista cantidad;
+        final Lista inicioSaltos;
+        final Lista saltos = new Lista(64);
+        final Bytes datos;
+
+        Escritor(int terminosEstimados, int bytesEstimados) {
+            terminos = new ArrayList<>(terminosEstimados);
+            inicio = new Lista(terminosEstimados + 1);
+            cantidad = new Lista(terminosEstimados);
+            inicioSaltos = new Lista(terminosEstimados + 1);
+            datos = new Bytes(bytesEstimados);
+        }
+
+        // Diferencias con el documento anterior (el primero contra -1)
+        void agregar(String termino, int[] documentos, int tamano) {
+            terminos.add(termino);
+            inicio.agregar(datos.tamano);
+            cantidad.agregar(tamano);
+            inicioSaltos.agregar(saltos.tamano / 2);
+            int anterior = -1;
+            for (int i = 0; i < tamano; i++) {
+                datos.escribirVarint(documentos[i] - anterior);
+                anterior = documentos[i];
+                if ((i + 1) % Segmento.BLOQUE == 0 && i + 1 < tamano) {
+                    saltos.agregar(anterior);
+                    saltos.agregar(datos.tamano);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lista creciente de enteros sin cajas.
+     */
+    static final class Lista {
+        int[] valores;
+        int tamano;
+
+        Lista(int capacidad) {
+            valores = new int[Math.max(capacidad, 1)];
+        }
+
+        void agregar(int valor) {
+            if (tamano == valores.length) {
+                valores = Arrays.copyOf(valores, tamano * 2);
+            }
+            valores[tamano++] = valor;
+        }
+
+        // Un documento repite términos; en el búfer basta con mirar el último
+        void agregarUnico(int valor) {
+            if (tamano == 0 || valores[tamano - 1] != valor) {
+                agregar(valor);
+            }
+        }
+
+        void agregarTodos(Lista otra) {
+            for (int i = 0; i < otra.tamano; i++) {
+                agregar(otra.valores[i]);
+            }
+        }
+
+        int[] ordenarSinRepetidos() {
+            Arrays.sort(valores, 0, tamano);
+            int unicos = 0;
+            for (int i = 0; i < tamano; i++) {
+                if (unicos == 0 || valores[unicos - 1] != valores[i]) {
+                    valores[unicos++] = valores[i];
+                }
+            }
+            return Arrays.copyOf(valores, unicos);
+        }
+
+        int[] aArreglo() {
+            return Arrays.copyOf(valores, tamano);
+        }
+    }
+
+    private static final class Bytes {
+        byte[] valores;
+        int tamano;
+
+        Bytes(int capacidad) {
+            valores = new byte[Math.max(capacidad, 16)];
+        }
+
+        // 7 bits por byte, el bit alto indica que sigue otro
+        void escribirVarint(int valor) {
+            if (tamano + 5 > valores.length) {
+                valores = Arrays.copyOf(valores, Math.max(valores.length * 2, tamano + 5));
+            }
+            while ((valor & ~0x7F) != 0) {
+                valores[tamano++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            valores[tamano++] = (byte) valor;
+        }
+
+        byte[] aArreglo() {
+            return Arrays.copyOf(valores, tamano);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.Facturacion.facturacion.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Índice inmutable de términos para búsquedas por prefijo (autocompletado).
+ * <p>
+ * Los términos van ordenados y empaquetados en un solo {@code char[]}, con el inicio de cada
+ * uno en un {@code int[]} y el documento al que pertenece en otro: unos 2 bytes por carácter
+ * más 8 por término, sin un objeto por término. Los términos que empiezan con un prefijo son
+ * un tramo contiguo que se encuentra con dos búsquedas binarias.
+ */
+public final class IndicePrefijos {
+
+    private final char[] texto;
+    // inicio[i] .. inicio[i + 1] es el término i; tiene un elemento más que términos
+    private final int[] inicio;
+    private final int[] documentos;
+
+    private IndicePrefijos(char[] texto, int[] inicio, int[] documentos) {
+        this.texto = texto;
+        this.inicio = inicio;
+        this.documentos = documentos;
+    }
+
+    public int getCantidad() {
+        return documentos.length;
+    }
+
+    public long getBytes() {
+        return texto.length * 2L + inicio.length * 4L + documentos.length * 4L;
+    }
+
+    /**
+     * Primera posición cuyo término empieza con {@code prefijo} (o es mayor).
+     */
+    public int desde(CharSequence prefijo) {
+        int bajo = 0;
+        int alto = documentos.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (comparar(medio, prefijo, false) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Posición siguiente al último término que empieza con {@code prefijo}.
+     */
+    public int hasta(CharSequence prefijo) {
+        int bajo = 0;
+        int alto = documentos.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (comparar(medio, prefijo, true) <= 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    public int documento(int posicion) {
+        return documentos[posicion];
+    }
+
+    public String termino(int posicion) {
+        return new String(texto, inicio[posicion], inicio[posicion + 1] - inicio[posicion]);
+    }
+
+    // Compara el término con el prefijo; con comoPrefijo un término que empieza con él cuenta como igual
+    private int comparar(int posicion, CharSequence prefijo, boolean comoPrefijo) {
+        int a = inicio[posicion];
+        int largo = inicio[posicion + 1] - a;
+        int n = Math.min(largo, prefijo.length());
+        for (int i = 0; i < n; i++) {
+            int d = texto[a + i] - prefijo.charAt(i);
+            if (d != 0) {
+                return d;
+            }
+        }
+        if (comoPrefijo && largo >= prefijo.length()) {
+            return 0;
+        }
+        return largo - prefijo.length();
+    }
+
+    /**
+     * Junta pares (término, documento) y arma el índice ordenado.
+     */
+    public static final class Escritor {
+        private final List<String> terminos = new ArrayList<>();
+        private final List<Integer> documentos = new ArrayList<>();
+        private long caracteres;
+
+        public Escritor agregar(String termino, int documento) {
+            terminos.add(termino);
+            documentos.add(documento);
+            caracteres += termino.length();
+            return this;
+        }
+
+        public IndicePrefijos construir() {
+            int n = terminos.size();
+            if (caracteres > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Demasiado texto para un índice de prefijos");
+            }
+            Integer[] orden = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, Comparator.<Integer, String>comparing(terminos::get)
+                    .thenComparingInt(documentos::get));
+
+            char[] texto = new char[(int) caracteres];
+            int[] inicio = new int[n + 1];
+            int[] docs = new int[n];
+            int pos = 0;
+            for (int i = 0; i < n; i++) {
+                String termino = terminos.get(orden[i]);
+                inicio[i] = pos;
+                termino.getChars(0, termino.length(), texto, pos);
+                pos += termino.length();
+                docs[i] = documentos.get(orden[i]);
+            }
+            inicio[n] = pos;
+            return new IndicePrefijos(texto, inicio, docs);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.Facturacion.facturacion.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reglas con las que se tasa una factura, ya compiladas en arreglos planos.
+ * <ul>
+ *   <li>Descuento por cantidad: un {@code int[]} indexado por la cantidad (hasta la del último
+ *   tramo), así el porcentaje sale de una sola lectura.</li>
+ *   <li>IVA general y recargo por servicio, en puntos básicos.</li>
+ *   <li>Productos con reglas propias (IVA 0%, exento, no objeto, ICE): tabla hash abierta de
+ *   códigos que da una fila; la fila 0 es la de cualquier otro producto, de modo que quien
+ *   consulta no distingue el caso.</li>
+ * </ul>
+ * Las tablas son inmutables. {@link #vigentes()} es una lectura volátil y {@link #publicar}
+ * reemplaza la referencia de una vez: un cálculo en curso termina con las reglas con que
+ * empezó, sin bloqueos. Cada versión publicada queda en el historial para volver a tasar una
+ * factura guardada con las reglas con que se emitió ({@link #porVersion}).
+ */
+public final class ReglasFacturacion {
+
+    // Categorías de IVA de un producto
+    public static final int IVA_TARIFA = 0;
+    public static final int IVA_CERO = 1;
+    public static final int IVA_EXENTO = 2;
+    public static final int IVA_NO_OBJETO = 3;
+
+    public static final int MAX_CANTIDAD_TRAMO = 100_000;
+
+    /**
+     * Las reglas de siempre (versión 0): 5% desde 4 unidades, 10% desde 8, IVA 15%, sin ICE
+     * ni servicio. Son las de cualquier factura guardada antes de que hubiera versiones.
+     */
+    public static final ReglasFacturacion PREDETERMINADAS = new Escritor(0)
+            .tramo(4, 5)
+            .tramo(8, 10)
+            .tasaIva(Dinero.TASA_IVA_15)
+            .construir();
+
+    private static final ConcurrentMap<Integer, ReglasFacturacion> HISTORIAL = new ConcurrentHashMap<>();
+    private static volatile ReglasFacturacion vigentes = PREDETERMINADAS;
+
+    static {
+        HISTORIAL.put(0, PREDETERMINADAS);
+    }
+
+    private final int version;
+    private final int[] descuentoPorCantidad;
+    private final int[] tramosDesde;
+    private final int[] tramosPorcentaje;
+    private final int tasaIva;
+    private final int tasaServicio;
+    private final String[] codigos;
+    private final int[] filas;
+    private final byte[] categorias;
+    private final int[] tasasIva;
+    private final int[] tasasIce;
+
+    private ReglasFacturacion(int version, int[] descuentoPorCantidad, int[] tramosDesde, int[] tramosPorcentaje,
+                              int tasaIva, int tasaServicio, String[] codigos, int[] filas, byte[] categorias,
+                              int[] tasasIce) {
+        this.version = version;
+        this.descuentoPorCantidad = descuentoPorCantidad;
+        this.tramosDesde = tramosDesde;
+        this.tramosPorcentaje = tramosPorcentaje;
+        this.tasaIva = tasaIva;
+        this.tasaServicio = tasaServicio;
+        this.codigos = codigos;
+        this.filas = filas;
+        this.categorias = categorias;
+        this.tasasIce = tasasIce;
+        this.tasasIva = new int[categorias.length];
+        for (int fila = 0; fila < categorias.length; fila++) {
+            tasasIva[fila] = categorias[fila] == IVA_TARIFA ? tasaIva : 0;
+        }
+    }
+
+    public static ReglasFacturacion vigentes() {
+        return vigentes;
+    }
+
+    /**
+     * Reglas de una versión ya vista (publicada o cargada del historial), o null.
+     */
+    public static ReglasFacturacion porVersion(int version) {
+        return HISTORIAL.get(version);
+    }
+
+    /**
+     * Guarda las reglas en el historial sin volverlas vigentes.
+     */
+    public static void registrar(ReglasFacturacion reglas) {
+        HISTORIAL.put(reglas.version, reglas);
+    }
+
+    /**
+     * Registra las reglas y las vuelve vigentes para los cálculos que empiecen desde ahora.
+     */
+    public static void publicar(ReglasFacturacion reglas) {
+        registrar(reglas);
+        vigentes = reglas;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Porcentaje de descuento para esa cantidad de unidades (0 si no llega a ningún tramo).
+     */
+    public int descuento(int cantidad) {
+        return descuentoPorCantidad[Math.max(0, Math.min(cantidad, descuentoPorCantidad.length - 1))];
+    }
+
+    public int getTasaIva() {
+        return tasaIva;
+    }
+
+    public int getTasaServicio() {
+        return tasaServicio;
+    }
+
+    /**
+     * La tasa de IVA para las etiquetas de la factura ("15%").
+     */
+    public String porcentajeIva() {
+        return Dinero.formatearTasa(tasaIva);
+    }
+
+    /**
+     * Fila con las reglas del producto; 0 (las generales) si no tiene reglas propias o el código es null.
+     */
+    public int fila(String codigo) {
+        if (codigo == null) {
+            return 0;
+        }
+        int mascara = codigos.length - 1;
+        for (int i = hash(codigo) & mascara; ; i = (i + 1) & mascara) {
+            String actual = codigos[i];
+            if (actual == null) {
+                return 0;
+            }
+            if (actual.equals(codigo)) {
+                return filas[i];
+            }
+        }
+    }
+
+    public int categoriaIva(int fila) {
+        return categorias[fila];
+    }
+
+    /**
+     * Tasa de IVA de la fila en puntos básicos: la general si está gravado con tarifa, 0 si no.
+     */
+    public int tasaIva(int fila) {
+        return tasasIva[fila];
+    }
+
+    public int tasaIce(int fila) {
+        return tasasIce[fila];
+    }
+
+    public int getCantidadProductos() {
+        return categorias.length - 1;
+    }
+
+    // Tramos en orden creciente de cantidad, para el cálculo vectorial
+    int[] getTramosDesde() {
+        return tramosDesde;
+    }
+
+    int[] getTramosPorcentaje() {
+        return tramosPorcentaje;
+    }
+
+    // Tasa de IVA por fila (ver tasaIva), para el cálculo vectorial
+    int[] getTasasIva() {
+        return tasasIva;
+    }
+
+    /**
+     * Tramos como cantidad mínima → porcentaje, en orden.
+     */
+    public Map<Integer, Integer> getTramos() {
+        Map<Integer, Integer> tramos = new LinkedHashMap<>();
+        for (int i = 0; i < tramosDesde.length; i++) {
+            tramos.put(tramosDesde[i], tramosPorcentaje[i]);
+        }
+        return tramos;
+    }
+
+    private static int hash(String codigo) {
+        int h = codigo.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Junta las reglas de una versión y las compila. Los tramos pueden agregarse en cualquier
+     * orden; un producto repetido es un error.
+     */
+    public static final class Escritor {
+        private final int version;
+        private final TreeMap<Integer, Integer> tramos = new TreeMap<>();
+        private final Map<String, int[]> productos = new LinkedHashMap<>();
+        private int tasaIva = Dinero.TASA_IVA_15;
+        private int tasaServicio;
+
+        public Escritor(int version) {
+            if (version < 0) {
+                throw new IllegalArgumentException("La versión de las reglas no puede ser negativa");
+            }
+            this.version = version;
+        }
+
+        public Escritor tramo(int desde, int porcentaje) {
+            if (desde < 1 || desde > MAX_CANTIDAD_TRAMO) {
+                throw new IllegalArgumentException("Tramo desde " + desde + ": debe estar entre 1 y " + MAX_CANTIDAD_TRAMO);
+            }
+            if (porcentaje < 0 || porcentaje > 100) {
+                throw new IllegalArgumentException("Tramo desde " + desde + ": el descuento debe estar entre 0 y 100%");
+            }
+            if (tramos.put(desde, porcentaje) != null) {
+                throw new IllegalArgumentException("Tramo repetido desde " + desde);
+            }
+            return this;
+        }
+
+        public Escritor tasaIva(int puntosBasicos) {
+            this.tasaIva = tasa("IVA", puntosBasicos);
+            return this;
+        }
+
+        public Escritor tasaServicio(int puntosBasicos) {
+            this.tasaServicio = tasa("servicio", puntosBasicos);
+            return this;
+        }
+
+        public Escritor producto(String codigo, int categoriaIva, int tasaIce) {
+            if (codigo == null || codigo.isBlank()) {
+                throw new IllegalArgumentException("Regla de producto sin código");
+            }
+            if (categoriaIva < IVA_TARIFA || categoriaIva > IVA_NO_OBJETO) {
+                throw new IllegalArgumentException("Producto " + codigo + ": categoría de IVA inválida");
+            }
+            if (productos.put(codigo, new int[]{categoriaIva, tasa("ICE de " + codigo, tasaIce)}) != null) {
+                throw new IllegalArgumentException("Producto repetido en las reglas: " + codigo);
+            }
+            return this;
+        }
+
+        public ReglasFacturacion construir() {
+            int tope = tramos.isEmpty() ? 0 : tramos.lastKey();
+            int[] descuentoPorCantidad = new int[tope + 1];
+            int[] tramosDesde = new int[tramos.size()];
+            int[] tramosPorcentaje = new int[tramos.size()];
+            int t = 0;
+            for (Map.Entry<Integer, Integer> tramo : tramos.entrySet()) {
+                Arrays.fill(descuentoPorCantidad, tramo.getKey(), tope + 1, tramo.getValue());
+                tramosDesde[t] = tramo.getKey();
+                tramosPorcentaje[t++] = tramo.getValue();
+            }
+
+            int n = productos.size();
+            byte[] categorias = new byte[n + 1];
+            int[] tasasIce = new int[n + 1];
+            int capacidad = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+            String[] codigos = new String[capacidad];
+            int[] filas = new int[capacidad];
+            int fila = 1;
+            for (Map.Entry<String, int[]> producto : productos.entrySet()) {
+                categorias[fila] = (byte) producto.getValue()[0];
+                tasasIce[fila] = producto.getValue()[1];
+                int i = hash(producto.getKey()) & (capacidad - 1);
+                while (codigos[i] != null) {
+                    i = (i + 1) & (capacidad - 1);
+                }
+                codigos[i] = producto.getKey();
+                filas[i] = fila++;
+            }
+            return new ReglasFacturacion(version, descuentoPorCantidad, tramosDesde, tramosPorcentaje,
+                    tasaIva, tasaServicio, codigos, filas, categorias, tasasIce);
+        }
+
+        private static int tasa(String nombre, int puntosBasicos) {
+            if (puntosBasicos < 0 || puntosBasicos > 10_000) {
+                throw new IllegalArgumentException("Tasa de " + nombre + " fuera de rango: debe estar entre 0 y 100%");
+            }
+            return puntosBasicos;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.Facturacion.facturacion.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream que escribe en el destino y guarda una copia en memoria
+ * mientras no supere {@code limite} bytes. Si lo supera, descarta la copia.
+ */
+public class SalidaConCopia extends OutputStream {
+
+    private final OutputStream destino;
+    private final int limite;
+    private ByteArrayOutputStream copia = new ByteArrayOutputStream();
+
+    public SalidaConCopia(OutputStream destino, int limite) {
+        this.destino = destino;
+        this.limite = limite;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        destino.write(b);
+        if (copia != null) {
+            if (copia.size() + 1 > limite) {
+                copia = null;
+            } else {
+                copia.write(b);
+            }
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        destino.write(b, off, len);
+        if (copia != null) {
+            if (copia.size() + len > limite) {
+                copia = null;
+            } else {
+                copia.write(b, off, len);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        destino.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        destino.close();
+    }
+
+    /**
+     * Devuelve lo escrito, o null si se superó el límite.
+     */
+    public byte[] getCopia() {
+        return copia != null ? copia.toByteArray() : null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.Facturacion.facturacion.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream que cuenta los bytes escritos en el destino.
+ */
+public class SalidaContador extends FilterOutputStream {
+
+    private long bytes;
+
+    public SalidaContador(OutputStream destino) {
+        super(destino);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        bytes += len;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
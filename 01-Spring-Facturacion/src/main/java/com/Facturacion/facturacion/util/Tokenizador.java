@@ -0,0 +1,132 @@
+package com.Facturacion.facturacion.util;
+
+import java.text.Normalizer;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Separa un texto en términos para la búsqueda: minúsculas, sin tildes ni diéresis
+ * ("Fritadá" → "fritada", "ÑAME" → "name"), solo letras y dígitos.
+ * Las palabras vacías más comunes del español no se indexan.
+ */
+public final class Tokenizador {
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "de", "del", "la", "las", "el", "los", "y", "e", "o", "u", "a", "al", "en", "con", "por", "para", "sin");
+
+    private Tokenizador() {
+    }
+
+    public static void tokenizar(String texto, Consumer<String> destino) {
+        if (texto == null) {
+            return;
+        }
+        StringBuilder termino = new StringBuilder(16);
+        for (int i = 0; i < texto.length(); i++) {
+            char c = normalizar(texto.charAt(i));
+            if (c != 0) {
+                termino.append(c);
+            } else if (!termino.isEmpty()) {
+                emitir(termino, destino);
+            }
+        }
+        if (!termino.isEmpty()) {
+            emitir(termino, destino);
+        }
+    }
+
+    public static boolean esPalabraVacia(String termino) {
+        return PALABRAS_VACIAS.contains(termino);
+    }
+
+    /**
+     * Si alguno de los términos de {@code texto} empieza con {@code prefijo} (ya normalizado);
+     * lo mismo que buscarlo entre lo que da {@link #tokenizar}, sin armar los términos.
+     */
+    public static boolean tienePalabraConPrefijo(CharSequence texto, String prefijo) {
+        if (texto == null || prefijo.isEmpty()) {
+            return false;
+        }
+        int n = texto.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && normalizar(texto.charAt(i)) == 0) {
+                i++;
+            }
+            int inicio = i;
+            int largo = 0;
+            boolean coincide = true;
+            for (char c; i < n && (c = normalizar(texto.charAt(i))) != 0; i++, largo++) {
+                if (largo < prefijo.length() && c != prefijo.charAt(largo)) {
+                    coincide = false;
+                }
+            }
+            if (coincide && largo >= prefijo.length() && !esPalabraVacia(texto, inicio, largo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Las palabras vacías son cortas: solo se arma el término si podría serlo
+    private static boolean esPalabraVacia(CharSequence texto, int inicio, int largo) {
+        if (largo > 4) {
+            return false;
+        }
+        char[] termino = new char[largo];
+        for (int i = 0, j = inicio; i < largo; j++) {
+            char c = normalizar(texto.charAt(j));
+            if (c != 0) {
+                termino[i++] = c;
+            }
+        }
+        return PALABRAS_VACIAS.contains(new String(termino));
+    }
+
+    private static void emitir(StringBuilder termino, Consumer<String> destino) {
+        String texto = termino.toString();
+        termino.setLength(0);
+        if (!PALABRAS_VACIAS.contains(texto)) {
+            destino.accept(texto);
+        }
+    }
+
+    /**
+     * Carácter normalizado, o 0 si separa términos.
+     */
+    static char normalizar(char c) {
+        if (c < 128) {
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                return c;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                return (char) (c + ('a' - 'A'));
+            }
+            return 0;
+        }
+        switch (c) {
+            case 'á', 'à', 'ä', 'â', 'Á', 'À', 'Ä', 'Â':
+                return 'a';
+            case 'é', 'è', 'ë', 'ê', 'É', 'È', 'Ë', 'Ê':
+                return 'e';
+            case 'í', 'ì', 'ï', 'î', 'Í', 'Ì', 'Ï', 'Î':
+                return 'i';
+            case 'ó', 'ò', 'ö', 'ô', 'Ó', 'Ò', 'Ö', 'Ô':
+                return 'o';
+            case 'ú', 'ù', 'ü', 'û', 'Ú', 'Ù', 'Ü', 'Û':
+                return 'u';
+            case 'ñ', 'Ñ':
+                return 'n';
+            case 'ç', 'Ç':
+                return 'c';
+            default:
+                break;
+        }
+        if (!Character.isLetterOrDigit(c)) {
+            return 0;
+        }
+        // Otros alfabetos latinos: se quita la marca diacrítica
+        String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        return Character.toLowerCase(base.charAt(0));
+    }
+}
@@ -2,223 +2,310 @@ package com.Facturacion.facturacion.util;
 
 import org.springframework.stereotype.Component;
 
+/**
+ * Validaciones de documentos y datos de contacto ecuatorianos.
+ * <p>
+ * Se llaman en cada tecla desde los endpoints {@code /api/validar/*}, así que trabajan sobre el
+ * {@link CharSequence} con aritmética de caracteres: sin expresiones regulares, sin
+ * {@code substring} ni {@code Integer.parseInt}, y sin reservar memoria por llamada. Los
+ * resultados son los mismos que los de las expresiones que describe cada método; "dígito" es
+ * siempre 0-9 ASCII, como {@code \d} en Java.
+ */
 @Component
 public class ValidadorEcuador {
 
+    // Coeficientes de los algoritmos de verificación
+    private static final int[] COEFICIENTES_CEDULA = {2, 1, 2, 1, 2, 1, 2, 1, 2};
+    private static final int[] COEFICIENTES_SOCIEDAD_PRIVADA = {4, 3, 2, 7, 6, 5, 4, 3, 2};
+    private static final int[] COEFICIENTES_SOCIEDAD_PUBLICA = {3, 2, 7, 6, 5, 4, 3, 2};
+
     /**
      * Valida una cédula ecuatoriana (10 dígitos)
      */
-    public boolean validarCedula(String cedula) {
+    public boolean validarCedula(CharSequence cedula) {
         if (cedula == null || cedula.length() != 10) {
             return false;
         }
+        return soloDigitos(cedula, 0, 10) && cedulaValida(cedula, 0);
+    }
 
-        // Verificar que solo contenga números
-        if (!cedula.matches("\\d{10}")) {
+    /**
+     * Valida un RUC ecuatoriano (13 dígitos)
+     */
+    public boolean validarRuc(CharSequence ruc) {
+        if (ruc == null || ruc.length() != 13) {
             return false;
         }
+        return soloDigitos(ruc, 0, 13) && rucValido(ruc, 0);
+    }
 
-        // Obtener los dos primeros dígitos (código de provincia)
-        int provincia = Integer.parseInt(cedula.substring(0, 2));
-
-        // Validar código de provincia (01-24 o 30 para extranjeros)
-        if (provincia < 1 || (provincia > 24 && provincia != 30)) {
+    /**
+     * Valida cédula o RUC (se ignoran los espacios y controles de los extremos, como con trim)
+     */
+    public boolean validarCedulaORC(CharSequence documento) {
+        if (documento == null || documento.length() == 0) {
             return false;
         }
 
-        // Validar tercer dígito (debe ser menor a 6 para personas naturales)
-        int tercerDigito = Integer.parseInt(cedula.substring(2, 3));
-        if (tercerDigito > 5) {
-            return false;
+        int inicio = inicioSinEspacios(documento);
+        int fin = finSinEspacios(documento, inicio);
+        int largo = fin - inicio;
+
+        if (largo == 10) {
+            return soloDigitos(documento, inicio, fin) && cedulaValida(documento, inicio);
+        } else if (largo == 13) {
+            return soloDigitos(documento, inicio, fin) && rucValido(documento, inicio);
         }
 
-        // Algoritmo de validación Módulo 10
-        int[] coeficientes = {2, 1, 2, 1, 2, 1, 2, 1, 2};
-        int suma = 0;
+        return false;
+    }
 
-        for (int i = 0; i < 9; i++) {
-            int digito = Integer.parseInt(cedula.substring(i, i + 1));
-            int resultado = digito * coeficientes[i];
-            if (resultado > 9) {
-                resultado -= 9;
+    /**
+     * Valida número de teléfono ecuatoriano. Se ignoran espacios, guiones y paréntesis; lo que
+     * queda debe ser {@code 09\d{8}} (celular), {@code 0[2-7]\d{7}} (fijo) o {@code \+593\d{9,10}}.
+     */
+    public boolean validarTelefono(CharSequence telefono) {
+        if (telefono == null || telefono.length() == 0) {
+            return true; // Campo opcional
+        }
+
+        // Una pasada sobre el número limpio (sin separadores): largo, primeros caracteres y
+        // si desde la tercera y la quinta posición todo son dígitos
+        int largo = 0;
+        char c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        boolean digitosDesde2 = true;
+        boolean digitosDesde4 = true;
+        for (int i = 0; i < telefono.length(); i++) {
+            char c = telefono.charAt(i);
+            if (esSeparadorTelefono(c)) {
+                continue;
             }
-            suma += resultado;
+            switch (largo) {
+                case 0 -> c0 = c;
+                case 1 -> c1 = c;
+                case 2 -> c2 = c;
+                case 3 -> c3 = c;
+                default -> { }
+            }
+            if (!esDigito(c)) {
+                if (largo >= 2) {
+                    digitosDesde2 = false;
+                }
+                if (largo >= 4) {
+                    digitosDesde4 = false;
+                }
+            }
+            largo++;
         }
 
-        int residuo = suma % 10;
-        int digitoVerificador = (residuo == 0) ? 0 : (10 - residuo);
-        int ultimoDigito = Integer.parseInt(cedula.substring(9, 10));
+        // Celular: 09XXXXXXXX (10 dígitos)
+        if (largo == 10 && c0 == '0' && c1 == '9' && digitosDesde2) {
+            return true;
+        }
 
-        return digitoVerificador == ultimoDigito;
+        // Teléfono fijo: 02XXXXXXX, 03XXXXXXX, etc. (9 dígitos)
+        if (largo == 9 && c0 == '0' && c1 >= '2' && c1 <= '7' && digitosDesde2) {
+            return true;
+        }
+
+        // Con código de país +593
+        return (largo == 13 || largo == 14) && c0 == '+' && c1 == '5' && c2 == '9' && c3 == '3' && digitosDesde4;
     }
 
     /**
-     * Valida un RUC ecuatoriano (13 dígitos)
+     * Valida formato de correo electrónico: {@code [a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\.[a-zA-Z]{2,}}
      */
-    public boolean validarRuc(String ruc) {
-        if (ruc == null || ruc.length() != 13) {
-            return false;
+    public boolean validarCorreo(CharSequence correo) {
+        if (correo == null || correo.length() == 0) {
+            return true; // Campo opcional
         }
 
-        // Verificar que solo contenga números
-        if (!ruc.matches("\\d{13}")) {
+        int largo = correo.length();
+        int arroba = -1;
+        for (int i = 0; i < largo; i++) {
+            char c = correo.charAt(i);
+            if (c == '@') {
+                arroba = i;
+                break;
+            }
+            if (!esLetraODigito(c) && c != '.' && c != '_' && c != '%' && c != '+' && c != '-') {
+                return false;
+            }
+        }
+        if (arroba < 1) {
             return false;
         }
 
-        // Los últimos 3 dígitos deben ser 001 para establecimientos
-        String establecimiento = ruc.substring(10, 13);
-        if (!establecimiento.equals("001")) {
-            // Permitir otros establecimientos válidos (001-999)
-            int numEstablecimiento = Integer.parseInt(establecimiento);
-            if (numEstablecimiento < 1) {
+        // El dominio termina en el último punto seguido de al menos dos letras; antes de ese
+        // punto debe haber al menos un carácter
+        int ultimoPunto = -1;
+        for (int i = arroba + 1; i < largo; i++) {
+            char c = correo.charAt(i);
+            if (c == '.') {
+                ultimoPunto = i;
+            } else if (!esLetraODigito(c) && c != '-') {
                 return false;
             }
         }
-
-        // Obtener el tercer dígito para determinar el tipo
-        int tercerDigito = Integer.parseInt(ruc.substring(2, 3));
-
-        // Los primeros 10 dígitos corresponden a una cédula válida para personas naturales
-        if (tercerDigito < 6) {
-            return validarCedula(ruc.substring(0, 10));
-        }
-
-        // RUC de sociedades privadas (tercer dígito = 9)
-        if (tercerDigito == 9) {
-            return validarRucSociedadPrivada(ruc);
+        if (ultimoPunto <= arroba + 1 || largo - ultimoPunto - 1 < 2) {
+            return false;
         }
-
-        // RUC de sociedades públicas (tercer dígito = 6)
-        if (tercerDigito == 6) {
-            return validarRucSociedadPublica(ruc);
+        for (int i = ultimoPunto + 1; i < largo; i++) {
+            if (!esLetra(correo.charAt(i))) {
+                return false;
+            }
         }
-
-        return false;
+        return true;
     }
 
     /**
-     * Valida RUC de sociedad privada (Módulo 11)
+     * Obtiene mensaje de error para cédula/RUC
      */
-    private boolean validarRucSociedadPrivada(String ruc) {
-        int[] coeficientes = {4, 3, 2, 7, 6, 5, 4, 3, 2};
-        int suma = 0;
-
-        for (int i = 0; i < 9; i++) {
-            int digito = Integer.parseInt(ruc.substring(i, i + 1));
-            suma += digito * coeficientes[i];
+    public String getMensajeErrorDocumento(CharSequence documento) {
+        if (documento == null || documento.length() == 0) {
+            return "El número de cédula/RUC es requerido";
         }
 
-        int residuo = suma % 11;
-        int digitoVerificador = (residuo == 0) ? 0 : (11 - residuo);
-        int digitoNoveno = Integer.parseInt(ruc.substring(9, 10));
+        int inicio = inicioSinEspacios(documento);
+        int fin = finSinEspacios(documento, inicio);
+        int largo = fin - inicio;
 
-        return digitoVerificador == digitoNoveno;
-    }
+        if (largo == 0 || !soloDigitos(documento, inicio, fin)) {
+            return "El documento solo debe contener números";
+        }
 
-    /**
-     * Valida RUC de sociedad pública (Módulo 11)
-     */
-    private boolean validarRucSociedadPublica(String ruc) {
-        int[] coeficientes = {3, 2, 7, 6, 5, 4, 3, 2};
-        int suma = 0;
+        if (largo != 10 && largo != 13) {
+            return "La cédula debe tener 10 dígitos o el RUC 13 dígitos";
+        }
 
-        for (int i = 0; i < 8; i++) {
-            int digito = Integer.parseInt(ruc.substring(i, i + 1));
-            suma += digito * coeficientes[i];
+        if (largo == 10 && !cedulaValida(documento, inicio)) {
+            return "La cédula ingresada no es válida";
         }
 
-        int residuo = suma % 11;
-        int digitoVerificador = (residuo == 0) ? 0 : (11 - residuo);
-        int digitoOctavo = Integer.parseInt(ruc.substring(8, 9));
+        if (largo == 13 && !rucValido(documento, inicio)) {
+            return "El RUC ingresado no es válido";
+        }
 
-        return digitoVerificador == digitoOctavo;
+        return null;
     }
 
     /**
-     * Valida cédula o RUC
+     * Cédula de 10 dígitos desde {@code inicio}; ya se comprobó que son dígitos.
      */
-    public boolean validarCedulaORC(String documento) {
-        if (documento == null || documento.isEmpty()) {
+    private static boolean cedulaValida(CharSequence s, int inicio) {
+        // Código de provincia: 01-24 o 30 para extranjeros
+        int provincia = digito(s, inicio) * 10 + digito(s, inicio + 1);
+        if (provincia < 1 || (provincia > 24 && provincia != 30)) {
             return false;
         }
 
-        documento = documento.trim();
+        // Tercer dígito menor a 6 para personas naturales
+        if (digito(s, inicio + 2) > 5) {
+            return false;
+        }
 
-        if (documento.length() == 10) {
-            return validarCedula(documento);
-        } else if (documento.length() == 13) {
-            return validarRuc(documento);
+        // Algoritmo de validación Módulo 10
+        int suma = 0;
+        for (int i = 0; i < 9; i++) {
+            int resultado = digito(s, inicio + i) * COEFICIENTES_CEDULA[i];
+            if (resultado > 9) {
+                resultado -= 9;
+            }
+            suma += resultado;
         }
 
-        return false;
+        int residuo = suma % 10;
+        int digitoVerificador = (residuo == 0) ? 0 : (10 - residuo);
+        return digitoVerificador == digito(s, inicio + 9);
     }
 
     /**
-     * Valida número de teléfono ecuatoriano
+     * RUC de 13 dígitos desde {@code inicio}; ya se comprobó que son dígitos.
      */
-    public boolean validarTelefono(String telefono) {
-        if (telefono == null || telefono.isEmpty()) {
-            return true; // Campo opcional
+    private static boolean rucValido(CharSequence s, int inicio) {
+        // Establecimiento 001-999 (000 no es válido)
+        if (s.charAt(inicio + 10) == '0' && s.charAt(inicio + 11) == '0' && s.charAt(inicio + 12) == '0') {
+            return false;
         }
 
-        telefono = telefono.replaceAll("[\\s\\-\\(\\)]", "");
+        int tercerDigito = digito(s, inicio + 2);
 
-        // Celular: 09XXXXXXXX (10 dígitos)
-        if (telefono.matches("^09\\d{8}$")) {
-            return true;
+        // Los primeros 10 dígitos corresponden a una cédula válida para personas naturales
+        if (tercerDigito < 6) {
+            return cedulaValida(s, inicio);
         }
 
-        // Teléfono fijo: 02XXXXXXX, 03XXXXXXX, etc. (9 dígitos)
-        if (telefono.matches("^0[2-7]\\d{7}$")) {
-            return true;
+        // RUC de sociedades privadas (tercer dígito = 9): verificador en la décima posición
+        if (tercerDigito == 9) {
+            return modulo11(s, inicio, COEFICIENTES_SOCIEDAD_PRIVADA);
         }
 
-        // Con código de país +593
-        if (telefono.matches("^\\+593\\d{9,10}$")) {
-            return true;
+        // RUC de sociedades públicas (tercer dígito = 6): verificador en la novena posición
+        if (tercerDigito == 6) {
+            return modulo11(s, inicio, COEFICIENTES_SOCIEDAD_PUBLICA);
         }
 
         return false;
     }
 
     /**
-     * Valida formato de correo electrónico
+     * Módulo 11 sobre tantos dígitos como coeficientes; el siguiente es el verificador.
      */
-    public boolean validarCorreo(String correo) {
-        if (correo == null || correo.isEmpty()) {
-            return true; // Campo opcional
+    private static boolean modulo11(CharSequence s, int inicio, int[] coeficientes) {
+        int suma = 0;
+        for (int i = 0; i < coeficientes.length; i++) {
+            suma += digito(s, inicio + i) * coeficientes[i];
         }
 
-        String regex = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
-        return correo.matches(regex);
+        int residuo = suma % 11;
+        int digitoVerificador = (residuo == 0) ? 0 : (11 - residuo);
+        return digitoVerificador == digito(s, inicio + coeficientes.length);
     }
 
-    /**
-     * Obtiene mensaje de error para cédula/RUC
-     */
-    public String getMensajeErrorDocumento(String documento) {
-        if (documento == null || documento.isEmpty()) {
-            return "El número de cédula/RUC es requerido";
+    private static int digito(CharSequence s, int i) {
+        return s.charAt(i) - '0';
+    }
+
+    private static boolean soloDigitos(CharSequence s, int inicio, int fin) {
+        for (int i = inicio; i < fin; i++) {
+            if (!esDigito(s.charAt(i))) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        documento = documento.trim();
+    private static boolean esDigito(char c) {
+        return c >= '0' && c <= '9';
+    }
 
-        if (!documento.matches("\\d+")) {
-            return "El documento solo debe contener números";
-        }
+    private static boolean esLetra(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
 
-        if (documento.length() != 10 && documento.length() != 13) {
-            return "La cédula debe tener 10 dígitos o el RUC 13 dígitos";
-        }
+    private static boolean esLetraODigito(char c) {
+        return esLetra(c) || esDigito(c);
+    }
 
-        if (documento.length() == 10 && !validarCedula(documento)) {
-            return "La cédula ingresada no es válida";
-        }
+    // Lo que quitaba [\s\-\(\)]: los espacios de \s (espacio, \t, \n, \u000B, \f, \r), guion y paréntesis
+    private static boolean esSeparadorTelefono(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r') || c == '-' || c == '(' || c == ')';
+    }
 
-        if (documento.length() == 13 && !validarRuc(documento)) {
-            return "El RUC ingresado no es válido";
+    // Los extremos que quita String.trim: todo carácter <= ' '
+    private static int inicioSinEspacios(CharSequence s) {
+        int inicio = 0;
+        while (inicio < s.length() && s.charAt(inicio) <= ' ') {
+            inicio++;
         }
+        return inicio;
+    }
 
-        return null;
+    private static int finSinEspacios(CharSequence s, int inicio) {
+        int fin = s.length();
+        while (fin > inicio && s.charAt(fin - 1) <= ' ') {
+            fin--;
+        }
+        return fin;
     }
 }
@@ -0,0 +1,28 @@
+package com.Facturacion.facturacion;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.nio.file.Path;
+
+/**
+ * Apunta todos los directorios y archivos de datos de la aplicación (facturacion.*.directorio
+ * y facturacion.*.archivo) a un directorio temporal, para que los {@code @SpringBootTest} no
+ * escriban en ./data ni dependan de lo que haya ahí. Se usa desde un
+ * {@code @DynamicPropertySource} con el {@code @TempDir} estático de la clase.
+ */
+public final class DatosTemporales {
+
+    private DatosTemporales() {
+    }
+
+    public static void registrar(DynamicPropertyRegistry registro, Path directorio) {
+        registro.add("facturacion.secuencial.directorio", () -> directorio.resolve("secuencial").toString());
+        registro.add("facturacion.borradores.directorio", () -> directorio.resolve("borradores").toString());
+        registro.add("facturacion.diario.directorio", () -> directorio.resolve("diario").toString());
+        registro.add("facturacion.indices.directorio", () -> directorio.resolve("indices").toString());
+        registro.add("facturacion.clientes.directorio", () -> directorio.resolve("clientes").toString());
+        registro.add("facturacion.catalogo.archivo", () -> directorio.resolve("catalogo.csv").toString());
+        registro.add("facturacion.reglas.archivo", () -> directorio.resolve("reglas.json").toString());
+        registro.add("facturacion.reglas.historial", () -> directorio.resolve("reglas").toString());
+    }
+}
@@ -1,11 +1,24 @@
 package com.Facturacion.facturacion;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 @SpringBootTest
 class FacturacionApplicationTests {
 
+	@TempDir
+	static Path datos;
+
+	@DynamicPropertySource
+	static void datosTemporales(DynamicPropertyRegistry registro) {
+		DatosTemporales.registrar(registro, datos);
+	}
+
 	@Test
 	void contextLoads() {
 	}
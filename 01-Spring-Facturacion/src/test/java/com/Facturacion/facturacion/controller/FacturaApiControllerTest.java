@@ -0,0 +1,145 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.DatosTemporales;
+import com.Facturacion.facturacion.service.DiarioFacturasService;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+class FacturaApiControllerTest {
+
+    private static final String FACTURA = """
+            {"razonSocial": "Comercial Andes", "rucCliente": "1790011674001",
+             "direccionCliente": "Av. Amazonas N34", "correo": "Ventas@Andes.ec",
+             "items": [
+               {"codigo": "a1", "descripcion": "Lapiz HB", "cantidad": 3, "precioUnitario": 0.35},
+               {"codigo": "b2", "descripcion": "Cuaderno", "cantidad": 2, "precioUnitario": 2.5, "descuento": 0.5}
+             ]}
+            """;
+
+    @TempDir
+    static Path datos;
+
+    @DynamicPropertySource
+    static void datosTemporales(DynamicPropertyRegistry registro) {
+        DatosTemporales.registrar(registro, datos);
+    }
+
+    @Autowired
+    private WebApplicationContext contexto;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void preparar() {
+        mvc = MockMvcBuilders.webAppContextSetup(contexto).build();
+    }
+
+    @AfterEach
+    void restaurarReglas() {
+        ReglasFacturacion.publicar(ReglasFacturacion.PREDETERMINADAS);
+    }
+
+    @Test
+    void emiteYCalculaEnUnaPeticion() throws Exception {
+        MvcResult resultado = mvc.perform(post("/api/facturas").contentType(MediaType.APPLICATION_JSON).content(FACTURA))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.numeroFactura").isString())
+                .andExpect(jsonPath("$.subtotal15").value(5.55))
+                .andExpect(jsonPath("$.totalDescuento").value(0.50))
+                .andExpect(jsonPath("$.iva15").value(0.83))
+                .andExpect(jsonPath("$.valorTotal").value(6.38))
+                .andExpect(jsonPath("$.items[1].codigo").value("B2"))
+                .andExpect(jsonPath("$.items[1].total").value(4.50))
+                .andReturn();
+
+        // La API no crea sesión
+        assertNull(resultado.getRequest().getSession(false));
+    }
+
+    @Test
+    void reportaTodosLosErrores() throws Exception {
+        String invalida = """
+                {"razonSocial": "Comercial Andes", "rucCliente": "1790011674001", "direccionCliente": "Av. Amazonas",
+                 "items": [{"codigo": "A", "descripcion": "Lapiz", "cantidad": 0, "precioUnitario": 1},
+                           {"codigo": "", "descripcion": "Lapiz", "cantidad": 1, "precioUnitario": 1}]}
+                """;
+        mvc.perform(post("/api/facturas/pdf").contentType(MediaType.APPLICATION_JSON).content(invalida))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.valido").value(false))
+                .andExpect(jsonPath("$.errores.length()").value(2))
+                .andExpect(jsonPath("$.errores[0]").value("Item 1: La cantidad debe ser mayor a 0"))
+                .andExpect(jsonPath("$.errores[1]").value("Item 2: El código del producto es requerido"));
+    }
+
+    @Test
+    void devuelveElPdfConLosTotalesEnCabeceras() throws Exception {
+        MvcResult inicio = mvc.perform(post("/api/facturas/pdf").contentType(MediaType.APPLICATION_JSON).content(FACTURA))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult resultado = mvc.perform(asyncDispatch(inicio))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Factura-Total", "6.38"))
+                .andReturn();
+
+        byte[] pdf = resultado.getResponse().getContentAsByteArray();
+        assertEquals("%PDF", new String(pdf, 0, 4));
+    }
+
+    @Test
+    void devuelveElComprobanteXml() throws Exception {
+        MvcResult inicio = mvc.perform(post("/api/facturas/xml").contentType(MediaType.APPLICATION_JSON).content(FACTURA))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult resultado = mvc.perform(asyncDispatch(inicio))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Factura-Total", "6.38"))
+                .andReturn();
+
+        String xml = resultado.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertTrue(xml.contains("<importeTotal>6.38</importeTotal>"), xml);
+        assertTrue(xml.contains("<claveAcceso>" + resultado.getResponse().getHeader("X-Factura-Clave-Acceso")
+                + "</claveAcceso>"), xml);
+    }
+
+    @Test
+    void unaFacturaConIceSeRechazaAntesDeNumerarla() throws Exception {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(6)
+                .producto("A1", ReglasFacturacion.IVA_TARIFA, 1000)
+                .construir());
+        int registradas = diario.posicionesVigentes().length;
+
+        mvc.perform(post("/api/facturas/xml").contentType(MediaType.APPLICATION_JSON).content(FACTURA))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errores[0]").value("El comprobante XML no admite facturas con ICE"));
+        assertEquals(registradas, diario.posicionesVigentes().length);
+    }
+}
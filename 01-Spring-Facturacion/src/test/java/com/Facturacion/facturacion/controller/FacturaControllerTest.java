@@ -0,0 +1,230 @@
+package com.Facturacion.facturacion.controller;
+
+import com.Facturacion.facturacion.DatosTemporales;
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.service.BorradorStore;
+import com.Facturacion.facturacion.service.CatalogoProductosService;
+import com.Facturacion.facturacion.service.DiarioFacturasService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+class FacturaControllerTest {
+
+    @TempDir
+    static Path datos;
+
+    @DynamicPropertySource
+    static void datosTemporales(DynamicPropertyRegistry registro) {
+        DatosTemporales.registrar(registro, datos);
+    }
+
+    @Autowired
+    private WebApplicationContext contexto;
+
+    @Autowired
+    private BorradorStore borradores;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
+    @Autowired
+    private CatalogoProductosService catalogo;
+
+    private MockMvc mvc;
+    private final MockHttpSession sesion = new MockHttpSession();
+
+    @BeforeEach
+    void preparar() {
+        mvc = MockMvcBuilders.webAppContextSetup(contexto).build();
+    }
+
+    private MockHttpServletRequestBuilder agregar(String codigo, String cantidad, String precio) {
+        return post("/agregarItem").session(sesion)
+                .param("codigo", codigo)
+                .param("descripcion", "Seco de chivo")
+                .param("cantidad", cantidad)
+                .param("precioUnitario", precio);
+    }
+
+    private void guardarCliente() throws Exception {
+        mvc.perform(post("/guardarCliente").session(sesion)
+                        .param("razonSocial", "Comercial Andes")
+                        .param("rucCliente", "1790011674001")
+                        .param("direccionCliente", "Av. Amazonas N34"))
+                .andExpect(redirectedUrl("/"));
+    }
+
+    private FacturaCompleta borrador() {
+        return borradores.obtener((String) sesion.getAttribute(FacturaController.ATRIBUTO_BORRADOR));
+    }
+
+    private String pagina() throws Exception {
+        return mvc.perform(get("/").session(sesion)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    void conFetchRespondeSoloLaFilaYLosTotales() throws Exception {
+        String parcial = mvc.perform(agregar("S1", "2", "6.50").header("X-Requested-With", "fetch"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(parcial.contains("class=\"fila-item\""));
+        assertTrue(parcial.contains("id=\"totalesFactura\""));
+        assertTrue(parcial.contains("14.95"), parcial);
+        assertTrue(parcial.contains(">IVA 15%<"), parcial);
+        assertFalse(parcial.contains("formCliente"));
+
+        // La segunda fila lleva el índice 1 para eliminarla; la página completa muestra lo mismo
+        String segunda = mvc.perform(agregar("S2", "1", "3.00").header("X-Requested-With", "fetch"))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(segunda.contains("name=\"index\" value=\"1\""));
+        String completa = pagina();
+        assertTrue(completa.contains("18.40"));
+        assertTrue(completa.contains("name=\"index\" value=\"1\""));
+        assertTrue(completa.length() > 5 * segunda.length());
+
+        String eliminado = mvc.perform(post("/eliminarItem").session(sesion).param("index", "0")
+                        .header("X-Requested-With", "fetch"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertFalse(eliminado.contains("fila-item"));
+        assertTrue(eliminado.contains("3.45"), eliminado);
+
+        mvc.perform(post("/eliminarItem").session(sesion).param("index", "5").header("X-Requested-With", "fetch"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void errorDeValidacionVuelveEnElMensaje() throws Exception {
+        String parcial = mvc.perform(agregar("S1", "0", "6.50").header("X-Requested-With", "fetch"))
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(parcial.contains("id=\"mensajeItem\""));
+        assertTrue(parcial.contains("alert-error"));
+        assertFalse(parcial.contains("totalesFactura"));
+    }
+
+    @Test
+    void sinDescripcionNiPrecioLosBuscaEnElCatalogo() throws Exception {
+        String parcial = mvc.perform(post("/agregarItem").session(sesion).header("X-Requested-With", "fetch")
+                        .param("codigo", "NO-EXISTE").param("cantidad", "1").param("precioUnitario", ""))
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(parcial.contains("no está en el catálogo"), parcial);
+    }
+
+    @Test
+    void conSoloCodigoYCantidadTomaDescripcionYPrecioDelCatalogo() throws Exception {
+        Files.writeString(datos.resolve("catalogo.csv"), """
+                codigo,descripcion,precio
+                A-001,Martillo galponero,2.50
+                """);
+        catalogo.recargar();
+
+        String parcial = mvc.perform(post("/agregarItem").session(sesion).header("X-Requested-With", "fetch")
+                        .param("codigo", "A-001").param("cantidad", "3"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(parcial.toUpperCase().contains("MARTILLO GALPONERO"), parcial);
+        // 3 x 2.50 = 7.50, IVA 15% = 1.13
+        assertTrue(parcial.contains("7.50"), parcial);
+        assertTrue(parcial.contains("8.63"), parcial);
+    }
+
+    @Test
+    void sinFetchSigueRedirigiendo() throws Exception {
+        mvc.perform(agregar("S1", "1", "6.50")).andExpect(redirectedUrl("/"));
+        String completa = pagina();
+        assertTrue(completa.contains("class=\"fila-item\""));
+        assertTrue(completa.contains("id=\"filaSinItems\" hidden"));
+    }
+
+    @Test
+    void emitirNumeraYRegistraLaFacturaYElPdfNoEmiteNada() throws Exception {
+        mvc.perform(post("/emitirFactura").session(sesion)).andExpect(redirectedUrl("/"));
+
+        mvc.perform(agregar("S1", "1", "6.50")).andExpect(redirectedUrl("/"));
+        guardarCliente();
+        // El borrador no toma número hasta emitirse, y el PDF no lo emite
+        assertNull(borrador().getNumeroFactura());
+        mvc.perform(get("/generarPdf").session(sesion)).andExpect(status().isConflict());
+
+        mvc.perform(post("/emitirFactura").session(sesion)).andExpect(redirectedUrl("/generarPdf"));
+        String numero = borrador().getNumeroFactura();
+        assertTrue(diario.contiene(numero));
+        String etag = mvc.perform(get("/generarPdf").session(sesion))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertTrue(etag.startsWith("W/\""), etag);
+        mvc.perform(get("/generarPdf").session(sesion).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // Emitir otra vez la misma factura no consume otro número
+        mvc.perform(post("/emitirFactura").session(sesion)).andExpect(redirectedUrl("/generarPdf"));
+        assertEquals(numero, borrador().getNumeroFactura());
+
+        // Emitida, ya no se edita: ni items ni cliente
+        mvc.perform(agregar("S2", "1", "3.00").header("X-Requested-With", "fetch")).andExpect(status().isConflict());
+        mvc.perform(post("/eliminarItem").session(sesion).param("index", "0").header("X-Requested-With", "fetch"))
+                .andExpect(status().isConflict());
+        mvc.perform(agregar("S2", "1", "3.00")).andExpect(redirectedUrl("/"));
+        guardarCliente();
+        assertEquals(1, borrador().getItems().size());
+        assertEquals(1, diario.obtenerFactura(numero).getItems().size());
+    }
+
+    @Test
+    void encolaSoloElPdfDeFacturasYaEmitidasSinAsignarNumeros() throws Exception {
+        mvc.perform(post("/api/pdf/trabajos").session(sesion)).andExpect(status().isBadRequest());
+
+        mvc.perform(agregar("S1", "1", "6.50")).andExpect(redirectedUrl("/"));
+        guardarCliente();
+        int registradas = diario.posicionesVigentes().length;
+        // Ni el borrador sin emitir ni una factura sin número en el cuerpo reciben número
+        mvc.perform(post("/api/pdf/trabajos").session(sesion)).andExpect(status().isConflict());
+        mvc.perform(post("/api/pdf/trabajos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"razonSocialCliente\": \"COMERCIAL ANDES\"}"))
+                .andExpect(status().isConflict());
+        assertNull(borrador().getNumeroFactura());
+        assertEquals(registradas, diario.posicionesVigentes().length);
+
+        mvc.perform(post("/emitirFactura").session(sesion)).andExpect(redirectedUrl("/generarPdf"));
+        String numero = borrador().getNumeroFactura();
+        mvc.perform(post("/api/pdf/trabajos").session(sesion))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").exists())
+                .andExpect(jsonPath("$.numeroFactura").value(numero));
+        mvc.perform(post("/api/pdf/trabajos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"numeroFactura\": \"" + numero + "\"}"))
+                .andExpect(status().isAccepted());
+        mvc.perform(post("/api/pdf/trabajos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"numeroFactura\": \"001-001-999999999\"}"))
+                .andExpect(status().isConflict());
+        assertEquals(registradas + 1, diario.posicionesVigentes().length);
+    }
+}
@@ -0,0 +1,153 @@
+package com.Facturacion.facturacion.models;
+
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Totales incrementales de FacturaCompleta con el modo verificación activo:
+ * cada alta, baja o edición se contrasta con un recálculo completo.
+ */
+class FacturaCompletaTest {
+
+    @BeforeEach
+    void activarVerificacion() {
+        FacturaCompleta.setVerificarTotales(true);
+    }
+
+    @AfterEach
+    void desactivarVerificacion() {
+        FacturaCompleta.setVerificarTotales(false);
+        ReglasFacturacion.publicar(ReglasFacturacion.PREDETERMINADAS);
+    }
+
+    @Test
+    void agregarEliminarYEditarMantienenLosTotales() {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.agregarItem("A1", "SECO DE CHIVO", 2, 4.50, 0);
+        factura.agregarItem("B2", "FRITADA", 3, 6.00, 1);
+        factura.agregarItem("C3", "JUGO", 1, 1.25, 0);
+
+        factura.eliminarItem(1);
+        assertEquals(2, factura.getItems().size());
+        assertEquals(2, factura.getItems().get(1).getNumero());
+
+        factura.editarItem(0, 4, 4.50, 2);
+        assertEquals(16.0 + 1.25, factura.getSubtotal15(), 1e-9);
+        assertEquals(2.0, factura.getTotalDescuento(), 1e-9);
+        // IVA 15% de 17.25 = 2.5875 -> 2.59 (HALF_UP)
+        assertEquals(259, factura.getIva15Centavos());
+        assertEquals(1984, factura.getValorTotalCentavos());
+    }
+
+    @Test
+    void secuenciaAleatoriaCoincideConRecalculoCompleto() {
+        Random random = new Random(20240501L);
+        FacturaCompleta factura = new FacturaCompleta();
+
+        for (int paso = 0; paso < 5_000; paso++) {
+            int operacion = random.nextInt(10);
+            if (operacion < 6 || factura.getItems().isEmpty()) {
+                int cantidad = 1 + random.nextInt(20);
+                double precio = (1 + random.nextInt(5_000)) / 100.0;
+                factura.agregarItem("P" + paso, "PRODUCTO " + paso, cantidad, precio, random.nextInt(2));
+            } else if (operacion < 8) {
+                factura.eliminarItem(random.nextInt(factura.getItems().size()));
+            } else {
+                factura.editarItem(random.nextInt(factura.getItems().size()),
+                        1 + random.nextInt(20), (1 + random.nextInt(5_000)) / 100.0, random.nextInt(2));
+            }
+        }
+
+        long subtotal = factura.getSubtotal15Centavos();
+        long valorTotal = factura.getValorTotalCentavos();
+        factura.calcularTotales();
+        assertEquals(factura.getSubtotal15Centavos(), subtotal);
+        assertEquals(factura.getValorTotalCentavos(), valorTotal);
+        for (int i = 0; i < factura.getItems().size(); i++) {
+            assertEquals(i + 1, factura.getItems().get(i).getNumero());
+        }
+    }
+
+    @Test
+    void categoriasDeIvaIceYServicioSegunLasReglas() {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(4)
+                .tasaIva(1500)
+                .tasaServicio(1000)
+                .producto("LIB", ReglasFacturacion.IVA_CERO, 0)
+                .producto("MED", ReglasFacturacion.IVA_EXENTO, 0)
+                .producto("DON", ReglasFacturacion.IVA_NO_OBJETO, 0)
+                .producto("CIG", ReglasFacturacion.IVA_TARIFA, 3000)
+                .construir());
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.agregarItem("A1", "ALMUERZO", 2, 5.00, 0);
+        factura.agregarItem("LIB", "LIBRO", 1, 20.00, 0);
+        factura.agregarItem("MED", "MEDICINA", 1, 3.00, 0);
+        factura.agregarItem("DON", "DONACION", 1, 1.00, 0);
+        factura.agregarItem("CIG", "CIGARRILLOS", 1, 4.00, 0);
+
+        assertEquals(4, factura.getVersionReglas());
+        assertEquals(1400, factura.getSubtotal15Centavos());
+        assertEquals(2000, factura.getSubtotal0Centavos());
+        assertEquals(300, factura.getSubtotalExentoIvaCentavos());
+        assertEquals(100, factura.getSubtotalNoObjetoIvaCentavos());
+        assertEquals(3800, factura.getSubtotalSinImpuestosCentavos());
+        // ICE 30% de 4.00 = 1.20, que también paga IVA: 15% de (14.00 + 1.20) = 2.28
+        assertEquals(120, factura.getIceCentavos());
+        assertEquals(228, factura.getIva15Centavos());
+        // Servicio 10% de 38.00
+        assertEquals(380, factura.getServicioCentavos());
+        assertEquals(3800 + 120 + 228 + 380, factura.getValorTotalCentavos());
+
+        factura.editarItem(4, 2, 4.00, 0);
+        assertEquals(240, factura.getIceCentavos());
+        factura.eliminarItem(1);
+        assertEquals(0, factura.getSubtotal0Centavos());
+
+        // Una factura guardada con las reglas de siempre se vuelve a tasar con esas
+        factura.usarReglas(ReglasFacturacion.PREDETERMINADAS);
+        assertEquals(0, factura.getIceCentavos());
+        assertEquals(0, factura.getServicioCentavos());
+        assertEquals(0, factura.getVersionReglas());
+    }
+
+    @Test
+    void lasReglasNoSalenEnElJson() {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.agregarItem("A1", "ALMUERZO", 1, 5.00, 0);
+
+        JsonNode json = JsonMapper.builder().build().valueToTree(factura);
+        assertFalse(json.has("reglas"));
+        assertEquals(0, json.get("versionReglas").asInt());
+    }
+
+    @Test
+    void idaYVueltaPorJsonNoCuentaDosVecesServicioNiIce() {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(5)
+                .tasaServicio(1000)
+                .producto("CIG", ReglasFacturacion.IVA_TARIFA, 3000)
+                .construir());
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.agregarItem("A1", "ALMUERZO", 2, 5.00, 0);
+        factura.agregarItem("CIG", "CIGARRILLOS", 1, 4.00, 0);
+        factura.setServicioAdicional(0.50);
+        factura.setIceAdicional(0.10);
+
+        JsonMapper mapper = JsonMapper.builder().build();
+        FacturaCompleta leida = mapper.readValue(mapper.writeValueAsString(factura), FacturaCompleta.class);
+
+        // Servicio 1.40 + 0.50, ICE 1.20 + 0.10
+        assertEquals(190, leida.getServicioCentavos());
+        assertEquals(130, leida.getIceCentavos());
+        assertEquals(factura.getIva15Centavos(), leida.getIva15Centavos());
+        assertEquals(factura.getValorTotalCentavos(), leida.getValorTotalCentavos());
+    }
+}
@@ -0,0 +1,155 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import com.Facturacion.facturacion.util.FacturaCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BorradorStoreOffHeapTest {
+
+    @TempDir
+    Path directorio;
+
+    private final List<BorradorStoreOffHeap> abiertos = new ArrayList<>();
+
+    private BorradorStoreOffHeap nuevoStore(long maxBytes) {
+        BorradorStoreOffHeap store = new BorradorStoreOffHeap(directorio.toString(), maxBytes, 15, 24, 3600,
+                new SimpleMeterRegistry());
+        abiertos.add(store);
+        return store;
+    }
+
+    @AfterEach
+    void cerrar() {
+        abiertos.forEach(BorradorStoreOffHeap::cerrar);
+    }
+
+    private static FacturaCompleta factura(int items) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setNumeroFactura("001-001-000000123");
+        factura.setClaveAcceso("1810202601050381562300120010010000001231234567811");
+        factura.setRazonSocialCliente("CLIENTE ÑANDÚ S.A.");
+        factura.setRucCliente("1710034065");
+        factura.setDireccionCliente("AV. AMAZONAS");
+        factura.setCorreoCliente("");
+        factura.setIceAdicional(0.35);
+        for (int i = 0; i < items; i++) {
+            factura.agregarItem("P" + i, "PRODUCTO " + i, i + 1, 1.2345 + i, i % 3 == 0 ? 0.10 : 0);
+        }
+        return factura;
+    }
+
+    @Test
+    void idaYVueltaConservaLaFactura() {
+        FacturaCompleta original = factura(25);
+        byte[] datos = FacturaCodec.codificar(original);
+        FacturaCompleta copia = FacturaCodec.decodificar(datos);
+
+        assertEquals(original.getNumeroFactura(), copia.getNumeroFactura());
+        assertEquals(original.getClaveAcceso(), copia.getClaveAcceso());
+        assertEquals(original.getRazonSocialCliente(), copia.getRazonSocialCliente());
+        assertEquals(original.getFechaEmision(), copia.getFechaEmision());
+        assertEquals(original.getRucEmisor(), copia.getRucEmisor());
+        assertEquals("", copia.getCorreoCliente());
+        assertNull(copia.getTelefonoCliente());
+        assertEquals(original.getItems().size(), copia.getItems().size());
+        for (int i = 0; i < original.getItems().size(); i++) {
+            ItemFactura a = original.getItems().get(i);
+            ItemFactura b = copia.getItems().get(i);
+            assertEquals(a.getNumero(), b.getNumero());
+            assertEquals(a.getDescripcion(), b.getDescripcion());
+            assertEquals(a.getPrecioUnitarioDiezmilesimas(), b.getPrecioUnitarioDiezmilesimas());
+            assertEquals(a.getTotalCentavos(), b.getTotalCentavos());
+        }
+        assertEquals(original.getIceCentavos(), copia.getIceCentavos());
+        assertEquals(original.getIva15Centavos(), copia.getIva15Centavos());
+        assertEquals(original.getValorTotalCentavos(), copia.getValorTotalCentavos());
+
+        // Los datos del emisor no se escriben: 25 items caben en menos de 1 KB
+        assertTrue(datos.length < 1024, "Borrador de " + datos.length + " bytes");
+    }
+
+    @Test
+    void otraInstanciaRetomaElBorradorTrasElCheckpoint() {
+        BorradorStoreOffHeap nodoA = nuevoStore(1 << 20);
+        String id = nodoA.crear(factura(3));
+        nodoA.checkpoint();
+
+        BorradorStoreOffHeap nodoB = nuevoStore(1 << 20);
+        FacturaCompleta enB = nodoB.obtener(id);
+        assertNotNull(enB);
+        enB.agregarItem("X", "AGREGADO EN B", 1, 2.00, 0);
+        nodoB.guardar(id, enB);
+        nodoB.checkpoint();
+
+        // A tiene una copia en memoria; su checkpoint ve que el archivo es más nuevo y la descarta
+        nodoA.checkpoint();
+        FacturaCompleta enA = nodoA.obtener(id);
+        assertEquals(4, enA.getItems().size());
+        assertEquals(enB.getValorTotalCentavos(), enA.getValorTotalCentavos());
+
+        nodoB.eliminar(id);
+        nodoA.checkpoint();
+        assertNull(nodoA.obtener(id));
+    }
+
+    @Test
+    void losCambiosSeEscribenEnElCheckpointOAlCerrarNoEnCadaEdicion() {
+        BorradorStoreOffHeap store = nuevoStore(1 << 20);
+        String id = store.crear(factura(3));
+        Path archivo = directorio.resolve(id + ".borrador");
+        assertFalse(Files.exists(archivo));
+
+        store.checkpoint();
+        assertTrue(Files.exists(archivo));
+        FacturaCompleta editada = store.obtener(id);
+        editada.agregarItem("X", "AGREGADO", 1, 2.00, 0);
+        store.guardar(id, editada);
+        assertEquals(3, FacturaCodec.decodificar(leer(archivo)).getItems().size());
+
+        store.cerrar();
+        assertEquals(4, FacturaCodec.decodificar(leer(archivo)).getItems().size());
+        assertEquals(4, nuevoStore(1 << 20).obtener(id).getItems().size());
+    }
+
+    private static byte[] leer(Path archivo) {
+        try {
+            return Files.readAllBytes(archivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void respetaElLimiteDeMemoriaSinPerderBorradores() {
+        long maxBytes = 64 * 1024;
+        BorradorStoreOffHeap store = nuevoStore(maxBytes);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ids.add(store.crear(factura(10)));
+            assertTrue(store.getBytesEnUso() <= maxBytes, "En uso: " + store.getBytesEnUso());
+        }
+        assertTrue(store.getCantidadEnMemoria() < ids.size());
+
+        // Los desalojados se leen del archivo
+        for (String id : ids) {
+            assertEquals(10, store.obtener(id).getItems().size());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BusquedaTextoServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private DiarioFacturasService diario;
+    private BusquedaTextoService busqueda;
+
+    private void abrir() {
+        cerrar();
+        diario = new DiarioFacturasService(directorio.toString(), 1 << 20, new SimpleMeterRegistry());
+        busqueda = new BusquedaTextoService(diario, 8, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void cerrar() {
+        if (busqueda != null) {
+            busqueda.cerrar();
+        }
+        if (diario != null) {
+            diario.cerrar();
+        }
+    }
+
+    private FacturaCompleta emitir(int secuencial, String cliente, String... productos) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setNumeroFactura(String.format("001-001-%09d", secuencial));
+        factura.setRazonSocialCliente(cliente);
+        factura.setRucCliente("1710034065");
+        for (int i = 0; i < productos.length; i++) {
+            factura.agregarItem("P" + i, productos[i], 1, 5.50, 0);
+        }
+        diario.registrar(factura);
+        return factura;
+    }
+
+    private List<String> numeros(String consulta) {
+        return busqueda.buscar(consulta, 50).stream().map(r -> r.factura().getNumeroFactura()).toList();
+    }
+
+    @Test
+    void encuentraPorProductoYClienteSinTildes() {
+        abrir();
+        emitir(1, "María Pérez", "Seco de chivo", "Jugo de naranjilla");
+        emitir(2, "RESTAURANTE EL ÁGUILA S.A.", "Fritada", "Mote");
+        emitir(3, "Maria Perez", "Fritada", "Cola");
+
+        assertEquals(List.of("001-001-000000003", "001-001-000000002"), numeros("fritada"));
+        assertEquals(List.of("001-001-000000001"), numeros("SECO DE CHIVO"));
+        assertEquals(List.of("001-001-000000003", "001-001-000000001"), numeros("perez mar"));
+        assertEquals(List.of("001-001-000000002"), numeros("aguila frit"));
+        assertEquals(List.of(), numeros("agu "));
+        assertTrue(numeros("   ").isEmpty());
+    }
+
+    @Test
+    void nuevaVersionReemplazaALaAnteriorYSeReconstruyeAlReabrir() {
+        abrir();
+        for (int i = 1; i <= 40; i++) {
+            emitir(i, "CLIENTE " + i, i % 2 == 0 ? "Seco de pollo" : "Hornado");
+        }
+        FacturaCompleta factura = emitir(41, "CLIENTE 41", "Seco de pollo");
+        // Otra versión, como en los diarios anteriores a los números inmutables
+        factura.agregarItem("X", "Encebollado", 1, 4.00, 0);
+        diario.registrarVersion(factura);
+
+        assertEquals(21, numeros("seco pollo").size());
+        assertEquals(List.of("001-001-000000041"), numeros("encebollado"));
+        assertEquals(41, busqueda.getCantidadDocumentos());
+
+        abrir();
+        assertEquals(21, numeros("seco pollo").size());
+        assertEquals(List.of("001-001-000000041"), numeros("enceb"));
+        assertEquals(41, busqueda.getCantidadDocumentos());
+    }
+}
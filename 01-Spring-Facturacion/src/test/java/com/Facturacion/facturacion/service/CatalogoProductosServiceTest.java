@@ -0,0 +1,113 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.Producto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogoProductosServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private CatalogoProductosService servicio;
+
+    @AfterEach
+    void cerrar() {
+        if (servicio != null) {
+            servicio.cerrar();
+        }
+    }
+
+    private static List<String> codigos(List<Producto> productos) {
+        return productos.stream().map(Producto::getCodigo).toList();
+    }
+
+    @Test
+    void cargaCsvYBuscaPorCodigoYDescripcion() throws IOException {
+        Path archivo = directorio.resolve("catalogo.csv");
+        Files.writeString(archivo, """
+                precio,codigo,descripcion
+                2.50,A-001,"Martillo galponero, 16 oz"
+                0.1235,A-002,Clavo de acero 2 pulgadas
+
+                1,B-010,Martillo de goma
+                """);
+        servicio = new CatalogoProductosService(archivo.toString(), 0, new SimpleMeterRegistry());
+
+        assertEquals(3, servicio.getCantidad());
+        Producto martillo = servicio.buscar(" A-001 ");
+        assertEquals("Martillo galponero, 16 oz", martillo.getDescripcion());
+        assertEquals(25_000, martillo.getPrecioDiezmilesimas());
+        assertEquals(1235, servicio.buscar("A-002").getPrecioDiezmilesimas());
+        assertNull(servicio.buscar("a-001"));
+        assertNull(servicio.buscar("A-00"));
+
+        assertEquals(List.of("B-010", "A-001"), codigos(servicio.buscarPorDescripcion("MART", 10)));
+        assertEquals(List.of("A-001"), codigos(servicio.buscarPorDescripcion("mar galp", 10)));
+        assertEquals(List.of("A-002"), codigos(servicio.buscarPorDescripcion("acero", 10)));
+        assertEquals(1, servicio.buscarPorDescripcion("martillo", 1).size());
+        assertEquals(List.of(), servicio.buscarPorDescripcion("de", 10));
+    }
+
+    @Test
+    void muchosCodigosEnLaTablaHash() throws IOException {
+        Path archivo = directorio.resolve("catalogo.csv");
+        StringBuilder csv = new StringBuilder("codigo,descripcion,precio\n");
+        for (int i = 0; i < 20_000; i++) {
+            csv.append("P").append(i).append(",Producto número ").append(i).append(',').append(i + 1).append(".25\n");
+        }
+        Files.writeString(archivo, csv);
+        servicio = new CatalogoProductosService(archivo.toString(), 0, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 20_000; i++) {
+            Producto producto = servicio.buscar("P" + i);
+            assertEquals("Producto número " + i, producto.getDescripcion());
+            assertEquals((i + 1) * 10_000L + 2_500, producto.getPrecioDiezmilesimas());
+        }
+        assertNull(servicio.buscar("P20000"));
+        assertNull(servicio.buscar("P-1"));
+    }
+
+    @Test
+    void recargaJsonYConservaElAnteriorSiHayErrores() throws IOException {
+        Path archivo = directorio.resolve("catalogo.json");
+        servicio = new CatalogoProductosService(archivo.toString(), 0, new SimpleMeterRegistry());
+        assertEquals(0, servicio.getCantidad());
+
+        Files.writeString(archivo, """
+                [{"codigo": "S1", "descripcion": "Seco de chivo", "precio": 6.5, "extra": {"a": [1]}},
+                 {"precio": "3", "descripcion": "Fritada", "codigo": "S2"}]
+                """);
+        assertEquals(2, servicio.recargar());
+        assertEquals(65_000, servicio.buscar("S1").getPrecioDiezmilesimas());
+        assertEquals(List.of("S2"), codigos(servicio.buscarPorDescripcion("frit", 10)));
+
+        // Código repetido, precio en cero y JSON cortado: se rechaza la foto entera
+        Files.writeString(archivo, """
+                [{"codigo": "S1", "descripcion": "Seco de chivo", "precio": 7},
+                 {"codigo": "S1", "descripcion": "Seco de gallina", "precio": 7}]
+                """);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, servicio::recargar);
+        assertTrue(e.getMessage().contains("S1"), e.getMessage());
+        Files.writeString(archivo, "[{\"codigo\": \"S1\", \"descripcion\": \"Seco\", \"precio\": 0}]");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        Files.writeString(archivo, "[{\"codigo\": \"S1\", \"descripcion\": \"Seco\"");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        assertTrue(servicio.getUltimoError() != null);
+
+        assertEquals(2, servicio.getCantidad());
+        assertEquals(65_000, servicio.buscar("S1").getPrecioDiezmilesimas());
+    }
+}
@@ -0,0 +1,146 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ResumenVentas;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CierreCajaServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private DiarioFacturasService diario;
+    private CierreCajaService cierre;
+
+    private void abrir() {
+        cerrar();
+        diario = new DiarioFacturasService(directorio.toString(), 1 << 20, new SimpleMeterRegistry());
+        cierre = new CierreCajaService(diario, 4, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void cerrar() {
+        if (cierre != null) {
+            cierre.cerrar();
+        }
+        if (diario != null) {
+            diario.cerrar();
+        }
+    }
+
+    private FacturaCompleta factura(int secuencial, int dia) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setNumeroFactura(String.format("001-001-%09d", secuencial));
+        factura.setFechaEmision(String.format("%02d/03/2026", dia));
+        if (secuencial % 3 == 0) {
+            factura.setCodigoFormaPago("19");
+            factura.setFormaPago("TARJETA DE CREDITO");
+        }
+        factura.agregarItem("SECO", "SECO DE CHIVO", 1 + secuencial % 2, 6.50, 0);
+        factura.agregarItem("JUGO", "JUGO DE NARANJILLA", 2, 1.25, secuencial % 5 == 0 ? 0.50 : 0);
+        return factura;
+    }
+
+    @Test
+    void elCalculoEnParaleloCoincideConLaSumaDirecta() {
+        abrir();
+        // Más facturas que el umbral para que el cálculo se divida en varias tareas
+        ResumenVentas esperado = new ResumenVentas();
+        ResumenVentas esperadoDia5 = new ResumenVentas();
+        int facturas = CierreCajaService.UMBRAL * 3 + 7;
+        for (int i = 1; i <= facturas; i++) {
+            FacturaCompleta factura = factura(i, 1 + i % 10);
+            diario.registrar(factura);
+            esperado.agregar(factura);
+            if (1 + i % 10 == 5) {
+                esperadoDia5.agregar(factura);
+            }
+        }
+
+        TreeMap<LocalDate, ResumenVentas> dias = cierre.calcular(LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 31));
+        assertEquals(10, dias.size());
+        ResumenVentas total = new ResumenVentas();
+        dias.values().forEach(total::combinar);
+        assertIguales(esperado, total);
+        assertIguales(esperadoDia5, dias.get(LocalDate.of(2026, 3, 5)));
+
+        // El acumulado del día (mantenido con cada emisión) da lo mismo que el recálculo
+        assertIguales(esperadoDia5, cierre.cierreDia(LocalDate.of(2026, 3, 5)));
+        assertEquals(3, cierre.calcular(LocalDate.of(2026, 3, 2), LocalDate.of(2026, 3, 4)).size());
+    }
+
+    @Test
+    void nuevaVersionReemplazaALaAnteriorYSeReconstruyeAlReabrir() {
+        abrir();
+        diario.registrar(factura(1, 5));
+        FacturaCompleta corregida = factura(2, 5);
+        diario.registrar(corregida);
+
+        // Corrección de un diario anterior a los números inmutables: otra fecha y otro contenido
+        corregida.setFechaEmision("06/03/2026");
+        corregida.agregarItem("COLA", "COLA", 1, 1.00, 0);
+        diario.registrarVersion(corregida);
+
+        LocalDate dia5 = LocalDate.of(2026, 3, 5);
+        LocalDate dia6 = LocalDate.of(2026, 3, 6);
+        assertEquals(1, cierre.cierreDia(dia5).getFacturas());
+        assertNull(cierre.cierreDia(dia5).getPorProducto().get("COLA"));
+        assertEquals(1, cierre.cierreDia(dia6).getFacturas());
+        assertEquals(corregida.getValorTotalCentavos(), cierre.cierreDia(dia6).getValorTotalCentavos());
+        assertEquals(100, cierre.cierreDia(dia6).getPorProducto().get("COLA").getTotalCentavos());
+
+        abrir();
+        assertEquals(1, cierre.cierreDia(dia5).getFacturas());
+        assertEquals(corregida.getValorTotalCentavos(), cierre.cierreDia(dia6).getValorTotalCentavos());
+        assertFalse(cierre.cierreDia(dia5).getPorProducto().containsKey("COLA"));
+        assertEquals(0, cierre.cierreDia(LocalDate.of(2026, 3, 7)).getFacturas());
+    }
+
+    @Test
+    void elAcumuladoNoPierdeLasFacturasEmitidasMientrasArranca() throws Exception {
+        diario = new DiarioFacturasService(directorio.toString(), 1 << 20, new SimpleMeterRegistry());
+        ResumenVentas esperado = new ResumenVentas();
+        int facturas = CierreCajaService.UMBRAL * 2;
+        Thread emisor = new Thread(() -> {
+            for (int i = 1; i <= facturas; i++) {
+                FacturaCompleta factura = factura(i, 9);
+                diario.registrar(factura);
+                esperado.agregar(factura);
+            }
+        });
+        emisor.start();
+        cierre = new CierreCajaService(diario, 4, new SimpleMeterRegistry());
+        emisor.join();
+
+        assertIguales(esperado, cierre.cierreDia(LocalDate.of(2026, 3, 9)));
+    }
+
+    private static void assertIguales(ResumenVentas esperado, ResumenVentas real) {
+        assertEquals(esperado.getFacturas(), real.getFacturas());
+        assertEquals(esperado.getSubtotal15Centavos(), real.getSubtotal15Centavos());
+        assertEquals(esperado.getSubtotalSinImpuestosCentavos(), real.getSubtotalSinImpuestosCentavos());
+        assertEquals(esperado.getTotalDescuentoCentavos(), real.getTotalDescuentoCentavos());
+        assertEquals(esperado.getIva15Centavos(), real.getIva15Centavos());
+        assertEquals(esperado.getValorTotalCentavos(), real.getValorTotalCentavos());
+        assertEquals(esperado.getPorFormaPago().keySet(), real.getPorFormaPago().keySet());
+        esperado.getPorFormaPago().forEach((codigo, a) -> {
+            assertEquals(a.getCantidad(), real.getPorFormaPago().get(codigo).getCantidad());
+            assertEquals(a.getTotalCentavos(), real.getPorFormaPago().get(codigo).getTotalCentavos());
+        });
+        esperado.getPorProducto().forEach((codigo, a) -> {
+            assertEquals(a.getCantidad(), real.getPorProducto().get(codigo).getCantidad());
+            assertEquals(a.getTotalCentavos(), real.getPorProducto().get(codigo).getTotalCentavos());
+        });
+    }
+}
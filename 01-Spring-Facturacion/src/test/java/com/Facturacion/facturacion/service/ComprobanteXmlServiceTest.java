@@ -0,0 +1,187 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ComprobanteXmlServiceTest {
+
+    private final ComprobanteXmlService servicio = new ComprobanteXmlService();
+
+    @AfterEach
+    void restaurarReglas() {
+        ReglasFacturacion.publicar(ReglasFacturacion.PREDETERMINADAS);
+    }
+
+    private static FacturaCompleta factura() {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setNumeroFactura("001-002-000000123");
+        factura.setClaveAcceso("1505202401050381562300120010020000001231234567816");
+        factura.setFechaEmision("15/05/2024");
+        factura.setRazonSocialCliente("Ñandú & Cía <Andes> 🦙");
+        factura.setRucCliente("1790011674001");
+        factura.setDireccionCliente("Av. Amazonas N34");
+        factura.setCorreoCliente("ventas@andes.ec");
+        return factura;
+    }
+
+    private static Document leer(byte[] xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    private static String texto(Element padre, String nombre) {
+        return padre.getElementsByTagName(nombre).item(0).getTextContent();
+    }
+
+    @Test
+    void escribeLasSeccionesDelEsquema() throws Exception {
+        FacturaCompleta factura = factura();
+        factura.agregarItem("A1", "SECO DE CHIVO", 3, 4.5, 0);
+        factura.agregarItem("B2", "JUGO", 2, 1.2345, 0.5);
+
+        Document documento = leer(servicio.generarFacturaXml(factura));
+        Element raiz = documento.getDocumentElement();
+        assertEquals("factura", raiz.getTagName());
+        assertEquals("comprobante", raiz.getAttribute("id"));
+        assertEquals(ComprobanteXmlService.VERSION_ESQUEMA, raiz.getAttribute("version"));
+
+        Element tributaria = (Element) raiz.getElementsByTagName("infoTributaria").item(0);
+        assertEquals("2", texto(tributaria, "ambiente"));
+        assertEquals("0503815623001", texto(tributaria, "ruc"));
+        assertEquals("001", texto(tributaria, "estab"));
+        assertEquals("002", texto(tributaria, "ptoEmi"));
+        assertEquals("000000123", texto(tributaria, "secuencial"));
+        assertEquals("01", texto(tributaria, "codDoc"));
+
+        Element info = (Element) raiz.getElementsByTagName("infoFactura").item(0);
+        assertEquals("15/05/2024", texto(info, "fechaEmision"));
+        assertEquals("04", texto(info, "tipoIdentificacionComprador"));
+        assertEquals("Ñandú & Cía <Andes> 🦙", texto(info, "razonSocialComprador"));
+        // 13.50 + 2.47 - 0.50 = 15.47, IVA 15% = 2.32
+        assertEquals("15.47", texto(info, "totalSinImpuestos"));
+        assertEquals("0.50", texto(info, "totalDescuento"));
+        Element totalImpuesto = (Element) info.getElementsByTagName("totalImpuesto").item(0);
+        assertEquals("4", texto(totalImpuesto, "codigoPorcentaje"));
+        assertEquals("15.47", texto(totalImpuesto, "baseImponible"));
+        assertEquals("2.32", texto(totalImpuesto, "valor"));
+        assertEquals("0.00", texto(info, "propina"));
+        assertEquals("17.79", texto(info, "importeTotal"));
+        assertEquals("17.79", texto((Element) info.getElementsByTagName("pago").item(0), "total"));
+
+        NodeList detalles = raiz.getElementsByTagName("detalle");
+        assertEquals(2, detalles.getLength());
+        Element segundo = (Element) detalles.item(1);
+        assertEquals("B2", texto(segundo, "codigoPrincipal"));
+        assertEquals("2", texto(segundo, "cantidad"));
+        assertEquals("1.2345", texto(segundo, "precioUnitario"));
+        assertEquals("0.50", texto(segundo, "descuento"));
+        assertEquals("1.97", texto(segundo, "precioTotalSinImpuesto"));
+        assertEquals("15.00", texto(segundo, "tarifa"));
+        assertEquals("0.30", texto(segundo, "valor"));
+
+        Element adicional = (Element) raiz.getElementsByTagName("campoAdicional").item(0);
+        assertEquals("Email", adicional.getAttribute("nombre"));
+        assertEquals("ventas@andes.ec", adicional.getTextContent());
+    }
+
+    @Test
+    void categoriasDeIvaYServicioComoPropina() throws Exception {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(2)
+                .tasaServicio(1000)
+                .producto("LIB", ReglasFacturacion.IVA_CERO, 0)
+                .producto("MED", ReglasFacturacion.IVA_EXENTO, 0)
+                .construir());
+        FacturaCompleta factura = factura();
+        factura.setRucCliente("9999999999999");
+        factura.agregarItem("A1", "ALMUERZO", 1, 10, 0);
+        factura.agregarItem("LIB", "LIBRO", 1, 20, 0);
+        factura.agregarItem("MED", "MEDICINA", 1, 5, 0);
+
+        Element info = (Element) leer(servicio.generarFacturaXml(factura)).getElementsByTagName("infoFactura").item(0);
+        assertEquals("07", texto(info, "tipoIdentificacionComprador"));
+        NodeList totales = info.getElementsByTagName("totalImpuesto");
+        assertEquals(3, totales.getLength());
+        assertEquals("0", texto((Element) totales.item(1), "codigoPorcentaje"));
+        assertEquals("20.00", texto((Element) totales.item(1), "baseImponible"));
+        assertEquals("7", texto((Element) totales.item(2), "codigoPorcentaje"));
+        assertEquals("3.50", texto(info, "propina"));
+        // 35.00 + IVA 1.50 + servicio 3.50
+        assertEquals("40.00", texto(info, "importeTotal"));
+    }
+
+    @Test
+    void escribeAlStreamPorPartesSinCerrarlo() throws Exception {
+        FacturaCompleta factura = factura();
+        for (int i = 0; i < 10_000; i++) {
+            factura.agregarItem("P" + i, "PRODUCTO " + i, 1 + i % 9, 3.75, 0);
+        }
+        int[] escrituras = new int[1];
+        boolean[] cerrado = new boolean[1];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream salida = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                escrituras[0]++;
+                bytes.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                cerrado[0] = true;
+            }
+        };
+        servicio.generarFacturaXml(factura, salida);
+
+        assertFalse(cerrado[0]);
+        assertTrue(escrituras[0] > 100, "escrituras: " + escrituras[0]);
+        assertEquals(10_000, leer(bytes.toByteArray()).getElementsByTagName("detalle").getLength());
+
+        // El buffer del hilo queda listo para la siguiente factura
+        byte[] otra = servicio.generarFacturaXml(factura());
+        assertEquals(0, leer(otra).getElementsByTagName("detalle").getLength());
+    }
+
+    @Test
+    void sinNumeroAsignado() {
+        assertThrows(IllegalArgumentException.class, () -> servicio.generarFacturaXml(new FacturaCompleta()));
+    }
+
+    @Test
+    void rechazaLasFacturasConIce() {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(3)
+                .producto("CIG", ReglasFacturacion.IVA_TARIFA, 3000)
+                .construir());
+        FacturaCompleta factura = factura();
+        factura.agregarItem("CIG", "CIGARRILLOS", 1, 4, 0);
+
+        assertThrows(IllegalArgumentException.class, () -> servicio.generarFacturaXml(factura));
+    }
+
+    @Test
+    void codigosDeTarifa() {
+        assertEquals("4", ComprobanteXmlService.codigoPorcentajeTarifa(1500));
+        assertEquals("2", ComprobanteXmlService.codigoPorcentajeTarifa(1200));
+        assertEquals("8", ComprobanteXmlService.codigoPorcentajeTarifa(800));
+        assertEquals("05", ComprobanteXmlService.tipoIdentificacion("0503815623"));
+        assertEquals("06", ComprobanteXmlService.tipoIdentificacion("AB123456"));
+    }
+}
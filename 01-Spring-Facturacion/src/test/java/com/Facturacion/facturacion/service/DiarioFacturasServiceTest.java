@@ -0,0 +1,158 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiarioFacturasServiceTest {
+
+    private static final int SEGMENTO = 4096;
+
+    @TempDir
+    Path directorio;
+
+    private final List<DiarioFacturasService> abiertos = new ArrayList<>();
+
+    private DiarioFacturasService abrir() {
+        DiarioFacturasService diario = new DiarioFacturasService(directorio.toString(), SEGMENTO, new SimpleMeterRegistry());
+        abiertos.add(diario);
+        return diario;
+    }
+
+    @AfterEach
+    void cerrar() {
+        abiertos.forEach(DiarioFacturasService::cerrar);
+    }
+
+    private static FacturaCompleta factura(int secuencial, int items) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setNumeroFactura(String.format("001-001-%09d", secuencial));
+        factura.setRazonSocialCliente("CLIENTE " + secuencial);
+        factura.setRucCliente("1710034065");
+        for (int i = 0; i < items; i++) {
+            factura.agregarItem("P" + i, "PRODUCTO " + i, i + 1, 1.25, 0);
+        }
+        return factura;
+    }
+
+    @Test
+    void registraYLeePorNumero() {
+        DiarioFacturasService diario = abrir();
+        FacturaCompleta original = factura(1, 3);
+        diario.registrar(original);
+
+        DiarioFacturasService.Registro registro = diario.obtener("001-001-000000001");
+        assertEquals(original.getValorTotalCentavos(), registro.getValorTotalCentavos());
+        assertEquals(original.getIva15Centavos(), registro.getIva15Centavos());
+        assertTrue(registro.contenido().isReadOnly());
+
+        FacturaCompleta leida = registro.factura();
+        assertEquals("CLIENTE 1", leida.getRazonSocialCliente());
+        assertEquals(3, leida.getItems().size());
+        assertEquals(original.getValorTotalCentavos(), leida.getValorTotalCentavos());
+        assertNull(diario.obtener("001-001-999999999"));
+    }
+
+    @Test
+    void pasaAlSiguienteSegmentoYSeRecuperaAlReabrir() throws Exception {
+        DiarioFacturasService diario = abrir();
+        for (int i = 1; i <= 200; i++) {
+            diario.registrar(factura(i, 2));
+        }
+        diario.cerrar();
+        assertTrue(Files.exists(directorio.resolve("diario-00000001.seg")));
+
+        DiarioFacturasService reabierto = abrir();
+        assertEquals(200, reabierto.getCantidadFacturas());
+        assertEquals("CLIENTE 137", reabierto.obtenerFactura("001-001-000000137").getRazonSocialCliente());
+
+        int[] registros = {0};
+        reabierto.recorrer(r -> registros[0]++);
+        assertEquals(200, registros[0]);
+
+        reabierto.registrar(factura(201, 1));
+        assertEquals(201, reabierto.getCantidadFacturas());
+    }
+
+    @Test
+    void mismaFacturaSinCambiosNoSeVuelveAEscribirYConOtroContenidoSeRechaza() {
+        DiarioFacturasService diario = abrir();
+        FacturaCompleta factura = factura(7, 2);
+        long primera = diario.registrar(factura);
+        assertEquals(primera, diario.registrar(factura));
+
+        factura.agregarItem("X", "OTRO", 1, 3.00, 0);
+        assertThrows(IllegalStateException.class, () -> diario.registrar(factura));
+        assertEquals(2, diario.obtenerFactura("001-001-000000007").getItems().size());
+
+        int[] versiones = {0};
+        diario.recorrer(r -> versiones[0]++);
+        assertEquals(1, versiones[0]);
+
+        // Un diario anterior a la regla puede tener otra versión; el índice apunta a la última
+        long segunda = diario.registrarVersion(factura);
+        assertTrue(segunda > primera);
+        assertEquals(3, diario.obtenerFactura("001-001-000000007").getItems().size());
+    }
+
+    @Test
+    void registroCortadoMarcaElFinalDelDiario() throws Exception {
+        DiarioFacturasService diario = abrir();
+        diario.registrar(factura(1, 2));
+        long posicion = diario.registrar(factura(2, 2));
+        diario.cerrar();
+
+        // Simula una caída a mitad de escritura: se daña el último registro
+        try (FileChannel canal = FileChannel.open(directorio.resolve("diario-00000000.seg"), StandardOpenOption.WRITE)) {
+            canal.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), posicion + DiarioFacturasService.CABECERA + 3);
+        }
+
+        DiarioFacturasService reabierto = abrir();
+        assertEquals(1, reabierto.getCantidadFacturas());
+        assertFalse(reabierto.contiene("001-001-000000002"));
+
+        reabierto.registrar(factura(3, 1));
+        reabierto.cerrar();
+        assertEquals(2, abrir().getCantidadFacturas());
+    }
+
+    @Test
+    void escriturasConcurrentesSeConfirmanTodas() throws Exception {
+        DiarioFacturasService diario = new DiarioFacturasService(directorio.toString(), 1 << 20, new SimpleMeterRegistry());
+        abiertos.add(diario);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < 8; h++) {
+            int base = h * 1000;
+            tareas.add(pool.submit(() -> {
+                for (int i = 1; i <= 250; i++) {
+                    diario.registrar(factura(base + i, 1));
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        pool.shutdown();
+        assertEquals(2000, diario.getCantidadFacturas());
+    }
+}
@@ -0,0 +1,168 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.Cliente;
+import com.Facturacion.facturacion.util.Tokenizador;
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectorioClientesServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private final ValidadorEcuador validador = new ValidadorEcuador();
+    private DirectorioClientesService servicio;
+
+    private void abrir(int maxRecientes) throws IOException {
+        cerrar();
+        servicio = new DirectorioClientesService(validador, directorio.toString(), maxRecientes, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void cerrar() throws IOException {
+        if (servicio != null) {
+            servicio.cerrar();
+        }
+    }
+
+    private static Cliente cliente(String razonSocial, String ruc) {
+        return new Cliente(razonSocial, ruc, "AV. AMAZONAS N34-120", "", "0991234567");
+    }
+
+    private static List<String> rucs(List<Cliente> clientes) {
+        return clientes.stream().map(Cliente::getRuc).toList();
+    }
+
+    @Test
+    void buscaPorPrefijoDeRucYDePalabras() throws IOException {
+        abrir(3);
+        servicio.guardar(cliente("PICANTERÍA LA ESQUINA", "1790011674001"));
+        servicio.guardar(cliente("JUAN PÉREZ", "1710034065"));
+        servicio.guardar(cliente("JUAN CARLOS PICO", "1710034065001"));
+        servicio.guardar(cliente("MUNICIPIO DE QUITO", "1760001550001"));
+        assertThrows(IllegalArgumentException.class, () -> servicio.guardar(cliente("MAL", "1710034066")));
+
+        assertEquals(List.of("1710034065", "1710034065001"), rucs(servicio.buscar("171003", 10)));
+        assertEquals(List.of("1710034065"), rucs(servicio.buscar("171003", 1)));
+        assertEquals(List.of("1790011674001"), rucs(servicio.buscar(" pICAnteria ", 10)));
+        assertEquals(List.of("1710034065001", "1790011674001"), rucs(servicio.buscar("pic", 10)));
+        assertEquals(List.of("1710034065001"), rucs(servicio.buscar("juan pic", 10)));
+        assertEquals(List.of(), servicio.buscar("de la", 10));
+        assertEquals(List.of(), servicio.buscar("99", 10));
+
+        // Cambiar la razón social: la palabra vieja deja de encontrarlo, antes y después de rearmar
+        servicio.guardar(cliente("PEREZ COMERCIAL", "1710034065"));
+        assertEquals(List.of(), rucs(servicio.buscar("juan per", 10)));
+        assertEquals(List.of("1710034065"), rucs(servicio.buscar("comer", 10)));
+        servicio.guardar(cliente("OTRO", "0102030400"));
+        servicio.guardar(cliente("OTRO MAS", "0102030400"));
+        assertEquals(List.of(), rucs(servicio.buscar("juan per", 10)));
+        assertEquals("OTRO MAS", servicio.obtener("0102030400").getRazonSocial());
+        assertNull(servicio.obtener("0102030401"));
+        assertEquals(5, servicio.getCantidad());
+    }
+
+    @Test
+    void seRecuperaDelArchivoYSeCompacta() throws IOException {
+        abrir(4);
+        for (int i = 0; i < 50; i++) {
+            servicio.guardar(cliente("CLIENTE VERSION " + i, "1710034065"));
+            servicio.guardar(cliente("SOCIEDAD " + i, "1790011674001"));
+        }
+        Path archivo = directorio.resolve("clientes.dat");
+        // Con la mayoría de entradas reemplazadas se reescribe con una por cliente
+        assertTrue(Files.size(archivo) < 10 * 80, "El archivo no se compactó: " + Files.size(archivo));
+
+        // Una escritura cortada al final no impide arrancar
+        Files.write(archivo, new byte[]{0, 0, 0, 7, 0, 0}, StandardOpenOption.APPEND);
+        abrir(4);
+        assertEquals(2, servicio.getCantidad());
+        assertEquals("CLIENTE VERSION 49", servicio.obtener("1710034065").getRazonSocial());
+        assertEquals(List.of("1790011674001"), rucs(servicio.buscar("sociedad 49", 10)));
+        servicio.guardar(cliente("NUEVO", "0102030400"));
+        abrir(4);
+        assertEquals(3, servicio.getCantidad());
+        assertEquals(List.of("0102030400"), rucs(servicio.buscar("nue", 10)));
+    }
+
+    @Test
+    void coincideConUnFiltroDirectoSobreClientesAleatorios() throws IOException {
+        abrir(32);
+        Random random = new Random(21);
+        String[] palabras = {"PICANTERÍA", "PICO", "LA", "ESQUINA", "JUAN", "JUANA", "PÉREZ", "PERALTA", "COMERCIAL",
+                "FRITADA", "HORNADO", "SECO", "DE", "CHIVO", "QUITO", "GUAYAQUIL", "ÑAÑO"};
+        List<String> documentos = new ArrayList<>();
+        char[] cedula = new char[10];
+        while (documentos.size() < 300) {
+            for (int i = 0; i < 10; i++) {
+                cedula[i] = (char) ('0' + random.nextInt(10));
+            }
+            cedula[0] = '1';
+            String documento = new String(cedula);
+            if (validador.validarCedula(documento)) {
+                documentos.add(random.nextBoolean() ? documento : documento + "001");
+            }
+        }
+
+        Map<String, Cliente> modelo = new LinkedHashMap<>();
+        for (int n = 0; n < 1500; n++) {
+            StringBuilder nombre = new StringBuilder();
+            for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                nombre.append(palabras[random.nextInt(palabras.length)]).append(' ');
+            }
+            Cliente c = cliente(nombre.toString().trim(), documentos.get(random.nextInt(documentos.size())));
+            servicio.guardar(c);
+            modelo.put(c.getRuc(), c);
+
+            if (n % 50 == 0) {
+                for (String consulta : List.of("1", "17", "123", "pic", "pe", "juan pe", "nan", "es j", "fri chi", "xyz")) {
+                    List<Cliente> esperado = filtrar(modelo, consulta);
+                    assertEquals(rucs(esperado), rucs(servicio.buscar(consulta, 1000)), consulta);
+                    assertEquals(Math.min(5, esperado.size()), servicio.buscar(consulta, 5).size(), consulta);
+                }
+            }
+        }
+    }
+
+    private static List<Cliente> filtrar(Map<String, Cliente> modelo, String consulta) {
+        List<Cliente> resultado = new ArrayList<>();
+        boolean digitos = consulta.chars().allMatch(Character::isDigit);
+        List<String> buscadas = new ArrayList<>();
+        Tokenizador.tokenizar(consulta, buscadas::add);
+        for (Cliente c : modelo.values()) {
+            if (digitos) {
+                if (c.getRuc().startsWith(consulta)) {
+                    resultado.add(c);
+                }
+                continue;
+            }
+            List<String> delCliente = new ArrayList<>();
+            Tokenizador.tokenizar(c.getRazonSocial(), delCliente::add);
+            if (buscadas.stream().allMatch(b -> delCliente.stream().anyMatch(p -> p.startsWith(b)))) {
+                resultado.add(c);
+            }
+        }
+        resultado.sort(digitos ? Comparator.comparing(Cliente::getRuc)
+                : Comparator.comparing(Cliente::getRazonSocial).thenComparing(Cliente::getRuc));
+        return resultado;
+    }
+}
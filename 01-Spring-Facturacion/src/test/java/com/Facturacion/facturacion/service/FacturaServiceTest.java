@@ -0,0 +1,214 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.Factura;
+import com.Facturacion.facturacion.models.LoteFacturas;
+import com.Facturacion.facturacion.util.CalculoLote;
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FacturaServiceTest {
+
+    private final FacturaService servicio = new FacturaService();
+
+    @AfterEach
+    void restaurarReglas() {
+        ReglasFacturacion.publicar(ReglasFacturacion.PREDETERMINADAS);
+    }
+
+    // Incluye tramos de descuento, medios centavos, negativos, montos enormes y NaN
+    private static LoteFacturas lote(int filas, long semilla) {
+        Random random = new Random(semilla);
+        int[] cantidades = new int[filas];
+        double[] precios = new double[filas];
+        for (int i = 0; i < filas; i++) {
+            switch (i % 6) {
+                case 0 -> {
+                    cantidades[i] = random.nextInt(12);
+                    precios[i] = random.nextInt(10_000_000) / 10_000.0;
+                }
+                case 1 -> {
+                    cantidades[i] = random.nextInt(12);
+                    precios[i] = (random.nextInt(100_000) + 0.5) / 10_000.0;
+                }
+                case 2 -> {
+                    cantidades[i] = random.nextInt(2_000) - 1_000;
+                    precios[i] = random.nextInt(1_000_000) / 100.0 - 5_000;
+                }
+                case 3 -> {
+                    cantidades[i] = random.nextInt();
+                    precios[i] = random.nextDouble() * 1e6;
+                }
+                case 4 -> {
+                    cantidades[i] = random.nextInt(12);
+                    precios[i] = random.nextInt(50) == 0 ? Double.NaN : -0.0;
+                }
+                default -> {
+                    cantidades[i] = 1 + random.nextInt(100_000);
+                    precios[i] = random.nextDouble() * 100;
+                }
+            }
+        }
+        return new LoteFacturas(cantidades, precios);
+    }
+
+    // El mismo lote con códigos de productos con y sin reglas propias (y alguno null)
+    private static LoteFacturas loteConCodigos(int filas, long semilla) {
+        String[] productos = {"GENERAL", "LIB", "MED", "DON", "CIG", null};
+        LoteFacturas base = lote(filas, semilla);
+        Random random = new Random(semilla);
+        String[] codigos = new String[filas];
+        for (int i = 0; i < filas; i++) {
+            codigos[i] = productos[random.nextInt(productos.length)];
+        }
+        return new LoteFacturas(base.getCantidades(), base.getPreciosUnitarios(), codigos);
+    }
+
+    // Lo que sigue solo corre con mvn -Pvector, que compila la versión vectorial y arranca el
+    // surefire con el módulo (y calculo.vectorial=true): ahí tiene que estar disponible
+    private static void conVectorial() {
+        assumeTrue(Boolean.getBoolean("calculo.vectorial"), "Cálculo vectorial: solo con mvn -Pvector");
+        assertTrue(CalculoLote.VECTORIAL);
+    }
+
+    private void assertIgualPorFila(LoteFacturas lote) {
+        Factura factura = new Factura();
+        for (int i = 0; i < lote.getTamano(); i++) {
+            factura.setCodigo(lote.getCodigos() != null ? lote.getCodigos()[i] : null);
+            factura.setCantidad(lote.getCantidades()[i]);
+            factura.setPrecioUnitario(lote.getPreciosUnitarios()[i]);
+            servicio.calcularFactura(factura);
+            String fila = "fila " + i;
+            assertEquals(factura.getDescuento(), lote.getDescuentos()[i], fila);
+            assertEquals(factura.getSubtotal(), lote.getSubtotales()[i], fila);
+            assertEquals(factura.getIva(), lote.getIvas()[i], fila);
+            assertEquals(factura.getTotal(), lote.getTotales()[i], fila);
+        }
+    }
+
+    @Test
+    void loteIgualQueFacturaPorFactura() {
+        LoteFacturas lote = lote(10_007, 3);
+        servicio.calcularLote(lote);
+        assertIgualPorFila(lote);
+    }
+
+    @Test
+    void loteGrandeSeRepartePorTramos() {
+        LoteFacturas lote = lote(FacturaService.UMBRAL_LOTE * 5 + 13, 5);
+        servicio.calcularLote(lote);
+        assertIgualPorFila(lote);
+    }
+
+    @Test
+    void escalarYVectorialDanLoMismo() {
+        LoteFacturas escalar = lote(4_099, 9);
+        CalculoLote.calcularEscalar(escalar, ReglasFacturacion.PREDETERMINADAS, 0, escalar.getTamano());
+        assertIgualPorFila(escalar);
+
+        conVectorial();
+        LoteFacturas vectorial = lote(4_099, 9);
+        CalculoLote.calcularVectorial(vectorial, ReglasFacturacion.PREDETERMINADAS, 1, vectorial.getTamano());
+        CalculoLote.calcularEscalar(vectorial, ReglasFacturacion.PREDETERMINADAS, 0, 1);
+        assertIgualPorFila(vectorial);
+    }
+
+    @Test
+    void tramosDeDescuento() {
+        LoteFacturas lote = new LoteFacturas(new int[]{1, 3, 4, 7, 8, 20}, new double[]{10, 10, 10, 10, 10, 10});
+        servicio.calcularLote(lote);
+        assertEquals(0, lote.getDescuentos()[1]);
+        assertEquals(5, lote.getDescuentos()[2]);
+        assertEquals(5, lote.getDescuentos()[3]);
+        assertEquals(10, lote.getDescuentos()[4]);
+        // 8 x 10.00 = 80.00, menos 10% = 72.00, IVA 10.80
+        assertEquals(72.00, lote.getSubtotales()[4]);
+        assertEquals(10.80, lote.getIvas()[4]);
+        assertEquals(82.80, lote.getTotales()[4]);
+        assertIgualPorFila(lote);
+    }
+
+    @Test
+    void loteConOtrasReglas() {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(7)
+                .tramo(3, 2)
+                .tramo(10, 12)
+                .tramo(50, 20)
+                .tasaIva(1200)
+                .construir());
+        LoteFacturas lote = lote(10_007, 11);
+        servicio.calcularLote(lote);
+        assertEquals(7, lote.getVersionReglas());
+        assertIgualPorFila(lote);
+
+        LoteFacturas tramos = new LoteFacturas(new int[]{2, 3, 10, 50}, new double[]{10, 10, 10, 10});
+        servicio.calcularLote(tramos);
+        assertEquals(0, tramos.getDescuentos()[0]);
+        assertEquals(2, tramos.getDescuentos()[1]);
+        assertEquals(12, tramos.getDescuentos()[2]);
+        // 50 x 10.00 = 500.00, menos 20% = 400.00, IVA 12% = 48.00
+        assertEquals(400.00, tramos.getSubtotales()[3]);
+        assertEquals(48.00, tramos.getIvas()[3]);
+
+        conVectorial();
+        LoteFacturas vectorial = lote(4_099, 13);
+        CalculoLote.calcularVectorial(vectorial, ReglasFacturacion.vigentes(), 0, vectorial.getTamano());
+        assertIgualPorFila(vectorial);
+    }
+
+    @Test
+    void loteConProductosDeDistintaCategoriaDeIva() {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(8)
+                .tramo(4, 5)
+                .tasaIva(1200)
+                .producto("LIB", ReglasFacturacion.IVA_CERO, 0)
+                .producto("MED", ReglasFacturacion.IVA_EXENTO, 0)
+                .producto("DON", ReglasFacturacion.IVA_NO_OBJETO, 0)
+                .producto("CIG", ReglasFacturacion.IVA_TARIFA, 3000)
+                .construir());
+        LoteFacturas lote = loteConCodigos(FacturaService.UMBRAL_LOTE * 2 + 7, 17);
+        servicio.calcularLote(lote);
+        assertIgualPorFila(lote);
+
+        LoteFacturas escalar = loteConCodigos(4_099, 19);
+        CalculoLote.calcularEscalar(escalar, ReglasFacturacion.vigentes(), 0, escalar.getTamano());
+        assertIgualPorFila(escalar);
+
+        // 10 x 2.00 = 20.00, menos 5% = 19.00: IVA 12% = 2.28 en general, 0 en un libro
+        LoteFacturas filas = new LoteFacturas(new int[]{10, 10}, new double[]{2, 2}, new String[]{"GENERAL", "LIB"});
+        servicio.calcularLote(filas);
+        assertEquals(2.28, filas.getIvas()[0]);
+        assertEquals(0.0, filas.getIvas()[1]);
+        assertEquals(19.00, filas.getTotales()[1]);
+
+        conVectorial();
+        LoteFacturas vectorial = loteConCodigos(4_099, 19);
+        CalculoLote.calcularVectorial(vectorial, ReglasFacturacion.vigentes(), 0, vectorial.getTamano());
+        assertIgualPorFila(vectorial);
+    }
+
+    @Test
+    void facturaGuardaLaVersionDeLasReglas() {
+        ReglasFacturacion.publicar(new ReglasFacturacion.Escritor(3).tramo(2, 50).construir());
+        Factura factura = new Factura();
+        factura.setCantidad(2);
+        factura.setPrecioUnitario(10);
+        servicio.calcularFactura(factura);
+        assertEquals(3, factura.getVersionReglas());
+        assertEquals(50, factura.getDescuento());
+        assertEquals(10.00, factura.getSubtotal());
+    }
+
+    @Test
+    void arreglosDeDistintoLargo() {
+        assertThrows(IllegalArgumentException.class, () -> new LoteFacturas(new int[3], new double[2]));
+        assertThrows(IllegalArgumentException.class, () -> new LoteFacturas(new int[3], new double[3], new String[2]));
+    }
+}
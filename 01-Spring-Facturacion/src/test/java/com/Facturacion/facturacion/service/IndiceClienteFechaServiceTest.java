@@ -0,0 +1,153 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndiceClienteFechaServiceTest {
+
+    private static final String RUC_A = "1790011674001";
+    private static final String RUC_B = "1710034065";
+
+    @TempDir
+    Path directorio;
+
+    private DiarioFacturasService diario;
+    private IndiceClienteFechaService indice;
+
+    private void abrir() throws IOException {
+        cerrar();
+        diario = new DiarioFacturasService(directorio.resolve("diario").toString(), 1 << 20, new SimpleMeterRegistry());
+        indice = new IndiceClienteFechaService(diario, directorio.resolve("indices").toString());
+    }
+
+    @AfterEach
+    void cerrar() throws IOException {
+        if (indice != null) {
+            indice.cerrar();
+        }
+        if (diario != null) {
+            diario.cerrar();
+        }
+    }
+
+    private void emitir(int secuencial, String ruc, String fecha) {
+        emitir(secuencial, ruc, fecha, false);
+    }
+
+    private void emitir(int secuencial, String ruc, String fecha, boolean nuevaVersion) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setNumeroFactura(String.format("001-001-%09d", secuencial));
+        factura.setRucCliente(ruc);
+        factura.setRazonSocialCliente("CLIENTE");
+        factura.setFechaEmision(fecha);
+        factura.agregarItem("P", "PRODUCTO", 1, secuencial, 0);
+        if (nuevaVersion) {
+            diario.registrarVersion(factura);
+        } else {
+            diario.registrar(factura);
+        }
+    }
+
+    private List<String> numeros(IndiceClienteFechaService.Pagina pagina) {
+        List<String> numeros = new ArrayList<>();
+        pagina.facturas().forEach(r -> numeros.add(r.numeroFactura()));
+        return numeros;
+    }
+
+    @Test
+    void consultaPorRangoYPagina() throws IOException {
+        abrir();
+        // Tres meses, dos clientes intercalados
+        int secuencial = 1;
+        for (int mes = 2; mes <= 4; mes++) {
+            for (int dia = 1; dia <= 10; dia++) {
+                String fecha = String.format("%02d/%02d/2026", dia, mes);
+                emitir(secuencial++, RUC_A, fecha);
+                emitir(secuencial++, RUC_B, fecha);
+            }
+        }
+
+        LocalDate desde = LocalDate.of(2026, 3, 1);
+        LocalDate hasta = LocalDate.of(2026, 3, 31);
+        IndiceClienteFechaService.Pagina primera = indice.buscar(RUC_A, desde, hasta, null, 4);
+        assertEquals(4, primera.facturas().size());
+        assertEquals(LocalDate.of(2026, 3, 1), primera.facturas().get(0).fechaEmision());
+
+        List<String> todas = new ArrayList<>(numeros(primera));
+        String cursor = primera.siguiente();
+        while (cursor != null) {
+            IndiceClienteFechaService.Pagina pagina = indice.buscar(RUC_A, desde, hasta, cursor, 4);
+            todas.addAll(numeros(pagina));
+            cursor = pagina.siguiente();
+        }
+        assertEquals(10, todas.size());
+        assertEquals(10, todas.stream().distinct().count());
+        for (IndiceClienteFechaService.Resultado r : indice.buscar(RUC_A, desde, hasta, null, 100).facturas()) {
+            assertEquals(RUC_A, r.registro().factura().getRucCliente());
+            assertEquals(3, r.fechaEmision().getMonthValue());
+        }
+        assertNull(indice.buscar(RUC_A, desde, hasta, null, 10).siguiente());
+    }
+
+    @Test
+    void seActualizaConCadaEmisionYConNuevasVersiones() throws IOException {
+        abrir();
+        LocalDate dia = LocalDate.of(2026, 3, 5);
+        assertTrue(indice.buscar(RUC_A, dia, dia, null, 10).facturas().isEmpty());
+
+        emitir(1, RUC_A, "05/03/2026");
+        assertEquals(1, indice.buscar(RUC_A, dia, dia, null, 10).facturas().size());
+
+        // Nueva versión de la misma factura para otro cliente (diario anterior a los números
+        // inmutables): sale del índice del primero
+        emitir(1, RUC_B, "05/03/2026", true);
+        assertTrue(indice.buscar(RUC_A, dia, dia, null, 10).facturas().isEmpty());
+        assertEquals(1, indice.buscar(RUC_B, dia, dia, null, 10).facturas().size());
+        assertEquals(1, indice.getCantidad());
+    }
+
+    @Test
+    void continuaDesdeElArchivoYSeReconstruyeSiSeDania() throws IOException {
+        abrir();
+        for (int i = 1; i <= 50; i++) {
+            emitir(i, RUC_A, "10/03/2026");
+        }
+        abrir();
+        LocalDate dia = LocalDate.of(2026, 3, 10);
+        assertEquals(50, indice.buscar(RUC_A, dia, dia, null, 500).facturas().size());
+
+        // Facturas emitidas mientras el archivo del índice no se actualiza (se pierde su cola)
+        Path archivo = directorio.resolve("indices").resolve("ruc-fecha.idx");
+        long tamano = Files.size(archivo);
+        for (int i = 51; i <= 60; i++) {
+            emitir(i, RUC_A, "10/03/2026");
+        }
+        indice.cerrar();
+        try (var canal = Files.newByteChannel(archivo, StandardOpenOption.WRITE)) {
+            canal.truncate(tamano - 5);
+        }
+        abrir();
+        assertEquals(60, indice.buscar(RUC_A, dia, dia, null, 500).facturas().size());
+
+        // Archivo basura: se reconstruye desde el diario
+        indice.cerrar();
+        Files.write(archivo, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+        abrir();
+        assertEquals(60, indice.getCantidad());
+    }
+}
@@ -0,0 +1,87 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.DatosTemporales;
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PdfLoteServiceTest {
+
+    @TempDir
+    static Path datos;
+
+    @DynamicPropertySource
+    static void datosTemporales(DynamicPropertyRegistry registro) {
+        DatosTemporales.registrar(registro, datos);
+    }
+
+    @Autowired
+    private PdfLoteService lote;
+
+    @Autowired
+    private SecuencialService secuencialService;
+
+    @Autowired
+    private DiarioFacturasService diario;
+
+    private String emitir(String cliente) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setRazonSocialCliente(cliente);
+        factura.agregarItem("S1", "SECO DE CHIVO", 1, 6.50, 0);
+        secuencialService.asignar(factura);
+        diario.registrar(factura);
+        return factura.getNumeroFactura();
+    }
+
+    @Test
+    void losPdfsSalenEnElOrdenPedidoYLosFallidosQuedanEnElManifiesto() throws Exception {
+        String primera = emitir("COMERCIAL ANDES");
+        String segunda = emitir("FERRETERIA QUITO");
+        int registradas = diario.posicionesVigentes().length;
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        lote.generarZip(List.of(segunda, "001-001-999999999", primera), salida);
+
+        List<String> entradas = new ArrayList<>();
+        String manifiesto = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(salida.toByteArray()))) {
+            for (ZipEntry entrada; (entrada = zip.getNextEntry()) != null; ) {
+                entradas.add(entrada.getName());
+                byte[] contenido = zip.readAllBytes();
+                if (entrada.getName().equals(PdfLoteService.MANIFIESTO)) {
+                    manifiesto = new String(contenido, StandardCharsets.UTF_8);
+                } else {
+                    assertTrue(new String(contenido, 0, 5, StandardCharsets.US_ASCII).startsWith("%PDF"));
+                }
+            }
+        }
+
+        assertEquals(List.of("0001_factura_" + segunda + ".pdf", "0003_factura_" + primera + ".pdf",
+                PdfLoteService.MANIFIESTO), entradas);
+        assertEquals("""
+                indice,archivo,numeroFactura,estado,mensaje
+                1,0001_factura_%s.pdf,%s,OK,""
+                2,,001-001-999999999,ERROR,"La factura 001-001-999999999 no está registrada"
+                3,0003_factura_%s.pdf,%s,OK,""
+                """.formatted(segunda, segunda, primera, primera), manifiesto);
+        // Re-emitir no asigna números ni registra nada
+        assertEquals(registradas, diario.posicionesVigentes().length);
+    }
+}
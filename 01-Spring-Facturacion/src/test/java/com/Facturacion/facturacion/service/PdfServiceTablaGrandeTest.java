@@ -0,0 +1,74 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.DatosTemporales;
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.models.ItemFactura;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Render de una factura de 50.000 items con el heap limitado por surefire (-Xmx256m).
+ */
+@SpringBootTest
+class PdfServiceTablaGrandeTest {
+
+    private static final int FILAS = 50_000;
+    private static final long HEAP_MAXIMO = 256L * 1024 * 1024;
+
+    @TempDir
+    static Path datos;
+
+    @DynamicPropertySource
+    static void datosTemporales(DynamicPropertyRegistry registro) {
+        DatosTemporales.registrar(registro, datos);
+    }
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private SecuencialService secuencialService;
+
+    @Test
+    void renderizaCincuentaMilFilasConMemoriaAcotada() throws Exception {
+        assertTrue(Runtime.getRuntime().maxMemory() <= HEAP_MAXIMO, "El test debe correr con -Xmx256m");
+
+        FacturaCompleta factura = new FacturaCompleta();
+        secuencialService.asignar(factura);
+        factura.setRazonSocialCliente("DISTRIBUIDORA MAYORISTA");
+        factura.setRucCliente("1790011674001");
+        factura.setDireccionCliente("AV. AMAZONAS Y COLON");
+        List<ItemFactura> items = new ArrayList<>(FILAS);
+        for (int i = 1; i <= FILAS; i++) {
+            items.add(new ItemFactura(i, "P" + i, "PRODUCTO MAYORISTA " + i, 1 + i % 9, 1.25, 0));
+        }
+        factura.setItems(items);
+
+        Path pdf = Files.createTempFile("factura-grande", ".pdf");
+        try {
+            try (OutputStream salida = Files.newOutputStream(pdf)) {
+                pdfService.generarFacturaPdf(factura, salida);
+            }
+
+            try (PdfDocument documento = new PdfDocument(new PdfReader(pdf.toFile()))) {
+                assertTrue(documento.getNumberOfPages() > 100);
+            }
+        } finally {
+            Files.deleteIfExists(pdf);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.itextpdf.layout.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlantillaEmisorCacheTest {
+
+    private final RecursosPdf recursos = new RecursosPdf();
+    private final PlantillaEmisorCache cache = new PlantillaEmisorCache(recursos);
+
+    private static FacturaCompleta emisor(String ruc) {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setRucEmisor(ruc);
+        return factura;
+    }
+
+    private String renderizar(FacturaCompleta factura) throws Exception {
+        return renderizar(factura, false);
+    }
+
+    private String renderizar(FacturaCompleta factura, boolean titulo) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PdfDocument pdf = new PdfDocument(new PdfWriter(baos));
+        PdfFont fontNormal = recursos.fuenteNormal();
+        PdfFont fontBold = recursos.fuenteNegrita();
+        try (Document document = new Document(pdf)) {
+            document.add(titulo
+                    ? cache.tituloFactura(factura, pdf, fontNormal, fontBold)
+                    : cache.bloqueEmisor(factura, pdf, fontNormal, fontBold));
+        }
+        try (PdfDocument leido = new PdfDocument(new PdfReader(new ByteArrayInputStream(baos.toByteArray())))) {
+            return PdfTextExtractor.getTextFromPage(leido.getFirstPage());
+        }
+    }
+
+    @Test
+    void elBloqueCacheadoSeDibujaIgualEnCadaDocumento() throws Exception {
+        FacturaCompleta factura = emisor("0503815623001");
+        String primero = renderizar(factura);
+        String segundo = renderizar(factura);
+
+        assertEquals(1, cache.getTamano());
+        assertTrue(primero.contains("PICANTERÍA"), primero);
+        assertTrue(primero.contains(factura.getNombrePropietario()), primero);
+        assertTrue(primero.contains("OBLIGADO A LLEVAR CONTABILIDAD"), primero);
+        assertEquals(primero, segundo);
+    }
+
+    @Test
+    void elTituloDeLaFacturaTambienSeCachea() throws Exception {
+        FacturaCompleta factura = emisor("0503815623001");
+        String primero = renderizar(factura, true);
+        String segundo = renderizar(factura, true);
+
+        assertEquals(1, cache.getTamano());
+        assertTrue(primero.contains("R.U.C.: 0503815623001"), primero);
+        assertTrue(primero.contains("F A C T U R A"), primero);
+        assertEquals(primero, segundo);
+    }
+
+    @Test
+    void descartaElEmisorUsadoHaceMasTiempo() throws Exception {
+        for (int i = 0; i < PlantillaEmisorCache.MAX_PLANTILLAS; i++) {
+            renderizar(emisor(String.format("%013d", i)));
+        }
+        // El primero se vuelve a usar; el que sale es el segundo
+        renderizar(emisor(String.format("%013d", 0)));
+        renderizar(emisor("9999999999999"));
+
+        assertEquals(PlantillaEmisorCache.MAX_PLANTILLAS, cache.getTamano());
+        assertTrue(cache.contiene(emisor(String.format("%013d", 0))));
+        assertFalse(cache.contiene(emisor(String.format("%013d", 1))));
+    }
+}
@@ -0,0 +1,135 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.util.ReglasFacturacion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReglasFacturacionServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private ReglasFacturacionService servicio;
+
+    @BeforeEach
+    void reglasDeSiempre() {
+        ReglasFacturacion.publicar(ReglasFacturacion.PREDETERMINADAS);
+    }
+
+    @AfterEach
+    void cerrar() {
+        if (servicio != null) {
+            servicio.cerrar();
+        }
+        ReglasFacturacion.publicar(ReglasFacturacion.PREDETERMINADAS);
+    }
+
+    private ReglasFacturacionService servicio(Path archivo) {
+        return new ReglasFacturacionService(archivo.toString(), directorio.resolve("historial").toString(), 0,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sinArchivoQuedanLasPredeterminadas() {
+        servicio = servicio(directorio.resolve("reglas.json"));
+        ReglasFacturacion reglas = ReglasFacturacion.vigentes();
+        assertSame(ReglasFacturacion.PREDETERMINADAS, reglas);
+        assertEquals(Map.of(4, 5, 8, 10), reglas.getTramos());
+        assertEquals(0, reglas.descuento(3));
+        assertEquals(5, reglas.descuento(7));
+        assertEquals(10, reglas.descuento(1_000_000));
+        assertEquals(1500, reglas.tasaIva(reglas.fila("CUALQUIERA")));
+    }
+
+    @Test
+    void compilaYPublicaLasReglasDelArchivo() throws IOException {
+        Path archivo = directorio.resolve("reglas.json");
+        Files.writeString(archivo, """
+                {"version": 2, "iva": 12.5, "servicio": 10,
+                 "descuentosPorCantidad": [{"desde": 10, "porcentaje": 8}, {"desde": 3, "porcentaje": 2}],
+                 "productos": [
+                   {"codigo": "LIB-01", "iva": "0"},
+                   {"codigo": "MED-01", "iva": "exento"},
+                   {"codigo": "DON-01", "iva": "No Objeto"},
+                   {"codigo": "CIG-20", "iva": 12.5, "ice": 30}
+                 ]}
+                """);
+        servicio = servicio(archivo);
+
+        ReglasFacturacion reglas = servicio.getVigentes();
+        assertEquals(2, reglas.getVersion());
+        assertEquals(1250, reglas.getTasaIva());
+        assertEquals(1000, reglas.getTasaServicio());
+        assertEquals(0, reglas.descuento(2));
+        assertEquals(2, reglas.descuento(9));
+        assertEquals(8, reglas.descuento(10));
+        assertEquals(4, reglas.getCantidadProductos());
+        assertEquals(0, reglas.tasaIva(reglas.fila("LIB-01")));
+        assertEquals(ReglasFacturacion.IVA_EXENTO, reglas.categoriaIva(reglas.fila("MED-01")));
+        assertEquals(ReglasFacturacion.IVA_NO_OBJETO, reglas.categoriaIva(reglas.fila("DON-01")));
+        assertEquals(1250, reglas.tasaIva(reglas.fila("CIG-20")));
+        assertEquals(3000, reglas.tasaIce(reglas.fila("CIG-20")));
+        assertEquals(0, reglas.fila("OTRO"));
+        assertEquals(0, reglas.fila(null));
+        assertTrue(Files.exists(directorio.resolve("historial/reglas-2.json")));
+    }
+
+    @Test
+    void noSeVuelveAtrasNiSeCambiaUnaVersionPublicada() throws IOException {
+        Path archivo = directorio.resolve("reglas.json");
+        Files.writeString(archivo, "{\"version\": 3, \"iva\": 15}");
+        servicio = servicio(archivo);
+        assertEquals(1, servicio.getRecargas());
+
+        // La misma versión sin cambios (aunque con otro formato) no es una recarga
+        Files.writeString(archivo, "{ \"iva\" : 15, \"version\" : 3 }");
+        assertEquals(3, servicio.recargar());
+        assertEquals(1, servicio.getRecargas());
+
+        Files.writeString(archivo, "{\"version\": 3, \"iva\": 12}");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        Files.writeString(archivo, "{\"version\": 2, \"iva\": 12}");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        Files.writeString(archivo, "{\"version\": 4, \"descuentosPorCantidad\": [{\"desde\": 0, \"porcentaje\": 5}]}");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        Files.writeString(archivo, "{\"version\": 4, \"productos\": [{\"codigo\": \"X\", \"iva\": \"8\"}]}");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        Files.writeString(archivo, "{\"version\": 4, \"productos\": [{\"codigo\": \"X\"}, {\"codigo\": \"X\"}]}");
+        assertThrows(IllegalArgumentException.class, servicio::recargar);
+        assertNotNull(servicio.getUltimoError());
+        assertEquals(3, ReglasFacturacion.vigentes().getVersion());
+        assertEquals(1500, ReglasFacturacion.vigentes().getTasaIva());
+
+        Files.writeString(archivo, "{\"version\": 4, \"iva\": 12}");
+        assertEquals(4, servicio.recargar());
+        assertNull(servicio.getUltimoError());
+        assertEquals(1200, ReglasFacturacion.vigentes().getTasaIva());
+        assertEquals(1500, ReglasFacturacion.porVersion(3).getTasaIva());
+    }
+
+    @Test
+    void alArrancarCargaElHistorial() throws IOException {
+        Path historial = Files.createDirectories(directorio.resolve("historial"));
+        Files.writeString(historial.resolve("reglas-5.json"), "{\"version\": 5, \"iva\": 14}");
+        Files.writeString(historial.resolve("reglas-6.json"), "{\"version\": 6, \"iva\": 13}");
+        servicio = servicio(directorio.resolve("no-existe.json"));
+
+        assertEquals(6, ReglasFacturacion.vigentes().getVersion());
+        assertEquals(1400, ReglasFacturacion.porVersion(5).getTasaIva());
+    }
+}
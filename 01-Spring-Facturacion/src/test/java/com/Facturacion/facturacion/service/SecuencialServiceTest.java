@@ -0,0 +1,108 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import com.Facturacion.facturacion.util.GeneradorClaveAcceso;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SecuencialServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private final GeneradorClaveAcceso generador = new GeneradorClaveAcceso();
+
+    private SecuencialService nuevoServicio() {
+        return new SecuencialService(directorio.toString(), 100, 1, 1, generador);
+    }
+
+    @Test
+    void numerosUnicosConMuchosHilos() throws Exception {
+        SecuencialService servicio = nuevoServicio();
+        int hilos = 8;
+        int porHilo = 20_000;
+        ConcurrentHashMap<Long, Boolean> vistos = new ConcurrentHashMap<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            tareas.add(pool.submit(() -> {
+                for (int i = 0; i < porHilo; i++) {
+                    long numero = servicio.siguiente(1, 1);
+                    assertTrue(vistos.putIfAbsent(numero, Boolean.TRUE) == null, "Número repetido: " + numero);
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get();
+        }
+        pool.shutdown();
+
+        assertEquals(hilos * porHilo, vistos.size());
+    }
+
+    @Test
+    void continuaDespuesDeReiniciar() {
+        SecuencialService antes = nuevoServicio();
+        long ultimo = 0;
+        for (int i = 0; i < 250; i++) {
+            ultimo = antes.siguiente(1, 1);
+        }
+
+        SecuencialService despues = nuevoServicio();
+        assertTrue(despues.siguiente(1, 1) > ultimo);
+    }
+
+    @Test
+    void seriesIndependientes() {
+        SecuencialService servicio = nuevoServicio();
+        assertEquals(1, servicio.siguiente(1, 1));
+        assertEquals(1, servicio.siguiente(2, 1));
+        assertEquals(2, servicio.siguiente(1, 1));
+    }
+
+    @Test
+    void asignaNumeroYClaveDeAccesoValida() {
+        SecuencialService servicio = nuevoServicio();
+        FacturaCompleta factura = new FacturaCompleta();
+        servicio.asignar(factura);
+
+        assertEquals("001-001-000000001", factura.getNumeroFactura());
+        assertEquals(GeneradorClaveAcceso.LONGITUD, factura.getClaveAcceso().length());
+        assertTrue(generador.esValida(factura.getClaveAcceso()));
+        assertEquals(factura.getClaveAcceso(), factura.getNumeroAutorizacion());
+        assertEquals("01" + factura.getRucEmisor() + "2001001000000001", factura.getClaveAcceso().substring(8, 39));
+    }
+
+    @Test
+    void digitoVerificadorModulo11() {
+        char[] clave = new char[GeneradorClaveAcceso.LONGITUD];
+        generador.escribir(clave, 18, 10, 2026, "01", "0503815623001", 2, 1, 1, 123, 12345678, 1);
+        String texto = new String(clave);
+
+        // Cálculo independiente: pesos 2..7 desde la derecha sobre los 48 primeros dígitos
+        int suma = 0;
+        for (int i = 47, peso = 2; i >= 0; i--, peso = peso == 7 ? 2 : peso + 1) {
+            suma += (texto.charAt(i) - '0') * peso;
+        }
+        int esperado = 11 - suma % 11;
+        esperado = esperado == 11 ? 0 : esperado == 10 ? 1 : esperado;
+
+        assertEquals("181020260105038156230012001001000000123123456781", texto.substring(0, 48));
+        assertEquals(esperado, texto.charAt(48) - '0');
+        assertTrue(generador.esValida(texto));
+        assertFalse(generador.esValida(texto.substring(0, 48) + (char) ('0' + (esperado + 1) % 10)));
+    }
+}
@@ -0,0 +1,139 @@
+package com.Facturacion.facturacion.service;
+
+import com.Facturacion.facturacion.util.ValidadorEcuador;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidacionMasivaServiceTest {
+
+    private static final String[] DOCUMENTOS = {"1710034065", "1790011674001", "1760001550001", "1710034066",
+            "17100340650", "ABC", "1790011674000", " 1710034065001 "};
+
+    private final ValidadorEcuador validador = new ValidadorEcuador();
+    // Bloques de 3 líneas con 2 hilos: muchos bloques en vuelo que terminan en desorden
+    private final ValidacionMasivaService servicio =
+            new ValidacionMasivaService(validador, 2, 3, new SimpleMeterRegistry());
+
+    @AfterEach
+    void cerrar() {
+        servicio.cerrar();
+    }
+
+    @Test
+    void ndjsonEnElOrdenDeEntrada() throws IOException {
+        StringBuilder entrada = new StringBuilder();
+        int lineas = 1000;
+        for (int i = 0; i < lineas; i++) {
+            if (i == 500) {
+                entrada.append('\n');
+            } else if (i == 501) {
+                entrada.append("{roto\n");
+            } else {
+                entrada.append("{\"id\":").append(i).append(",\"ruc\":\"").append(DOCUMENTOS[i % DOCUMENTOS.length]).append("\"}\n");
+            }
+        }
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        servicio.validarNdjson(new BufferedReader(new StringReader(entrada.toString())), "ruc", salida);
+
+        String[] resultado = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(lineas - 1, resultado.length);
+        for (int i = 0, r = 0; i < lineas; i++) {
+            if (i == 500) {
+                continue;
+            }
+            String linea = resultado[r++];
+            if (i == 501) {
+                assertEquals("{\"linea\":502,\"documento\":null,\"valido\":false,\"mensaje\":\"JSON inválido\"}", linea);
+                continue;
+            }
+            String documento = DOCUMENTOS[i % DOCUMENTOS.length];
+            String mensaje = validador.getMensajeErrorDocumento(documento);
+            assertEquals(mensaje == null, validador.validarCedulaORC(documento));
+            assertEquals("{\"linea\":" + (i + 1) + ",\"documento\":\"" + documento + "\",\"valido\":" + (mensaje == null)
+                    + (mensaje == null ? "" : ",\"mensaje\":\"" + mensaje + "\"") + "}", linea);
+        }
+    }
+
+    @Test
+    void csvConComillasYColumnaPorNombre() throws IOException {
+        BufferedReader entrada = new BufferedReader(new StringReader(
+                "nombre,\"RUC\",ciudad\n"
+                        + "\"PICANTERIA \"\"LA ESQUINA\"\", S.A.\",1790011674001,QUITO\n"
+                        + "JUAN,\"1710034066\",\n"
+                        + "\n"
+                        + "SIN RUC\n"));
+        int columna = servicio.columnaCsv(entrada.readLine(), "ruc");
+        assertEquals(1, columna);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        servicio.validarCsv(entrada, columna, salida);
+
+        assertEquals(ValidacionMasivaService.ENCABEZADO_CSV
+                        + "2,\"1790011674001\",true,\"\"\n"
+                        + "3,\"1710034066\",false,\"La cédula ingresada no es válida\"\n"
+                        + "5,\"\",false,\"El número de cédula/RUC es requerido\"\n",
+                salida.toString(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> servicio.columnaCsv("nombre,ciudad", "ruc"));
+    }
+
+    @Test
+    void losResultadosSalenAntesDeTerminarDeLeerLaEntrada() throws Exception {
+        // La entrada no termina hasta que llegue a la salida el primer resultado
+        CountDownLatch primerResultado = new CountDownLatch(1);
+        Reader entrada = new Reader() {
+            private final StringReader inicio = new StringReader("{\"documento\":\"1710034065\"}\n".repeat(20));
+            private boolean esperado;
+
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                int n = inicio.read(buf, off, len);
+                if (n > 0) {
+                    return n;
+                }
+                if (!esperado) {
+                    esperado = true;
+                    try {
+                        assertTrue(primerResultado.await(10, TimeUnit.SECONDS), "No se escribió nada antes del fin de la entrada");
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream salida = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+                primerResultado.countDown();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes.write(b, off, len);
+                primerResultado.countDown();
+            }
+        };
+        servicio.validarNdjson(new BufferedReader(entrada, 16), "documento", salida);
+        assertEquals(20, bytes.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+}
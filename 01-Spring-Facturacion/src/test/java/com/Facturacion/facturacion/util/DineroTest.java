@@ -0,0 +1,55 @@
+package com.Facturacion.facturacion.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DineroTest {
+
+    @Test
+    void redondeaMitadHaciaArriba() {
+        assertEquals(101, Dinero.centavos(1.005));
+        assertEquals(435, Dinero.centavos(4.35));
+        assertEquals(-101, Dinero.centavos(-1.005));
+        assertEquals(259, Dinero.porcentaje(1725, Dinero.TASA_IVA_15));
+        assertEquals(1, Dinero.importe(1, 50));
+        assertEquals(0, Dinero.importe(1, 49));
+    }
+
+    @Test
+    void porcentajeCoincideConBigDecimal() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long centavos = random.nextInt(100_000_000);
+            int tasa = random.nextInt(10_001);
+            long esperado = BigDecimal.valueOf(centavos).multiply(BigDecimal.valueOf(tasa))
+                    .divide(BigDecimal.valueOf(10_000), 0, RoundingMode.HALF_UP).longValueExact();
+            assertEquals(esperado, Dinero.porcentaje(centavos, tasa));
+        }
+    }
+
+    @Test
+    void formateaIgualQueStringFormat() {
+        Random random = new Random(11);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            long centavos = random.nextLong() % 10_000_000_000L;
+            String esperado = BigDecimal.valueOf(centavos, 2).toPlainString();
+            assertEquals(esperado, Dinero.formatear(centavos));
+            sb.setLength(0);
+            assertEquals(esperado, Dinero.formatear(centavos, sb).toString());
+        }
+        assertEquals("0.00", Dinero.formatear(0));
+        assertEquals("-0.05", Dinero.formatear(-5));
+        assertEquals("12", Dinero.formatearEntero(1150));
+        assertEquals("4.35", Dinero.formatearPrecio(43_500));
+        assertEquals("15%", Dinero.formatearTasa(1500));
+        assertEquals("12.5%", Dinero.formatearTasa(1250));
+        assertEquals("0.75%", Dinero.formatearTasa(75));
+        assertEquals("0%", Dinero.formatearTasa(0));
+    }
+}
@@ -0,0 +1,90 @@
+package com.Facturacion.facturacion.util;
+
+import com.Facturacion.facturacion.models.FacturaCompleta;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FacturaCodecTest {
+
+    // Una factura nueva de otro día: lo que vería un JVM que arrancó esa fecha
+    private static String[] porDefectoDelDia(String fechaEmision, String fechaAutorizacion) {
+        FacturaCompleta nueva = new FacturaCompleta();
+        nueva.setFechaEmision(fechaEmision);
+        nueva.setFechaAutorizacion(fechaAutorizacion);
+        return FacturaCodec.porDefecto(nueva);
+    }
+
+    @Test
+    void lasFechasNoDependenDelDiaEnQueArrancoElJvm() {
+        String[] lunes = porDefectoDelDia("13/05/2024", "2024-05-13 08:00:00");
+        String[] martes = porDefectoDelDia("14/05/2024", "2024-05-14 08:00:00");
+
+        // Emitida el mismo día en que arrancó el JVM que la guarda
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setFechaEmision("13/05/2024");
+        factura.setFechaAutorizacion("2024-05-13 08:00:00");
+        factura.setRazonSocialCliente("COMERCIAL ANDES");
+        factura.agregarItem("A1", "LAPIZ", 3, 0.35, 0);
+
+        FacturaCompleta leida = FacturaCodec.decodificar(ByteBuffer.wrap(FacturaCodec.codificar(factura, lunes)), martes);
+        assertEquals("13/05/2024", leida.getFechaEmision());
+        assertEquals("2024-05-13 08:00:00", leida.getFechaAutorizacion());
+        assertEquals("COMERCIAL ANDES", leida.getRazonSocialCliente());
+        // Los datos del emisor siguen omitiéndose y salen de los valores por defecto
+        assertEquals(factura.getRucEmisor(), leida.getRucEmisor());
+        assertEquals(factura.getValorTotalCentavos(), leida.getValorTotalCentavos());
+    }
+
+    @Test
+    void laFechaDeEmisionSeLeeSinDecodificarLaFactura() {
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.setFechaEmision("02/03/2026");
+        factura.setRucEmisor("1790012345001");
+        factura.setNumeroFactura("001-001-000000042");
+        factura.setNumeroAutorizacion("1234567890");
+        factura.agregarItem("A1", "LAPIZ", 3, 0.35, 0);
+
+        ByteBuffer registro = ByteBuffer.wrap(FacturaCodec.codificar(factura));
+        assertEquals("02/03/2026", FacturaCodec.fechaEmision(registro.duplicate()));
+        assertEquals("02/03/2026", FacturaCodec.decodificar(registro).getFechaEmision());
+    }
+
+    @Test
+    void unaFacturaSeLeeConLasTasasConQueSeEmitioAunqueSuVersionNoEsteEnElHistorial() {
+        // Versión que nadie registró: como un diario leído antes de cargar el historial
+        ReglasFacturacion reglas = new ReglasFacturacion.Escritor(987_654)
+                .tasaIva(1200)
+                .tasaServicio(1000)
+                .producto("CERO", ReglasFacturacion.IVA_CERO, 0)
+                .producto("ICE1", ReglasFacturacion.IVA_TARIFA, 1500)
+                .construir();
+        FacturaCompleta factura = new FacturaCompleta();
+        factura.usarReglas(reglas);
+        factura.agregarItem("CERO", "ARROZ", 2, 1.25, 0);
+        factura.agregarItem("ICE1", "COLA", 3, 0.80, 0);
+        factura.agregarItem("A1", "LAPIZ", 1, 0.35, 0);
+        factura.agregarItem("ICE1", "COLA GRANDE", 1, 1.50, 0);
+
+        FacturaCompleta leida = FacturaCodec.decodificar(FacturaCodec.codificar(factura));
+        assertEquals(987_654, leida.getVersionReglas());
+        assertEquals(1200, leida.reglas().getTasaIva());
+        assertEquals(factura.getSubtotal0Centavos(), leida.getSubtotal0Centavos());
+        assertEquals(factura.getIceCentavos(), leida.getIceCentavos());
+        assertEquals(factura.getIva15Centavos(), leida.getIva15Centavos());
+        assertEquals(factura.getServicioCentavos(), leida.getServicioCentavos());
+        assertEquals(factura.getValorTotalCentavos(), leida.getValorTotalCentavos());
+        // Volver a codificarla da los mismos bytes: el diario la reconoce como la misma factura
+        assertEquals(ByteBuffer.wrap(FacturaCodec.codificar(factura)), ByteBuffer.wrap(FacturaCodec.codificar(leida)));
+    }
+
+    @Test
+    void unRegistroViejoConReglasDesconocidasNoSeRecalculaConOtras() {
+        // Formato 2, sin campos de texto ni items, reglas versión 99 (que no está en el historial)
+        byte[] registro = {2, 0, 0, 99, 0, 0, 0};
+        assertThrows(IllegalStateException.class, () -> FacturaCodec.decodificar(registro));
+    }
+}
@@ -0,0 +1,99 @@
+package com.Facturacion.facturacion.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndiceInvertidoTest {
+
+    private static List<String> terminos(String texto) {
+        List<String> terminos = new ArrayList<>();
+        Tokenizador.tokenizar(texto, terminos::add);
+        return terminos;
+    }
+
+    @Test
+    void tokenizaSinTildesNiPalabrasVacias() {
+        assertEquals(List.of("seco", "chivo"), terminos("Seco de Chivo"));
+        assertEquals(List.of("fritada", "cafe", "pina", "pinguino"), terminos("FRITADÁ, café / PIÑA; pingüino"));
+        assertEquals(List.of("p", "001", "cliente", "correo", "com", "ec"), terminos("P-001 cliente@correo.com.ec"));
+        assertTrue(terminos("  de la  ").isEmpty());
+    }
+
+    @Test
+    void buscaTodosLosTerminosConPrefijoYMasRecientesPrimero() {
+        IndiceInvertido indice = new IndiceInvertido(2, Runnable::run);
+        indice.agregar(0, terminos("Seco de chivo"));
+        indice.agregar(1, terminos("Fritada con mote"));
+        indice.agregar(2, terminos("Seco de pollo"));
+        indice.agregar(3, terminos("Fritura de pescado"));
+        indice.agregar(4, terminos("Seco de chivo grande"));
+
+        assertArrayEquals(new int[]{4, 0}, indice.buscar(terminos("chivo seco"), false, 10));
+        assertArrayEquals(new int[]{3, 1}, indice.buscar(terminos("frit"), true, 10));
+        assertArrayEquals(new int[]{}, indice.buscar(terminos("frit"), false, 10));
+        assertArrayEquals(new int[]{4, 2}, indice.buscar(terminos("seco"), false, 2));
+        assertArrayEquals(new int[]{}, indice.buscar(terminos("seco camaron"), false, 10));
+
+        indice.eliminar(4);
+        assertArrayEquals(new int[]{0}, indice.buscar(terminos("seco chiv"), true, 10));
+        assertEquals(4, indice.getCantidadDocumentos());
+    }
+
+    @Test
+    void fusionesMantienenLosMismosResultados() {
+        String[] vocabulario = {"seco", "chivo", "pollo", "fritada", "mote", "llapingacho", "jugo", "naranjilla",
+                "cola", "agua", "hornado", "cuy", "encebollado", "ceviche", "camaron", "chifles"};
+        Random aleatorio = new Random(16);
+        IndiceInvertido indice = new IndiceInvertido(37, Runnable::run);
+        List<Set<String>> documentos = new ArrayList<>();
+        Set<Integer> eliminados = new HashSet<>();
+        for (int d = 0; d < 3000; d++) {
+            Set<String> terminos = new HashSet<>();
+            for (int i = aleatorio.nextInt(4); i >= 0; i--) {
+                terminos.add(vocabulario[aleatorio.nextInt(vocabulario.length)]);
+            }
+            documentos.add(terminos);
+            indice.agregar(d, terminos);
+            if (d > 0 && aleatorio.nextInt(10) == 0) {
+                int eliminado = aleatorio.nextInt(d);
+                indice.eliminar(eliminado);
+                eliminados.add(eliminado);
+            }
+        }
+        assertTrue(indice.getCantidadSegmentos() < 20, "segmentos: " + indice.getCantidadSegmentos());
+        assertEquals(documentos.size() - eliminados.size(), indice.getCantidadDocumentos());
+
+        for (String[] consulta : new String[][]{{"seco"}, {"chivo", "seco"}, {"cuy", "mote", "jugo"}, {"c"}, {"seco", "ch"}}) {
+            List<String> terminos = List.of(consulta);
+            boolean prefijo = consulta[consulta.length - 1].length() <= 2;
+            List<Integer> esperados = new ArrayList<>();
+            for (int d = documentos.size() - 1; d >= 0; d--) {
+                if (!eliminados.contains(d) && coincide(documentos.get(d), terminos, prefijo)) {
+                    esperados.add(d);
+                }
+            }
+            int[] encontrados = indice.buscar(terminos, prefijo, Integer.MAX_VALUE);
+            assertArrayEquals(esperados.stream().mapToInt(Integer::intValue).toArray(), encontrados, String.join(" ", consulta));
+        }
+    }
+
+    private static boolean coincide(Set<String> documento, List<String> consulta, boolean prefijo) {
+        for (int i = 0; i < consulta.size(); i++) {
+            String termino = consulta.get(i);
+            boolean esPrefijo = prefijo && i == consulta.size() - 1;
+            if (esPrefijo ? documento.stream().noneMatch(t -> t.startsWith(termino)) : !documento.contains(termino)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
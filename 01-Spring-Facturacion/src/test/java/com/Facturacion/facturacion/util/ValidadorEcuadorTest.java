@@ -0,0 +1,155 @@
+package com.Facturacion.facturacion.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidadorEcuadorTest {
+
+    private final ValidadorEcuador validador = new ValidadorEcuador();
+    private final ValidadorEcuadorOriginal original = new ValidadorEcuadorOriginal();
+
+    private void comparar(String s) {
+        assertEquals(original.validarCedula(s), validador.validarCedula(s), () -> "cedula " + visible(s));
+        assertEquals(original.validarRuc(s), validador.validarRuc(s), () -> "ruc " + visible(s));
+        assertEquals(original.validarCedulaORC(s), validador.validarCedulaORC(s), () -> "cedulaORC " + visible(s));
+        assertEquals(original.validarTelefono(s), validador.validarTelefono(s), () -> "telefono " + visible(s));
+        assertEquals(original.validarCorreo(s), validador.validarCorreo(s), () -> "correo " + visible(s));
+        assertEquals(original.getMensajeErrorDocumento(s), validador.getMensajeErrorDocumento(s), () -> "mensaje " + visible(s));
+    }
+
+    @Test
+    void documentosConocidos() {
+        assertTrue(validador.validarCedula("1710034065"));
+        assertTrue(validador.validarRuc("1710034065001"));
+        assertTrue(validador.validarRuc("1790011674001"));
+        assertTrue(validador.validarRuc("1760001550001"));
+        assertTrue(validador.validarCedulaORC(" 1790011674001\t"));
+        assertFalse(validador.validarRuc("1790011674000"));
+        assertTrue(validador.validarTelefono("(02) 234-5678"));
+        assertTrue(validador.validarTelefono("+593 99 123 4567"));
+        assertTrue(validador.validarCorreo("cliente.frecuente@picanteria.com.ec"));
+        assertFalse(validador.validarCorreo("cliente@picanteria.c0m"));
+        assertEquals("El RUC ingresado no es válido", validador.getMensajeErrorDocumento("1790011675001"));
+
+        // Cualquier CharSequence, sin convertir a String
+        assertTrue(validador.validarCedula(new StringBuilder("1710034065")));
+        comparar(null);
+    }
+
+    @Test
+    void todasLasCadenasCortasSobreUnAlfabetoDeCasosBorde() {
+        // Dígitos, separadores, espacios que trim quita y que \s no (y al revés), dígitos no ASCII
+        char[] alfabeto = {'0', '2', '9', '+', '-', '(', ' ', '\t', '\u000B', '\u001F', ' ',
+                '@', '.', 'a', 'Z', '_', '٣', '\n'};
+        char[] buf = new char[4];
+        for (int largo = 0; largo <= 4; largo++) {
+            int total = (int) Math.pow(alfabeto.length, largo);
+            for (int n = 0; n < total; n++) {
+                int x = n;
+                for (int i = 0; i < largo; i++) {
+                    buf[i] = alfabeto[x % alfabeto.length];
+                    x /= alfabeto.length;
+                }
+                comparar(new String(buf, 0, largo));
+            }
+        }
+    }
+
+    @Test
+    void todasLasProvinciasTiposYVerificadores() {
+        Random random = new Random(19);
+        char[] cedula = new char[10];
+        char[] ruc = new char[13];
+        String[] establecimientos = {"000", "001", "010", "100", "999"};
+        for (int prefijo = 0; prefijo < 1000; prefijo++) {
+            for (int verificadores = 0; verificadores < 100; verificadores++) {
+                cedula[0] = (char) ('0' + prefijo / 100);
+                cedula[1] = (char) ('0' + prefijo / 10 % 10);
+                cedula[2] = (char) ('0' + prefijo % 10);
+                for (int i = 3; i < 8; i++) {
+                    cedula[i] = (char) ('0' + random.nextInt(10));
+                }
+                cedula[8] = (char) ('0' + verificadores / 10);
+                cedula[9] = (char) ('0' + verificadores % 10);
+                comparar(new String(cedula));
+
+                System.arraycopy(cedula, 0, ruc, 0, 10);
+                establecimientos[random.nextInt(establecimientos.length)].getChars(0, 3, ruc, 10);
+                comparar(new String(ruc));
+            }
+        }
+    }
+
+    @Test
+    void cadenasAleatoriasConFormaDeDocumentoTelefonoOCorreo() {
+        Random random = new Random(2026);
+        String[] inicios = {"", "0", "09", "02", "07", "08", "+593", "593", "+", "(0", "17", "30", "99", " ", "\t"};
+        String otros = " -()\t\r .x+@_%aZ٣";
+        String local = "abcXYZ019._%+-";
+        String dominio = "abZ09.-";
+        for (int n = 0; n < 200_000; n++) {
+            StringBuilder s = new StringBuilder();
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    // Documentos o teléfonos: dígitos con algún separador o carácter extraño
+                    s.append(inicios[random.nextInt(inicios.length)]);
+                    int digitos = random.nextInt(15);
+                    for (int i = 0; i < digitos; i++) {
+                        if (random.nextInt(8) == 0) {
+                            s.append(otros.charAt(random.nextInt(otros.length())));
+                        }
+                        s.append((char) ('0' + random.nextInt(10)));
+                    }
+                    if (random.nextInt(4) == 0) {
+                        s.append(random.nextBoolean() ? " " : "\n");
+                    }
+                }
+                case 1 -> {
+                    // Correos: parte local, arroba(s), dominio con puntos y terminación de letras
+                    int a = random.nextInt(5);
+                    for (int i = 0; i < a; i++) {
+                        s.append(local.charAt(random.nextInt(local.length())));
+                    }
+                    s.append(random.nextInt(10) == 0 ? "" : "@");
+                    int b = random.nextInt(6);
+                    for (int i = 0; i < b; i++) {
+                        s.append(dominio.charAt(random.nextInt(dominio.length())));
+                    }
+                    if (random.nextInt(5) != 0) {
+                        s.append('.');
+                    }
+                    int c = random.nextInt(4);
+                    for (int i = 0; i < c; i++) {
+                        s.append(random.nextInt(6) == 0 ? otros.charAt(random.nextInt(otros.length()))
+                                : (char) ((random.nextBoolean() ? 'a' : 'A') + random.nextInt(26)));
+                    }
+                }
+                default -> {
+                    // Cualquier cosa corta
+                    int largo = random.nextInt(16);
+                    for (int i = 0; i < largo; i++) {
+                        s.append((char) random.nextInt(128));
+                    }
+                }
+            }
+            comparar(s.toString());
+        }
+    }
+
+    private static String visible(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            sb.append(c >= ' ' && c < 127 ? String.valueOf(c) : String.format("\\u%04X", (int) c));
+        }
+        return sb.append('"').toString();
+    }
+}
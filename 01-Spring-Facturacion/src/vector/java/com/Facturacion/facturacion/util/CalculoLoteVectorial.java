@@ -0,0 +1,138 @@
+package com.Facturacion.facturacion.util;
+
+import com.Facturacion.facturacion.models.LoteFacturas;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Versión de {@link CalculoLote} con la Vector API: procesa tantas filas a la vez como dobles
+ * entran en el registro preferido (4 con AVX2, 8 con AVX-512).
+ * <p>
+ * Los montos se llevan como dobles con valor entero, que son exactos mientras no pasen de
+ * 2^53; las divisiones con redondeo HALF_UP se hacen como {@code piso((|x| + d/2) / d)} con el
+ * signo de {@code x}, y el piso sumando y restando 2^52. La tasa de IVA se reduce a la fracción
+ * más chica con el mismo redondeo (15% queda en {@code piso((3x + 10) / 20)}); las filas de
+ * productos sin tarifa (tasa 0 en su fila de las reglas) quedan con IVA 0. Un vector con
+ * algún precio o importe fuera de ese rango (o NaN) se calcula con la versión escalar, así el
+ * resultado es siempre idéntico.
+ * <p>
+ * Se compila aparte, solo con el perfil {@code vector} de Maven (src/vector/java), y
+ * {@link CalculoLote} la carga por reflexión si el JVM arrancó con
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+final class CalculoLoteVectorial implements CalculoLote.Vectorial {
+
+    private static final VectorSpecies<Double> DOBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> ENTEROS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOBLES.length() * Integer.SIZE));
+
+    static final int CARRILES = DOBLES.length();
+
+    // Con precios e importes por debajo de 2^50 los productos y cocientes siguientes son exactos
+    // (el importe además se acota según la tasa de IVA, ver calcular)
+    private static final double LIMITE = 0x1p50;
+    private static final double REDONDEO = 0x1p52;
+
+    @Override
+    public int carriles() {
+        return CARRILES;
+    }
+
+    /**
+     * Calcula las filas desde {@code desde} de a un vector completo; devuelve la primera fila
+     * que queda sin calcular (menos de {@link #CARRILES} antes de {@code hasta}).
+     */
+    @Override
+    public int calcular(LoteFacturas lote, ReglasFacturacion reglas, int desde, int hasta) {
+        int[] cantidades = lote.getCantidades();
+        double[] precios = lote.getPreciosUnitarios();
+        int[] descuentos = lote.getDescuentos();
+        double[] subtotales = lote.getSubtotales();
+        double[] ivas = lote.getIvas();
+        double[] totales = lote.getTotales();
+        IntVector cero = IntVector.zero(ENTEROS);
+        int[] tramosDesde = reglas.getTramosDesde();
+        int[] tramosPorcentaje = reglas.getTramosPorcentaje();
+        int[] filas = lote.getFilasReglas();
+        int[] tasasIva = reglas.getTasasIva();
+        // Sin códigos o sin productos con reglas propias todas las filas son la 0
+        boolean porProducto = lote.getCodigos() != null && reglas.getCantidadProductos() > 0;
+
+        // HALF_UP(s * tasa / 10000) = piso((2 s tasa + 10000) / 20000), simplificado por el mcd
+        int tasaIva = reglas.getTasaIva();
+        int mcd = mcd(2 * tasaIva, 10_000);
+        double ivaFactor = 2 * tasaIva / mcd;
+        double ivaMitad = 10_000 / mcd;
+        double ivaDivisor = 20_000 / mcd;
+        // El subtotal es a lo sumo importe / 100 + 1: así subtotal * ivaFactor + ivaMitad < 2^52
+        double limiteImporte = Math.min(LIMITE, 0x1p51 / Math.max(1, ivaFactor) * 100);
+
+        int i = desde;
+        for (; i <= hasta - CARRILES; i += CARRILES) {
+            IntVector cantidad = IntVector.fromArray(ENTEROS, cantidades, i);
+            DoubleVector precio = DoubleVector.fromArray(DOBLES, precios, i).mul(Dinero.ESCALA_PRECIO);
+            DoubleVector importe = ((DoubleVector) cantidad.convertShape(VectorOperators.I2D, DOBLES, 0))
+                    .mul(redondearComoMath(precio));
+            if (!precio.abs().lt(LIMITE).and(importe.abs().lt(limiteImporte)).allTrue()) {
+                CalculoLote.escalar(lote, reglas, i, i + CARRILES);
+                continue;
+            }
+
+            // Los tramos van de menor a mayor: gana el último que alcanza la cantidad
+            IntVector descuento = cero;
+            for (int t = 0; t < tramosDesde.length; t++) {
+                descuento = descuento.blend(tramosPorcentaje[t], cantidad.compare(VectorOperators.GE, tramosDesde[t]));
+            }
+            DoubleVector bruto = redondear(importe, 100);
+            // bruto * descuento * 100 / 10000 es lo mismo que bruto * descuento / 100
+            DoubleVector subtotal = bruto.sub(redondear(bruto.mul(
+                    (DoubleVector) descuento.convertShape(VectorOperators.I2D, DOBLES, 0)), 100));
+            DoubleVector iva = piso(subtotal.abs().mul(ivaFactor).add(ivaMitad).div(ivaDivisor))
+                    .lanewise(VectorOperators.NEG, subtotal.lt(0.0));
+            if (porProducto) {
+                VectorMask<Double> sinTarifa = IntVector.fromArray(ENTEROS, tasasIva, 0, filas, i)
+                        .compare(VectorOperators.EQ, 0).cast(DOBLES);
+                iva = iva.blend(0.0, sinTarifa);
+            }
+
+            descuento.intoArray(descuentos, i);
+            // + 0.0 convierte el -0.0 de un monto negativo redondeado a cero en 0.0, como Dinero.aDouble
+            subtotal.add(0.0).div(100).intoArray(subtotales, i);
+            iva.add(0.0).div(100).intoArray(ivas, i);
+            subtotal.add(iva).add(0.0).div(100).intoArray(totales, i);
+        }
+        return i;
+    }
+
+    // Math.round: al par más cercano y, si quedó justo medio por debajo, uno más
+    private static DoubleVector redondearComoMath(DoubleVector valor) {
+        DoubleVector cercano = valor.abs().add(REDONDEO).sub(REDONDEO)
+                .lanewise(VectorOperators.NEG, valor.lt(0.0));
+        return cercano.add(1.0, valor.sub(cercano).eq(0.5));
+    }
+
+    // Dinero.redondear sobre valores enteros exactos
+    private static DoubleVector redondear(DoubleVector valor, double divisor) {
+        return piso(valor.abs().add(divisor / 2).div(divisor)).lanewise(VectorOperators.NEG, valor.lt(0.0));
+    }
+
+    // Piso de valores entre 0 y 2^52: al entero más cercano y, si se pasó, uno menos
+    private static DoubleVector piso(DoubleVector valor) {
+        DoubleVector cercano = valor.add(REDONDEO).sub(REDONDEO);
+        VectorMask<Double> sePaso = cercano.compare(VectorOperators.GT, valor);
+        return cercano.sub(1.0, sePaso);
+    }
+
+    private static int mcd(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+}